@@ -0,0 +1,166 @@
+package org.icechamps.lava.benchmark;
+
+import org.icechamps.lava.Person;
+import org.icechamps.lava.Pet;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.IntSupplier;
+
+/**
+ * Builds the data the benchmarks run over out of the same Person and Pet classes the unit tests use. Everything is
+ * generated from a fixed seed, so every run and every fork sees the same data.
+ */
+public class Fixtures {
+    static final long SEED = 42;
+
+    /**
+     * The number of distinct ages given to the people of the benchmarks that don't depend on it
+     */
+    static final int AGES = 100;
+
+    private Fixtures() {
+    }
+
+    /**
+     * Creates people named Person-0 to Person-(size - 1). Each one's age is picked at random from {@code keys}
+     * possible ages, so the age can be used as a key with that many distinct values, and each one has up to two pets.
+     *
+     * @param size The number of people
+     * @param keys The number of distinct ages
+     * @return The people
+     */
+    public static List<Person> people(int size, int keys) {
+        return people(size, keys, KeyDistribution.UNIFORM, 3);
+    }
+
+    /**
+     * Creates people named Person-0 to Person-(size - 1), whose ages are picked from {@code keys} possible ages
+     * following the distribution
+     *
+     * @param size         The number of people
+     * @param keys         The number of distinct ages
+     * @param distribution How the ages are spread
+     * @param maxPets      One more than the most pets a person has, or 0 to give nobody a pet
+     * @return The people
+     */
+    public static List<Person> people(int size, int keys, KeyDistribution distribution, int maxPets) {
+        IntSupplier ages = distribution.keys(keys, new Random(SEED));
+        List<Person> ret = new ArrayList<Person>(size);
+
+        for (int i = 0; i < size; i++) {
+            ret.add(person("Person-" + i, ages.getAsInt(), maxPets == 0 ? 0 : i % maxPets));
+        }
+
+        return ret;
+    }
+
+    /**
+     * Creates one pet for each person, owned by a person picked at random, so that joining the people to the pets on
+     * the owner produces about as many rows as there are pets.
+     *
+     * @param people The people that own the pets
+     * @return The pets
+     */
+    public static List<Pet> pets(List<Person> people) {
+        return pets(people, KeyDistribution.UNIFORM);
+    }
+
+    /**
+     * Creates one pet for each person, with the owners picked following the distribution. Under a skewed distribution
+     * Person-0 owns the most pets.
+     *
+     * @param people       The people that own the pets
+     * @param distribution How the pets are spread over the people
+     * @return The pets
+     */
+    public static List<Pet> pets(List<Person> people, KeyDistribution distribution) {
+        IntSupplier owners = distribution.keys(people.size(), new Random(SEED + 1));
+        List<Pet> ret = new ArrayList<Pet>(people.size());
+
+        for (int i = 0; i < people.size(); i++) {
+            Pet pet = new Pet();
+            pet.name = "Pet-" + i;
+            pet.owner = people.get(owners.getAsInt());
+            ret.add(pet);
+        }
+
+        return ret;
+    }
+
+    /**
+     * @param people The people
+     * @return The age of each person, in the same order
+     */
+    public static List<Integer> ages(List<Person> people) {
+        List<Integer> ret = new ArrayList<Integer>(people.size());
+
+        for (Person person : people) {
+            ret.add(person.age);
+        }
+
+        return ret;
+    }
+
+    /**
+     * Creates a second list of keys for the set operators, drawn from a range that overlaps the first half of the
+     * range of {@link #people(int, int)}'s ages
+     *
+     * @param size The number of keys
+     * @param keys The number of distinct keys
+     * @return The keys
+     */
+    public static List<Integer> otherAges(int size, int keys) {
+        return otherAges(size, keys, KeyDistribution.UNIFORM);
+    }
+
+    /**
+     * Creates a second list of keys for the set operators like {@link #otherAges(int, int)}, with the keys picked
+     * following the distribution
+     *
+     * @param size         The number of keys
+     * @param keys         The number of distinct keys
+     * @param distribution How the keys are spread
+     * @return The keys
+     */
+    public static List<Integer> otherAges(int size, int keys, KeyDistribution distribution) {
+        IntSupplier others = distribution.keys(keys, new Random(SEED + 2));
+        List<Integer> ret = new ArrayList<Integer>(size);
+
+        for (int i = 0; i < size; i++) {
+            ret.add(keys / 2 + others.getAsInt());
+        }
+
+        return ret;
+    }
+
+    /**
+     * Reads every element of a result, for the operators that don't do their work until they are enumerated
+     *
+     * @param results The results to read
+     * @param bh      The blackhole the elements are handed to
+     */
+    public static void consume(Iterable<?> results, Blackhole bh) {
+        for (Object result : results) {
+            bh.consume(result);
+        }
+    }
+
+    static Person person(String name, int age, int pets) {
+        Person person = new Person();
+        person.name = name;
+        person.age = age;
+        person.pets = new ArrayList<Pet>(pets);
+
+        for (int i = 0; i < pets; i++) {
+            Pet pet = new Pet();
+            pet.name = name + "-" + i;
+            pet.owner = person;
+            person.pets.add(pet);
+        }
+
+        return person;
+    }
+}
@@ -0,0 +1,65 @@
+package org.icechamps.lava.benchmark;
+
+import org.icechamps.lava.Lava;
+import org.icechamps.lava.Person;
+import org.icechamps.lava.callback.Func;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * groupBy on a person's age. The number of distinct ages decides how many groups there are. It is measured through
+ * Lava, as a hand written loop and with java.util.stream.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GroupingBenchmark {
+    private static final Func<Person, Integer> AGE = person -> person.age;
+
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    @Param({"16", "1024", "65536"})
+    public int keys;
+
+    private List<Person> people;
+
+    @Setup
+    public void setUp() {
+        people = Fixtures.people(size, keys);
+    }
+
+    @Benchmark
+    public Object groupByLava() {
+        return Lava.groupBy(people, AGE);
+    }
+
+    @Benchmark
+    public Object groupByLoop() {
+        Map<Integer, List<Person>> ret = new LinkedHashMap<Integer, List<Person>>();
+
+        for (Person person : people) {
+            List<Person> group = ret.get(person.age);
+
+            if (group == null) {
+                group = new ArrayList<Person>();
+                ret.put(person.age, group);
+            }
+
+            group.add(person);
+        }
+
+        return ret;
+    }
+
+    @Benchmark
+    public Object groupByStream() {
+        return people.stream().collect(Collectors.groupingBy(person -> person.age, LinkedHashMap::new, Collectors.toList()));
+    }
+}
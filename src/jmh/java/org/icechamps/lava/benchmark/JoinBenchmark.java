@@ -0,0 +1,127 @@
+package org.icechamps.lava.benchmark;
+
+import org.icechamps.lava.Lava;
+import org.icechamps.lava.Person;
+import org.icechamps.lava.Pet;
+import org.icechamps.lava.PetOwner;
+import org.icechamps.lava.callback.Func;
+import org.icechamps.lava.callback.Func2;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * join and groupJoin of people to the pets they own. Every person has a different name, so the joins match on unique
+ * keys and only the size is varied. Each one is measured through Lava, as a hand written loop and with
+ * java.util.stream.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JoinBenchmark {
+    private static final Func<Person, String> NAME = person -> person.name;
+    private static final Func<Pet, String> OWNER_NAME = pet -> pet.owner.name;
+    private static final Func2<Person, Pet, PetOwner> PET_OWNER = PetOwner::new;
+    private static final Func2<Person, Collection<Pet>, Integer> PET_COUNT = (person, pets) -> pets.size();
+
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    private List<Person> people;
+    private List<Pet> pets;
+
+    @Setup
+    public void setUp() {
+        people = Fixtures.people(size, Fixtures.AGES);
+        pets = Fixtures.pets(people);
+    }
+
+    @Benchmark
+    public void joinLava(Blackhole bh) {
+        Fixtures.consume(Lava.join(people, pets, NAME, OWNER_NAME, PET_OWNER), bh);
+    }
+
+    @Benchmark
+    public Object joinLoop() {
+        Map<String, List<Pet>> lookup = new HashMap<String, List<Pet>>();
+
+        for (Pet pet : pets) {
+            List<Pet> owned = lookup.get(pet.owner.name);
+
+            if (owned == null) {
+                owned = new ArrayList<Pet>();
+                lookup.put(pet.owner.name, owned);
+            }
+
+            owned.add(pet);
+        }
+
+        List<PetOwner> ret = new ArrayList<PetOwner>();
+
+        for (Person person : people) {
+            List<Pet> owned = lookup.get(person.name);
+
+            if (owned != null) {
+                for (Pet pet : owned) {
+                    ret.add(new PetOwner(person, pet));
+                }
+            }
+        }
+
+        return ret;
+    }
+
+    @Benchmark
+    public Object joinStream() {
+        Map<String, List<Pet>> lookup = pets.stream().collect(Collectors.groupingBy(pet -> pet.owner.name));
+
+        return people.stream()
+                .flatMap(person -> lookup.getOrDefault(person.name, Collections.<Pet>emptyList()).stream().map(pet -> new PetOwner(person, pet)))
+                .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public void groupJoinLava(Blackhole bh) {
+        Fixtures.consume(Lava.groupJoin(people, pets, NAME, OWNER_NAME, PET_COUNT), bh);
+    }
+
+    @Benchmark
+    public Object groupJoinLoop() {
+        Map<String, List<Pet>> lookup = new HashMap<String, List<Pet>>();
+
+        for (Pet pet : pets) {
+            List<Pet> owned = lookup.get(pet.owner.name);
+
+            if (owned == null) {
+                owned = new ArrayList<Pet>();
+                lookup.put(pet.owner.name, owned);
+            }
+
+            owned.add(pet);
+        }
+
+        List<Integer> ret = new ArrayList<Integer>(people.size());
+
+        for (Person person : people) {
+            List<Pet> owned = lookup.get(person.name);
+            ret.add(owned == null ? 0 : owned.size());
+        }
+
+        return ret;
+    }
+
+    @Benchmark
+    public Object groupJoinStream() {
+        Map<String, List<Pet>> lookup = pets.stream().collect(Collectors.groupingBy(pet -> pet.owner.name));
+
+        return people.stream()
+                .map(person -> lookup.getOrDefault(person.name, Collections.<Pet>emptyList()).size())
+                .collect(Collectors.toList());
+    }
+}
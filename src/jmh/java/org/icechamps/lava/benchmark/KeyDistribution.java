@@ -0,0 +1,67 @@
+package org.icechamps.lava.benchmark;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.IntSupplier;
+
+/**
+ * How the keys of the generated data are spread over the possible keys. The operators that build a hash table or a
+ * lookup per key only show their worst case when a few keys get most of the elements, so the scaling benchmarks run
+ * each operator under all three.
+ */
+public enum KeyDistribution {
+    /**
+     * Every key is equally likely
+     */
+    UNIFORM {
+        @Override
+        public IntSupplier keys(int keys, Random random) {
+            return () -> random.nextInt(keys);
+        }
+    },
+
+    /**
+     * The key of rank r is picked with a probability proportional to 1 / (r + 1), so key 0 is the most common, key 1
+     * half as common and so on, which is how word frequencies and page views tend to look
+     */
+    ZIPFIAN {
+        @Override
+        public IntSupplier keys(int keys, Random random) {
+            double[] cdf = new double[keys];
+            double total = 0;
+
+            for (int i = 0; i < keys; i++) {
+                total += 1.0 / (i + 1);
+                cdf[i] = total;
+            }
+
+            for (int i = 0; i < keys; i++) {
+                cdf[i] /= total;
+            }
+
+            return () -> {
+                int i = Arrays.binarySearch(cdf, random.nextDouble());
+                return Math.min(i < 0 ? -i - 1 : i, keys - 1);
+            };
+        }
+    },
+
+    /**
+     * Half of the elements share key 0, and the rest are spread evenly over the other keys
+     */
+    HOT_KEY {
+        @Override
+        public IntSupplier keys(int keys, Random random) {
+            return () -> keys == 1 || random.nextBoolean() ? 0 : 1 + random.nextInt(keys - 1);
+        }
+    };
+
+    /**
+     * Creates a generator of keys
+     *
+     * @param keys   The number of possible keys, which are 0 to keys - 1
+     * @param random The source of randomness, so the keys can be repeated by using the same seed
+     * @return A generator that returns a new key each time it is called
+     */
+    public abstract IntSupplier keys(int keys, Random random);
+}
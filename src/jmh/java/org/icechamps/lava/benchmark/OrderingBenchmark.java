@@ -0,0 +1,119 @@
+package org.icechamps.lava.benchmark;
+
+import org.icechamps.lava.Lava;
+import org.icechamps.lava.Person;
+import org.icechamps.lava.callback.Func;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * The operators that sort their input: orderBy, orderByDescending, orderBy with thenBy and topK. The number of distinct
+ * ages decides how many ties the sorts have to break. Each one is measured through Lava, as a hand written loop and
+ * with java.util.stream.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OrderingBenchmark {
+    private static final Func<Person, Integer> AGE = person -> person.age;
+    private static final Func<Person, String> NAME = person -> person.name;
+    private static final Comparator<Person> BY_AGE_THEN_NAME = Comparator.<Person, Integer>comparing(person -> person.age)
+            .thenComparing(person -> person.name);
+
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    @Param({"16", "1024", "65536"})
+    public int keys;
+
+    private List<Person> people;
+
+    @Setup
+    public void setUp() {
+        people = Fixtures.people(size, keys);
+    }
+
+    @Benchmark
+    public Object orderByLava() {
+        return Lava.orderBy(people);
+    }
+
+    @Benchmark
+    public Object orderByLoop() {
+        List<Person> ret = new ArrayList<Person>(people);
+        Collections.sort(ret);
+        return ret;
+    }
+
+    @Benchmark
+    public Object orderByStream() {
+        return people.stream().sorted().collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public Object orderByDescendingLava() {
+        return Lava.orderByDescending(people);
+    }
+
+    @Benchmark
+    public Object orderByDescendingLoop() {
+        List<Person> ret = new ArrayList<Person>(people);
+        Collections.sort(ret, Collections.reverseOrder());
+        return ret;
+    }
+
+    @Benchmark
+    public Object orderByDescendingStream() {
+        return people.stream().sorted(Comparator.reverseOrder()).collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public Object thenByLava() {
+        return Lava.orderBy(people, AGE).thenBy(NAME);
+    }
+
+    @Benchmark
+    public Object thenByLoop() {
+        List<Person> ret = new ArrayList<Person>(people);
+        Collections.sort(ret, BY_AGE_THEN_NAME);
+        return ret;
+    }
+
+    @Benchmark
+    public Object thenByStream() {
+        return people.stream().sorted(BY_AGE_THEN_NAME).collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public Object topKLava() {
+        return Lava.topK(people, 100);
+    }
+
+    @Benchmark
+    public Object topKLoop() {
+        // The head of the queue is the largest of the smallest elements seen so far
+        PriorityQueue<Person> smallest = new PriorityQueue<Person>(101, Collections.reverseOrder());
+
+        for (Person person : people) {
+            smallest.add(person);
+
+            if (smallest.size() > 100)
+                smallest.poll();
+        }
+
+        List<Person> ret = new ArrayList<Person>(smallest);
+        Collections.sort(ret);
+        return ret;
+    }
+
+    @Benchmark
+    public Object topKStream() {
+        return people.stream().sorted().limit(100).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,352 @@
+package org.icechamps.lava.benchmark;
+
+import org.icechamps.lava.Lava;
+import org.icechamps.lava.Person;
+import org.icechamps.lava.Pet;
+import org.icechamps.lava.callback.Func;
+import org.icechamps.lava.callback.Func2;
+import org.icechamps.lava.callback.Predicate;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * The operators that read their input once, element by element: where, select, selectMany, skip, take, concat,
+ * reverse, any, all, first, count, min, max, aggregate, sum and average. None of them look at keys, so only the size
+ * is varied. Each one is measured through Lava, as a hand written loop and with java.util.stream.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProjectionBenchmark {
+    private static final Predicate<Person> EVEN_AGE = person -> person.age % 2 == 0;
+    private static final Predicate<Person> NEGATIVE_AGE = person -> person.age < 0;
+    private static final Predicate<Person> NON_NEGATIVE_AGE = person -> person.age >= 0;
+    private static final Func<Person, String> NAME = person -> person.name;
+    private static final Func<Person, Integer> AGE = person -> person.age;
+    private static final Func<Person, Collection<Pet>> PETS = person -> person.pets;
+    private static final Func2<Person, Integer, Integer> ADD_AGE = (person, sum) -> sum == null ? person.age : sum + person.age;
+
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    private List<Person> people;
+    private List<Integer> ages;
+
+    @Setup
+    public void setUp() {
+        people = Fixtures.people(size, Fixtures.AGES);
+        ages = Fixtures.ages(people);
+    }
+
+    @Benchmark
+    public Object whereLava() {
+        return Lava.where(people, EVEN_AGE);
+    }
+
+    @Benchmark
+    public Object whereLoop() {
+        List<Person> ret = new ArrayList<Person>();
+
+        for (Person person : people) {
+            if (person.age % 2 == 0)
+                ret.add(person);
+        }
+
+        return ret;
+    }
+
+    @Benchmark
+    public Object whereStream() {
+        return people.stream().filter(person -> person.age % 2 == 0).collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public Object selectLava() {
+        return Lava.select(people, NAME);
+    }
+
+    @Benchmark
+    public Object selectLoop() {
+        List<String> ret = new ArrayList<String>(people.size());
+
+        for (Person person : people) {
+            ret.add(person.name);
+        }
+
+        return ret;
+    }
+
+    @Benchmark
+    public Object selectStream() {
+        return people.stream().map(person -> person.name).collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public Object selectManyLava() {
+        return Lava.selectMany(people, PETS);
+    }
+
+    @Benchmark
+    public Object selectManyLoop() {
+        List<Pet> ret = new ArrayList<Pet>();
+
+        for (Person person : people) {
+            ret.addAll(person.pets);
+        }
+
+        return ret;
+    }
+
+    @Benchmark
+    public Object selectManyStream() {
+        return people.stream().flatMap(person -> person.pets.stream()).collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public Object skipTakeLava() {
+        return Lava.skip(people, size / 4).take(size / 2);
+    }
+
+    @Benchmark
+    public Object skipTakeLoop() {
+        return new ArrayList<Person>(people.subList(size / 4, size / 4 + size / 2));
+    }
+
+    @Benchmark
+    public Object skipTakeStream() {
+        return people.stream().skip(size / 4).limit(size / 2).collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public Object concatLava() {
+        return Lava.concat(ages, ages);
+    }
+
+    @Benchmark
+    public Object concatLoop() {
+        List<Integer> ret = new ArrayList<Integer>(ages.size() * 2);
+        ret.addAll(ages);
+        ret.addAll(ages);
+        return ret;
+    }
+
+    @Benchmark
+    public Object concatStream() {
+        return Stream.concat(ages.stream(), ages.stream()).collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public Object reverseLava() {
+        return Lava.reverse(people);
+    }
+
+    @Benchmark
+    public Object reverseLoop() {
+        List<Person> ret = new ArrayList<Person>(people);
+        Collections.reverse(ret);
+        return ret;
+    }
+
+    @Benchmark
+    public Object reverseStream() {
+        int last = people.size() - 1;
+        return IntStream.rangeClosed(0, last).mapToObj(i -> people.get(last - i)).collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public boolean anyLava() {
+        return Lava.any(people, NEGATIVE_AGE);
+    }
+
+    @Benchmark
+    public boolean anyLoop() {
+        for (Person person : people) {
+            if (person.age < 0)
+                return true;
+        }
+
+        return false;
+    }
+
+    @Benchmark
+    public boolean anyStream() {
+        return people.stream().anyMatch(person -> person.age < 0);
+    }
+
+    @Benchmark
+    public boolean allLava() {
+        return Lava.all(people, NON_NEGATIVE_AGE);
+    }
+
+    @Benchmark
+    public boolean allLoop() {
+        for (Person person : people) {
+            if (person.age < 0)
+                return false;
+        }
+
+        return true;
+    }
+
+    @Benchmark
+    public boolean allStream() {
+        return people.stream().allMatch(person -> person.age >= 0);
+    }
+
+    @Benchmark
+    public Object firstLava() {
+        return Lava.firstOrDefault(people, NEGATIVE_AGE);
+    }
+
+    @Benchmark
+    public Object firstLoop() {
+        for (Person person : people) {
+            if (person.age < 0)
+                return person;
+        }
+
+        return null;
+    }
+
+    @Benchmark
+    public Object firstStream() {
+        return people.stream().filter(person -> person.age < 0).findFirst().orElse(null);
+    }
+
+    @Benchmark
+    public int countLava() {
+        return Lava.where(people, EVEN_AGE).count();
+    }
+
+    @Benchmark
+    public int countLoop() {
+        int ret = 0;
+
+        for (Person person : people) {
+            if (person.age % 2 == 0)
+                ret++;
+        }
+
+        return ret;
+    }
+
+    @Benchmark
+    public long countStream() {
+        return people.stream().filter(person -> person.age % 2 == 0).count();
+    }
+
+    @Benchmark
+    public Object maxLava() {
+        return Lava.max(people, AGE);
+    }
+
+    @Benchmark
+    public Object maxLoop() {
+        Integer ret = null;
+
+        for (Person person : people) {
+            if (ret == null || person.age > ret)
+                ret = person.age;
+        }
+
+        return ret;
+    }
+
+    @Benchmark
+    public Object maxStream() {
+        return people.stream().map(person -> person.age).max(Integer::compare).orElse(null);
+    }
+
+    @Benchmark
+    public Object minLava() {
+        return Lava.min(people);
+    }
+
+    @Benchmark
+    public Object minLoop() {
+        Person ret = null;
+
+        for (Person person : people) {
+            if (ret == null || person.compareTo(ret) < 0)
+                ret = person;
+        }
+
+        return ret;
+    }
+
+    @Benchmark
+    public Object minStream() {
+        return people.stream().min(Comparator.naturalOrder()).orElse(null);
+    }
+
+    @Benchmark
+    public Object aggregateLava() {
+        return Lava.aggregate(people, ADD_AGE);
+    }
+
+    @Benchmark
+    public int aggregateLoop() {
+        int ret = 0;
+
+        for (Person person : people) {
+            ret += person.age;
+        }
+
+        return ret;
+    }
+
+    @Benchmark
+    public int aggregateStream() {
+        return people.stream().mapToInt(person -> person.age).sum();
+    }
+
+    @Benchmark
+    public Object sumLava() {
+        return Lava.sum(ages);
+    }
+
+    @Benchmark
+    public int sumLoop() {
+        int ret = 0;
+
+        for (Integer age : ages) {
+            ret += age;
+        }
+
+        return ret;
+    }
+
+    @Benchmark
+    public int sumStream() {
+        return ages.stream().mapToInt(Integer::intValue).sum();
+    }
+
+    @Benchmark
+    public Object averageLava() {
+        return Lava.average(ages);
+    }
+
+    @Benchmark
+    public double averageLoop() {
+        long sum = 0;
+
+        for (Integer age : ages) {
+            sum += age;
+        }
+
+        return (double) sum / ages.size();
+    }
+
+    @Benchmark
+    public double averageStream() {
+        return ages.stream().mapToInt(Integer::intValue).average().orElse(0);
+    }
+}
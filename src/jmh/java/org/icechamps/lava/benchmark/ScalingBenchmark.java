@@ -0,0 +1,90 @@
+package org.icechamps.lava.benchmark;
+
+import org.icechamps.lava.Lava;
+import org.icechamps.lava.Person;
+import org.icechamps.lava.Pet;
+import org.icechamps.lava.PetOwner;
+import org.icechamps.lava.callback.Func;
+import org.icechamps.lava.callback.Func2;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ * Runs the operators that build a table per key (groupBy, join, groupJoin, distinct and intersect) from a thousand to
+ * ten million elements, under each {@link KeyDistribution}. There is one distinct key for every ten elements, so
+ * the tables grow with the input, and an operator that scans a table for each element shows up as a time per element
+ * that keeps growing with the size.
+ * </p>
+ * <p>
+ * {@link ScalingReport} runs this class with the allocation profiler and prints the time and allocation per element,
+ * flagging the sizes where the growth is worse than linear. A hundred million elements are left out by default, since
+ * they take about 40 GB of heap; add them with {@code -p size=10000000,100000000 -jvmArgsAppend -Xmx48g}.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(1)
+public class ScalingBenchmark {
+    static final int ELEMENTS_PER_KEY = 10;
+
+    private static final Func<Person, Integer> AGE = person -> person.age;
+    private static final Func<Person, String> NAME = person -> person.name;
+    private static final Func<Pet, String> OWNER_NAME = pet -> pet.owner.name;
+    private static final Func2<Person, Pet, PetOwner> PET_OWNER = PetOwner::new;
+    private static final Func2<Person, Collection<Pet>, Integer> PET_COUNT = (person, pets) -> pets.size();
+
+    @Param({"1000", "10000", "100000", "1000000", "10000000"})
+    public int size;
+
+    @Param({"UNIFORM", "ZIPFIAN", "HOT_KEY"})
+    public KeyDistribution distribution;
+
+    private List<Person> people;
+    private List<Pet> pets;
+    private List<Integer> first;
+    private List<Integer> second;
+
+    @Setup
+    public void setUp() {
+        int keys = Math.max(1, size / ELEMENTS_PER_KEY);
+
+        // The people don't get pets of their own, since only the pets list is joined and they would double the heap
+        people = Fixtures.people(size, keys, distribution, 0);
+        pets = Fixtures.pets(people, distribution);
+        first = Fixtures.ages(people);
+        second = Fixtures.otherAges(size, keys, distribution);
+    }
+
+    @Benchmark
+    public Object groupBy() {
+        return Lava.groupBy(people, AGE);
+    }
+
+    @Benchmark
+    public void join(Blackhole bh) {
+        Fixtures.consume(Lava.join(people, pets, NAME, OWNER_NAME, PET_OWNER), bh);
+    }
+
+    @Benchmark
+    public void groupJoin(Blackhole bh) {
+        Fixtures.consume(Lava.groupJoin(people, pets, NAME, OWNER_NAME, PET_COUNT), bh);
+    }
+
+    @Benchmark
+    public Object distinct() {
+        return Lava.distinct(first);
+    }
+
+    @Benchmark
+    public Object intersect() {
+        return Lava.intersect(first, second);
+    }
+}
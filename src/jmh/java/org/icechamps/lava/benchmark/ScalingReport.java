@@ -0,0 +1,91 @@
+package org.icechamps.lava.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.*;
+
+/**
+ * <p>
+ * Runs {@link ScalingBenchmark} with the allocation profiler and prints, for each operator and key distribution, the
+ * time and the bytes allocated per element at each size.
+ * </p>
+ * <p>
+ * Between two sizes the report works out the growth exponent, log(time ratio) / log(size ratio), which is 1 for an
+ * operator that is linear in its input and 2 for one that is quadratic. Steps whose exponent is above
+ * {@link #SUPER_LINEAR} are flagged. That leaves room for noise and for the input outgrowing the CPU caches, while a
+ * scan per element still stands out once the sizes are a factor of ten apart.
+ * </p>
+ * <p>
+ * Any arguments are passed on to JMH, so for example {@code -p size=1000,100000 -p distribution=HOT_KEY} runs a
+ * smaller sweep.
+ * </p>
+ */
+public class ScalingReport {
+    /**
+     * The growth exponent above which a step is flagged
+     */
+    static final double SUPER_LINEAR = 1.25;
+
+    // JMH names the profiler's results with a leading middle dot
+    private static final String ALLOCATION = "\u00b7gc.alloc.rate.norm";
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .include(ScalingBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+
+        print(new Runner(options).run());
+    }
+
+    static void print(Collection<RunResult> results) {
+        Map<String, SortedMap<Integer, RunResult>> series = new TreeMap<String, SortedMap<Integer, RunResult>>();
+
+        for (RunResult result : results) {
+            String benchmark = result.getParams().getBenchmark();
+            String name = benchmark.substring(benchmark.lastIndexOf('.') + 1) + " " + result.getParams().getParam("distribution");
+
+            SortedMap<Integer, RunResult> sizes = series.get(name);
+            if (sizes == null) {
+                sizes = new TreeMap<Integer, RunResult>();
+                series.put(name, sizes);
+            }
+
+            sizes.put(Integer.parseInt(result.getParams().getParam("size")), result);
+        }
+
+        System.out.printf("%-28s %12s %14s %14s %9s%n", "Benchmark", "Size", "ns/element", "bytes/element", "Growth");
+
+        for (Map.Entry<String, SortedMap<Integer, RunResult>> entry : series.entrySet()) {
+            int lastSize = 0;
+            double lastTime = 0;
+
+            for (Map.Entry<Integer, RunResult> step : entry.getValue().entrySet()) {
+                int size = step.getKey();
+
+                // The benchmark reports milliseconds per operation
+                double time = step.getValue().getPrimaryResult().getScore() * 1e6;
+                Result<?> allocation = step.getValue().getSecondaryResults().get(ALLOCATION);
+                String bytes = allocation == null ? "-" : String.format("%.1f", allocation.getScore() / size);
+
+                String growth = "";
+                if (lastSize > 0) {
+                    double exponent = Math.log(time / lastTime) / Math.log((double) size / lastSize);
+                    growth = String.format("%.2f%s", exponent, exponent > SUPER_LINEAR ? " SUPER-LINEAR" : "");
+                }
+
+                System.out.printf("%-28s %12d %14.2f %14s %9s%n", entry.getKey(), size, time / size, bytes, growth);
+
+                lastSize = size;
+                lastTime = time;
+            }
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package org.icechamps.lava.benchmark;
+
+import org.icechamps.lava.Lava;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * The set operators: distinct, union, intersect and except, over two lists of keys that share about half of
+ * their values. The number of distinct keys decides how big the sets the operators build get. Each one is measured
+ * through Lava, as a hand written loop and with java.util.stream.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SetBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    @Param({"16", "1024", "65536"})
+    public int keys;
+
+    private List<Integer> first;
+    private List<Integer> second;
+
+    @Setup
+    public void setUp() {
+        first = Fixtures.ages(Fixtures.people(size, keys));
+        second = Fixtures.otherAges(size, keys);
+    }
+
+    @Benchmark
+    public Object distinctLava() {
+        return Lava.distinct(first);
+    }
+
+    @Benchmark
+    public Object distinctLoop() {
+        // Lava's distinct is a plain hash set as well, which doesn't keep the order
+        return new HashSet<Integer>(first);
+    }
+
+    @Benchmark
+    public Object distinctStream() {
+        return first.stream().distinct().collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public Object unionLava() {
+        return Lava.union(first, second);
+    }
+
+    @Benchmark
+    public Object unionLoop() {
+        // Lava's union doesn't keep the order either, so a plain hash set is the fair comparison
+        Set<Integer> ret = new HashSet<Integer>(first);
+        ret.addAll(second);
+        return ret;
+    }
+
+    @Benchmark
+    public Object unionStream() {
+        return Stream.concat(first.stream(), second.stream()).collect(Collectors.toSet());
+    }
+
+    @Benchmark
+    public Object intersectLava() {
+        return Lava.intersect(first, second);
+    }
+
+    @Benchmark
+    public Object intersectLoop() {
+        Set<Integer> lookup = new HashSet<Integer>(second);
+        Set<Integer> ret = new LinkedHashSet<Integer>();
+
+        for (Integer key : first) {
+            if (lookup.contains(key))
+                ret.add(key);
+        }
+
+        return new ArrayList<Integer>(ret);
+    }
+
+    @Benchmark
+    public Object intersectStream() {
+        Set<Integer> lookup = new HashSet<Integer>(second);
+        return first.stream().filter(lookup::contains).distinct().collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public Object exceptLava() {
+        return Lava.except(first, second);
+    }
+
+    @Benchmark
+    public Object exceptLoop() {
+        Set<Integer> lookup = new HashSet<Integer>(second);
+        Set<Integer> ret = new LinkedHashSet<Integer>();
+
+        for (Integer key : first) {
+            if (!lookup.contains(key))
+                ret.add(key);
+        }
+
+        return new ArrayList<Integer>(ret);
+    }
+
+    @Benchmark
+    public Object exceptStream() {
+        Set<Integer> lookup = new HashSet<Integer>(second);
+        return first.stream().filter(key -> !lookup.contains(key)).distinct().collect(Collectors.toList());
+    }
+}
@@ -2,10 +2,36 @@ package org.icechamps.lava;
 
 import org.icechamps.lava.callback.Func;
 import org.icechamps.lava.callback.Func2;
+import org.icechamps.lava.callback.Predicate;
+import org.icechamps.lava.callback.ToDoubleFunc;
+import org.icechamps.lava.callback.ToIntFunc;
+import org.icechamps.lava.callback.ToLongFunc;
+import org.icechamps.lava.collection.DoubleEnumerable;
+import org.icechamps.lava.collection.IntEnumerable;
+import org.icechamps.lava.collection.LongEnumerable;
+import org.icechamps.lava.collection.ParallelEnumerable;
 import org.icechamps.lava.interfaces.Enumerable;
+import org.icechamps.lava.interfaces.ObservableCollection;
+import org.icechamps.lava.interfaces.OrderedEnumerable;
+import org.icechamps.lava.io.Framing;
+import org.icechamps.lava.io.RecordDecoder;
+import org.icechamps.lava.join.JoinStrategy;
+import org.icechamps.lava.live.LiveCollection;
+import org.icechamps.lava.query.CompiledQuery;
+import org.icechamps.lava.query.Query;
+import org.icechamps.lava.query.QueryCache;
+import org.icechamps.lava.reactive.Publisher;
+import org.icechamps.lava.reactive.PushEnumerable;
+import org.icechamps.lava.spill.Serializer;
+import org.icechamps.lava.spill.SpillConfig;
 import org.icechamps.lava.util.Group;
+import org.icechamps.lava.window.Windowed;
+import org.icechamps.lava.window.Windows;
 
+import java.io.File;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
 
 /**
  * User: Robert.Diaz
@@ -18,6 +44,7 @@ import java.util.*;
  */
 public class Lava {
     private static LavaBase lavaBase = new LavaBase();
+    private static volatile QueryCache queryCache;
 
     /**
      * Aggregates the objects using the callback function
@@ -44,6 +71,18 @@ public class Lava {
         return lavaBase.all(collection, func);
     }
 
+    /**
+     * Iterates over the given collection and checks each element using the callback function.
+     *
+     * @param collection The collection to search
+     * @param func       The func function to use on the collection's elements
+     * @param <T>        The type of element in the collection
+     * @return Returns true if all of the elements return true for the func. Returns false if a single element doesn't match.
+     */
+    public static <T extends Comparable<? super T>> boolean all(Collection<T> collection, Predicate<T> func) {
+        return lavaBase.all(collection, func);
+    }
+
     /**
      * Checks if there are any elements in the collection.
      *
@@ -55,6 +94,30 @@ public class Lava {
         return lavaBase.any(collection);
     }
 
+    /**
+     * Checks if any element in the collection matches the callback function. Stops at the first match.
+     *
+     * @param collection The collection to search
+     * @param func       The func function to use on the collection's elements
+     * @param <T>        The type of element in the collection
+     * @return True if a single element returns true for the func, false if none do.
+     */
+    public static <T extends Comparable<? super T>> boolean any(Collection<T> collection, Func<T, Boolean> func) {
+        return lavaBase.any(collection, func);
+    }
+
+    /**
+     * Checks if any element in the collection matches the callback function. Stops at the first match.
+     *
+     * @param collection The collection to search
+     * @param func       The func function to use on the collection's elements
+     * @param <T>        The type of element in the collection
+     * @return True if a single element returns true for the func, false if none do.
+     */
+    public static <T extends Comparable<? super T>> boolean any(Collection<T> collection, Predicate<T> func) {
+        return lavaBase.any(collection, func);
+    }
+
     /**
      * Averages the collection and returns the results
      *
@@ -78,6 +141,49 @@ public class Lava {
         return lavaBase.<T>cast(collection);
     }
 
+    /**
+     * Compiles the query so it can be applied to many collections without being checked and set up again each time.
+     *
+     * @param query  The query to compile
+     * @param <TIn>  The type of the object in the collections the query is applied to
+     * @param <TOut> The type of the object the query produces
+     * @return The compiled query, which is safe to share between threads
+     */
+    public static <TIn, TOut extends Comparable<? super TOut>> CompiledQuery<TIn, TOut> compile(Query<TIn, TOut> query) {
+        return lavaBase.compile(query);
+    }
+
+    /**
+     * Applies the compiled query to the collection. If a cache has been set with {@link #setQueryCache(QueryCache)},
+     * the results from the last time are returned instead as long as the collection hasn't changed since then. See
+     * {@link QueryCache} for how changes are detected.
+     *
+     * @param query      The query to apply
+     * @param collection The collection to apply the query to
+     * @param <TIn>      The type of the object in the collection
+     * @param <TOut>     The type of the object the query produces
+     * @return An Enumerable containing the results
+     */
+    public static <TIn, TOut extends Comparable<? super TOut>> Enumerable<TOut> apply(CompiledQuery<TIn, TOut> query, Collection<TIn> collection) {
+        return lavaBase.apply(query, collection, queryCache);
+    }
+
+    /**
+     * @return The cache used by {@link #apply(CompiledQuery, Collection)}, or null if there isn't one
+     */
+    public static QueryCache getQueryCache() {
+        return queryCache;
+    }
+
+    /**
+     * Sets the cache used by {@link #apply(CompiledQuery, Collection)}. There is no cache until one is set.
+     *
+     * @param cache The cache to use, or null to stop caching
+     */
+    public static void setQueryCache(QueryCache cache) {
+        queryCache = cache;
+    }
+
     /**
      * Concatenates the two collections together to create a new Enumerable.
      *
@@ -137,7 +243,8 @@ public class Lava {
     }
 
     /**
-     * Creates an enumerable containing the difference between the two collections
+     * Creates an enumerable containing the difference between the two collections. The result contains each distinct
+     * element of the first collection that isn't in the second, in the order they first appear in the first collection.
      *
      * @param first  The first collection
      * @param second The second collection
@@ -171,6 +278,18 @@ public class Lava {
         return lavaBase.first(collection, func);
     }
 
+    /**
+     * Returns the first object in the collection that matches the callback function. Throws an exception if nothing is found.
+     *
+     * @param collection The collection to search
+     * @param func       The callback function to use
+     * @param <T>        The type of the object in the collection
+     * @return The first match the callback function finds
+     */
+    public static <T extends Comparable<? super T>> T first(Collection<T> collection, Predicate<T> func) {
+        return lavaBase.first(collection, func);
+    }
+
     /**
      * Returns the first item in the collection, or null if there isn't one. Throws an exception if the collection is empty
      *
@@ -194,6 +313,60 @@ public class Lava {
         return lavaBase.firstOrDefault(collection, func);
     }
 
+    /**
+     * Returns the first item in the collection using the callback function, or null if there isn't one.
+     *
+     * @param collection The collection to use
+     * @param func       The callback function to use
+     * @param <T>        The type of the object
+     * @return The first item in the collection, or null.
+     */
+    public static <T extends Comparable<? super T>> T firstOrDefault(Collection<T> collection, Predicate<T> func) {
+        return lavaBase.firstOrDefault(collection, func);
+    }
+
+    /**
+     * Creates a lazy Enumerable over the newline separated records in the file. A carriage return at the end of a line
+     * is dropped. See {@link #fromFile(File, Framing, RecordDecoder)}.
+     *
+     * @param file    The file to read
+     * @param decoder The decoder that turns each record into an object
+     * @param <T>     The type of the decoded records
+     * @return A lazy Enumerable over the records in the file
+     */
+    public static <T extends Comparable<? super T>> Enumerable<T> fromFile(File file, RecordDecoder<T> decoder) {
+        return lavaBase.fromFile(file, decoder);
+    }
+
+    /**
+     * Creates a lazy Enumerable over the records in the file. The file is memory mapped and each record is handed to
+     * the decoder as a view onto the mapping, so records are only read and decoded as the chain pulls them, and a chain
+     * that stops early never touches the rest of the file. Every enumeration reads the file again.
+     *
+     * @param file    The file to read
+     * @param framing How the records are separated, by a fixed length or a delimiter byte
+     * @param decoder The decoder that turns each record into an object
+     * @param <T>     The type of the decoded records
+     * @return A lazy Enumerable over the records in the file
+     */
+    public static <T extends Comparable<? super T>> Enumerable<T> fromFile(File file, Framing framing, RecordDecoder<T> decoder) {
+        return lavaBase.fromFile(file, framing, decoder);
+    }
+
+    /**
+     * Creates a lazy Enumerable over the elements of the publisher. Each enumeration subscribes again and waits for the
+     * elements as they arrive, asking for at most {@code prefetch} of them ahead of the chain, so a slow chain holds
+     * the publisher back instead of elements piling up in memory.
+     *
+     * @param publisher The publisher
+     * @param prefetch  The most elements to have waiting
+     * @param <T>       The type of the published elements
+     * @return A lazy Enumerable over the published elements
+     */
+    public static <T extends Comparable<? super T>> Enumerable<T> fromPublisher(Publisher<T> publisher, int prefetch) {
+        return lavaBase.fromPublisher(publisher, prefetch);
+    }
+
     /**
      * Groups the elements in the collection using the keys that are generated by the key function.
      *
@@ -259,6 +432,50 @@ public class Lava {
         return lavaBase.groupBy(collection, keyFunc, valueFunc, resultFunc);
     }
 
+    /**
+     * Groups the elements in the collection using the keys that are generated by the key function, without holding more
+     * than {@link SpillConfig#getMaxInMemory()} elements in memory. Once the budget is exceeded the elements are hash
+     * partitioned into temporary files by key and each partition is grouped on its own, so the groups then come out one
+     * partition at a time rather than in the order their keys were first seen.
+     *
+     * @param collection The collection to group
+     * @param keyFunc    The function used to generate keys
+     * @param serializer The serializer used to write elements to disk
+     * @param config     The memory budget and temporary directory
+     * @param <T>        The type of the object in the collection
+     * @param <K>        The type of the key
+     * @return An Enumerable instance that contains the elements of collection grouped by the keys that were generated by the callback function
+     */
+    public static <T, K extends Comparable<? super K>> Enumerable<Group<K, T>> groupBy(Collection<T> collection, Func<T, K> keyFunc, Serializer<T> serializer, SpillConfig config) {
+        return lavaBase.groupBy(collection, keyFunc, serializer, config);
+    }
+
+    /**
+     * Groups the elements in the collection using the keys that are generated by the key function, then transforms the
+     * groupings into a single result object, without holding more than {@link SpillConfig#getMaxInMemory()} elements
+     * in memory. Once the budget is exceeded the groups come out one hash partition at a time.
+     *
+     * @param collection The source collection
+     * @param keyFunc    The function used to generate the keys
+     * @param valueFunc  The function used to generate the values
+     * @param resultFunc The function that transforms each grouping into the result object
+     * @param serializer The serializer used to write elements to disk
+     * @param config     The memory budget and temporary directory
+     * @param <T>        The type of object in the collection
+     * @param <K>        The type of the key
+     * @param <V>        The type of the value
+     * @param <Result>   The type of the resulting object
+     * @return An Enumerable instance containing the result objects that were generated from each grouping using the result function
+     */
+    public static <T, K extends Comparable<? super K>, V, Result extends Comparable<? super Result>> Enumerable<Result> groupBy(Collection<T> collection,
+                                                                                                                                Func<T, K> keyFunc,
+                                                                                                                                Func<T, V> valueFunc,
+                                                                                                                                Func2<K, Collection<V>, Result> resultFunc,
+                                                                                                                                Serializer<T> serializer,
+                                                                                                                                SpillConfig config) {
+        return lavaBase.groupBy(collection, keyFunc, valueFunc, resultFunc, serializer, config);
+    }
+
     /**
      * Joins the two collections based on a common key and groups the results together for the result function.
      *
@@ -282,7 +499,8 @@ public class Lava {
     }
 
     /**
-     * Creates an intersection between the two collections. The resulting Enumerable implementation will be of the same type as the first collection.
+     * Creates an intersection between the two collections. The result contains each distinct element that is in both
+     * collections, in the order they first appear in the first collection.
      *
      * @param first  The first collection
      * @param second The second collection
@@ -316,7 +534,8 @@ public class Lava {
     }
 
     /**
-     * Joins the two collections on a set of common keys using the supplied callback functions.
+     * Joins the two collections on a set of common keys using the supplied callback functions. This is always a hash
+     * join; pass a {@link JoinStrategy} as well to have the comparator used for a sort-merge join.
      *
      * @param outerCollection The first collection to join on
      * @param innerCollection The second collection to join on
@@ -339,6 +558,66 @@ public class Lava {
         return lavaBase.join(outerCollection, innerCollection, outerKeyFunc, innerKeyFunc, resultFunc, keyComparator);
     }
 
+    /**
+     * Joins the two collections on a set of common keys using the supplied callback functions and join strategy.
+     * {@link JoinStrategy#SORT_MERGE} walks both collections in key order and runs in linear time with constant extra
+     * memory when they are already sorted by the comparator; the results then come out in key order.
+     * {@link JoinStrategy#AUTO} picks sort-merge by itself when it finds both collections are sorted.
+     *
+     * @param outerCollection The first collection to join on
+     * @param innerCollection The second collection to join on
+     * @param outerKeyFunc    The callback function used to generate a common key from the first collection
+     * @param innerKeyFunc    The callback function used to generate a common key from the second collection
+     * @param resultFunc      The callback function used to generate a result object based on the outputs of the other callback functions
+     * @param keyComparator   The comparator used to compare the keys
+     * @param strategy        The algorithm used to run the join
+     * @param <Outer>         The type of the object in the first collection
+     * @param <Inner>         The type of the object in the second collection
+     * @param <Key>           The type of the common key
+     * @param <Result>        The type of the result object
+     * @return An enumerable instance that contains the results of the join
+     */
+    public static <Outer, Inner, Key extends Comparable<? super Key>, Result extends Comparable<? super Result>> Enumerable<Result> join(Collection<Outer> outerCollection,
+                                                                                                                                         Collection<Inner> innerCollection,
+                                                                                                                                         Func<Outer, Key> outerKeyFunc,
+                                                                                                                                         Func<Inner, Key> innerKeyFunc,
+                                                                                                                                         Func2<Outer, Inner, Result> resultFunc,
+                                                                                                                                         Comparator<Key> keyComparator,
+                                                                                                                                         JoinStrategy strategy) {
+        return lavaBase.join(outerCollection, innerCollection, outerKeyFunc, innerKeyFunc, resultFunc, keyComparator, strategy);
+    }
+
+    /**
+     * Joins the two collections on a set of common keys without holding more than
+     * {@link SpillConfig#getMaxInMemory()} elements of the inner collection in memory. When the inner collection is
+     * bigger than that, both collections are hash partitioned into temporary files by key and each pair of partitions
+     * is joined on its own, one pair at a time. Keys are matched with their equals and hashCode.
+     *
+     * @param outerCollection The first collection to join on
+     * @param innerCollection The second collection to join on
+     * @param outerKeyFunc    The callback function used to generate a common key from the first collection
+     * @param innerKeyFunc    The callback function used to generate a common key from the second collection
+     * @param resultFunc      The callback function used to generate a result object based on the outputs of the other callback functions
+     * @param outerSerializer The serializer used to write the first collection to disk
+     * @param innerSerializer The serializer used to write the second collection to disk
+     * @param config          The memory budget and temporary directory
+     * @param <Outer>         The type of the object in the first collection
+     * @param <Inner>         The type of the object in the second collection
+     * @param <Key>           The type of the common key
+     * @param <Result>        The type of the result object
+     * @return An enumerable instance that contains the results of the join
+     */
+    public static <Outer, Inner, Key extends Comparable<? super Key>, Result extends Comparable<? super Result>> Enumerable<Result> join(Collection<Outer> outerCollection,
+                                                                                                                                         Collection<Inner> innerCollection,
+                                                                                                                                         Func<Outer, Key> outerKeyFunc,
+                                                                                                                                         Func<Inner, Key> innerKeyFunc,
+                                                                                                                                         Func2<Outer, Inner, Result> resultFunc,
+                                                                                                                                         Serializer<Outer> outerSerializer,
+                                                                                                                                         Serializer<Inner> innerSerializer,
+                                                                                                                                         SpillConfig config) {
+        return lavaBase.join(outerCollection, innerCollection, outerKeyFunc, innerKeyFunc, resultFunc, outerSerializer, innerSerializer, config);
+    }
+
     /**
      * Obtains the last element in the collection
      *
@@ -364,6 +643,20 @@ public class Lava {
         return lavaBase.last(collection, func);
     }
 
+    /**
+     * Obtains the last element in the collection that satisfies the given callback function
+     *
+     * @param collection The collection to search
+     * @param func       The callback function to use
+     * @param <T>        The type of the elements in the collection
+     * @return The last element in the list that satisfies the callback
+     * @throws java.util.NoSuchElementException
+     *          If no elements are found
+     */
+    public static <T extends Comparable<? super T>> T last(Collection<T> collection, Predicate<T> func) {
+        return lavaBase.last(collection, func);
+    }
+
     /**
      * Obtains the last element in the collection, or returns null.
      *
@@ -387,6 +680,43 @@ public class Lava {
         return lavaBase.lastOrDefault(collection, func);
     }
 
+    /**
+     * Obtains the last element in the collection that satisfies the given callback function, or null
+     *
+     * @param collection The collection to search
+     * @param func       The callback function to use
+     * @param <T>        The type of the element
+     * @return The last element to satisfy the callback function, or null
+     */
+    public static <T extends Comparable<? super T>> T lastOrDefault(Collection<T> collection, Predicate<T> func) {
+        return lavaBase.lastOrDefault(collection, func);
+    }
+
+    /**
+     * Wraps the collection in a lazy Enumerable. Chained calls such as where, select and take build up an iterator
+     * pipeline instead of copying the collection at every step, and nothing runs until the result is enumerated.
+     * Call {@link Enumerable#materialize()} or {@link Enumerable#toList()} to capture the results.
+     *
+     * @param collection The source collection
+     * @param <T>        The type of object in the collection
+     * @return A lazy Enumerable over the collection
+     */
+    public static <T extends Comparable<? super T>> Enumerable<T> lazy(Collection<T> collection) {
+        return lavaBase.lazy(collection);
+    }
+
+    /**
+     * Starts a live query over the collection. Results chained onto it with where, select, groupBy, count and sum are
+     * kept up to date as elements are added to and removed from the collection, without being recomputed.
+     *
+     * @param collection The collection to follow
+     * @param <T>        The type of object in the collection
+     * @return A live view of the collection
+     */
+    public static <T> LiveCollection<T> live(ObservableCollection<T> collection) {
+        return lavaBase.live(collection);
+    }
+
     /**
      * Returns the largest value from the collection, using the default comparison method
      *
@@ -493,6 +823,118 @@ public class Lava {
         return lavaBase.orderByDescending(collection, comparator);
     }
 
+    /**
+     * Orders the given collection by the keys the callback function generates. Each key is computed once, and elements
+     * with equal keys keep their original order.
+     *
+     * @param collection The collection to order
+     * @param keyFunc    The callback function used to generate the keys
+     * @param <T>        The type of the object in the collection
+     * @param <K>        The type of the key
+     * @return The ordered collection, which can be ordered further with thenBy
+     */
+    public static <T extends Comparable<? super T>, K extends Comparable<? super K>> OrderedEnumerable<T> orderBy(Collection<T> collection, Func<T, K> keyFunc) {
+        return lavaBase.orderBy(collection, keyFunc);
+    }
+
+    /**
+     * Orders the given collection by the keys the callback function generates, in reverse. Each key is computed once,
+     * and elements with equal keys keep their original order.
+     *
+     * @param collection The collection to order
+     * @param keyFunc    The callback function used to generate the keys
+     * @param <T>        The type of the object in the collection
+     * @param <K>        The type of the key
+     * @return The ordered collection, which can be ordered further with thenBy
+     */
+    public static <T extends Comparable<? super T>, K extends Comparable<? super K>> OrderedEnumerable<T> orderByDescending(Collection<T> collection, Func<T, K> keyFunc) {
+        return lavaBase.orderByDescending(collection, keyFunc);
+    }
+
+    /**
+     * Orders the given collection using the given comparator without holding more than
+     * {@link SpillConfig#getMaxInMemory()} elements in memory. Sorted runs are written to temporary files and merged
+     * as the result is enumerated. Elements that compare as equal keep their original order.
+     *
+     * @param collection The collection to order
+     * @param comparator The comparator to use
+     * @param serializer The serializer used to write elements to disk
+     * @param config     The memory budget and temporary directory
+     * @param <T>        The type of the object in the collection
+     * @return The sorted collection
+     */
+    public static <T extends Comparable<? super T>> Enumerable<T> orderBy(Collection<T> collection, Comparator<T> comparator, Serializer<T> serializer, SpillConfig config) {
+        return lavaBase.orderBy(collection, comparator, serializer, config);
+    }
+
+    /**
+     * Orders the given collection using the given comparator in reverse without holding more than
+     * {@link SpillConfig#getMaxInMemory()} elements in memory. Sorted runs are written to temporary files and merged
+     * as the result is enumerated. Elements that compare as equal keep their original order.
+     *
+     * @param collection The collection to order
+     * @param comparator The comparator to use
+     * @param serializer The serializer used to write elements to disk
+     * @param config     The memory budget and temporary directory
+     * @param <T>        The type of the object in the collection
+     * @return The sorted collection
+     */
+    public static <T extends Comparable<? super T>> Enumerable<T> orderByDescending(Collection<T> collection, Comparator<T> comparator, Serializer<T> serializer, SpillConfig config) {
+        return lavaBase.orderByDescending(collection, comparator, serializer, config);
+    }
+
+    /**
+     * Wraps the collection in a parallel Enumerable. where, select, selectMany, all, any, min, max and aggregate split
+     * the collection into chunks and run them on a shared pool with one thread per processor.
+     * The results of where, select and selectMany keep the order of the collection. orderBy and orderByDescending sort
+     * large collections in chunks on the same pool; everywhere else they sort on the calling thread.
+     *
+     * @param collection The source collection
+     * @param <T>        The type of object in the collection
+     * @return A parallel Enumerable over the collection
+     */
+    public static <T extends Comparable<? super T>> ParallelEnumerable<T> parallel(Collection<T> collection) {
+        return lavaBase.parallel(collection);
+    }
+
+    /**
+     * Wraps the collection in a parallel Enumerable that runs on the given executor.
+     *
+     * @param collection The source collection
+     * @param executor   The executor the work is handed to
+     * @param ordered    True if where, select and selectMany should keep the order of the collection
+     * @param <T>        The type of object in the collection
+     * @return A parallel Enumerable over the collection
+     */
+    public static <T extends Comparable<? super T>> ParallelEnumerable<T> parallel(Collection<T> collection, ExecutorService executor, boolean ordered) {
+        return lavaBase.parallel(collection, executor, ordered);
+    }
+
+    /**
+     * Runs the query with profiling turned on for the calling thread, so the eager operators it runs measure their time
+     * and allocations. {@link Enumerable#explain()} shows those numbers on the results built inside the query.
+     *
+     * @param query The query to run
+     * @param <V>   The type of the query's result
+     * @return The result of the query
+     * @throws Exception If the query throws it
+     */
+    public static <V> V profile(Callable<V> query) throws Exception {
+        return lavaBase.profile(query);
+    }
+
+    /**
+     * Publishes the elements of the collection to subscribers as they ask for them. The push based where, select,
+     * take, aggregate and groupBy operators can be chained onto the result.
+     *
+     * @param collection The source collection
+     * @param <T>        The type of object in the collection
+     * @return A publisher of the elements
+     */
+    public static <T> PushEnumerable<T> publish(Iterable<T> collection) {
+        return lavaBase.publish(collection);
+    }
+
     /**
      * Randomizes the given collection
      *
@@ -563,6 +1005,135 @@ public class Lava {
         return lavaBase.select(collection, func);
     }
 
+    /**
+     * Transforms the contents of the collection using the callback function on a shared pool of threads for blocking
+     * work, with at most {@code maxConcurrency} callbacks running at once. The results keep the order of the source,
+     * and nothing is run until they are enumerated.
+     *
+     * @param collection     The source collection
+     * @param func           The function that transforms the objects
+     * @param maxConcurrency The most callbacks to run at once
+     * @param <T>            The type of the original objects
+     * @param <E>            The type of the transformed objects
+     * @return A lazy Enumerable over the transformed objects
+     */
+    public static <T extends Comparable<? super T>, E extends Comparable<? super E>> Enumerable<E> selectAsync(Collection<T> collection, Func<T, E> func, int maxConcurrency) {
+        return lavaBase.selectAsync(collection, func, maxConcurrency);
+    }
+
+    /**
+     * Transforms the contents of the collection using the callback function on the given executor, with at most
+     * {@code maxConcurrency} callbacks running at once. Nothing is run until the results are enumerated.
+     *
+     * @param collection     The source collection
+     * @param func           The function that transforms the objects
+     * @param maxConcurrency The most callbacks to run at once
+     * @param executor       The executor the callbacks are handed to
+     * @param ordered        True if the results should keep the order of the source, false to have them in the order
+     *                       they are done
+     * @param <T>            The type of the original objects
+     * @param <E>            The type of the transformed objects
+     * @return A lazy Enumerable over the transformed objects
+     */
+    public static <T extends Comparable<? super T>, E extends Comparable<? super E>> Enumerable<E> selectAsync(Collection<T> collection, Func<T, E> func, int maxConcurrency, ExecutorService executor, boolean ordered) {
+        return lavaBase.selectAsync(collection, func, maxConcurrency, executor, ordered);
+    }
+
+    /**
+     * Transforms the contents of the collection by handing the callback function consecutive batches of elements rather
+     * than one element at a time, which pays off for callbacks that cost about the same for a whole batch as for a
+     * single element. Every batch but the last has {@code batchSize} elements.
+     *
+     * @param collection The source collection
+     * @param batchSize  The number of elements in each batch
+     * @param func       The function that transforms a batch, which has to return one result for each element in the
+     *                   same order
+     * @param <T>        The type of the original objects
+     * @param <E>        The type of the transformed objects
+     * @return A collection of transformed objects, in the order of the source
+     */
+    public static <T extends Comparable<? super T>, E extends Comparable<? super E>> Enumerable<E> selectBatched(Collection<T> collection, int batchSize, Func<List<T>, List<E>> func) {
+        return lavaBase.selectBatched(collection, batchSize, func);
+    }
+
+    /**
+     * Projects each element of the collection to a primitive {@code double} using the callback function. The results are
+     * stored unboxed in a {@link DoubleEnumerable}.
+     *
+     * @param collection The source collection
+     * @param func       The function that transforms the objects
+     * @param <T>        The type of the original objects
+     * @return The projected values
+     */
+    public static <T extends Comparable<? super T>> DoubleEnumerable selectDouble(Collection<T> collection, Func<T, Double> func) {
+        return lavaBase.selectDouble(collection, func);
+    }
+
+    /**
+     * Projects each element of the collection to a primitive {@code double} using the callback function. The results are
+     * stored unboxed in a {@link DoubleEnumerable}.
+     *
+     * @param collection The source collection
+     * @param func       The function that transforms the objects
+     * @param <T>        The type of the original objects
+     * @return The projected values
+     */
+    public static <T extends Comparable<? super T>> DoubleEnumerable selectDouble(Collection<T> collection, ToDoubleFunc<T> func) {
+        return lavaBase.selectDouble(collection, func);
+    }
+
+    /**
+     * Projects each element of the collection to a primitive {@code int} using the callback function. The results are
+     * stored unboxed in a {@link IntEnumerable}.
+     *
+     * @param collection The source collection
+     * @param func       The function that transforms the objects
+     * @param <T>        The type of the original objects
+     * @return The projected values
+     */
+    public static <T extends Comparable<? super T>> IntEnumerable selectInt(Collection<T> collection, Func<T, Integer> func) {
+        return lavaBase.selectInt(collection, func);
+    }
+
+    /**
+     * Projects each element of the collection to a primitive {@code int} using the callback function. The results are
+     * stored unboxed in a {@link IntEnumerable}.
+     *
+     * @param collection The source collection
+     * @param func       The function that transforms the objects
+     * @param <T>        The type of the original objects
+     * @return The projected values
+     */
+    public static <T extends Comparable<? super T>> IntEnumerable selectInt(Collection<T> collection, ToIntFunc<T> func) {
+        return lavaBase.selectInt(collection, func);
+    }
+
+    /**
+     * Projects each element of the collection to a primitive {@code long} using the callback function. The results are
+     * stored unboxed in a {@link LongEnumerable}.
+     *
+     * @param collection The source collection
+     * @param func       The function that transforms the objects
+     * @param <T>        The type of the original objects
+     * @return The projected values
+     */
+    public static <T extends Comparable<? super T>> LongEnumerable selectLong(Collection<T> collection, Func<T, Long> func) {
+        return lavaBase.selectLong(collection, func);
+    }
+
+    /**
+     * Projects each element of the collection to a primitive {@code long} using the callback function. The results are
+     * stored unboxed in a {@link LongEnumerable}.
+     *
+     * @param collection The source collection
+     * @param func       The function that transforms the objects
+     * @param <T>        The type of the original objects
+     * @return The projected values
+     */
+    public static <T extends Comparable<? super T>> LongEnumerable selectLong(Collection<T> collection, ToLongFunc<T> func) {
+        return lavaBase.selectLong(collection, func);
+    }
+
     /**
      * Performs a one to many projection from the source object to a resulting collection
      *
@@ -637,6 +1208,22 @@ public class Lava {
         return lavaBase.single(collection, func);
     }
 
+    /**
+     * Searches for a single element that matches using the callback function. If there are multiple objects that match, an exception is thrown.
+     *
+     * @param collection The collection to search
+     * @param func       The function used to search the list
+     * @param <T>        The type of the object in the list
+     * @return The single element that matches using the callback function.
+     * @throws java.util.NoSuchElementException
+     *          If no element in the collection returns true for the func.
+     * @throws org.icechamps.lava.exception.MultipleElementsFoundException
+     *          If there are multiple elements that match the func.
+     */
+    public static <T extends Comparable<? super T>> T single(Collection<T> collection, Predicate<T> func) {
+        return lavaBase.single(collection, func);
+    }
+
     /**
      * Searches for a single element that matches using the callback function.
      * If there are multiple objects that match, an exception is thrown.
@@ -653,6 +1240,22 @@ public class Lava {
         return lavaBase.singleOrDefault(collection, func);
     }
 
+    /**
+     * Searches for a single element that matches using the callback function.
+     * If there are multiple objects that match, an exception is thrown.
+     * If there are no elements that match, null is returned.
+     *
+     * @param collection The collection to search
+     * @param func       The callback used to search the list
+     * @param <T>        The type of the object in the list
+     * @return The single element that matches using the callback function or null if none are found.
+     * @throws org.icechamps.lava.exception.MultipleElementsFoundException
+     *          If there are multiple elements that match the callback.
+     */
+    public static <T extends Comparable<? super T>> T singleOrDefault(Collection<T> collection, Predicate<T> func) {
+        return lavaBase.singleOrDefault(collection, func);
+    }
+
     /**
      * Skips {@code count} number of elements in the given collection, then returns the rest of the collection
      *
@@ -677,6 +1280,18 @@ public class Lava {
         return lavaBase.skipWhile(collection, func);
     }
 
+    /**
+     * Skips elements in the collection as long as the callback function returns true
+     *
+     * @param collection The collection to use
+     * @param func       The callback function used to test each element
+     * @param <T>        The type of object in the collection
+     * @return A subset of the collection minus the elements the callback function filtered out
+     */
+    public static <T extends Comparable<? super T>> Enumerable<T> skipWhile(Collection<T> collection, Predicate<T> func) {
+        return lavaBase.skipWhile(collection, func);
+    }
+
     /**
      * Sums up the collection and returns the results
      *
@@ -712,6 +1327,47 @@ public class Lava {
         return lavaBase.takeWhile(collection, func);
     }
 
+    /**
+     * Takes elements from the beginning of the collection, as long as the callback returns true, and puts them, in order, into a resulting collection.
+     *
+     * @param collection The collection to search
+     * @param func       The callback function to use to test the elements
+     * @param <T>        The type of the elements in the list
+     * @return The resulting elements from the collection
+     */
+    public static <T extends Comparable<? super T>> Enumerable<T> takeWhile(Collection<T> collection, Predicate<T> func) {
+        return lavaBase.takeWhile(collection, func);
+    }
+
+    /**
+     * Returns the {@code k} smallest elements of the collection in order, using the default comparison method. This gives
+     * the same result as {@code orderBy(collection).take(k)}, but only keeps {@code k} elements around instead of
+     * sorting the whole collection. If there are fewer than {@code k} elements, all of them are returned.
+     *
+     * @param collection The collection to use
+     * @param k          The number of elements to return
+     * @param <T>        The type of the elements
+     * @return The first {@code k} elements of the ordered collection
+     */
+    public static <T extends Comparable<? super T>> Enumerable<T> topK(Collection<T> collection, int k) {
+        return lavaBase.topK(collection, k);
+    }
+
+    /**
+     * Returns the first {@code k} elements of the collection in the order the comparator puts them in. This gives the
+     * same result as {@code orderBy(collection, comparator).take(k)}, but only keeps {@code k} elements around instead
+     * of sorting the whole collection. Pass {@link Collections#reverseOrder()} to get the largest elements.
+     *
+     * @param collection The collection to use
+     * @param k          The number of elements to return
+     * @param comparator The comparator to use
+     * @param <T>        The type of the elements
+     * @return The first {@code k} elements of the ordered collection
+     */
+    public static <T extends Comparable<? super T>> Enumerable<T> topK(Collection<T> collection, int k, Comparator<T> comparator) {
+        return lavaBase.topK(collection, k, comparator);
+    }
+
     /**
      * Creates a new {@link List} from the given collection
      *
@@ -746,6 +1402,33 @@ public class Lava {
         return lavaBase.where(collection, searchCriteria);
     }
 
+    /**
+     * Searches a collection using the given {@link Func callback} function.
+     *
+     * @param collection     The collection to search through
+     * @param searchCriteria The callback function to search with
+     * @param <T>            The type of the object in the list
+     * @return A subset of the collection where all of the objects return a match in the callback function.
+     */
+    public static <T extends Comparable<? super T>> Enumerable<T> where(Collection<T> collection, Predicate<T> searchCriteria) {
+        return lavaBase.where(collection, searchCriteria);
+    }
+
+    /**
+     * Searches a collection by handing the callback function consecutive batches of elements rather than one element at
+     * a time. Every batch but the last has {@code batchSize} elements.
+     *
+     * @param collection The collection to search through
+     * @param batchSize  The number of elements in each batch
+     * @param func       The callback function, which has to return a flag for each element in the batch in the same
+     *                   order, true to keep the element
+     * @param <T>        The type of the object in the list
+     * @return The elements whose flag was true, in the order of the source
+     */
+    public static <T extends Comparable<? super T>> Enumerable<T> whereBatched(Collection<T> collection, int batchSize, Func<List<T>, List<Boolean>> func) {
+        return lavaBase.whereBatched(collection, batchSize, func);
+    }
+
     /**
      * Creates an enumerable containing the union of the two collections
      *
@@ -758,6 +1441,32 @@ public class Lava {
         return lavaBase.union(first, second);
     }
 
+    /**
+     * Cuts a stream of elements into windows that can be aggregated one window at a time. Only the windows that are
+     * still open are kept in memory, so the stream doesn't have to end.
+     *
+     * @param source  The stream of elements
+     * @param windows The windows to cut the stream into, such as {@link Windows#tumbling(long, ToLongFunc)}
+     * @param <T>     The type of object in the stream
+     * @return The windowed stream
+     */
+    public static <T> Windowed<T> window(Iterable<T> source, Windows<T> windows) {
+        return lavaBase.window(source, windows);
+    }
+
+    /**
+     * Cuts a stream of elements into windows that can be aggregated one window at a time. The iterator can only be
+     * read once, so the results can only be iterated once as well.
+     *
+     * @param source  The stream of elements
+     * @param windows The windows to cut the stream into, such as {@link Windows#tumbling(long, ToLongFunc)}
+     * @param <T>     The type of object in the stream
+     * @return The windowed stream
+     */
+    public static <T> Windowed<T> windowIterator(Iterator<T> source, Windows<T> windows) {
+        return lavaBase.windowIterator(source, windows);
+    }
+
     /**
      * Creates an enumerable that contains the mapping of the two collections into a single collection.
      *
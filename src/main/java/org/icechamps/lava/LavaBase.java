@@ -1,18 +1,61 @@
 package org.icechamps.lava;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Ordering;
 import org.icechamps.lava.callback.Func;
 import org.icechamps.lava.callback.Func2;
+import org.icechamps.lava.callback.Predicate;
+import org.icechamps.lava.callback.ToDoubleFunc;
+import org.icechamps.lava.callback.ToIntFunc;
+import org.icechamps.lava.callback.ToLongFunc;
+import org.icechamps.lava.collection.DoubleEnumerable;
+import org.icechamps.lava.collection.IntEnumerable;
 import org.icechamps.lava.collection.LavaEnumerable;
 import org.icechamps.lava.collection.LavaList;
+import org.icechamps.lava.collection.LazyEnumerable;
+import org.icechamps.lava.collection.LongEnumerable;
+import org.icechamps.lava.collection.ParallelEnumerable;
 import org.icechamps.lava.exception.MultipleElementsFoundException;
 import org.icechamps.lava.interfaces.Enumerable;
+import org.icechamps.lava.interfaces.ObservableCollection;
+import org.icechamps.lava.interfaces.OrderedEnumerable;
+import org.icechamps.lava.io.Framing;
+import org.icechamps.lava.io.MappedFileEnumerable;
+import org.icechamps.lava.io.RecordDecoder;
+import org.icechamps.lava.join.GraceHashJoin;
+import org.icechamps.lava.join.HashJoin;
+import org.icechamps.lava.join.JoinStrategy;
+import org.icechamps.lava.join.SortMergeJoin;
+import org.icechamps.lava.live.LiveCollection;
+import org.icechamps.lava.plan.Allocations;
+import org.icechamps.lava.plan.Estimate;
+import org.icechamps.lava.plan.Plan;
+import org.icechamps.lava.query.CompiledQuery;
+import org.icechamps.lava.query.Query;
+import org.icechamps.lava.query.QueryCache;
+import org.icechamps.lava.reactive.Publisher;
+import org.icechamps.lava.reactive.PushEnumerable;
+import org.icechamps.lava.sort.ExternalSort;
+import org.icechamps.lava.sort.KeySort;
+import org.icechamps.lava.sort.TopK;
+import org.icechamps.lava.spill.HashPartitions;
+import org.icechamps.lava.spill.Serializer;
+import org.icechamps.lava.spill.SpillConfig;
+import org.icechamps.lava.util.Batches;
+import org.icechamps.lava.util.FuncPredicate;
 import org.icechamps.lava.util.Group;
 import org.icechamps.lava.util.IdentityFunction;
 import org.icechamps.lava.util.Lookup;
 import org.icechamps.lava.util.NumberEnum;
+import org.icechamps.lava.util.Tasks;
+import org.icechamps.lava.window.Windowed;
+import org.icechamps.lava.window.Windows;
 
+import java.io.File;
 import java.util.*;
+import java.util.concurrent.*;
 
 /**
  * User: Robert.Diaz
@@ -22,6 +65,15 @@ import java.util.*;
  * Contains all of the magic that makes this library happen
  */
 public class LavaBase {
+    /**
+     * Whether eager operators run on the current thread measure their time and allocations
+     */
+    private static final ThreadLocal<Boolean> PROFILING = new ThreadLocal<Boolean>();
+
+    /**
+     * What the eager operator that produced this enumerable needs to explain itself, if it came from one
+     */
+    private Tracker tracker;
 
     ///////////////
     // Aggregate
@@ -61,6 +113,18 @@ public class LavaBase {
      * @return Returns true if all of the elements return true for the func. Returns false if a single element doesn't match.
      */
     protected <T> boolean all(Collection<T> collection, Func<T, Boolean> func) {
+        return all(collection, new FuncPredicate<T>(func));
+    }
+
+    /**
+     * Iterates over the given collection and checks each element using the callback function.
+     *
+     * @param collection The collection to search
+     * @param func       The func function to use on the collection's elements
+     * @param <T>        The type of element in the collection
+     * @return Returns true if all of the elements return true for the func. Returns false if a single element doesn't match.
+     */
+    protected <T> boolean all(Collection<T> collection, Predicate<T> func) {
         Preconditions.checkNotNull(collection);
         Preconditions.checkNotNull(func);
 
@@ -88,6 +152,38 @@ public class LavaBase {
         return !collection.isEmpty();
     }
 
+    /**
+     * Checks if any element in the collection matches the callback function. Stops at the first match.
+     *
+     * @param collection The collection to search
+     * @param func       The func function to use on the collection's elements
+     * @param <T>        The type of element in the collection
+     * @return True if a single element returns true for the func, false if none do.
+     */
+    protected <T> boolean any(Collection<T> collection, Func<T, Boolean> func) {
+        return any(collection, new FuncPredicate<T>(func));
+    }
+
+    /**
+     * Checks if any element in the collection matches the callback function. Stops at the first match.
+     *
+     * @param collection The collection to search
+     * @param func       The func function to use on the collection's elements
+     * @param <T>        The type of element in the collection
+     * @return True if a single element returns true for the func, false if none do.
+     */
+    protected <T> boolean any(Collection<T> collection, Predicate<T> func) {
+        Preconditions.checkNotNull(collection);
+        Preconditions.checkNotNull(func);
+
+        for (T obj : collection) {
+            if (func.callback(obj))
+                return true;
+        }
+
+        return false;
+    }
+
     ///////////////
     // Average
     ///////////////
@@ -105,56 +201,7 @@ public class LavaBase {
         Number first = first(collection);
         NumberEnum type = getType(first);
 
-        Number container;
-
-        // We do this switch because it is a tad more efficient than chained ifs
-        switch (type) {
-            case SHORT:
-                container = (short) 0;
-                break;
-            case BYTE:
-                container = (byte) 0;
-                break;
-            case DOUBLE:
-                container = (double) 0;
-                break;
-            case FLOAT:
-                container = (float) 0;
-                break;
-            case INTEGER:
-                container = 0;
-                break;
-            case LONG:
-                container = (long) 0;
-                break;
-            default:
-                throw new UnsupportedOperationException("Invalid NumberEnum type");
-        }
-
-        for (Number num : collection) {
-            switch (type) {
-                case SHORT:
-                    container = container.shortValue() + num.shortValue();
-                    break;
-                case BYTE:
-                    container = container.byteValue() + num.byteValue();
-                    break;
-                case DOUBLE:
-                    container = container.doubleValue() + num.doubleValue();
-                    break;
-                case FLOAT:
-                    container = container.floatValue() + num.floatValue();
-                    break;
-                case INTEGER:
-                    container = container.intValue() + num.intValue();
-                    break;
-                case LONG:
-                    container = container.longValue() + num.longValue();
-                    break;
-                default:
-                    throw new UnsupportedOperationException("Invalid NumberEnum type");
-            }
-        }
+        Number container = total(collection, type);
 
         switch (type) {
             case SHORT:
@@ -187,7 +234,7 @@ public class LavaBase {
      */
     protected <T extends Comparable<? super T>> Enumerable<T> cast(Collection collection) {
         Preconditions.checkNotNull(collection);
-        return new CastEnumerable<T>(collection);
+        return track(Estimate.SAME, collection).finish(new CastEnumerable<T>(collection));
     }
 
     /**
@@ -206,6 +253,40 @@ public class LavaBase {
         }
     }
 
+    ///////////////
+    // Compile
+    ///////////////
+
+    /**
+     * Compiles the query so it can be applied to many collections without being checked and set up again each time.
+     *
+     * @param query  The query to compile
+     * @param <TIn>  The type of the object in the collections the query is applied to
+     * @param <TOut> The type of the object the query produces
+     * @return The compiled query, which is safe to share between threads
+     */
+    protected <TIn, TOut extends Comparable<? super TOut>> CompiledQuery<TIn, TOut> compile(Query<TIn, TOut> query) {
+        Preconditions.checkNotNull(query);
+        return new CompiledQuery<TIn, TOut>(query);
+    }
+
+    /**
+     * Applies the compiled query to the collection, going through the cache if there is one.
+     *
+     * @param query      The query to apply
+     * @param collection The collection to apply the query to
+     * @param cache      The cache to look the results up in, or null to always run the query
+     * @param <TIn>      The type of the object in the collection
+     * @param <TOut>     The type of the object the query produces
+     * @return An Enumerable containing the results
+     */
+    protected <TIn, TOut extends Comparable<? super TOut>> Enumerable<TOut> apply(CompiledQuery<TIn, TOut> query, Collection<TIn> collection, QueryCache cache) {
+        Preconditions.checkNotNull(query);
+        Preconditions.checkNotNull(collection);
+
+        return cache != null ? cache.apply(query, collection) : query.apply(collection);
+    }
+
     ///////////////
     // Concat
     ///////////////
@@ -222,10 +303,11 @@ public class LavaBase {
         Preconditions.checkNotNull(first);
         Preconditions.checkNotNull(second);
 
+        Tracker tracker = track(Estimate.SUM, first, second);
         LavaList<T> ret = new LavaList<T>(first);
         ret.addAll(second);
 
-        return ret;
+        return tracker.finish(ret, "Concat");
     }
 
     ///////////////
@@ -257,7 +339,7 @@ public class LavaBase {
      */
     protected <T extends Comparable<? super T>> Enumerable<T> distinct(Collection<T> collection) {
         Preconditions.checkNotNull(collection);
-        return new DistinctEnumerable<T>(collection);
+        return track(Estimate.FILTER, collection).finish(new DistinctEnumerable<T>(collection));
     }
 
     /**
@@ -269,6 +351,14 @@ public class LavaBase {
         protected DistinctEnumerable(Collection<T> col) {
             collection = new HashSet<T>(col);
         }
+
+        /**
+         * The elements are already distinct, so there is nothing to do.
+         */
+        @Override
+        public Enumerable<T> distinct() {
+            return this;
+        }
     }
 
     ///////////////
@@ -326,7 +416,8 @@ public class LavaBase {
     ///////////////
 
     /**
-     * Creates an enumerable containing the difference between the two collections
+     * Creates an enumerable containing the difference between the two collections. The result contains each distinct
+     * element of the first collection that isn't in the second, in the order they first appear in the first collection.
      *
      * @param first  The first collection
      * @param second The second collection
@@ -337,25 +428,139 @@ public class LavaBase {
         Preconditions.checkNotNull(first);
         Preconditions.checkNotNull(second);
 
-        return new ExceptEnumerable<T>(first, second);
+        return track(Estimate.FILTER, first, second).finish(new ExceptEnumerable<T>(first, second));
     }
 
     /**
-     * Enumerable that provides the logic to produce the difference
+     * Enumerable that provides the logic to produce the difference. The second collection is loaded into a hash set
+     * once, and the first collection is checked against it in a single pass.
      *
      * @param <T> The type of object in the collection
      */
     class ExceptEnumerable<T extends Comparable<? super T>> extends LavaEnumerable<T> {
         public ExceptEnumerable(Collection<T> first, Collection<T> second) {
             collection = new ArrayList<T>();
-            ArrayList<T> temp = new ArrayList<T>();
 
-            temp.addAll(second);
+            // Anything that has been excluded or already emitted goes into the set, which keeps the output distinct
+            HashSet<T> seen = new HashSet<T>(second);
 
             for (T f : first)
-                if (!temp.contains(f))
+                if (seen.add(f))
                     collection.add(f);
         }
+
+        /**
+         * The elements are already distinct, so there is nothing to do.
+         */
+        @Override
+        public Enumerable<T> distinct() {
+            return this;
+        }
+    }
+
+    ///////////////
+    // Explain
+    ///////////////
+
+    /**
+     * @return The plan of the eager operator that produced this enumerable, or null if it didn't come from one
+     */
+    protected Plan getPlan() {
+        return tracker != null ? tracker.plan() : null;
+    }
+
+    /**
+     * @return The collection that holds this enumerable's elements, or null if there isn't one
+     */
+    protected Collection<?> backingCollection() {
+        return null;
+    }
+
+    /**
+     * Picks what a plan should show as the input for a collection. When an operator is called on an enumerable, the
+     * collection it gets is the enumerable's backing collection, and the plan should lead to the enumerable instead so
+     * that it carries on down the chain.
+     *
+     * @param collection The collection the operator reads
+     * @return The iterable to explain as the input
+     */
+    private Iterable<?> input(Iterable<?> collection) {
+        return collection != null && collection == backingCollection() ? (Iterable<?>) this : collection;
+    }
+
+    private Tracker track(Estimate estimate, Iterable<?>... inputs) {
+        return track(estimate, 0, inputs);
+    }
+
+    private Tracker track(Estimate estimate, long argument, Iterable<?>... inputs) {
+        Object[] ret = new Object[inputs.length];
+
+        // An input made by an eager operator is replaced by its tracker and any other input by its plan, so that the
+        // result doesn't keep its source or the elements of every intermediate result alive. Explaining a lazy input
+        // doesn't run it.
+        for (int i = 0; i < inputs.length; i++) {
+            Iterable<?> input = input(inputs[i]);
+            Tracker tracker = input instanceof LavaBase ? ((LavaBase) input).tracker : null;
+            ret[i] = tracker != null ? tracker : LazyEnumerable.planOf(input);
+        }
+
+        return new Tracker(estimate, argument, ret, PROFILING.get() != null);
+    }
+
+    /**
+     * Remembers how an eager operator was called so its plan can be built when it is explained. While a query is being
+     * profiled, it also measures the operator from the time it is called until its result has been built. Since the
+     * operator reads its inputs in full, any deferred input is run as part of the operator and counts towards its time.
+     */
+    private static class Tracker {
+        private final Estimate estimate;
+        private final long argument;
+        private final Object[] inputs;
+        private final long startBytes;
+        private final long startNanos;
+        private Class<?> type;
+        private String operator;
+        private int rows;
+        private long nanos = -1;
+        private long bytes = -1;
+
+        Tracker(Estimate estimate, long argument, Object[] inputs, boolean profiling) {
+            this.estimate = estimate;
+            this.argument = argument;
+            this.inputs = inputs;
+
+            startBytes = profiling ? Allocations.currentThread() : -1;
+            startNanos = profiling ? System.nanoTime() : -1;
+        }
+
+        <E extends LavaBase> E finish(E result) {
+            return finish(result, null);
+        }
+
+        <E extends LavaBase> E finish(E result, String operator) {
+            if (startNanos >= 0) {
+                nanos = System.nanoTime() - startNanos;
+                bytes = startBytes >= 0 ? Allocations.currentThread() - startBytes : -1;
+            }
+
+            Collection<?> rows = result.backingCollection();
+
+            this.type = result.getClass();
+            this.operator = operator;
+            this.rows = rows != null ? rows.size() : 0;
+            ((LavaBase) result).tracker = this;
+
+            return result;
+        }
+
+        Plan plan() {
+            List<Plan> plans = new ArrayList<Plan>(inputs.length);
+            for (Object input : inputs) {
+                plans.add(input instanceof Tracker ? ((Tracker) input).plan() : (Plan) input);
+            }
+
+            return new Plan(operator != null ? operator : Plan.nameOf(type), estimate, argument, plans, rows, nanos, bytes);
+        }
     }
 
     ///////////////
@@ -387,6 +592,18 @@ public class LavaBase {
      * @return The first match the callback function finds
      */
     protected <T> T first(Collection<T> collection, Func<T, Boolean> func) {
+        return first(collection, new FuncPredicate<T>(func));
+    }
+
+    /**
+     * Returns the first object in the collection that matches the callback function. Throws an exception if nothing is found.
+     *
+     * @param collection The collection to search
+     * @param func       The callback function to use
+     * @param <T>        The type of the object in the collection
+     * @return The first match the callback function finds
+     */
+    protected <T> T first(Collection<T> collection, Predicate<T> func) {
         Preconditions.checkNotNull(collection);
 
         for (T t : collection) {
@@ -421,6 +638,18 @@ public class LavaBase {
      * @return The first item in the collection, or null.
      */
     protected <T> T firstOrDefault(Collection<T> collection, Func<T, Boolean> func) {
+        return firstOrDefault(collection, new FuncPredicate<T>(func));
+    }
+
+    /**
+     * Returns the first item in the collection using the callback function, or null if there isn't one.
+     *
+     * @param collection The collection to use
+     * @param func       The callback function to use
+     * @param <T>        The type of the object
+     * @return The first item in the collection, or null.
+     */
+    protected <T> T firstOrDefault(Collection<T> collection, Predicate<T> func) {
         Preconditions.checkNotNull(collection);
         Preconditions.checkNotNull(func);
 
@@ -436,6 +665,66 @@ public class LavaBase {
         return null;
     }
 
+    ///////////////
+    // From File
+    ///////////////
+
+    /**
+     * Creates a lazy Enumerable over the newline separated records in the file. See
+     * {@link #fromFile(File, Framing, RecordDecoder)}.
+     *
+     * @param file    The file to read
+     * @param decoder The decoder that turns each record into an object
+     * @param <T>     The type of the decoded records
+     * @return A lazy Enumerable over the records in the file
+     */
+    protected <T extends Comparable<? super T>> Enumerable<T> fromFile(File file, RecordDecoder<T> decoder) {
+        return fromFile(file, Framing.lines(), decoder);
+    }
+
+    /**
+     * Creates a lazy Enumerable over the records in the file. The file is memory mapped, and each record is decoded
+     * straight from the mapping as the chain pulls it.
+     *
+     * @param file    The file to read
+     * @param framing How the records are separated
+     * @param decoder The decoder that turns each record into an object
+     * @param <T>     The type of the decoded records
+     * @return A lazy Enumerable over the records in the file
+     */
+    protected <T extends Comparable<? super T>> Enumerable<T> fromFile(File file, Framing framing, RecordDecoder<T> decoder) {
+        Preconditions.checkNotNull(file);
+        Preconditions.checkNotNull(framing);
+        Preconditions.checkNotNull(decoder);
+
+        return new MappedFileEnumerable<T>(file, framing, decoder);
+    }
+
+    ///////////////
+    // From Publisher
+    ///////////////
+
+    /**
+     * Creates a lazy Enumerable over the elements of the publisher. Each enumeration subscribes again, and asks for at
+     * most {@code prefetch} elements ahead of the chain.
+     *
+     * @param publisher The publisher
+     * @param prefetch  The most elements to have waiting
+     * @param <T>       The type of the published elements
+     * @return A lazy Enumerable over the published elements
+     */
+    protected <T extends Comparable<? super T>> Enumerable<T> fromPublisher(Publisher<T> publisher, final int prefetch) {
+        Preconditions.checkArgument(prefetch > 0);
+        final PushEnumerable<T> source = PushEnumerable.from(publisher);
+
+        return LazyEnumerable.create(new Iterable<T>() {
+            @Override
+            public Iterator<T> iterator() {
+                return source.toIterator(prefetch);
+            }
+        });
+    }
+
     ///////////////
     // Group By
     ///////////////
@@ -453,7 +742,7 @@ public class LavaBase {
         Preconditions.checkNotNull(collection);
         Preconditions.checkNotNull(keyFunc);
 
-        return new GroupByEnumerator<T, K, T>(collection, keyFunc, new IdentityFunction<T>());
+        return track(Estimate.UNKNOWN, collection).finish(new GroupByEnumerator<T, K, T>(collection, keyFunc, new IdentityFunction<T>()));
     }
 
     /**
@@ -472,7 +761,7 @@ public class LavaBase {
         Preconditions.checkNotNull(keyFunc);
         Preconditions.checkNotNull(valueFunc);
 
-        return new GroupByEnumerator<T, K, V>(collection, keyFunc, valueFunc);
+        return track(Estimate.UNKNOWN, collection).finish(new GroupByEnumerator<T, K, V>(collection, keyFunc, valueFunc));
     }
 
     /**
@@ -492,7 +781,7 @@ public class LavaBase {
         Preconditions.checkNotNull(collection);
         Preconditions.checkNotNull(keyFunc);
 
-        return new GroupByResultEnumerator<T, K, T, Result>(collection, keyFunc, new IdentityFunction<T>(), resultFunc);
+        return track(Estimate.UNKNOWN, collection).finish(new GroupByResultEnumerator<T, K, T, Result>(collection, keyFunc, new IdentityFunction<T>(), resultFunc), "GroupBy");
     }
 
     /**
@@ -516,7 +805,7 @@ public class LavaBase {
         Preconditions.checkNotNull(keyFunc);
         Preconditions.checkNotNull(valueFunc);
 
-        return new GroupByResultEnumerator<T, K, V, Result>(collection, keyFunc, valueFunc, resultFunc);
+        return track(Estimate.UNKNOWN, collection).finish(new GroupByResultEnumerator<T, K, V, Result>(collection, keyFunc, valueFunc, resultFunc), "GroupBy");
     }
 
     /**
@@ -551,6 +840,114 @@ public class LavaBase {
         }
     }
 
+    /**
+     * Groups the elements in the collection using the keys that are generated by the key function, without holding more
+     * than {@link SpillConfig#getMaxInMemory()} elements in memory. Once the budget is exceeded the elements are hash
+     * partitioned into temporary files by key and each partition is grouped on its own, so the groups then come out one
+     * partition at a time rather than in the order their keys were first seen. Nothing is read until the result is
+     * enumerated.
+     *
+     * @param collection The collection to group
+     * @param keyFunc    The function used to generate keys
+     * @param serializer The serializer used to write elements to disk
+     * @param config     The memory budget and temporary directory
+     * @param <T>        The type of the object in the collection
+     * @param <K>        The type of the key
+     * @return An Enumerable instance that contains the elements of collection grouped by the keys that were generated by the callback function
+     */
+    protected <T, K extends Comparable<? super K>> Enumerable<Group<K, T>> groupBy(Collection<T> collection, Func<T, K> keyFunc, Serializer<T> serializer, SpillConfig config) {
+        Preconditions.checkNotNull(collection);
+        Preconditions.checkNotNull(keyFunc);
+        Preconditions.checkNotNull(serializer);
+        Preconditions.checkNotNull(config);
+
+        return new SpillGroupByEnumerator<T, K, T>(collection, keyFunc, new IdentityFunction<T>(), serializer, config);
+    }
+
+    /**
+     * Groups the elements in the collection using the keys that are generated by the key function, then transforms the
+     * groupings into a single result object, without holding more than {@link SpillConfig#getMaxInMemory()} elements
+     * in memory. See {@link #groupBy(Collection, Func, Serializer, SpillConfig)} for how the budget is kept.
+     *
+     * @param collection The source collection
+     * @param keyFunc    The function used to generate the keys
+     * @param valueFunc  The function used to generate the values
+     * @param resultFunc The function that transforms each grouping into the result object
+     * @param serializer The serializer used to write elements to disk
+     * @param config     The memory budget and temporary directory
+     * @param <T>        The type of object in the collection
+     * @param <K>        The type of the key
+     * @param <V>        The type of the value
+     * @param <Result>   The type of the resulting object
+     * @return An Enumerable instance containing the result objects that were generated from each grouping using the result function
+     */
+    protected <T, K extends Comparable<? super K>, V, Result extends Comparable<? super Result>> Enumerable<Result> groupBy(Collection<T> collection,
+                                                                                                                            Func<T, K> keyFunc,
+                                                                                                                            Func<T, V> valueFunc,
+                                                                                                                            final Func2<K, Collection<V>, Result> resultFunc,
+                                                                                                                            Serializer<T> serializer,
+                                                                                                                            SpillConfig config) {
+        Preconditions.checkNotNull(collection);
+        Preconditions.checkNotNull(keyFunc);
+        Preconditions.checkNotNull(valueFunc);
+        Preconditions.checkNotNull(resultFunc);
+        Preconditions.checkNotNull(serializer);
+        Preconditions.checkNotNull(config);
+
+        return new SpillGroupByEnumerator<T, K, V>(collection, keyFunc, valueFunc, serializer, config).select(new Func<Group<K, V>, Result>() {
+            @Override
+            public Result callback(Group<K, V> group) {
+                return resultFunc.callback(group.getKey(), group.getValues());
+            }
+        });
+    }
+
+    /**
+     * Enumerable that groups one {@link HashPartitions} partition at a time each time it is enumerated.
+     *
+     * @param <T> The type of the source object
+     * @param <K> The type of the key
+     * @param <V> The type of the value
+     */
+    class SpillGroupByEnumerator<T, K extends Comparable<? super K>, V> extends LazyEnumerable<Group<K, V>> {
+        private final Collection<T> source;
+        private final Func<T, K> keyFunc;
+        private final Func<T, V> valueFunc;
+        private final Serializer<T> serializer;
+        private final SpillConfig config;
+
+        SpillGroupByEnumerator(Collection<T> source, Func<T, K> keyFunc, Func<T, V> valueFunc, Serializer<T> serializer, SpillConfig config) {
+            super(Estimate.UNKNOWN, LavaBase.this.input(source));
+            this.source = source;
+            this.keyFunc = keyFunc;
+            this.valueFunc = valueFunc;
+            this.serializer = serializer;
+            this.config = config;
+        }
+
+        @Override
+        protected Iterator<Group<K, V>> open() {
+            final Iterator<List<T>> partitions = HashPartitions.partition(source, keyFunc, serializer, config);
+
+            // Closing it closes the partitions, which deletes the files that haven't been read yet
+            return new StageIterator<Group<K, V>>(partitions) {
+                private Iterator<Group<K, V>> groups = Collections.<Group<K, V>>emptyList().iterator();
+
+                @Override
+                protected Group<K, V> computeNext() {
+                    while (!groups.hasNext()) {
+                        if (!partitions.hasNext())
+                            return endOfData();
+
+                        groups = Lookup.create(partitions.next(), keyFunc, valueFunc, null).getGroups().iterator();
+                    }
+
+                    return groups.next();
+                }
+            };
+        }
+    }
+
     ///////////////
     // Group Join
     ///////////////
@@ -580,11 +977,12 @@ public class LavaBase {
         Preconditions.checkNotNull(innerKeyFunc);
         Preconditions.checkNotNull(resultFunc);
 
-        return new GroupJoinEnumerator<Outer, Inner, Key, Result>(outerCollection, innerCollection, outerKeyFunc, innerKeyFunc, resultFunc);
+        return track(Estimate.SAME, outerCollection, innerCollection).finish(new GroupJoinEnumerator<Outer, Inner, Key, Result>(outerCollection, innerCollection, outerKeyFunc, innerKeyFunc, resultFunc));
     }
 
     /**
-     * The enumerator instance that provides the logic for the group join
+     * The enumerator instance that provides the logic for the group join. The results are read out of the
+     * {@link HashJoin} engine when the enumerator is created.
      *
      * @param <Outer>  The type in the first collection
      * @param <Inner>  The type in the second collection
@@ -598,11 +996,7 @@ public class LavaBase {
                             Func<Inner, Key> innerKeyFunc,
                             Func2<Outer, Collection<Inner>, Result> resultFunc) {
             collection = new ArrayList<Result>();
-            Lookup<Key, Inner> lookup = Lookup.createForJoin(innerCollection, innerKeyFunc, null);
-
-            for (Outer outer : outerCollection) {
-                collection.add(resultFunc.callback(outer, lookup.getGroupForKey(outerKeyFunc.callback(outer), false).getValues()));
-            }
+            Iterators.addAll(collection, HashJoin.groupJoin(outerCollection, innerCollection, outerKeyFunc, innerKeyFunc, resultFunc, null));
         }
     }
 
@@ -611,7 +1005,8 @@ public class LavaBase {
     ///////////////
 
     /**
-     * Creates an intersection between the two collections. The resulting Enumerable implementation will be of the same type as the first collection.
+     * Creates an intersection between the two collections. The result contains each distinct element that is in both
+     * collections, in the order they first appear in the first collection.
      *
      * @param first  The first collection
      * @param second The second collection
@@ -622,25 +1017,33 @@ public class LavaBase {
         Preconditions.checkNotNull(first);
         Preconditions.checkNotNull(second);
 
-        List<T> firstDistinct = distinct(first).toList();
-        List<T> secondDistinct = distinct(second).toList();
-
-        return new IntersectEnumerable<T>(firstDistinct, secondDistinct);
+        return track(Estimate.FILTER, first, second).finish(new IntersectEnumerable<T>(first, second));
     }
 
     /**
-     * Enumerable that implements the intersect functionality
+     * Enumerable that implements the intersect functionality. The second collection is loaded into a hash set once,
+     * and the first collection is checked against it in a single pass.
      *
      * @param <T> The type of the object in the enumerable
      */
     class IntersectEnumerable<T extends Comparable<? super T>> extends LavaEnumerable<T> {
-        IntersectEnumerable(List<T> first, List<T> second) {
+        IntersectEnumerable(Collection<T> first, Collection<T> second) {
             collection = new ArrayList<T>();
 
+            // Elements are taken out of the set once they are emitted, which keeps the output distinct
+            HashSet<T> remaining = new HashSet<T>(second);
+
             for (T f : first)
-                for (T s : second)
-                    if (f.equals(s))
-                        collection.add(f);
+                if (remaining.remove(f))
+                    collection.add(f);
+        }
+
+        /**
+         * The elements are already distinct, so there is nothing to do.
+         */
+        @Override
+        public Enumerable<T> distinct() {
+            return this;
         }
     }
 
@@ -673,11 +1076,12 @@ public class LavaBase {
         Preconditions.checkArgument(innerKeyFunc != null);
         Preconditions.checkArgument(resultFunc != null);
 
-        return new JoinEnumerable<Outer, Inner, Key, Result>(outerCollection, innerCollection, outerKeyFunc, innerKeyFunc, resultFunc, null);
+        return track(Estimate.JOIN, outerCollection, innerCollection).finish(new JoinEnumerable<Outer, Inner, Key, Result>(outerCollection, innerCollection, outerKeyFunc, innerKeyFunc, resultFunc, null, JoinStrategy.HASH));
     }
 
     /**
-     * Joins the two collections on a set of common keys using the supplied callback functions.
+     * Joins the two collections on a set of common keys using the supplied callback functions. This is always a hash
+     * join; the overload that takes a {@link JoinStrategy} can use the comparator for a sort-merge join.
      *
      * @param outerCollection The first collection to join on
      * @param innerCollection The second collection to join on
@@ -704,11 +1108,46 @@ public class LavaBase {
         Preconditions.checkArgument(resultFunc != null);
         Preconditions.checkNotNull(keyComparator);
 
-        return new JoinEnumerable<Outer, Inner, Key, Result>(outerCollection, innerCollection, outerKeyFunc, innerKeyFunc, resultFunc, keyComparator);
+        return track(Estimate.JOIN, outerCollection, innerCollection).finish(new JoinEnumerable<Outer, Inner, Key, Result>(outerCollection, innerCollection, outerKeyFunc, innerKeyFunc, resultFunc, keyComparator, JoinStrategy.HASH));
+    }
+
+    /**
+     * Joins the two collections on a set of common keys using the supplied callback functions and join strategy.
+     *
+     * @param outerCollection The first collection to join on
+     * @param innerCollection The second collection to join on
+     * @param outerKeyFunc    The callback function used to generate a common key from the first collection
+     * @param innerKeyFunc    The callback function used to generate a common key from the second collection
+     * @param resultFunc      The callback function used to generate a result object based on the outputs of the other callback functions
+     * @param keyComparator   The comparator used to compare the keys
+     * @param strategy        The algorithm used to run the join
+     * @param <Outer>         The type of the object in the first collection
+     * @param <Inner>         The type of the object in the second collection
+     * @param <Key>           The type of the common key
+     * @param <Result>        The type of the result object
+     * @return An enumerable instance that contains the results of the join
+     */
+    protected <Outer, Inner, Key extends Comparable<? super Key>, Result extends Comparable<? super Result>> Enumerable<Result> join(Collection<Outer> outerCollection,
+                                                                                                                                     Collection<Inner> innerCollection,
+                                                                                                                                     Func<Outer, Key> outerKeyFunc,
+                                                                                                                                     Func<Inner, Key> innerKeyFunc,
+                                                                                                                                     Func2<Outer, Inner, Result> resultFunc,
+                                                                                                                                     Comparator<Key> keyComparator,
+                                                                                                                                     JoinStrategy strategy) {
+        Preconditions.checkArgument(outerCollection != null);
+        Preconditions.checkArgument(innerCollection != null);
+        Preconditions.checkArgument(outerKeyFunc != null);
+        Preconditions.checkArgument(innerKeyFunc != null);
+        Preconditions.checkArgument(resultFunc != null);
+        Preconditions.checkNotNull(keyComparator);
+        Preconditions.checkNotNull(strategy);
+
+        return track(Estimate.JOIN, outerCollection, innerCollection).finish(new JoinEnumerable<Outer, Inner, Key, Result>(outerCollection, innerCollection, outerKeyFunc, innerKeyFunc, resultFunc, keyComparator, strategy));
     }
 
     /**
-     * Enumerable that implements the join functionality
+     * Enumerable that implements the join functionality. The results are read out of the {@link HashJoin} or
+     * {@link SortMergeJoin} engine, depending on the strategy, when the enumerable is created.
      *
      * @param <Outer>  The type of the outer key
      * @param <Inner>  The type of the inner key
@@ -721,24 +1160,106 @@ public class LavaBase {
                        Func<Outer, Key> outerKeyFunc,
                        Func<Inner, Key> innerKeyFunc,
                        Func2<Outer, Inner, Result> resultFunc,
-                       Comparator<Key> keyComparator) {
+                       Comparator<Key> keyComparator,
+                       JoinStrategy strategy) {
             collection = new ArrayList<Result>();
 
-            Lookup<Key, Inner> lookup = Lookup.createForJoin(innerCollection, innerKeyFunc, keyComparator);
-
-            for (Outer outer : outerCollection) {
-                Key outerKey = outerKeyFunc.callback(outer);
-                Group<Key, Inner> group = lookup.getGroupForKey(outerKey, false);
+            JoinStrategy resolved = strategy.resolve(outerCollection, innerCollection, outerKeyFunc, innerKeyFunc, keyComparator);
 
-                if (group != null) {
-                    for (Inner inner : group) {
-                        collection.add(resultFunc.callback(outer, inner));
-                    }
-                }
+            if (resolved == JoinStrategy.SORT_MERGE) {
+                // AUTO only picks sort-merge after it has checked that both inputs are sorted
+                boolean sorted = strategy == JoinStrategy.AUTO;
+                Iterators.addAll(collection, SortMergeJoin.join(outerCollection, innerCollection, outerKeyFunc, innerKeyFunc, resultFunc, keyComparator, sorted));
+            } else {
+                Iterators.addAll(collection, HashJoin.join(outerCollection, innerCollection, outerKeyFunc, innerKeyFunc, resultFunc, keyComparator));
             }
         }
     }
 
+    /**
+     * Joins the two collections on a set of common keys using the supplied callback functions, without holding more
+     * than {@link SpillConfig#getMaxInMemory()} elements of the inner collection in memory. When the inner collection
+     * is bigger than that, both collections are hash partitioned into temporary files by key and each pair of
+     * partitions is joined on its own. Keys are matched with their equals and hashCode. Nothing is read until the
+     * result is enumerated.
+     *
+     * @param outerCollection The first collection to join on
+     * @param innerCollection The second collection to join on
+     * @param outerKeyFunc    The callback function used to generate a common key from the first collection
+     * @param innerKeyFunc    The callback function used to generate a common key from the second collection
+     * @param resultFunc      The callback function used to generate a result object based on the outputs of the other callback functions
+     * @param outerSerializer The serializer used to write the first collection to disk
+     * @param innerSerializer The serializer used to write the second collection to disk
+     * @param config          The memory budget and temporary directory
+     * @param <Outer>         The type of the object in the first collection
+     * @param <Inner>         The type of the object in the second collection
+     * @param <Key>           The type of the common key
+     * @param <Result>        The type of the result object
+     * @return An enumerable instance that contains the results of the join
+     */
+    protected <Outer, Inner, Key extends Comparable<? super Key>, Result extends Comparable<? super Result>> Enumerable<Result> join(Collection<Outer> outerCollection,
+                                                                                                                                     Collection<Inner> innerCollection,
+                                                                                                                                     Func<Outer, Key> outerKeyFunc,
+                                                                                                                                     Func<Inner, Key> innerKeyFunc,
+                                                                                                                                     Func2<Outer, Inner, Result> resultFunc,
+                                                                                                                                     Serializer<Outer> outerSerializer,
+                                                                                                                                     Serializer<Inner> innerSerializer,
+                                                                                                                                     SpillConfig config) {
+        Preconditions.checkNotNull(outerCollection);
+        Preconditions.checkNotNull(innerCollection);
+        Preconditions.checkNotNull(outerKeyFunc);
+        Preconditions.checkNotNull(innerKeyFunc);
+        Preconditions.checkNotNull(resultFunc);
+        Preconditions.checkNotNull(outerSerializer);
+        Preconditions.checkNotNull(innerSerializer);
+        Preconditions.checkNotNull(config);
+
+        return new SpillJoinEnumerable<Outer, Inner, Key, Result>(outerCollection, innerCollection, outerKeyFunc, innerKeyFunc, resultFunc, outerSerializer, innerSerializer, config);
+    }
+
+    /**
+     * Runs a {@link GraceHashJoin} each time the enumerable is enumerated.
+     *
+     * @param <Outer>  The type of the outer key
+     * @param <Inner>  The type of the inner key
+     * @param <Key>    The type of the common join key
+     * @param <Result> The type of the resulting object
+     */
+    class SpillJoinEnumerable<Outer, Inner, Key extends Comparable<? super Key>, Result extends Comparable<? super Result>> extends LazyEnumerable<Result> {
+        private final Collection<Outer> outerCollection;
+        private final Collection<Inner> innerCollection;
+        private final Func<Outer, Key> outerKeyFunc;
+        private final Func<Inner, Key> innerKeyFunc;
+        private final Func2<Outer, Inner, Result> resultFunc;
+        private final Serializer<Outer> outerSerializer;
+        private final Serializer<Inner> innerSerializer;
+        private final SpillConfig config;
+
+        SpillJoinEnumerable(Collection<Outer> outerCollection,
+                            Collection<Inner> innerCollection,
+                            Func<Outer, Key> outerKeyFunc,
+                            Func<Inner, Key> innerKeyFunc,
+                            Func2<Outer, Inner, Result> resultFunc,
+                            Serializer<Outer> outerSerializer,
+                            Serializer<Inner> innerSerializer,
+                            SpillConfig config) {
+            super(Estimate.JOIN, LavaBase.this.input(outerCollection), LavaBase.this.input(innerCollection));
+            this.outerCollection = outerCollection;
+            this.innerCollection = innerCollection;
+            this.outerKeyFunc = outerKeyFunc;
+            this.innerKeyFunc = innerKeyFunc;
+            this.resultFunc = resultFunc;
+            this.outerSerializer = outerSerializer;
+            this.innerSerializer = innerSerializer;
+            this.config = config;
+        }
+
+        @Override
+        protected Iterator<Result> open() {
+            return GraceHashJoin.join(outerCollection, innerCollection, outerKeyFunc, innerKeyFunc, resultFunc, outerSerializer, innerSerializer, config);
+        }
+    }
+
     ///////////////
     // Last
     ///////////////
@@ -769,6 +1290,19 @@ public class LavaBase {
      * @throws NoSuchElementException If no elements are found
      */
     protected <T> T last(Collection<T> collection, Func<T, Boolean> func) {
+        return last(collection, new FuncPredicate<T>(func));
+    }
+
+    /**
+     * Obtains the last element in the collection that satisfies the given callback function
+     *
+     * @param collection The collection to search
+     * @param func       The callback function to use
+     * @param <T>        The type of the elements in the collection
+     * @return The last element in the list that satisfies the callback
+     * @throws NoSuchElementException If no elements are found
+     */
+    protected <T> T last(Collection<T> collection, Predicate<T> func) {
         Preconditions.checkNotNull(collection);
         Preconditions.checkNotNull(func);
 
@@ -808,6 +1342,18 @@ public class LavaBase {
      * @return The last element to satisfy the callback function, or null
      */
     protected <T> T lastOrDefault(Collection<T> collection, Func<T, Boolean> func) {
+        return lastOrDefault(collection, new FuncPredicate<T>(func));
+    }
+
+    /**
+     * Obtains the last element in the collection that satisfies the given callback function, or null
+     *
+     * @param collection The collection to search
+     * @param func       The callback function to use
+     * @param <T>        The type of the element
+     * @return The last element to satisfy the callback function, or null
+     */
+    protected <T> T lastOrDefault(Collection<T> collection, Predicate<T> func) {
         Preconditions.checkNotNull(collection);
         Preconditions.checkNotNull(func);
 
@@ -820,6 +1366,38 @@ public class LavaBase {
         return ret;
     }
 
+    ///////////////
+    // Lazy
+    ///////////////
+
+    /**
+     * Wraps the collection in a lazy Enumerable. Operators chained onto the result are deferred until it is enumerated.
+     *
+     * @param collection The source collection
+     * @param <T>        The type of object in the collection
+     * @return A lazy Enumerable over the collection
+     */
+    protected <T extends Comparable<? super T>> Enumerable<T> lazy(Collection<T> collection) {
+        Preconditions.checkNotNull(collection);
+        return LazyEnumerable.create(collection);
+    }
+
+    ///////////////
+    // Live
+    ///////////////
+
+    /**
+     * Starts a live query over the collection.
+     *
+     * @param collection The collection to follow
+     * @param <T>        The type of object in the collection
+     * @return A live view of the collection
+     */
+    protected <T> LiveCollection<T> live(ObservableCollection<T> collection) {
+        Preconditions.checkNotNull(collection);
+        return LiveCollection.of(collection);
+    }
+
     ///////////////
     // Max
     ///////////////
@@ -954,7 +1532,7 @@ public class LavaBase {
         Preconditions.checkNotNull(collection);
         Preconditions.checkNotNull(clazz);
 
-        return new OfTypeEnumerator<T>(collection, clazz);
+        return track(Estimate.FILTER, collection).finish(new OfTypeEnumerator<T>(collection, clazz));
     }
 
     /**
@@ -1012,7 +1590,7 @@ public class LavaBase {
      */
     private <T extends Comparable<? super T>> Enumerable<T> orderByListInternal(Collection<T> collection, Comparator<T> comparator) {
         Preconditions.checkNotNull(collection);
-        return new OrderByEnumerable<T>(collection, comparator);
+        return track(Estimate.SAME, collection).finish(new OrderByEnumerable<T>(collection, comparator));
     }
 
     class OrderByEnumerable<T extends Comparable<? super T>> extends LavaEnumerable<T> {
@@ -1020,10 +1598,7 @@ public class LavaBase {
         OrderByEnumerable(Collection<T> col, Comparator<T> comparator) {
             List<T> list = new ArrayList<T>(col);
 
-            if (comparator != null)
-                Collections.sort(list, comparator);
-            else
-                Collections.sort(list);
+            Collections.sort(list, comparator != null ? comparator : Ordering.<T>natural());
 
             collection = list;
         }
@@ -1066,7 +1641,7 @@ public class LavaBase {
      */
     private <T extends Comparable<? super T>> Enumerable<T> orderByDescendingListInternal(Collection<T> collection, Comparator<T> comparator) {
         Preconditions.checkNotNull(collection);
-        return new OrderByDescendingEnumerable<T>(collection, comparator);
+        return track(Estimate.SAME, collection).finish(new OrderByDescendingEnumerable<T>(collection, comparator));
     }
 
     /**
@@ -1079,17 +1654,231 @@ public class LavaBase {
         OrderByDescendingEnumerable(Collection<T> col, Comparator<T> comparator) {
             List<T> list = new ArrayList<T>(col);
 
-            if (comparator != null)
-                Collections.sort(list, comparator);
-            else
-                Collections.sort(list);
-
-            Collections.reverse(list);
+            // Sorting by the reversed comparator keeps equal elements in their original order
+            Collections.sort(list, Collections.reverseOrder(comparator));
 
             collection = list;
         }
     }
 
+    /**
+     * Orders the given collection by the keys the callback function generates. Each key is computed once.
+     *
+     * @param collection The collection to order
+     * @param keyFunc    The callback function used to generate the keys
+     * @param <T>        The type of the object in the collection
+     * @param <K>        The type of the key
+     * @return The ordered collection, which can be ordered further with thenBy
+     */
+    protected <T extends Comparable<? super T>, K extends Comparable<? super K>> OrderedEnumerable<T> orderBy(Collection<T> collection, Func<T, K> keyFunc) {
+        Preconditions.checkNotNull(collection);
+        Preconditions.checkNotNull(keyFunc);
+
+        return track(Estimate.SAME, collection).finish(new OrderByKeyEnumerable<T>(collection, keyFunc, false));
+    }
+
+    /**
+     * Orders the given collection by the keys the callback function generates, in reverse. Each key is computed once.
+     *
+     * @param collection The collection to order
+     * @param keyFunc    The callback function used to generate the keys
+     * @param <T>        The type of the object in the collection
+     * @param <K>        The type of the key
+     * @return The ordered collection, which can be ordered further with thenBy
+     */
+    protected <T extends Comparable<? super T>, K extends Comparable<? super K>> OrderedEnumerable<T> orderByDescending(Collection<T> collection, Func<T, K> keyFunc) {
+        Preconditions.checkNotNull(collection);
+        Preconditions.checkNotNull(keyFunc);
+
+        return track(Estimate.SAME, collection).finish(new OrderByKeyEnumerable<T>(collection, keyFunc, true));
+    }
+
+    /**
+     * Orders the collection by one or more keys. The elements are kept in an array along with the runs of elements
+     * whose keys are all equal, so thenBy only has to sort inside those runs.
+     *
+     * @param <T> The type of the object in the enumerable
+     */
+    class OrderByKeyEnumerable<T extends Comparable<? super T>> extends LavaEnumerable<T> implements OrderedEnumerable<T> {
+        private final Object[] values;
+        private final BitSet runs;
+
+        <K extends Comparable<? super K>> OrderByKeyEnumerable(Collection<T> col, Func<T, K> keyFunc, boolean descending) {
+            this(col.toArray(), firstRun(), keyFunc, descending);
+        }
+
+        @SuppressWarnings("unchecked")
+        private <K extends Comparable<? super K>> OrderByKeyEnumerable(Object[] values, BitSet runs, Func<T, K> keyFunc, boolean descending) {
+            Ordering<K> ordering = Ordering.natural();
+
+            this.values = values;
+            this.runs = KeySort.sortRuns(values, runs, keyFunc, descending ? ordering.reverse() : ordering);
+
+            collection = (List<T>) (List<?>) Arrays.asList(values);
+        }
+
+        @Override
+        public <K extends Comparable<? super K>> OrderedEnumerable<T> thenBy(Func<T, K> keyFunc) {
+            Preconditions.checkNotNull(keyFunc);
+            return track(Estimate.SAME, this).finish(new OrderByKeyEnumerable<T>(values.clone(), runs, keyFunc, false));
+        }
+
+        @Override
+        public <K extends Comparable<? super K>> OrderedEnumerable<T> thenByDescending(Func<T, K> keyFunc) {
+            Preconditions.checkNotNull(keyFunc);
+            return track(Estimate.SAME, this).finish(new OrderByKeyEnumerable<T>(values.clone(), runs, keyFunc, true));
+        }
+    }
+
+    private static BitSet firstRun() {
+        BitSet runs = new BitSet();
+        runs.set(0);
+        return runs;
+    }
+
+    /**
+     * Orders the given collection using the given comparator, spilling sorted runs to disk whenever more elements than
+     * the memory budget allows have been read. Nothing is read until the result is enumerated.
+     *
+     * @param collection The collection to order
+     * @param comparator The comparator to use
+     * @param serializer The serializer used to write elements to disk
+     * @param config     The memory budget and temporary directory
+     * @param <T>        The type of the object in the collection
+     * @return The ordered collection
+     */
+    protected <T extends Comparable<? super T>> Enumerable<T> orderBy(Collection<T> collection, Comparator<T> comparator, Serializer<T> serializer, SpillConfig config) {
+        Preconditions.checkNotNull(collection);
+        Preconditions.checkNotNull(comparator);
+        Preconditions.checkNotNull(serializer);
+        Preconditions.checkNotNull(config);
+
+        return new ExternalOrderByEnumerable<T>(collection, comparator, serializer, config);
+    }
+
+    /**
+     * Orders the given collection using the given comparator in reverse, spilling sorted runs to disk whenever more
+     * elements than the memory budget allows have been read. Nothing is read until the result is enumerated.
+     *
+     * @param collection The collection to order
+     * @param comparator The comparator to use
+     * @param serializer The serializer used to write elements to disk
+     * @param config     The memory budget and temporary directory
+     * @param <T>        The type of the object in the collection
+     * @return The ordered collection
+     */
+    protected <T extends Comparable<? super T>> Enumerable<T> orderByDescending(Collection<T> collection, Comparator<T> comparator, Serializer<T> serializer, SpillConfig config) {
+        Preconditions.checkNotNull(comparator);
+        return orderBy(collection, Collections.reverseOrder(comparator), serializer, config);
+    }
+
+    /**
+     * Orders the collection with an {@link ExternalSort} each time it is enumerated. The iterator can be closed to
+     * delete the temporary files when it isn't read to the end.
+     *
+     * @param <T> The type of the object in the enumerable
+     */
+    class ExternalOrderByEnumerable<T extends Comparable<? super T>> extends LazyEnumerable<T> {
+        private final Collection<T> source;
+        private final Comparator<T> comparator;
+        private final Serializer<T> serializer;
+        private final SpillConfig config;
+
+        ExternalOrderByEnumerable(Collection<T> source, Comparator<T> comparator, Serializer<T> serializer, SpillConfig config) {
+            super(Estimate.SAME, LavaBase.this.input(source));
+            this.source = source;
+            this.comparator = comparator;
+            this.serializer = serializer;
+            this.config = config;
+        }
+
+        /**
+         * Sorting doesn't change how many elements there are, so the source is counted without sorting it.
+         */
+        @Override
+        public int count() {
+            return countOf(source);
+        }
+
+        @Override
+        protected Iterator<T> open() {
+            return ExternalSort.sort(source, comparator, serializer, config);
+        }
+    }
+
+    ///////////////
+    // Parallel
+    ///////////////
+
+    /**
+     * Wraps the collection in a parallel Enumerable that runs its operators on the shared executor.
+     *
+     * @param collection The source collection
+     * @param <T>        The type of object in the collection
+     * @return A parallel Enumerable over the collection
+     */
+    protected <T extends Comparable<? super T>> ParallelEnumerable<T> parallel(Collection<T> collection) {
+        Preconditions.checkNotNull(collection);
+        return new ParallelEnumerable<T>(collection);
+    }
+
+    /**
+     * Wraps the collection in a parallel Enumerable that runs its operators on the given executor.
+     *
+     * @param collection The source collection
+     * @param executor   The executor the work is handed to
+     * @param ordered    True if where, select and selectMany should keep the order of the source
+     * @param <T>        The type of object in the collection
+     * @return A parallel Enumerable over the collection
+     */
+    protected <T extends Comparable<? super T>> ParallelEnumerable<T> parallel(Collection<T> collection, ExecutorService executor, boolean ordered) {
+        Preconditions.checkNotNull(collection);
+        Preconditions.checkNotNull(executor);
+        return new ParallelEnumerable<T>(collection, executor, ordered);
+    }
+
+    ///////////////
+    // Profile
+    ///////////////
+
+    /**
+     * Runs the query with profiling turned on for the calling thread. The eager operators it runs measure the time
+     * they take and the bytes they allocate, which {@link Enumerable#explain()} then shows on their results. Outside of
+     * a profiled query they only keep what is needed to work out the estimates when they are explained.
+     *
+     * @param query The query to run
+     * @param <V>   The type of the query's result
+     * @return The result of the query
+     * @throws Exception If the query throws it
+     */
+    protected <V> V profile(Callable<V> query) throws Exception {
+        Preconditions.checkNotNull(query);
+
+        Boolean previous = PROFILING.get();
+        PROFILING.set(Boolean.TRUE);
+
+        try {
+            return query.call();
+        } finally {
+            PROFILING.set(previous);
+        }
+    }
+
+    ///////////////
+    // Publish
+    ///////////////
+
+    /**
+     * Publishes the elements of the collection, reading each one only once a subscriber has asked for it.
+     *
+     * @param collection The source collection
+     * @param <T>        The type of object in the collection
+     * @return A publisher of the elements that the push based operators can be chained onto
+     */
+    protected <T> PushEnumerable<T> publish(Iterable<T> collection) {
+        return PushEnumerable.from(collection);
+    }
+
     ///////////////
     // Randomize
     ///////////////
@@ -1116,6 +1905,7 @@ public class LavaBase {
     protected <T extends Comparable<? super T>> Enumerable<T> randomize(Collection<T> collection, Random random) {
         Preconditions.checkNotNull(collection);
 
+        Tracker tracker = track(Estimate.SAME, collection);
         LavaList<T> list = new LavaList<T>(collection);
 
         if (random != null)
@@ -1123,7 +1913,7 @@ public class LavaBase {
         else
             Collections.shuffle(list);
 
-        return list;
+        return tracker.finish(list, "Randomize");
     }
 
     ///////////////
@@ -1188,9 +1978,10 @@ public class LavaBase {
     protected <T extends Comparable<? super T>> Enumerable<T> reverse(Collection<T> collection) {
         Preconditions.checkNotNull(collection);
 
+        Tracker tracker = track(Estimate.SAME, collection);
         LavaList<T> ret = new LavaList<T>(collection);
         Collections.reverse(ret);
-        return ret;
+        return tracker.finish(ret, "Reverse");
     }
 
     ///////////////
@@ -1210,7 +2001,7 @@ public class LavaBase {
         Preconditions.checkNotNull(collection);
         Preconditions.checkNotNull(func);
 
-        return new SelectEnumerable<T, E>(collection, func);
+        return track(Estimate.SAME, collection).finish(new SelectEnumerable<T, E>(collection, func));
     }
 
     class SelectEnumerable<T, E extends Comparable<? super E>> extends LavaEnumerable<E> {
@@ -1224,6 +2015,319 @@ public class LavaBase {
         }
     }
 
+    /**
+     * Projects each element of the collection to a primitive {@code double} using the callback function. The results are
+     * stored unboxed in a {@link DoubleEnumerable}.
+     *
+     * @param collection The source collection
+     * @param func       The function that transforms the objects
+     * @param <T>        The type of the original objects
+     * @return The projected values
+     */
+    protected <T> DoubleEnumerable selectDouble(Collection<T> collection, final Func<T, Double> func) {
+        Preconditions.checkNotNull(func);
+
+        return selectDouble(collection, new ToDoubleFunc<T>() {
+            @Override
+            public double callback(T t) {
+                return func.callback(t);
+            }
+        });
+    }
+
+    /**
+     * Projects each element of the collection to a primitive {@code double} using the callback function. The results are
+     * stored unboxed in a {@link DoubleEnumerable}.
+     *
+     * @param collection The source collection
+     * @param func       The function that transforms the objects
+     * @param <T>        The type of the original objects
+     * @return The projected values
+     */
+    protected <T> DoubleEnumerable selectDouble(Collection<T> collection, ToDoubleFunc<T> func) {
+        Preconditions.checkNotNull(collection);
+        Preconditions.checkNotNull(func);
+
+        // Counting a lazy chain would run it, so its array grows as it goes instead
+        double[] values = new double[LazyEnumerable.isDeferred(collection) ? 16 : collection.size()];
+        int size = 0;
+
+        for (T t : collection) {
+            if (size == values.length)
+                values = Arrays.copyOf(values, Math.max(16, size * 2));
+
+            values[size++] = func.callback(t);
+        }
+
+        return new DoubleEnumerable(values, size);
+    }
+
+    /**
+     * Projects each element of the collection to a primitive {@code int} using the callback function. The results are
+     * stored unboxed in a {@link IntEnumerable}.
+     *
+     * @param collection The source collection
+     * @param func       The function that transforms the objects
+     * @param <T>        The type of the original objects
+     * @return The projected values
+     */
+    protected <T> IntEnumerable selectInt(Collection<T> collection, final Func<T, Integer> func) {
+        Preconditions.checkNotNull(func);
+
+        return selectInt(collection, new ToIntFunc<T>() {
+            @Override
+            public int callback(T t) {
+                return func.callback(t);
+            }
+        });
+    }
+
+    /**
+     * Projects each element of the collection to a primitive {@code int} using the callback function. The results are
+     * stored unboxed in a {@link IntEnumerable}.
+     *
+     * @param collection The source collection
+     * @param func       The function that transforms the objects
+     * @param <T>        The type of the original objects
+     * @return The projected values
+     */
+    protected <T> IntEnumerable selectInt(Collection<T> collection, ToIntFunc<T> func) {
+        Preconditions.checkNotNull(collection);
+        Preconditions.checkNotNull(func);
+
+        // Counting a lazy chain would run it, so its array grows as it goes instead
+        int[] values = new int[LazyEnumerable.isDeferred(collection) ? 16 : collection.size()];
+        int size = 0;
+
+        for (T t : collection) {
+            if (size == values.length)
+                values = Arrays.copyOf(values, Math.max(16, size * 2));
+
+            values[size++] = func.callback(t);
+        }
+
+        return new IntEnumerable(values, size);
+    }
+
+    /**
+     * Projects each element of the collection to a primitive {@code long} using the callback function. The results are
+     * stored unboxed in a {@link LongEnumerable}.
+     *
+     * @param collection The source collection
+     * @param func       The function that transforms the objects
+     * @param <T>        The type of the original objects
+     * @return The projected values
+     */
+    protected <T> LongEnumerable selectLong(Collection<T> collection, final Func<T, Long> func) {
+        Preconditions.checkNotNull(func);
+
+        return selectLong(collection, new ToLongFunc<T>() {
+            @Override
+            public long callback(T t) {
+                return func.callback(t);
+            }
+        });
+    }
+
+    /**
+     * Projects each element of the collection to a primitive {@code long} using the callback function. The results are
+     * stored unboxed in a {@link LongEnumerable}.
+     *
+     * @param collection The source collection
+     * @param func       The function that transforms the objects
+     * @param <T>        The type of the original objects
+     * @return The projected values
+     */
+    protected <T> LongEnumerable selectLong(Collection<T> collection, ToLongFunc<T> func) {
+        Preconditions.checkNotNull(collection);
+        Preconditions.checkNotNull(func);
+
+        // Counting a lazy chain would run it, so its array grows as it goes instead
+        long[] values = new long[LazyEnumerable.isDeferred(collection) ? 16 : collection.size()];
+        int size = 0;
+
+        for (T t : collection) {
+            if (size == values.length)
+                values = Arrays.copyOf(values, Math.max(16, size * 2));
+
+            values[size++] = func.callback(t);
+        }
+
+        return new LongEnumerable(values, size);
+    }
+
+    ///////////////
+    // Select Async
+    ///////////////
+
+    /**
+     * Transforms the contents of the collection using the callback function on the shared executor for blocking tasks,
+     * with at most {@code maxConcurrency} callbacks running at once. The results come back in the order of the source.
+     *
+     * @param collection     The source collection
+     * @param func           The function that transforms the objects
+     * @param maxConcurrency The most callbacks to run at once
+     * @param <T>            The type of the original objects
+     * @param <E>            The type of the transformed objects
+     * @return A lazy Enumerable over the transformed objects
+     * @see Tasks#getBlockingExecutor()
+     */
+    protected <T, E extends Comparable<? super E>> Enumerable<E> selectAsync(Collection<T> collection, Func<T, E> func, int maxConcurrency) {
+        return selectAsync(collection, func, maxConcurrency, Tasks.getBlockingExecutor(), true);
+    }
+
+    /**
+     * Transforms the contents of the collection using the callback function on the given executor, with at most
+     * {@code maxConcurrency} callbacks running at once. Nothing is run until the result is enumerated, and then the
+     * source is read only as fast as callbacks finish, so a slow callback holds back the reading of the source rather
+     * than piling up work. Each enumeration runs the callbacks again.
+     * <p/>
+     * When the results are ordered, a callback that is slower than the others holds the results behind it back until
+     * it is done, while the others keep running. When they are not, each result is handed out as soon as its callback
+     * is done. If a callback throws, the exception is thrown from the enumeration. Callbacks that are still running
+     * when the enumeration stops are left to finish and their results are thrown away.
+     *
+     * @param collection     The source collection
+     * @param func           The function that transforms the objects
+     * @param maxConcurrency The most callbacks to run at once
+     * @param executor       The executor the callbacks are handed to
+     * @param ordered        True if the results should keep the order of the source, false to have them in the order
+     *                       they are done
+     * @param <T>            The type of the original objects
+     * @param <E>            The type of the transformed objects
+     * @return A lazy Enumerable over the transformed objects
+     */
+    protected <T, E extends Comparable<? super E>> Enumerable<E> selectAsync(Collection<T> collection, Func<T, E> func, int maxConcurrency, ExecutorService executor, boolean ordered) {
+        Preconditions.checkNotNull(collection);
+        Preconditions.checkNotNull(func);
+        Preconditions.checkArgument(maxConcurrency > 0, "At least one callback has to be able to run");
+        Preconditions.checkNotNull(executor);
+
+        return new SelectAsyncEnumerable<T, E>(collection, func, maxConcurrency, executor, ordered);
+    }
+
+    class SelectAsyncEnumerable<T, E extends Comparable<? super E>> extends LazyEnumerable<E> {
+        private final Collection<T> source;
+        private final Func<T, E> func;
+        private final int maxConcurrency;
+        private final ExecutorService executor;
+        private final boolean ordered;
+
+        SelectAsyncEnumerable(Collection<T> source, Func<T, E> func, int maxConcurrency, ExecutorService executor, boolean ordered) {
+            super(Estimate.SAME, LavaBase.this.input(source));
+            this.source = source;
+            this.func = func;
+            this.maxConcurrency = maxConcurrency;
+            this.executor = executor;
+            this.ordered = ordered;
+        }
+
+        @Override
+        protected Iterator<E> open() {
+            return new SelectAsyncIterator<T, E>(source.iterator(), func, maxConcurrency, executor, ordered);
+        }
+    }
+
+    /**
+     * Keeps up to {@code maxConcurrency} callbacks running, and starts the next one each time a result is handed out.
+     * Ordered results are waited for in the order they were started, unordered ones in the order they are done.
+     */
+    static class SelectAsyncIterator<T, E> extends AbstractIterator<E> {
+        private final Iterator<T> iter;
+        private final Func<T, E> func;
+        private final int maxConcurrency;
+        private final ExecutorService executor;
+        private final Deque<Future<E>> running = new ArrayDeque<Future<E>>();
+        private final CompletionService<E> completion;
+        private int inFlight;
+
+        SelectAsyncIterator(Iterator<T> iter, Func<T, E> func, int maxConcurrency, ExecutorService executor, boolean ordered) {
+            this.iter = iter;
+            this.func = func;
+            this.maxConcurrency = maxConcurrency;
+            this.executor = executor;
+            this.completion = ordered ? null : new ExecutorCompletionService<E>(executor);
+        }
+
+        @Override
+        protected E computeNext() {
+            while (inFlight < maxConcurrency && iter.hasNext()) {
+                submit(iter.next());
+            }
+
+            if (inFlight == 0)
+                return endOfData();
+
+            Future<E> future;
+            if (completion == null) {
+                future = running.pollFirst();
+            } else {
+                try {
+                    future = completion.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException(e);
+                }
+            }
+
+            inFlight--;
+            return Tasks.getResult(future);
+        }
+
+        private void submit(final T t) {
+            Callable<E> task = new Callable<E>() {
+                @Override
+                public E call() throws Exception {
+                    return func.callback(t);
+                }
+            };
+
+            if (completion == null)
+                running.addLast(executor.submit(task));
+            else
+                completion.submit(task);
+
+            inFlight++;
+        }
+    }
+
+    ///////////////
+    // Select Batched
+    ///////////////
+
+    /**
+     * Transforms the contents of the collection by handing the callback function consecutive batches of elements rather
+     * than one element at a time, which pays off for callbacks that cost about the same for a whole batch as for a
+     * single element, like a bulk lookup. Every batch but the last has {@code batchSize} elements.
+     *
+     * @param collection The source collection
+     * @param batchSize  The number of elements in each batch
+     * @param func       The function that transforms a batch, which has to return one result for each element in the
+     *                   same order
+     * @param <T>        The type of the original objects
+     * @param <E>        The type of the transformed objects
+     * @return A collection of transformed objects, in the order of the source
+     * @throws IllegalStateException If the callback returns a different number of results than it was given elements
+     */
+    protected <T, E extends Comparable<? super E>> Enumerable<E> selectBatched(Collection<T> collection, int batchSize, Func<List<T>, List<E>> func) {
+        Preconditions.checkNotNull(collection);
+        Preconditions.checkArgument(batchSize > 0, "A batch needs at least one element");
+        Preconditions.checkNotNull(func);
+
+        return track(Estimate.SAME, collection).finish(new SelectBatchedEnumerable<T, E>(collection, batchSize, func));
+    }
+
+    class SelectBatchedEnumerable<T, E extends Comparable<? super E>> extends LavaEnumerable<E> {
+        SelectBatchedEnumerable(Collection<T> col, int batchSize, Func<List<T>, List<E>> func) {
+            collection = new ArrayList<E>(col.size());
+
+            Iterator<List<T>> batches = Iterators.partition(col.iterator(), batchSize);
+            while (batches.hasNext()) {
+                collection.addAll(Batches.select(func, batches.next()));
+            }
+        }
+    }
+
     ///////////////
     // Select Many
     ///////////////
@@ -1242,7 +2346,7 @@ public class LavaBase {
         Preconditions.checkNotNull(sourceCollection);
         Preconditions.checkNotNull(func);
 
-        return new SelectManyEnumerable1<Source, Result>(sourceCollection, func);
+        return track(Estimate.UNKNOWN, sourceCollection).finish(new SelectManyEnumerable1<Source, Result>(sourceCollection, func));
     }
 
     class SelectManyEnumerable1<Source, Result extends Comparable<? super Result>> extends LavaEnumerable<Result> {
@@ -1273,7 +2377,7 @@ public class LavaBase {
         Preconditions.checkNotNull(sourceCollection);
         Preconditions.checkNotNull(func);
 
-        return new SelectManyEnumerable2<Source, Result>(sourceCollection, func);
+        return track(Estimate.UNKNOWN, sourceCollection).finish(new SelectManyEnumerable2<Source, Result>(sourceCollection, func));
     }
 
     class SelectManyEnumerable2<Source, Result extends Comparable<? super Result>> extends LavaEnumerable<Result> {
@@ -1310,7 +2414,7 @@ public class LavaBase {
         Preconditions.checkNotNull(collectionFunc);
         Preconditions.checkNotNull(resultFunc);
 
-        return new SelectManyEnumerable3<Source, TCollection, Result>(sourceCollection, collectionFunc, resultFunc);
+        return track(Estimate.UNKNOWN, sourceCollection).finish(new SelectManyEnumerable3<Source, TCollection, Result>(sourceCollection, collectionFunc, resultFunc));
     }
 
     class SelectManyEnumerable3<Source, TCollection, Result extends Comparable<? super Result>> extends LavaEnumerable<Result> {
@@ -1376,6 +2480,20 @@ public class LavaBase {
      * @throws MultipleElementsFoundException If there are multiple elements that match the func.
      */
     protected <T> T single(Collection<T> collection, Func<T, Boolean> func) {
+        return single(collection, new FuncPredicate<T>(func));
+    }
+
+    /**
+     * Searches for a single element that matches using the callback function. If there are multiple objects that match, an exception is thrown.
+     *
+     * @param collection The collection to search
+     * @param func       The function used to search the list
+     * @param <T>        The type of the object in the list
+     * @return The single element that matches using the callback function.
+     * @throws NoSuchElementException         If no element in the collection returns true for the func.
+     * @throws MultipleElementsFoundException If there are multiple elements that match the func.
+     */
+    protected <T> T single(Collection<T> collection, Predicate<T> func) {
         Preconditions.checkNotNull(collection);
         Preconditions.checkNotNull(func);
 
@@ -1412,6 +2530,21 @@ public class LavaBase {
      * @throws MultipleElementsFoundException If there are multiple elements that match the callback.
      */
     protected <T> T singleOrDefault(Collection<T> collection, Func<T, Boolean> func) {
+        return singleOrDefault(collection, new FuncPredicate<T>(func));
+    }
+
+    /**
+     * Searches for a single element that matches using the callback function.
+     * If there are multiple objects that match, an exception is thrown.
+     * If there are no elements that match, null is returned.
+     *
+     * @param collection The collection to search
+     * @param func       The callback used to search the list
+     * @param <T>        The type of the object in the list
+     * @return The single element that matches using the callback function or null if none are found.
+     * @throws MultipleElementsFoundException If there are multiple elements that match the callback.
+     */
+    protected <T> T singleOrDefault(Collection<T> collection, Predicate<T> func) {
         Preconditions.checkNotNull(collection);
         Preconditions.checkNotNull(func);
 
@@ -1446,7 +2579,7 @@ public class LavaBase {
         Preconditions.checkArgument(count >= 0);
         Preconditions.checkArgument(count < collection.size());
 
-        return new SkipEnumerable<T>(collection, count);
+        return track(Estimate.SKIP, count, collection).finish(new SkipEnumerable<T>(collection, count));
     }
 
     class SkipEnumerable<T extends Comparable<? super T>> extends LavaEnumerable<T> {
@@ -1481,15 +2614,27 @@ public class LavaBase {
      * @return A subset of the collection minus the elements the callback function filtered out
      */
     protected <T extends Comparable<? super T>> Enumerable<T> skipWhile(Collection<T> collection, Func<T, Boolean> func) {
+        return skipWhile(collection, new FuncPredicate<T>(func));
+    }
+
+    /**
+     * Skips elements in the collection as long as the callback function returns true
+     *
+     * @param collection The collection to use
+     * @param func       The callback function used to test each element
+     * @param <T>        The type of object in the collection
+     * @return A subset of the collection minus the elements the callback function filtered out
+     */
+    protected <T extends Comparable<? super T>> Enumerable<T> skipWhile(Collection<T> collection, Predicate<T> func) {
         Preconditions.checkNotNull(collection);
         Preconditions.checkNotNull(func);
 
-        return new SkipWhileEnumerable<T>(collection, func);
+        return track(Estimate.FILTER, collection).finish(new SkipWhileEnumerable<T>(collection, func));
     }
 
     class SkipWhileEnumerable<T extends Comparable<? super T>> extends LavaEnumerable<T> {
         @SuppressWarnings("StatementWithEmptyBody")
-        SkipWhileEnumerable(Collection<T> col, Func<T, Boolean> func) {
+        SkipWhileEnumerable(Collection<T> col, Predicate<T> func) {
             collection = new ArrayList<T>();
 
             Iterator<T> iter = col.iterator();
@@ -1520,70 +2665,62 @@ public class LavaBase {
         Number first = first(collection);
         NumberEnum type = getType(first);
 
-        Number container;
+        return total(collection, type);
+    }
 
-        // We do this switch because it is a tad more efficient than chained ifs
+    /**
+     * Adds up the collection in a primitive accumulator and boxes the result once, as the given type.
+     * The integral types wrap around exactly like adding them one boxed value at a time would.
+     *
+     * @param collection The collection to add up
+     * @param type       The type of number in the collection
+     * @return The total, boxed as the given type
+     */
+    private <T extends Number> Number total(Collection<T> collection, NumberEnum type) {
+        // We do this switch because it is a tad more efficient than chained ifs, and it is done once instead of per element
         switch (type) {
-            case SHORT:
-                container = (short) 0;
-                break;
-            case BYTE:
-                container = (byte) 0;
-                break;
-            case DOUBLE:
-                container = (double) 0;
-                break;
-            case FLOAT:
-                container = (float) 0;
-                break;
-            case INTEGER:
-                container = 0;
-                break;
-            case LONG:
-                container = (long) 0;
-                break;
-            default:
-                throw new UnsupportedOperationException("Invalid NumberEnum type");
-        }
-
-        for (Number num : collection) {
-            switch (type) {
-                case SHORT:
-                    container = container.shortValue() + num.shortValue();
-                    break;
-                case BYTE:
-                    container = container.byteValue() + num.byteValue();
-                    break;
-                case DOUBLE:
-                    container = container.doubleValue() + num.doubleValue();
-                    break;
-                case FLOAT:
-                    container = container.floatValue() + num.floatValue();
-                    break;
-                case INTEGER:
-                    container = container.intValue() + num.intValue();
-                    break;
-                case LONG:
-                    container = container.longValue() + num.longValue();
-                    break;
-                default:
-                    throw new UnsupportedOperationException("Invalid NumberEnum type");
+            case SHORT: {
+                long total = 0;
+                for (Number num : collection) {
+                    total += num.shortValue();
+                }
+                return (short) total;
+            }
+            case BYTE: {
+                long total = 0;
+                for (Number num : collection) {
+                    total += num.byteValue();
+                }
+                return (byte) total;
+            }
+            case DOUBLE: {
+                double total = 0;
+                for (Number num : collection) {
+                    total += num.doubleValue();
+                }
+                return total;
+            }
+            case FLOAT: {
+                float total = 0;
+                for (Number num : collection) {
+                    total += num.floatValue();
+                }
+                return total;
+            }
+            case INTEGER: {
+                int total = 0;
+                for (Number num : collection) {
+                    total += num.intValue();
+                }
+                return total;
+            }
+            case LONG: {
+                long total = 0;
+                for (Number num : collection) {
+                    total += num.longValue();
+                }
+                return total;
             }
-        }
-
-        switch (type) {
-            case SHORT:
-                return container.shortValue();
-            case BYTE:
-                return container.byteValue();
-            case DOUBLE:
-                return container.doubleValue();
-            case FLOAT:
-                return container.floatValue();
-            case INTEGER:
-                return container.intValue();
-            case LONG:
-                return container.longValue();
             default:
                 throw new UnsupportedOperationException("Invalid NumberEnum type");
         }
@@ -1606,7 +2743,7 @@ public class LavaBase {
         Preconditions.checkNotNull(collection);
         Preconditions.checkArgument(count >= 0);
 
-        return new TakeEnumerable<T>(collection, count);
+        return track(Estimate.LIMIT, count, collection).finish(new TakeEnumerable<T>(collection, count));
     }
 
     class TakeEnumerable<T extends Comparable<? super T>> extends LavaEnumerable<T> {
@@ -1639,14 +2776,26 @@ public class LavaBase {
      * @return The resulting elements from the collection
      */
     protected <T extends Comparable<? super T>> Enumerable<T> takeWhile(Collection<T> collection, Func<T, Boolean> func) {
+        return takeWhile(collection, new FuncPredicate<T>(func));
+    }
+
+    /**
+     * Takes elements from the beginning of the collection, as long as the callback returns true, and puts them, in order, into a resulting collection.
+     *
+     * @param collection The collection to search
+     * @param func       The callback function to use to test the elements
+     * @param <T>        The type of the elements in the list
+     * @return The resulting elements from the collection
+     */
+    protected <T extends Comparable<? super T>> Enumerable<T> takeWhile(Collection<T> collection, Predicate<T> func) {
         Preconditions.checkNotNull(collection);
         Preconditions.checkNotNull(func);
 
-        return new TakeWhileEnumerable<T>(collection, func);
+        return track(Estimate.FILTER, collection).finish(new TakeWhileEnumerable<T>(collection, func));
     }
 
     class TakeWhileEnumerable<T extends Comparable<? super T>> extends LavaEnumerable<T> {
-        TakeWhileEnumerable(Collection<T> col, Func<T, Boolean> func) {
+        TakeWhileEnumerable(Collection<T> col, Predicate<T> func) {
             if (col.isEmpty())
                 return;
 
@@ -1661,6 +2810,48 @@ public class LavaBase {
         }
     }
 
+    ///////////////
+    // Top K
+    ///////////////
+
+    /**
+     * Returns the {@code k} smallest elements of the collection in order, using the default comparison method. This gives
+     * the same result as {@code orderBy().take(k)}, but only keeps {@code k} elements around instead of sorting the
+     * whole collection. If there are fewer than {@code k} elements, all of them are returned.
+     *
+     * @param collection The collection to use
+     * @param k          The number of elements to return
+     * @param <T>        The type of the elements
+     * @return The first {@code k} elements of the ordered collection
+     */
+    protected <T extends Comparable<? super T>> Enumerable<T> topK(Collection<T> collection, int k) {
+        return topK(collection, k, null);
+    }
+
+    /**
+     * Returns the first {@code k} elements of the collection in the order the comparator puts them in. This gives the
+     * same result as {@code orderBy(comparator).take(k)}, but only keeps {@code k} elements around instead of sorting
+     * the whole collection. If there are fewer than {@code k} elements, all of them are returned.
+     *
+     * @param collection The collection to use
+     * @param k          The number of elements to return
+     * @param comparator The comparator to use (can be null)
+     * @param <T>        The type of the elements
+     * @return The first {@code k} elements of the ordered collection
+     */
+    protected <T extends Comparable<? super T>> Enumerable<T> topK(Collection<T> collection, int k, Comparator<T> comparator) {
+        Preconditions.checkNotNull(collection);
+        Preconditions.checkArgument(k >= 0);
+
+        return track(Estimate.LIMIT, k, collection).finish(new TopKEnumerable<T>(collection, k, comparator));
+    }
+
+    class TopKEnumerable<T extends Comparable<? super T>> extends LavaEnumerable<T> {
+        TopKEnumerable(Collection<T> col, int k, Comparator<T> comparator) {
+            collection = TopK.select(col, k, comparator != null ? comparator : Ordering.<T>natural());
+        }
+    }
+
     ///////////////
     // To Map
     ///////////////
@@ -1739,14 +2930,26 @@ public class LavaBase {
      * @return A subset of the collection where all of the objects return a match in the callback function.
      */
     protected <T extends Comparable<? super T>> Enumerable<T> where(Collection<T> collection, Func<T, Boolean> func) {
+        return where(collection, new FuncPredicate<T>(func));
+    }
+
+    /**
+     * Searches a collection using the given {@link Func callback} function.
+     *
+     * @param collection The collection to search through
+     * @param func       The callback function to search with
+     * @param <T>        The type of the object in the list
+     * @return A subset of the collection where all of the objects return a match in the callback function.
+     */
+    protected <T extends Comparable<? super T>> Enumerable<T> where(Collection<T> collection, Predicate<T> func) {
         Preconditions.checkNotNull(collection);
         Preconditions.checkNotNull(func);
 
-        return new WhereEnumerable<T>(collection, func);
+        return track(Estimate.FILTER, collection).finish(new WhereEnumerable<T>(collection, func));
     }
 
     class WhereEnumerable<T extends Comparable<? super T>> extends LavaEnumerable<T> {
-        WhereEnumerable(Collection<T> col, Func<T, Boolean> func) {
+        WhereEnumerable(Collection<T> col, Predicate<T> func) {
             collection = new ArrayList<T>();
 
             for (T obj : col) {
@@ -1756,6 +2959,41 @@ public class LavaBase {
         }
     }
 
+    ///////////////
+    // Where Batched
+    ///////////////
+
+    /**
+     * Searches a collection by handing the callback function consecutive batches of elements rather than one element at
+     * a time. Every batch but the last has {@code batchSize} elements.
+     *
+     * @param collection The collection to search through
+     * @param batchSize  The number of elements in each batch
+     * @param func       The callback function, which has to return a flag for each element in the batch in the same
+     *                   order, true to keep the element
+     * @param <T>        The type of the object in the list
+     * @return The elements whose flag was true, in the order of the source
+     * @throws IllegalStateException If the callback returns a different number of flags than it was given elements
+     */
+    protected <T extends Comparable<? super T>> Enumerable<T> whereBatched(Collection<T> collection, int batchSize, Func<List<T>, List<Boolean>> func) {
+        Preconditions.checkNotNull(collection);
+        Preconditions.checkArgument(batchSize > 0, "A batch needs at least one element");
+        Preconditions.checkNotNull(func);
+
+        return track(Estimate.FILTER, collection).finish(new WhereBatchedEnumerable<T>(collection, batchSize, func));
+    }
+
+    class WhereBatchedEnumerable<T extends Comparable<? super T>> extends LavaEnumerable<T> {
+        WhereBatchedEnumerable(Collection<T> col, int batchSize, Func<List<T>, List<Boolean>> func) {
+            collection = new ArrayList<T>();
+
+            Iterator<List<T>> batches = Iterators.partition(col.iterator(), batchSize);
+            while (batches.hasNext()) {
+                Batches.where(func, batches.next(), collection);
+            }
+        }
+    }
+
     ///////////////
     // Union
     ///////////////
@@ -1772,7 +3010,7 @@ public class LavaBase {
         Preconditions.checkNotNull(first);
         Preconditions.checkNotNull(second);
 
-        return new UnionEnumerable<T>(first, second);
+        return track(Estimate.SUM, first, second).finish(new UnionEnumerable<T>(first, second));
     }
 
     /**
@@ -1792,6 +3030,53 @@ public class LavaBase {
                 if (!collection.contains(s))
                     collection.add(s);
         }
+
+        /**
+         * The elements are already distinct, so there is nothing to do.
+         */
+        @Override
+        public Enumerable<T> distinct() {
+            return this;
+        }
+    }
+
+    ///////////////
+    // Window
+    ///////////////
+
+    /**
+     * Cuts a stream of elements into windows that can be aggregated one window at a time.
+     *
+     * @param source  The stream of elements, which doesn't have to end
+     * @param windows The windows to cut the stream into
+     * @param <T>     The type of object in the stream
+     * @return The windowed stream
+     */
+    protected <T> Windowed<T> window(Iterable<T> source, Windows<T> windows) {
+        Preconditions.checkNotNull(source);
+        Preconditions.checkNotNull(windows);
+
+        return new Windowed<T>(source, windows);
+    }
+
+    /**
+     * Cuts a stream of elements into windows that can be aggregated one window at a time. The iterator can only be
+     * read once, so the results can only be iterated once as well.
+     *
+     * @param source  The stream of elements, which doesn't have to end
+     * @param windows The windows to cut the stream into
+     * @param <T>     The type of object in the stream
+     * @return The windowed stream
+     */
+    protected <T> Windowed<T> windowIterator(final Iterator<T> source, Windows<T> windows) {
+        Preconditions.checkNotNull(source);
+
+        return window(new Iterable<T>() {
+            @Override
+            public Iterator<T> iterator() {
+                return source;
+            }
+        }, windows);
     }
 
     ///////////////
@@ -1816,7 +3101,7 @@ public class LavaBase {
         Preconditions.checkNotNull(second);
         Preconditions.checkNotNull(func);
 
-        return new ZipEnumerable<First, Second, Result>(first, second, func);
+        return track(Estimate.SAME, first, second).finish(new ZipEnumerable<First, Second, Result>(first, second, func));
     }
 
     /**
@@ -0,0 +1,23 @@
+package org.icechamps.lava.callback;
+
+/**
+ * A callback that is told about every element added to or removed from an
+ * {@link org.icechamps.lava.interfaces.ObservableCollection}, right after the change has been made.
+ *
+ * @param <A> The type of the object in the collection
+ */
+public interface ChangeListener<A> {
+    /**
+     * Called after an element has been added
+     *
+     * @param a The element that was added
+     */
+    public void added(A a);
+
+    /**
+     * Called after an element has been removed
+     *
+     * @param a The element that was removed
+     */
+    public void removed(A a);
+}
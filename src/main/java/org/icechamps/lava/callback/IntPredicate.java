@@ -0,0 +1,15 @@
+package org.icechamps.lava.callback;
+
+/**
+ * A callback that tests a primitive {@code int} without boxing it.
+ */
+public interface IntPredicate {
+
+    /**
+     * Tests the value
+     *
+     * @param value The value to test
+     * @return True if the value matches, false if not
+     */
+    public boolean callback(int value);
+}
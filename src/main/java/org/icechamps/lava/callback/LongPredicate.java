@@ -0,0 +1,15 @@
+package org.icechamps.lava.callback;
+
+/**
+ * A callback that tests a primitive {@code long} without boxing it.
+ */
+public interface LongPredicate {
+
+    /**
+     * Tests the value
+     *
+     * @param value The value to test
+     * @return True if the value matches, false if not
+     */
+    public boolean callback(long value);
+}
@@ -0,0 +1,17 @@
+package org.icechamps.lava.callback;
+
+/**
+ * A callback that tests an object and returns a primitive boolean, so nothing is boxed per call.
+ *
+ * @param <A> The type of the object that is passed to the callback function
+ */
+public interface Predicate<A> {
+
+    /**
+     * Tests the object
+     *
+     * @param a The object to test
+     * @return True if the object matches, false if not
+     */
+    public boolean callback(A a);
+}
@@ -0,0 +1,17 @@
+package org.icechamps.lava.callback;
+
+/**
+ * A callback that projects an object to a primitive {@code double}, so nothing is boxed per call.
+ *
+ * @param <A> The type of the object that is passed to the callback function
+ */
+public interface ToDoubleFunc<A> {
+
+    /**
+     * Projects the object
+     *
+     * @param a The object to operate on
+     * @return The result of the operation
+     */
+    public double callback(A a);
+}
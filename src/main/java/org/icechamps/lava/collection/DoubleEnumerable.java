@@ -0,0 +1,172 @@
+package org.icechamps.lava.collection;
+
+import com.google.common.base.Preconditions;
+import org.icechamps.lava.callback.DoublePredicate;
+import org.icechamps.lava.interfaces.Enumerable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * <p>
+ * A sequence of {@code double} values kept in a {@code double[]}. None of the operators box the values or allocate anything
+ * per element, which makes this the cheap way to add up, average or filter large amounts of numeric data.
+ * </p>
+ * <p>
+ * Instances are normally made by projecting an Enumerable with {@link Enumerable#selectDouble}.
+ * </p>
+ */
+public class DoubleEnumerable {
+    private final double[] values;
+    private final int size;
+
+    /**
+     * Wraps the first {@code size} values of the array. The array is not copied, so it must not be changed afterwards.
+     *
+     * @param values The array holding the values
+     * @param size   The number of values in the array that are used
+     */
+    public DoubleEnumerable(double[] values, int size) {
+        Preconditions.checkNotNull(values);
+        Preconditions.checkArgument(size >= 0 && size <= values.length);
+
+        this.values = values;
+        this.size = size;
+    }
+
+    /**
+     * Creates a new enumerable containing a copy of the given values
+     *
+     * @param values The values
+     * @return An enumerable over the values
+     */
+    public static DoubleEnumerable of(double... values) {
+        Preconditions.checkNotNull(values);
+        return new DoubleEnumerable(values.clone(), values.length);
+    }
+
+    /**
+     * Averages the values
+     *
+     * @return The average of the values
+     * @throws NoSuchElementException If there are no values
+     */
+    public double average() {
+        if (size == 0)
+            throw new NoSuchElementException("The collection is empty");
+
+        return sum() / size;
+    }
+
+    /**
+     * Returns a boxed Enumerable containing the values
+     *
+     * @return An Enumerable containing the values
+     */
+    public Enumerable<Double> boxed() {
+        ArrayList<Double> list = new ArrayList<Double>(size);
+
+        for (int i = 0; i < size; i++) {
+            list.add(values[i]);
+        }
+
+        return new LavaList<Double>(list);
+    }
+
+    /**
+     * Returns the number of values
+     *
+     * @return The number of values
+     */
+    public int count() {
+        return size;
+    }
+
+    /**
+     * Returns the largest value
+     *
+     * @return The largest value
+     * @throws NoSuchElementException If there are no values
+     */
+    public double max() {
+        if (size == 0)
+            throw new NoSuchElementException("The collection is empty");
+
+        double ret = values[0];
+        for (int i = 1; i < size; i++) {
+            if (values[i] > ret)
+                ret = values[i];
+        }
+
+        return ret;
+    }
+
+    /**
+     * Returns the smallest value
+     *
+     * @return The smallest value
+     * @throws NoSuchElementException If there are no values
+     */
+    public double min() {
+        if (size == 0)
+            throw new NoSuchElementException("The collection is empty");
+
+        double ret = values[0];
+        for (int i = 1; i < size; i++) {
+            if (values[i] < ret)
+                ret = values[i];
+        }
+
+        return ret;
+    }
+
+    /**
+     * Adds up the values
+     *
+     * @return The sum of the values, or 0 if there are none
+     */
+    public double sum() {
+        double total = 0;
+
+        for (int i = 0; i < size; i++) {
+            total += values[i];
+        }
+
+        return total;
+    }
+
+    /**
+     * Returns a copy of the values
+     *
+     * @return A new array containing the values
+     */
+    public double[] toArray() {
+        return Arrays.copyOf(values, size);
+    }
+
+    /**
+     * Filters the values using the callback function
+     *
+     * @param func The callback function used to filter the values
+     * @return A new enumerable containing the values that matched
+     */
+    public DoubleEnumerable where(DoublePredicate func) {
+        Preconditions.checkNotNull(func);
+
+        double[] ret = new double[size];
+        int count = 0;
+
+        for (int i = 0; i < size; i++) {
+            if (func.callback(values[i]))
+                ret[count++] = values[i];
+        }
+
+        return new DoubleEnumerable(ret, count);
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(toArray());
+    }
+}
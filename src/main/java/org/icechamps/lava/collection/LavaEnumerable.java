@@ -3,9 +3,19 @@ package org.icechamps.lava.collection;
 import org.icechamps.lava.LavaBase;
 import org.icechamps.lava.callback.Func;
 import org.icechamps.lava.callback.Func2;
+import org.icechamps.lava.callback.Predicate;
+import org.icechamps.lava.callback.ToDoubleFunc;
+import org.icechamps.lava.callback.ToIntFunc;
+import org.icechamps.lava.callback.ToLongFunc;
 import org.icechamps.lava.interfaces.Enumerable;
+import org.icechamps.lava.interfaces.OrderedEnumerable;
+import org.icechamps.lava.plan.Plan;
+import org.icechamps.lava.spill.Serializer;
+import org.icechamps.lava.spill.SpillConfig;
+import org.icechamps.lava.util.FuncPredicate;
 
 import java.util.*;
+import java.util.concurrent.ExecutorService;
 
 /**
  * User: Robert.Diaz
@@ -14,6 +24,12 @@ import java.util.*;
  */
 public abstract class LavaEnumerable<T extends Comparable<? super T>> extends LavaBase implements Enumerable<T>, Iterator<T> {
     protected Collection<T> collection;
+    private Iterator<T> cursor;
+
+    @Override
+    protected Collection<?> backingCollection() {
+        return collection;
+    }
 
     // Iterable method
 
@@ -26,17 +42,28 @@ public abstract class LavaEnumerable<T extends Comparable<? super T>> extends La
 
     @Override
     public boolean hasNext() {
-        return iterator().hasNext();
+        return cursor().hasNext();
     }
 
     @Override
     public T next() {
-        return iterator().next();
+        return cursor().next();
     }
 
     @Override
     public void remove() {
-        iterator().remove();
+        cursor().remove();
+    }
+
+    /**
+     * Opens the iterator behind the Iterator methods the first time one of them is called. Creating a new iterator on
+     * every call would never get past the first element.
+     */
+    private Iterator<T> cursor() {
+        if (cursor == null)
+            cursor = iterator();
+
+        return cursor;
     }
 
     // Lava methods
@@ -48,14 +75,37 @@ public abstract class LavaEnumerable<T extends Comparable<? super T>> extends La
 
     @Override
     public boolean all(Func<T, Boolean> func) {
+        return all(new FuncPredicate<T>(func));
+    }
+
+    @Override
+    public boolean all(Predicate<T> func) {
         return all(collection, func);
     }
 
+    /**
+     * Eager operators have already run by the time their result exists, so this is the same as {@link #explain()}.
+     */
+    @Override
+    public Plan analyze() {
+        return explain();
+    }
+
     @Override
     public boolean any() {
         return any(collection);
     }
 
+    @Override
+    public boolean any(Func<T, Boolean> func) {
+        return any(new FuncPredicate<T>(func));
+    }
+
+    @Override
+    public boolean any(Predicate<T> func) {
+        return any(collection, func);
+    }
+
     @Override
     public int count() {
         return count(collection);
@@ -86,6 +136,12 @@ public abstract class LavaEnumerable<T extends Comparable<? super T>> extends La
         return except(collection, second);
     }
 
+    @Override
+    public Plan explain() {
+        Plan plan = getPlan();
+        return plan != null ? plan : Plan.source(Plan.nameOf(getClass()), collection != null ? collection.size() : 0);
+    }
+
     @Override
     public T first() {
         return first(collection);
@@ -93,6 +149,11 @@ public abstract class LavaEnumerable<T extends Comparable<? super T>> extends La
 
     @Override
     public T first(Func<T, Boolean> func) {
+        return first(new FuncPredicate<T>(func));
+    }
+
+    @Override
+    public T first(Predicate<T> func) {
         return first(collection, func);
     }
 
@@ -103,6 +164,11 @@ public abstract class LavaEnumerable<T extends Comparable<? super T>> extends La
 
     @Override
     public T firstOrDefault(Func<T, Boolean> func) {
+        return firstOrDefault(new FuncPredicate<T>(func));
+    }
+
+    @Override
+    public T firstOrDefault(Predicate<T> func) {
         return firstOrDefault(collection, func);
     }
 
@@ -119,6 +185,14 @@ public abstract class LavaEnumerable<T extends Comparable<? super T>> extends La
         return intersect(collection, second);
     }
 
+    @Override
+    public <Inner, Key extends Comparable<? super Key>, Result extends Comparable<? super Result>> Enumerable<Result> join(Collection<Inner> innerCollection,
+                                                                                                                           Func<T, Key> outerKeyFunc,
+                                                                                                                           Func<Inner, Key> innerKeyFunc,
+                                                                                                                           Func2<T, Inner, Result> resultFunc) {
+        return join(collection, innerCollection, outerKeyFunc, innerKeyFunc, resultFunc);
+    }
+
     @Override
     public T last() {
         return last(collection);
@@ -126,6 +200,11 @@ public abstract class LavaEnumerable<T extends Comparable<? super T>> extends La
 
     @Override
     public T last(Func<T, Boolean> func) {
+        return last(new FuncPredicate<T>(func));
+    }
+
+    @Override
+    public T last(Predicate<T> func) {
         return last(collection, func);
     }
 
@@ -136,9 +215,24 @@ public abstract class LavaEnumerable<T extends Comparable<? super T>> extends La
 
     @Override
     public T lastOrDefault(Func<T, Boolean> func) {
+        return lastOrDefault(new FuncPredicate<T>(func));
+    }
+
+    @Override
+    public T lastOrDefault(Predicate<T> func) {
         return lastOrDefault(collection, func);
     }
 
+    @Override
+    public Enumerable<T> lazy() {
+        return lazy(collection);
+    }
+
+    @Override
+    public Enumerable<T> materialize() {
+        return new LavaList<T>(collection);
+    }
+
     @Override
     public T max() {
         return max(collection);
@@ -149,6 +243,11 @@ public abstract class LavaEnumerable<T extends Comparable<? super T>> extends La
         return max(collection, func);
     }
 
+    @Override
+    public Enumerable<T> memoize() {
+        return this;
+    }
+
     @Override
     public T min() {
         return min(collection);
@@ -164,6 +263,26 @@ public abstract class LavaEnumerable<T extends Comparable<? super T>> extends La
         return orderByDescending(collection, comparator);
     }
 
+    @Override
+    public <K extends Comparable<? super K>> OrderedEnumerable<T> orderBy(Func<T, K> keyFunc) {
+        return orderBy(collection, keyFunc);
+    }
+
+    @Override
+    public <K extends Comparable<? super K>> OrderedEnumerable<T> orderByDescending(Func<T, K> keyFunc) {
+        return orderByDescending(collection, keyFunc);
+    }
+
+    @Override
+    public Enumerable<T> orderBy(Comparator<T> comparator, Serializer<T> serializer, SpillConfig config) {
+        return orderBy(collection, comparator, serializer, config);
+    }
+
+    @Override
+    public Enumerable<T> orderByDescending(Comparator<T> comparator, Serializer<T> serializer, SpillConfig config) {
+        return orderByDescending(collection, comparator, serializer, config);
+    }
+
     @Override
     public Enumerable<T> orderByDescending() {
         return orderByDescending(collection);
@@ -199,6 +318,51 @@ public abstract class LavaEnumerable<T extends Comparable<? super T>> extends La
         return select(collection, func);
     }
 
+    @Override
+    public <E extends Comparable<? super E>> Enumerable<E> selectAsync(Func<T, E> func, int maxConcurrency) {
+        return selectAsync(collection, func, maxConcurrency);
+    }
+
+    @Override
+    public <E extends Comparable<? super E>> Enumerable<E> selectAsync(Func<T, E> func, int maxConcurrency, ExecutorService executor, boolean ordered) {
+        return selectAsync(collection, func, maxConcurrency, executor, ordered);
+    }
+
+    @Override
+    public <E extends Comparable<? super E>> Enumerable<E> selectBatched(int batchSize, Func<List<T>, List<E>> func) {
+        return selectBatched(collection, batchSize, func);
+    }
+
+    @Override
+    public DoubleEnumerable selectDouble(Func<T, Double> func) {
+        return selectDouble(collection, func);
+    }
+
+    @Override
+    public DoubleEnumerable selectDouble(ToDoubleFunc<T> func) {
+        return selectDouble(collection, func);
+    }
+
+    @Override
+    public IntEnumerable selectInt(Func<T, Integer> func) {
+        return selectInt(collection, func);
+    }
+
+    @Override
+    public IntEnumerable selectInt(ToIntFunc<T> func) {
+        return selectInt(collection, func);
+    }
+
+    @Override
+    public LongEnumerable selectLong(Func<T, Long> func) {
+        return selectLong(collection, func);
+    }
+
+    @Override
+    public LongEnumerable selectLong(ToLongFunc<T> func) {
+        return selectLong(collection, func);
+    }
+
     @Override
     public <Result extends Comparable<? super Result>> Enumerable<Result> selectMany(Func<T, Collection<Result>> resultFunc) {
         return selectMany(collection, resultFunc);
@@ -221,11 +385,21 @@ public abstract class LavaEnumerable<T extends Comparable<? super T>> extends La
 
     @Override
     public T single(Func<T, Boolean> func) {
+        return single(new FuncPredicate<T>(func));
+    }
+
+    @Override
+    public T single(Predicate<T> func) {
         return single(collection, func);
     }
 
     @Override
     public T singleOrDefault(Func<T, Boolean> func) {
+        return singleOrDefault(new FuncPredicate<T>(func));
+    }
+
+    @Override
+    public T singleOrDefault(Predicate<T> func) {
         return singleOrDefault(collection, func);
     }
 
@@ -236,6 +410,11 @@ public abstract class LavaEnumerable<T extends Comparable<? super T>> extends La
 
     @Override
     public Enumerable<T> skipWhile(Func<T, Boolean> func) {
+        return skipWhile(new FuncPredicate<T>(func));
+    }
+
+    @Override
+    public Enumerable<T> skipWhile(Predicate<T> func) {
         return skipWhile(collection, func);
     }
 
@@ -246,6 +425,21 @@ public abstract class LavaEnumerable<T extends Comparable<? super T>> extends La
 
     @Override
     public Enumerable<T> takeWhile(Func<T, Boolean> func) {
+        return takeWhile(new FuncPredicate<T>(func));
+    }
+
+    @Override
+    public Enumerable<T> topK(int k) {
+        return topK(collection, k);
+    }
+
+    @Override
+    public Enumerable<T> topK(int k, Comparator<T> comparator) {
+        return topK(collection, k, comparator);
+    }
+
+    @Override
+    public Enumerable<T> takeWhile(Predicate<T> func) {
         return takeWhile(collection, func);
     }
 
@@ -260,9 +454,19 @@ public abstract class LavaEnumerable<T extends Comparable<? super T>> extends La
 
     @Override
     public Enumerable<T> where(Func<T, Boolean> func) {
+        return where(new FuncPredicate<T>(func));
+    }
+
+    @Override
+    public Enumerable<T> where(Predicate<T> func) {
         return where(collection, func);
     }
 
+    @Override
+    public Enumerable<T> whereBatched(int batchSize, Func<List<T>, List<Boolean>> func) {
+        return whereBatched(collection, batchSize, func);
+    }
+
     @Override
     public Enumerable<T> union(Collection<T> second) {
         return union(collection, second);
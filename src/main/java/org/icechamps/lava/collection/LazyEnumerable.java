@@ -0,0 +1,1296 @@
+package org.icechamps.lava.collection;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Ordering;
+import org.icechamps.lava.callback.Func;
+import org.icechamps.lava.callback.Func2;
+import org.icechamps.lava.callback.Predicate;
+import org.icechamps.lava.interfaces.Enumerable;
+import org.icechamps.lava.join.HashJoin;
+import org.icechamps.lava.plan.Allocations;
+import org.icechamps.lava.plan.Estimate;
+import org.icechamps.lava.plan.Plan;
+import org.icechamps.lava.sort.TopK;
+import org.icechamps.lava.util.AndPredicate;
+import org.icechamps.lava.util.Batches;
+import org.icechamps.lava.util.ComposedFunction;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * <p>
+ * An Enumerable whose elements are produced on demand instead of being copied into a backing collection.
+ * </p>
+ * <p>
+ * Chaining where, whereBatched, select, selectBatched, selectMany, distinct, join, groupJoin, orderBy,
+ * orderByDescending, skip, skipWhile, take, takeWhile or zip on a lazy enumerable does not touch the source at all. Each call wraps the previous stage's iterator, and the whole chain
+ * is run in a single pass once something enumerates it.
+ * </p>
+ * <p>
+ * Stages rewrite the chain as it is built when a cheaper chain gives the same result: consecutive wheres and consecutive
+ * selects are merged into one stage, a where after an orderBy is moved in front of the sort, a take right after an
+ * orderBy only keeps the elements it needs, first after an orderBy finds the smallest element without sorting, and
+ * count after a select or orderBy counts the source instead. Because of that last one, a select callback isn't called
+ * when the result is only counted. {@link #explain()} shows the chain after these rewrites. Every other operator falls back to the eager implementation in
+ * {@link org.icechamps.lava.LavaBase}, so calling {@link #materialize()} or {@link #toList()} is the way to capture the
+ * results of a lazy chain.
+ * </p>
+ * <p>
+ * Since nothing is cached, every enumeration re-runs the chain against the current contents of the source. Call
+ * {@link #memoize()} to run it once and replay the results after that.
+ * </p>
+ * <p>
+ * Stages that hold on to something while they run, like the temporary files of a spilling sort, return iterators that
+ * implement {@link Closeable}. Where, select, distinct, take and takeWhile pass a close on to the stage they read from,
+ * take, takeWhile, first, any and empty close the chain themselves when they stop early, and anyone else who stops
+ * reading part way through can use {@link #close(Iterator)}.
+ * </p>
+ *
+ * @param <T> The type of the object in the enumerable
+ */
+public abstract class LazyEnumerable<T extends Comparable<? super T>> extends LavaEnumerable<T> {
+
+    private static final ThreadLocal<Profile> PROFILE = new ThreadLocal<Profile>();
+
+    private final Estimate estimate;
+    private final long argument;
+    private final Iterable<?>[] inputs;
+
+    /**
+     * Creates a stage that reads nothing that {@link #explain()} can show
+     */
+    protected LazyEnumerable() {
+        this(Estimate.UNKNOWN, 0);
+    }
+
+    /**
+     * Creates a stage that reads from the given inputs
+     *
+     * @param estimate The rule used to estimate how many elements the stage produces
+     * @param inputs   The iterables the stage reads, which show up under it in its plan
+     */
+    protected LazyEnumerable(Estimate estimate, Iterable<?>... inputs) {
+        this(estimate, 0, inputs);
+    }
+
+    /**
+     * Creates a stage that reads from the given inputs
+     *
+     * @param estimate The rule used to estimate how many elements the stage produces
+     * @param argument The stage's own argument for the estimate, like the count of a take
+     * @param inputs   The iterables the stage reads, which show up under it in its plan
+     */
+    protected LazyEnumerable(Estimate estimate, long argument, Iterable<?>... inputs) {
+        this.estimate = estimate;
+        this.argument = argument;
+        this.inputs = inputs;
+
+        collection = new SourceCollection<T>(this);
+    }
+
+    /**
+     * Creates a lazy enumerable that reads its elements from the given source every time it is enumerated.
+     *
+     * @param source The source of the elements
+     * @param <T>    The type of the object in the source
+     * @return A lazy enumerable over the source
+     */
+    public static <T extends Comparable<? super T>> LazyEnumerable<T> create(Iterable<T> source) {
+        Preconditions.checkNotNull(source);
+        return new SourceEnumerable<T>(source);
+    }
+
+    /**
+     * Checks whether the given iterable is a lazy enumerable, or the collection view of one. Asking those for their size
+     * runs the whole chain, so operators that only want a size hint should treat them as unsized.
+     *
+     * @param iterable The iterable to check
+     * @return True if enumerating the iterable runs a deferred chain
+     */
+    public static boolean isDeferred(Iterable<?> iterable) {
+        return iterable instanceof LazyEnumerable || iterable instanceof SourceCollection;
+    }
+
+    /**
+     * Closes an iterator that won't be read to the end, if it is one that holds on to something, like the temporary
+     * files of a spilling sort. Other iterators are left alone.
+     *
+     * @param iterator The iterator to close
+     */
+    public static void close(Iterator<?> iterator) {
+        if (!(iterator instanceof Closeable))
+            return;
+
+        try {
+            ((Closeable) iterator).close();
+        } catch (IOException ignored) {
+            // Nothing more is going to be read from it either way
+        }
+    }
+
+    /**
+     * Explains the given iterable. Lazy enumerables and their collection views are explained without being run, other
+     * enumerables return their own plans, and anything else is a source named after its class.
+     *
+     * @param iterable The iterable to explain
+     * @return The plan of the iterable
+     */
+    public static Plan planOf(Iterable<?> iterable) {
+        return planOf(iterable, null);
+    }
+
+    private static Plan planOf(Iterable<?> iterable, Profile profile) {
+        LazyEnumerable<?> stage = stageOf(iterable);
+
+        if (stage != null)
+            return stage.explain(profile);
+
+        if (iterable instanceof Enumerable)
+            return ((Enumerable<?>) iterable).explain();
+
+        long rows = iterable instanceof Collection ? ((Collection<?>) iterable).size() : -1;
+        return Plan.source(Plan.nameOf(iterable.getClass()), rows);
+    }
+
+    /**
+     * Counts the elements of an iterable, letting lazy stages count themselves so their own shortcuts apply.
+     *
+     * @param iterable The iterable to count
+     * @return The number of elements in the iterable
+     */
+    protected static int countOf(Iterable<?> iterable) {
+        LazyEnumerable<?> stage = stageOf(iterable);
+
+        if (stage != null)
+            return stage.count();
+
+        if (iterable instanceof Collection)
+            return ((Collection<?>) iterable).size();
+
+        int ret = 0;
+        for (Iterator<?> iter = iterable.iterator(); iter.hasNext(); iter.next())
+            ret++;
+
+        return ret;
+    }
+
+    private static LazyEnumerable<?> stageOf(Iterable<?> iterable) {
+        if (iterable instanceof SourceCollection)
+            iterable = ((SourceCollection<?>) iterable).owner;
+
+        return iterable instanceof LazyEnumerable ? (LazyEnumerable<?>) iterable : null;
+    }
+
+    /**
+     * Creates a new iterator that runs this stage of the chain. While {@link #analyze()} is running, the iterator also
+     * keeps track of what the stage does.
+     *
+     * @return The iterator for this stage
+     */
+    @Override
+    public final Iterator<T> iterator() {
+        Profile profile = PROFILE.get();
+        return profile != null ? profile.open(this) : open();
+    }
+
+    /**
+     * Creates a new iterator that runs this stage of the chain.
+     *
+     * @return The iterator for this stage
+     */
+    protected abstract Iterator<T> open();
+
+    /**
+     * Runs the chain once on the calling thread, throwing the results away, and explains it with what each stage
+     * actually did. The time and allocations of a stage leave out those of the stages it reads from.
+     */
+    @Override
+    @SuppressWarnings("StatementWithEmptyBody")
+    public Plan analyze() {
+        Profile previous = PROFILE.get();
+        Profile profile = new Profile();
+
+        PROFILE.set(profile);
+        try {
+            for (Iterator<T> iter = iterator(); iter.hasNext(); iter.next()) {
+            }
+        } finally {
+            PROFILE.set(previous);
+        }
+
+        return explain(profile);
+    }
+
+    @Override
+    public boolean any() {
+        Iterator<T> iter = iterator();
+
+        try {
+            return iter.hasNext();
+        } finally {
+            close(iter);
+        }
+    }
+
+    @Override
+    public Enumerable<T> distinct() {
+        return new DistinctEnumerable<T>(this);
+    }
+
+    @Override
+    public boolean empty() {
+        return !any();
+    }
+
+    /**
+     * Explains the chain without running it, so only the estimates are filled in.
+     */
+    @Override
+    public Plan explain() {
+        return explain(null);
+    }
+
+    private Plan explain(Profile profile) {
+        List<Plan> plans = new ArrayList<Plan>(inputs.length);
+        long inputNanos = 0;
+        long inputBytes = 0;
+
+        for (Iterable<?> input : inputs) {
+            plans.add(planOf(input, profile));
+
+            Stats stats = profile != null ? profile.stats.get(stageOf(input)) : null;
+            if (stats != null) {
+                inputNanos += stats.nanos;
+                inputBytes += stats.bytes;
+            }
+        }
+
+        Stats stats = profile != null ? profile.stats.get(this) : null;
+        if (stats == null)
+            return new Plan(Plan.nameOf(getClass()), estimate, argument, plans, -1, -1, -1);
+
+        long bytes = Allocations.isSupported() ? Math.max(0, stats.bytes - inputBytes) : -1;
+        return new Plan(Plan.nameOf(getClass()), estimate, argument, plans, stats.rows, Math.max(0, stats.nanos - inputNanos), bytes);
+    }
+
+    @Override
+    public T first() {
+        Iterator<T> iter = iterator();
+
+        try {
+            if (!iter.hasNext())
+                throw new NoSuchElementException("The collection is empty");
+
+            return iter.next();
+        } finally {
+            close(iter);
+        }
+    }
+
+    /**
+     * Streams the join: the inner collection is loaded into a lookup each time the result is enumerated, and the results
+     * are produced as this chain is read past it.
+     */
+    @Override
+    public <Inner, Key extends Comparable<? super Key>, Result extends Comparable<? super Result>> Enumerable<Result> groupJoin(Collection<Inner> innerCollection,
+                                                                                                                                Func<T, Key> outerKeyFunc,
+                                                                                                                                Func<Inner, Key> innerKeyFunc,
+                                                                                                                                Func2<T, Collection<Inner>, Result> resultFunc) {
+        Preconditions.checkNotNull(innerCollection);
+        Preconditions.checkNotNull(outerKeyFunc);
+        Preconditions.checkNotNull(innerKeyFunc);
+        Preconditions.checkNotNull(resultFunc);
+        return new GroupJoinEnumerable<T, Inner, Key, Result>(collection, innerCollection, outerKeyFunc, innerKeyFunc, resultFunc);
+    }
+
+    /**
+     * Streams the join: the inner collection is loaded into a lookup each time the result is enumerated, and the results
+     * are produced as this chain is read past it.
+     */
+    @Override
+    public <Inner, Key extends Comparable<? super Key>, Result extends Comparable<? super Result>> Enumerable<Result> join(Collection<Inner> innerCollection,
+                                                                                                                           Func<T, Key> outerKeyFunc,
+                                                                                                                           Func<Inner, Key> innerKeyFunc,
+                                                                                                                           Func2<T, Inner, Result> resultFunc) {
+        Preconditions.checkNotNull(innerCollection);
+        Preconditions.checkNotNull(outerKeyFunc);
+        Preconditions.checkNotNull(innerKeyFunc);
+        Preconditions.checkNotNull(resultFunc);
+        return new JoinEnumerable<T, Inner, Key, Result>(collection, innerCollection, outerKeyFunc, innerKeyFunc, resultFunc);
+    }
+
+    @Override
+    public Enumerable<T> lazy() {
+        return this;
+    }
+
+    @Override
+    public Enumerable<T> materialize() {
+        return new LavaList<T>(collection);
+    }
+
+    @Override
+    public Enumerable<T> memoize() {
+        return new MemoizedEnumerable<T>(this);
+    }
+
+    @Override
+    public Enumerable<T> orderBy() {
+        return new OrderByEnumerable<T>(this, Ordering.<T>natural());
+    }
+
+    @Override
+    public Enumerable<T> orderBy(Comparator<T> comparator) {
+        Preconditions.checkNotNull(comparator);
+        return new OrderByEnumerable<T>(this, comparator);
+    }
+
+    @Override
+    public Enumerable<T> orderByDescending() {
+        return new OrderByEnumerable<T>(this, Ordering.<T>natural().reverse());
+    }
+
+    @Override
+    public Enumerable<T> orderByDescending(Comparator<T> comparator) {
+        Preconditions.checkNotNull(comparator);
+        return new OrderByEnumerable<T>(this, Collections.reverseOrder(comparator));
+    }
+
+    @Override
+    public <E extends Comparable<? super E>> Enumerable<E> select(Func<T, E> func) {
+        Preconditions.checkNotNull(func);
+        return new SelectEnumerable<T, E>(this, func);
+    }
+
+    @Override
+    public <E extends Comparable<? super E>> Enumerable<E> selectBatched(int batchSize, Func<List<T>, List<E>> func) {
+        Preconditions.checkArgument(batchSize > 0, "A batch needs at least one element");
+        Preconditions.checkNotNull(func);
+        return new SelectBatchedEnumerable<T, E>(this, batchSize, func);
+    }
+
+    @Override
+    public <Result extends Comparable<? super Result>> Enumerable<Result> selectMany(Func<T, Collection<Result>> resultFunc) {
+        Preconditions.checkNotNull(resultFunc);
+        return new SelectManyEnumerable1<T, Result>(this, resultFunc);
+    }
+
+    @Override
+    public <Result extends Comparable<? super Result>> Enumerable<Result> selectMany(Func2<T, Integer, Collection<Result>> resultFunc) {
+        Preconditions.checkNotNull(resultFunc);
+        return new SelectManyEnumerable2<T, Result>(this, resultFunc);
+    }
+
+    @Override
+    public <TCollection, Result extends Comparable<? super Result>> Enumerable<Result> selectMany(Func<T, Collection<TCollection>> collectionFunc, Func2<T, TCollection, Result> resultFunc) {
+        Preconditions.checkNotNull(collectionFunc);
+        Preconditions.checkNotNull(resultFunc);
+        return new SelectManyEnumerable3<T, TCollection, Result>(this, collectionFunc, resultFunc);
+    }
+
+    @Override
+    public Enumerable<T> skip(int count) {
+        Preconditions.checkArgument(count >= 0);
+        return new SkipEnumerable<T>(this, count);
+    }
+
+    @Override
+    public Enumerable<T> skipWhile(Predicate<T> func) {
+        Preconditions.checkNotNull(func);
+        return new SkipWhileEnumerable<T>(this, func);
+    }
+
+    @Override
+    public Enumerable<T> take(int count) {
+        Preconditions.checkArgument(count >= 0);
+        return new TakeEnumerable<T>(this, count);
+    }
+
+    @Override
+    public Enumerable<T> takeWhile(Predicate<T> func) {
+        Preconditions.checkNotNull(func);
+        return new TakeWhileEnumerable<T>(this, func);
+    }
+
+    @Override
+    public Enumerable<T> where(Predicate<T> func) {
+        Preconditions.checkNotNull(func);
+        return new WhereEnumerable<T>(this, func);
+    }
+
+    @Override
+    public Enumerable<T> whereBatched(int batchSize, Func<List<T>, List<Boolean>> func) {
+        Preconditions.checkArgument(batchSize > 0, "A batch needs at least one element");
+        Preconditions.checkNotNull(func);
+        return new WhereBatchedEnumerable<T>(this, batchSize, func);
+    }
+
+    @Override
+    public <Second, Result extends Comparable<? super Result>> Enumerable<Result> zip(Collection<Second> second, Func2<T, Second, Result> func) {
+        Preconditions.checkNotNull(second);
+        Preconditions.checkNotNull(func);
+        return new ZipEnumerable<T, Second, Result>(this, second, func);
+    }
+
+    /**
+     * What {@link #analyze()} has seen so far, by stage. A stage that is enumerated more than once adds up.
+     */
+    private static class Profile {
+        final IdentityHashMap<LazyEnumerable<?>, Stats> stats = new IdentityHashMap<LazyEnumerable<?>, Stats>();
+
+        <T extends Comparable<? super T>> Iterator<T> open(LazyEnumerable<T> stage) {
+            Stats ret = stats.get(stage);
+            if (ret == null) {
+                ret = new Stats();
+                stats.put(stage, ret);
+            }
+
+            long bytes = Allocations.currentThread();
+            long nanos = System.nanoTime();
+            Iterator<T> iter;
+
+            try {
+                iter = stage.open();
+            } finally {
+                ret.add(nanos, bytes);
+            }
+
+            return new ProfiledIterator<T>(iter, ret);
+        }
+    }
+
+    /**
+     * The rows, time and allocations of one stage, including everything its inputs did while it was pulling from them.
+     */
+    private static class Stats {
+        long rows;
+        long nanos;
+        long bytes;
+
+        void add(long startNanos, long startBytes) {
+            nanos += System.nanoTime() - startNanos;
+            bytes += Allocations.currentThread() - startBytes;
+        }
+    }
+
+    /**
+     * Counts the rows that come out of a stage and measures every call into it.
+     */
+    private static class ProfiledIterator<T> implements Iterator<T>, Closeable {
+        private final Iterator<T> iter;
+        private final Stats stats;
+
+        ProfiledIterator(Iterator<T> iter, Stats stats) {
+            this.iter = iter;
+            this.stats = stats;
+        }
+
+        @Override
+        public boolean hasNext() {
+            long bytes = Allocations.currentThread();
+            long nanos = System.nanoTime();
+
+            try {
+                return iter.hasNext();
+            } finally {
+                stats.add(nanos, bytes);
+            }
+        }
+
+        @Override
+        public T next() {
+            long bytes = Allocations.currentThread();
+            long nanos = System.nanoTime();
+
+            try {
+                T ret = iter.next();
+                stats.rows++;
+                return ret;
+            } finally {
+                stats.add(nanos, bytes);
+            }
+        }
+
+        @Override
+        public void close() {
+            LazyEnumerable.close(iter);
+        }
+
+        @Override
+        public void remove() {
+            iter.remove();
+        }
+    }
+
+    /**
+     * The iterator of a stage that reads from a single iterator. Closing it closes the iterator it reads from.
+     */
+    protected abstract static class StageIterator<T> extends AbstractIterator<T> implements Closeable {
+        private final Iterator<?> source;
+
+        protected StageIterator(Iterator<?> source) {
+            this.source = source;
+        }
+
+        @Override
+        public void close() {
+            LazyEnumerable.close(source);
+        }
+    }
+
+    /**
+     * A read only collection view over a lazy enumerable. This is what gets handed to the eager operators in LavaBase,
+     * so it makes sure that copying it only runs the chain once.
+     *
+     * @param <T> The type of the object in the collection
+     */
+    private static class SourceCollection<T> extends AbstractCollection<T> {
+        private final Iterable<T> owner;
+
+        SourceCollection(Iterable<T> owner) {
+            this.owner = owner;
+        }
+
+        @Override
+        public Iterator<T> iterator() {
+            return owner.iterator();
+        }
+
+        @Override
+        public int size() {
+            int size = 0;
+            for (Iterator<T> iter = iterator(); iter.hasNext(); iter.next())
+                size++;
+
+            return size;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return !iterator().hasNext();
+        }
+
+        @Override
+        public Object[] toArray() {
+            return drain().toArray();
+        }
+
+        @Override
+        public <T1> T1[] toArray(T1[] a) {
+            return drain().toArray(a);
+        }
+
+        private ArrayList<T> drain() {
+            ArrayList<T> ret = new ArrayList<T>();
+            for (T t : owner)
+                ret.add(t);
+
+            return ret;
+        }
+    }
+
+    /**
+     * The start of a lazy chain. Simply hands out the source's iterator.
+     *
+     * @param <T> The type of the object in the source
+     */
+    static class SourceEnumerable<T extends Comparable<? super T>> extends LazyEnumerable<T> {
+        private final Iterable<T> source;
+
+        SourceEnumerable(Iterable<T> source) {
+            super(Estimate.SAME, source);
+            this.source = source;
+        }
+
+        @Override
+        protected Iterator<T> open() {
+            return source.iterator();
+        }
+    }
+
+    /**
+     * Runs the source once, keeping each element as it is first produced. Every iterator reads from the shared buffer
+     * and only pulls from the source when it gets to the end of it, so an enumeration that stops early leaves the rest
+     * of the source unread, and several iterators can be part way through at once, even on different threads.
+     *
+     * @param <T> The type of the object in the source
+     */
+    static class MemoizedEnumerable<T extends Comparable<? super T>> extends LazyEnumerable<T> {
+        private final Iterable<T> source;
+        private final List<T> buffer = new ArrayList<T>();
+        private Iterator<T> iter;
+        private boolean done;
+
+        MemoizedEnumerable(Iterable<T> source) {
+            super(Estimate.SAME, source);
+            this.source = source;
+        }
+
+        @Override
+        public Enumerable<T> memoize() {
+            return this;
+        }
+
+        @Override
+        protected Iterator<T> open() {
+            return new AbstractIterator<T>() {
+                private int index;
+
+                @Override
+                protected T computeNext() {
+                    synchronized (buffer) {
+                        if (index < buffer.size())
+                            return buffer.get(index++);
+
+                        if (done)
+                            return endOfData();
+
+                        if (iter == null)
+                            iter = source.iterator();
+
+                        if (!iter.hasNext()) {
+                            done = true;
+                            iter = null;
+                            return endOfData();
+                        }
+
+                        T next = iter.next();
+                        buffer.add(next);
+                        index++;
+
+                        return next;
+                    }
+                }
+            };
+        }
+    }
+
+    static class DistinctEnumerable<T extends Comparable<? super T>> extends LazyEnumerable<T> {
+        private final Iterable<T> source;
+
+        DistinctEnumerable(Iterable<T> source) {
+            super(Estimate.FILTER, source);
+            this.source = source;
+        }
+
+        @Override
+        protected Iterator<T> open() {
+            final Iterator<T> iter = source.iterator();
+            final HashSet<T> seen = new HashSet<T>();
+
+            return new StageIterator<T>(iter) {
+                @Override
+                protected T computeNext() {
+                    while (iter.hasNext()) {
+                        T next = iter.next();
+                        if (seen.add(next))
+                            return next;
+                    }
+
+                    return endOfData();
+                }
+            };
+        }
+    }
+
+    static class GroupJoinEnumerable<Outer, Inner, Key extends Comparable<? super Key>, Result extends Comparable<? super Result>> extends LazyEnumerable<Result> {
+        private final Collection<Outer> outerCollection;
+        private final Collection<Inner> innerCollection;
+        private final Func<Outer, Key> outerKeyFunc;
+        private final Func<Inner, Key> innerKeyFunc;
+        private final Func2<Outer, Collection<Inner>, Result> resultFunc;
+
+        GroupJoinEnumerable(Collection<Outer> outerCollection,
+                            Collection<Inner> innerCollection,
+                            Func<Outer, Key> outerKeyFunc,
+                            Func<Inner, Key> innerKeyFunc,
+                            Func2<Outer, Collection<Inner>, Result> resultFunc) {
+            super(Estimate.SAME, outerCollection, innerCollection);
+            this.outerCollection = outerCollection;
+            this.innerCollection = innerCollection;
+            this.outerKeyFunc = outerKeyFunc;
+            this.innerKeyFunc = innerKeyFunc;
+            this.resultFunc = resultFunc;
+        }
+
+        @Override
+        protected Iterator<Result> open() {
+            return HashJoin.groupJoin(outerCollection, innerCollection, outerKeyFunc, innerKeyFunc, resultFunc, null);
+        }
+    }
+
+    static class JoinEnumerable<Outer, Inner, Key extends Comparable<? super Key>, Result extends Comparable<? super Result>> extends LazyEnumerable<Result> {
+        private final Collection<Outer> outerCollection;
+        private final Collection<Inner> innerCollection;
+        private final Func<Outer, Key> outerKeyFunc;
+        private final Func<Inner, Key> innerKeyFunc;
+        private final Func2<Outer, Inner, Result> resultFunc;
+
+        JoinEnumerable(Collection<Outer> outerCollection,
+                       Collection<Inner> innerCollection,
+                       Func<Outer, Key> outerKeyFunc,
+                       Func<Inner, Key> innerKeyFunc,
+                       Func2<Outer, Inner, Result> resultFunc) {
+            super(Estimate.JOIN, outerCollection, innerCollection);
+            this.outerCollection = outerCollection;
+            this.innerCollection = innerCollection;
+            this.outerKeyFunc = outerKeyFunc;
+            this.innerKeyFunc = innerKeyFunc;
+            this.resultFunc = resultFunc;
+        }
+
+        @Override
+        protected Iterator<Result> open() {
+            return HashJoin.join(outerCollection, innerCollection, outerKeyFunc, innerKeyFunc, resultFunc, null);
+        }
+    }
+
+    static class SelectEnumerable<T, E extends Comparable<? super E>> extends LazyEnumerable<E> {
+        private final Iterable<T> source;
+        private final Func<T, E> func;
+
+        SelectEnumerable(Iterable<T> source, Func<T, E> func) {
+            super(Estimate.SAME, source);
+            this.source = source;
+            this.func = func;
+        }
+
+        /**
+         * A select doesn't change how many elements there are, so the source is counted without calling the callback.
+         */
+        @Override
+        public int count() {
+            return countOf(source);
+        }
+
+        /**
+         * Two selects in a row become a single stage that runs both callbacks.
+         */
+        @Override
+        public <R extends Comparable<? super R>> Enumerable<R> select(Func<E, R> func) {
+            Preconditions.checkNotNull(func);
+            return new SelectEnumerable<T, R>(source, new ComposedFunction<T, E, R>(this.func, func));
+        }
+
+        @Override
+        protected Iterator<E> open() {
+            return new SelectIterator<T, E>(source.iterator(), func);
+        }
+    }
+
+    /**
+     * Runs the callback on each element as it is read, without the bookkeeping of an {@link AbstractIterator}.
+     */
+    static class SelectIterator<T, E> implements Iterator<E>, Closeable {
+        private final Iterator<T> iter;
+        private final Func<T, E> func;
+
+        SelectIterator(Iterator<T> iter, Func<T, E> func) {
+            this.iter = iter;
+            this.func = func;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return iter.hasNext();
+        }
+
+        @Override
+        public E next() {
+            return func.callback(iter.next());
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void close() {
+            LazyEnumerable.close(iter);
+        }
+    }
+
+    /**
+     * Reads a batch from the source each time the results of the last one have been handed out.
+     */
+    static class SelectBatchedEnumerable<T, E extends Comparable<? super E>> extends LazyEnumerable<E> {
+        private final Iterable<T> source;
+        private final int batchSize;
+        private final Func<List<T>, List<E>> func;
+
+        SelectBatchedEnumerable(Iterable<T> source, int batchSize, Func<List<T>, List<E>> func) {
+            super(Estimate.SAME, source);
+            this.source = source;
+            this.batchSize = batchSize;
+            this.func = func;
+        }
+
+        /**
+         * Like a select, the source is counted without calling the callback.
+         */
+        @Override
+        public int count() {
+            return countOf(source);
+        }
+
+        @Override
+        protected Iterator<E> open() {
+            final Iterator<List<T>> batches = Iterators.partition(source.iterator(), batchSize);
+
+            return new AbstractIterator<E>() {
+                private Iterator<E> results = Collections.<E>emptyList().iterator();
+
+                @Override
+                protected E computeNext() {
+                    while (!results.hasNext()) {
+                        if (!batches.hasNext())
+                            return endOfData();
+
+                        results = Batches.select(func, batches.next()).iterator();
+                    }
+
+                    return results.next();
+                }
+            };
+        }
+    }
+
+    static class SelectManyEnumerable1<Source, Result extends Comparable<? super Result>> extends LazyEnumerable<Result> {
+        private final Iterable<Source> source;
+        private final Func<Source, Collection<Result>> func;
+
+        SelectManyEnumerable1(Iterable<Source> source, Func<Source, Collection<Result>> func) {
+            super(Estimate.UNKNOWN, source);
+            this.source = source;
+            this.func = func;
+        }
+
+        @Override
+        protected Iterator<Result> open() {
+            final Iterator<Source> iter = source.iterator();
+
+            return new AbstractIterator<Result>() {
+                private Iterator<Result> current;
+
+                @Override
+                protected Result computeNext() {
+                    while (current == null || !current.hasNext()) {
+                        if (!iter.hasNext())
+                            return endOfData();
+
+                        Collection<Result> results = func.callback(iter.next());
+                        current = results != null ? results.iterator() : null;
+                    }
+
+                    return current.next();
+                }
+            };
+        }
+    }
+
+    static class SelectManyEnumerable2<Source, Result extends Comparable<? super Result>> extends LazyEnumerable<Result> {
+        private final Iterable<Source> source;
+        private final Func2<Source, Integer, Collection<Result>> func;
+
+        SelectManyEnumerable2(Iterable<Source> source, Func2<Source, Integer, Collection<Result>> func) {
+            super(Estimate.UNKNOWN, source);
+            this.source = source;
+            this.func = func;
+        }
+
+        @Override
+        protected Iterator<Result> open() {
+            final Iterator<Source> iter = source.iterator();
+
+            return new AbstractIterator<Result>() {
+                private Iterator<Result> current;
+                private int index;
+
+                @Override
+                protected Result computeNext() {
+                    while (current == null || !current.hasNext()) {
+                        if (!iter.hasNext())
+                            return endOfData();
+
+                        Collection<Result> results = func.callback(iter.next(), index++);
+                        current = results != null ? results.iterator() : null;
+                    }
+
+                    return current.next();
+                }
+            };
+        }
+    }
+
+    static class SelectManyEnumerable3<Source, TCollection, Result extends Comparable<? super Result>> extends LazyEnumerable<Result> {
+        private final Iterable<Source> source;
+        private final Func<Source, Collection<TCollection>> collectionFunc;
+        private final Func2<Source, TCollection, Result> resultFunc;
+
+        SelectManyEnumerable3(Iterable<Source> source, Func<Source, Collection<TCollection>> collectionFunc, Func2<Source, TCollection, Result> resultFunc) {
+            super(Estimate.UNKNOWN, source);
+            this.source = source;
+            this.collectionFunc = collectionFunc;
+            this.resultFunc = resultFunc;
+        }
+
+        @Override
+        protected Iterator<Result> open() {
+            final Iterator<Source> iter = source.iterator();
+
+            return new AbstractIterator<Result>() {
+                private Source currentSource;
+                private Iterator<TCollection> current;
+
+                @Override
+                protected Result computeNext() {
+                    while (true) {
+                        while (current == null || !current.hasNext()) {
+                            if (!iter.hasNext())
+                                return endOfData();
+
+                            currentSource = iter.next();
+                            current = collectionFunc.callback(currentSource).iterator();
+                        }
+
+                        Result result = resultFunc.callback(currentSource, current.next());
+
+                        if (result != null)
+                            return result;
+                    }
+                }
+            };
+        }
+    }
+
+    static class OrderByEnumerable<T extends Comparable<? super T>> extends LazyEnumerable<T> {
+        private final Iterable<T> source;
+        private final Comparator<? super T> comparator;
+
+        OrderByEnumerable(Iterable<T> source, Comparator<? super T> comparator) {
+            super(Estimate.SAME, source);
+            this.source = source;
+            this.comparator = comparator;
+        }
+
+        @Override
+        protected Iterator<T> open() {
+            List<T> list = new ArrayList<T>();
+            for (T t : source) {
+                list.add(t);
+            }
+
+            Collections.sort(list, comparator);
+            return list.iterator();
+        }
+
+        /**
+         * Sorting doesn't change how many elements there are, so the source is counted without sorting it.
+         */
+        @Override
+        public int count() {
+            return countOf(source);
+        }
+
+        /**
+         * Only the smallest element is needed, so it is found in a single pass instead of sorting everything. Like the
+         * stable sort, the first of several equal elements wins.
+         */
+        @Override
+        public T first() {
+            Iterator<T> iter = source.iterator();
+
+            if (!iter.hasNext())
+                throw new NoSuchElementException("The collection is empty");
+
+            return min(iter);
+        }
+
+        @Override
+        public T firstOrDefault() {
+            return first();
+        }
+
+        private T min(Iterator<T> iter) {
+            T ret = iter.next();
+
+            while (iter.hasNext()) {
+                T next = iter.next();
+                if (comparator.compare(next, ret) < 0)
+                    ret = next;
+            }
+
+            return ret;
+        }
+
+        /**
+         * Filtering before the sort gives the same result, and leaves fewer elements to sort.
+         */
+        @Override
+        @SuppressWarnings("unchecked")
+        public Enumerable<T> where(Predicate<T> func) {
+            Preconditions.checkNotNull(func);
+
+            Iterable<T> filtered = source instanceof LazyEnumerable ? ((LazyEnumerable<T>) source).where(func) : new WhereEnumerable<T>(source, func);
+            return new OrderByEnumerable<T>(filtered, comparator);
+        }
+
+        /**
+         * Only the first {@code count} elements are needed, so they are picked with a bounded heap instead of sorting
+         * everything.
+         */
+        @Override
+        public Enumerable<T> take(int count) {
+            Preconditions.checkArgument(count >= 0);
+            return new TopKEnumerable<T>(source, count, comparator);
+        }
+    }
+
+    static class TopKEnumerable<T extends Comparable<? super T>> extends LazyEnumerable<T> {
+        private final Iterable<T> source;
+        private final int count;
+        private final Comparator<? super T> comparator;
+
+        TopKEnumerable(Iterable<T> source, int count, Comparator<? super T> comparator) {
+            super(Estimate.LIMIT, count, source);
+            this.source = source;
+            this.count = count;
+            this.comparator = comparator;
+        }
+
+        @Override
+        protected Iterator<T> open() {
+            List<T> top = TopK.select(source, count, comparator);
+
+            // Same as take on a source that runs out early
+            if (top.size() < count)
+                throw new IndexOutOfBoundsException();
+
+            return top.iterator();
+        }
+    }
+
+    static class SkipEnumerable<T extends Comparable<? super T>> extends LazyEnumerable<T> {
+        private final Iterable<T> source;
+        private final int count;
+
+        SkipEnumerable(Iterable<T> source, int count) {
+            super(Estimate.SKIP, count, source);
+            this.source = source;
+            this.count = count;
+        }
+
+        @Override
+        protected Iterator<T> open() {
+            Iterator<T> iter = source.iterator();
+
+            for (int i = 0; i < count && iter.hasNext(); i++) {
+                iter.next();
+            }
+
+            return iter;
+        }
+    }
+
+    static class SkipWhileEnumerable<T extends Comparable<? super T>> extends LazyEnumerable<T> {
+        private final Iterable<T> source;
+        private final Predicate<T> func;
+
+        SkipWhileEnumerable(Iterable<T> source, Predicate<T> func) {
+            super(Estimate.FILTER, source);
+            this.source = source;
+            this.func = func;
+        }
+
+        @Override
+        @SuppressWarnings("StatementWithEmptyBody")
+        protected Iterator<T> open() {
+            Iterator<T> iter = source.iterator();
+
+            // Like the eager version, the first element that fails the callback is consumed as well
+            while (iter.hasNext() && func.callback(iter.next())) {
+            }
+
+            return iter;
+        }
+    }
+
+    static class TakeEnumerable<T extends Comparable<? super T>> extends LazyEnumerable<T> {
+        private final Iterable<T> source;
+        private final int count;
+
+        TakeEnumerable(Iterable<T> source, int count) {
+            super(Estimate.LIMIT, count, source);
+            this.source = source;
+            this.count = count;
+        }
+
+        @Override
+        protected Iterator<T> open() {
+            final Iterator<T> iter = source.iterator();
+
+            return new StageIterator<T>(iter) {
+                private int taken;
+
+                @Override
+                protected T computeNext() {
+                    if (taken == count) {
+                        close();
+                        return endOfData();
+                    }
+
+                    if (!iter.hasNext())
+                        throw new IndexOutOfBoundsException();
+
+                    taken++;
+                    return iter.next();
+                }
+            };
+        }
+    }
+
+    static class TakeWhileEnumerable<T extends Comparable<? super T>> extends LazyEnumerable<T> {
+        private final Iterable<T> source;
+        private final Predicate<T> func;
+
+        TakeWhileEnumerable(Iterable<T> source, Predicate<T> func) {
+            super(Estimate.FILTER, source);
+            this.source = source;
+            this.func = func;
+        }
+
+        @Override
+        protected Iterator<T> open() {
+            final Iterator<T> iter = source.iterator();
+
+            return new StageIterator<T>(iter) {
+                @Override
+                protected T computeNext() {
+                    if (iter.hasNext()) {
+                        T next = iter.next();
+                        if (func.callback(next))
+                            return next;
+
+                        close();
+                    }
+
+                    return endOfData();
+                }
+            };
+        }
+    }
+
+    static class WhereEnumerable<T extends Comparable<? super T>> extends LazyEnumerable<T> {
+        private final Iterable<T> source;
+        private final Predicate<T> func;
+
+        WhereEnumerable(Iterable<T> source, Predicate<T> func) {
+            super(Estimate.FILTER, source);
+            this.source = source;
+            this.func = func;
+        }
+
+        /**
+         * Two wheres in a row become a single stage that checks both callbacks.
+         */
+        @Override
+        public Enumerable<T> where(Predicate<T> func) {
+            Preconditions.checkNotNull(func);
+            return new WhereEnumerable<T>(source, new AndPredicate<T>(this.func, func));
+        }
+
+        @Override
+        protected Iterator<T> open() {
+            final Iterator<T> iter = source.iterator();
+
+            return new StageIterator<T>(iter) {
+                @Override
+                protected T computeNext() {
+                    while (iter.hasNext()) {
+                        T next = iter.next();
+                        if (func.callback(next))
+                            return next;
+                    }
+
+                    return endOfData();
+                }
+            };
+        }
+    }
+
+    /**
+     * Reads a batch from the source each time the elements kept from the last one have been handed out.
+     */
+    static class WhereBatchedEnumerable<T extends Comparable<? super T>> extends LazyEnumerable<T> {
+        private final Iterable<T> source;
+        private final int batchSize;
+        private final Func<List<T>, List<Boolean>> func;
+
+        WhereBatchedEnumerable(Iterable<T> source, int batchSize, Func<List<T>, List<Boolean>> func) {
+            super(Estimate.FILTER, source);
+            this.source = source;
+            this.batchSize = batchSize;
+            this.func = func;
+        }
+
+        @Override
+        protected Iterator<T> open() {
+            final Iterator<List<T>> batches = Iterators.partition(source.iterator(), batchSize);
+
+            return new AbstractIterator<T>() {
+                private Iterator<T> kept = Collections.<T>emptyList().iterator();
+
+                @Override
+                protected T computeNext() {
+                    while (!kept.hasNext()) {
+                        if (!batches.hasNext())
+                            return endOfData();
+
+                        List<T> next = new ArrayList<T>();
+                        Batches.where(func, batches.next(), next);
+                        kept = next.iterator();
+                    }
+
+                    return kept.next();
+                }
+            };
+        }
+    }
+
+    static class ZipEnumerable<First, Second, Result extends Comparable<? super Result>> extends LazyEnumerable<Result> {
+        private final Iterable<First> first;
+        private final Iterable<Second> second;
+        private final Func2<First, Second, Result> func;
+
+        ZipEnumerable(Iterable<First> first, Iterable<Second> second, Func2<First, Second, Result> func) {
+            super(Estimate.SAME, first, second);
+            this.first = first;
+            this.second = second;
+            this.func = func;
+        }
+
+        @Override
+        protected Iterator<Result> open() {
+            final Iterator<First> firstIterator = first.iterator();
+            final Iterator<Second> secondIterator = second.iterator();
+
+            return new AbstractIterator<Result>() {
+                @Override
+                protected Result computeNext() {
+                    while (firstIterator.hasNext() || secondIterator.hasNext()) {
+                        Result result = func.callback(firstIterator.next(), secondIterator.next());
+                        if (result != null)
+                            return result;
+                    }
+
+                    return endOfData();
+                }
+            };
+        }
+    }
+}
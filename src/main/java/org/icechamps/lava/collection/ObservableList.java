@@ -0,0 +1,228 @@
+package org.icechamps.lava.collection;
+
+import org.icechamps.lava.callback.ChangeListener;
+import org.icechamps.lava.interfaces.ObservableCollection;
+import org.icechamps.lava.util.ChangeListeners;
+
+import java.util.*;
+
+/**
+ * <p>
+ * A {@link LavaList} that tells its listeners about every element that is added or removed. Replacing an element with
+ * {@link #set(int, Comparable)} counts as removing the old one and adding the new one.
+ * </p>
+ * <p>
+ * Changes made through the list, its iterators and its list iterators are all seen. Changes made through a
+ * {@link #subList(int, int)} view would not be, so those views are read only.
+ * </p>
+ *
+ * @param <T> The type of the object in the list
+ */
+public class ObservableList<T extends Comparable<? super T>> extends LavaList<T> implements ObservableCollection<T> {
+    private final ChangeListeners<T> listeners = new ChangeListeners<T>();
+
+    public ObservableList() {
+    }
+
+    public ObservableList(Collection<T> col) {
+        super(col);
+    }
+
+    @Override
+    public void addListener(ChangeListener<? super T> listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void removeListener(ChangeListener<? super T> listener) {
+        listeners.remove(listener);
+    }
+
+    @Override
+    public long getVersion() {
+        return listeners.getVersion();
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return listIterator();
+    }
+
+    @Override
+    public boolean add(T t) {
+        super.add(t);
+        listeners.added(t);
+        return true;
+    }
+
+    @Override
+    public void add(int i, T t) {
+        super.add(i, t);
+        listeners.added(t);
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends T> c) {
+        return addAll(size(), c);
+    }
+
+    @Override
+    public boolean addAll(int i, Collection<? extends T> ts) {
+        List<T> added = new ArrayList<T>(ts);
+        super.addAll(i, added);
+
+        for (T t : added) {
+            listeners.added(t);
+        }
+
+        return !added.isEmpty();
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        // Removing by index hands the listeners the element that was actually in the list
+        int i = indexOf(o);
+        if (i < 0)
+            return false;
+
+        remove(i);
+        return true;
+    }
+
+    @Override
+    public T remove(int i) {
+        T ret = super.remove(i);
+        listeners.removed(ret);
+        return ret;
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        return removeMatching(c, true);
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> c) {
+        return removeMatching(c, false);
+    }
+
+    @Override
+    public void clear() {
+        List<T> removed = new ArrayList<T>(this);
+        super.clear();
+
+        for (T t : removed) {
+            listeners.removed(t);
+        }
+    }
+
+    @Override
+    public T set(int i, T t) {
+        T ret = super.set(i, t);
+        listeners.removed(ret);
+        listeners.added(t);
+        return ret;
+    }
+
+    @Override
+    public ListIterator<T> listIterator() {
+        return listIterator(0);
+    }
+
+    @Override
+    public ListIterator<T> listIterator(int i) {
+        return new ObservedListIterator(super.listIterator(i));
+    }
+
+    @Override
+    public List<T> subList(int i, int i2) {
+        return Collections.unmodifiableList(super.subList(i, i2));
+    }
+
+    private boolean removeMatching(Collection<?> c, boolean contained) {
+        List<T> kept = new ArrayList<T>(size());
+        List<T> removed = new ArrayList<T>();
+
+        // Rebuilding the list keeps this a single pass, where removing elements one at a time would shift the rest
+        for (T t : collection) {
+            if (c.contains(t) == contained)
+                removed.add(t);
+            else
+                kept.add(t);
+        }
+
+        if (removed.isEmpty())
+            return false;
+
+        super.clear();
+        super.addAll(kept);
+
+        for (T t : removed) {
+            listeners.removed(t);
+        }
+
+        return true;
+    }
+
+    /**
+     * Passes every change made through a list iterator on to the listeners.
+     */
+    class ObservedListIterator implements ListIterator<T> {
+        private final ListIterator<T> iter;
+        private T last;
+
+        ObservedListIterator(ListIterator<T> iter) {
+            this.iter = iter;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return iter.hasNext();
+        }
+
+        @Override
+        public T next() {
+            return last = iter.next();
+        }
+
+        @Override
+        public boolean hasPrevious() {
+            return iter.hasPrevious();
+        }
+
+        @Override
+        public T previous() {
+            return last = iter.previous();
+        }
+
+        @Override
+        public int nextIndex() {
+            return iter.nextIndex();
+        }
+
+        @Override
+        public int previousIndex() {
+            return iter.previousIndex();
+        }
+
+        @Override
+        public void remove() {
+            iter.remove();
+            listeners.removed(last);
+        }
+
+        @Override
+        public void set(T t) {
+            iter.set(t);
+            listeners.removed(last);
+            listeners.added(t);
+            last = t;
+        }
+
+        @Override
+        public void add(T t) {
+            iter.add(t);
+            listeners.added(t);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package org.icechamps.lava.collection;
+
+import org.icechamps.lava.callback.ChangeListener;
+import org.icechamps.lava.interfaces.ObservableCollection;
+import org.icechamps.lava.util.ChangeListeners;
+
+import java.util.*;
+
+/**
+ * A {@link LavaSet} that tells its listeners about every element that is added or removed. Adding an element that is
+ * already in the set, or removing one that isn't, doesn't change anything and so isn't passed on.
+ *
+ * @param <T> The type of the object in the set
+ */
+public class ObservableSet<T extends Comparable<? super T>> extends LavaSet<T> implements ObservableCollection<T> {
+    private final ChangeListeners<T> listeners = new ChangeListeners<T>();
+
+    public ObservableSet() {
+    }
+
+    public ObservableSet(Set<T> set) {
+        super(set);
+    }
+
+    @Override
+    public void addListener(ChangeListener<? super T> listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void removeListener(ChangeListener<? super T> listener) {
+        listeners.remove(listener);
+    }
+
+    @Override
+    public long getVersion() {
+        return listeners.getVersion();
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        final Iterator<T> iter = super.iterator();
+
+        return new Iterator<T>() {
+            private T last;
+
+            @Override
+            public boolean hasNext() {
+                return iter.hasNext();
+            }
+
+            @Override
+            public T next() {
+                return last = iter.next();
+            }
+
+            @Override
+            public void remove() {
+                iter.remove();
+                listeners.removed(last);
+            }
+        };
+    }
+
+    @Override
+    public boolean add(T t) {
+        if (!super.add(t))
+            return false;
+
+        listeners.added(t);
+        return true;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean remove(Object o) {
+        if (!super.remove(o))
+            return false;
+
+        // Only an element equal to o can have been removed, and the set can't tell the two apart anyway
+        listeners.removed((T) o);
+        return true;
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends T> ts) {
+        boolean ret = false;
+
+        for (T t : ts) {
+            ret |= add(t);
+        }
+
+        return ret;
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> objects) {
+        return removeMatching(objects, true);
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> objects) {
+        return removeMatching(objects, false);
+    }
+
+    @Override
+    public void clear() {
+        List<T> removed = new ArrayList<T>(this);
+        super.clear();
+
+        for (T t : removed) {
+            listeners.removed(t);
+        }
+    }
+
+    private boolean removeMatching(Collection<?> objects, boolean contained) {
+        boolean ret = false;
+        Iterator<T> iter = iterator();
+
+        while (iter.hasNext()) {
+            if (objects.contains(iter.next()) == contained) {
+                iter.remove();
+                ret = true;
+            }
+        }
+
+        return ret;
+    }
+}
@@ -0,0 +1,546 @@
+package org.icechamps.lava.collection;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Ordering;
+import org.icechamps.lava.callback.Func;
+import org.icechamps.lava.callback.Func2;
+import org.icechamps.lava.callback.Predicate;
+import org.icechamps.lava.sort.ParallelSort;
+import org.icechamps.lava.util.Batches;
+import org.icechamps.lava.util.FuncPredicate;
+import org.icechamps.lava.util.Tasks;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * <p>
+ * An Enumerable that runs its callback heavy operators on several threads at once.
+ * </p>
+ * <p>
+ * where, whereBatched, select, selectBatched, selectMany, all, any, min, max and the two argument aggregate split the
+ * elements into contiguous chunks and hand each chunk to an {@link ExecutorService}. The batched operators cut chunks
+ * at batch boundaries, so every batch but the last is full. The thread that asked for the result works through the
+ * chunks as well, so a callback can safely start a parallel query of its own. Every other operator runs on the calling
+ * thread, exactly like it does on any other Enumerable.
+ * </p>
+ * <p>
+ * orderBy and orderByDescending with no arguments or a comparator sort with {@link ParallelSort}, which sorts chunks of
+ * a large list on the executor and merges them. The order is the same as a sequential sort's, ties included.
+ * </p>
+ * <p>
+ * By default the output of where, select, selectMany and their batched versions keeps the order of the source. Calling {@link #unordered()}
+ * lets the results of each chunk be appended as soon as the chunk finishes instead, which is cheaper when the order
+ * doesn't matter.
+ * </p>
+ * <p>
+ * Callbacks run concurrently, so they must be safe to call from several threads at once.
+ * </p>
+ *
+ * @param <T> The type of the object in the enumerable
+ */
+public class ParallelEnumerable<T extends Comparable<? super T>> extends LavaEnumerable<T> {
+    /**
+     * Collections smaller than this are never split.
+     */
+    static final int MIN_CHUNK_SIZE = 1024;
+
+    private static final int PARALLELISM = Runtime.getRuntime().availableProcessors();
+
+    private final List<T> list;
+    private final ExecutorService executor;
+    private final boolean ordered;
+
+    /**
+     * Creates a new parallel enumerable over the collection, using the shared executor.
+     *
+     * @param col The source collection
+     */
+    public ParallelEnumerable(Collection<T> col) {
+        this(col, getDefaultExecutor(), true);
+    }
+
+    /**
+     * Creates a new parallel enumerable over the collection.
+     *
+     * @param col      The source collection
+     * @param executor The executor the chunks are handed to
+     * @param ordered  True if where, select and selectMany should keep the order of the source
+     */
+    public ParallelEnumerable(Collection<T> col, ExecutorService executor, boolean ordered) {
+        Preconditions.checkNotNull(col);
+        Preconditions.checkNotNull(executor);
+
+        this.list = new ArrayList<T>(col);
+        this.executor = executor;
+        this.ordered = ordered;
+
+        collection = list;
+    }
+
+    /**
+     * Wraps a list this class built itself, without copying it, and runs on the executor of the enumerable it came
+     * from.
+     */
+    private ParallelEnumerable(List<T> list, ParallelEnumerable<?> from, boolean ordered) {
+        this.list = list;
+        this.executor = from.executor;
+        this.ordered = ordered;
+
+        collection = list;
+    }
+
+    /**
+     * Returns the executor that is used when one isn't given. It has one daemon thread per available processor.
+     *
+     * @return The shared executor
+     */
+    public static ExecutorService getDefaultExecutor() {
+        return DefaultExecutorHolder.EXECUTOR;
+    }
+
+    /**
+     * Returns a parallel enumerable over the same elements whose where, select and selectMany results keep the order
+     * of the source.
+     *
+     * @return An ordered parallel enumerable
+     */
+    public ParallelEnumerable<T> ordered() {
+        return ordered ? this : new ParallelEnumerable<T>(list, this, true);
+    }
+
+    /**
+     * Returns a parallel enumerable over the same elements whose where, select and selectMany results are appended in
+     * whatever order the chunks finish in.
+     *
+     * @return An unordered parallel enumerable
+     */
+    public ParallelEnumerable<T> unordered() {
+        return ordered ? new ParallelEnumerable<T>(list, this, false) : this;
+    }
+
+    /**
+     * Checks if where, select and selectMany keep the order of the source
+     *
+     * @return True if the order is kept, false if not
+     */
+    public boolean isOrdered() {
+        return ordered;
+    }
+
+    /**
+     * Aggregates the objects in parallel. Each chunk is aggregated on its own using the callback function, starting
+     * from null, and the partial results are then combined from left to right in source order.
+     *
+     * @param func        The callback that aggregates the objects
+     * @param combineFunc The callback that combines the partial results of two neighbouring chunks
+     * @param <V>         The type of the object to return
+     * @return The aggregated object from the collection
+     */
+    public <V> V aggregate(final Func2<T, V, V> func, Func2<V, V, V> combineFunc) {
+        Preconditions.checkNotNull(func);
+        Preconditions.checkNotNull(combineFunc);
+
+        List<V> partials = runChunks(new ChunkFunc<T, V>() {
+            @Override
+            public V apply(List<T> chunk, int offset) {
+                return aggregate(chunk, func);
+            }
+        }, true);
+
+        V ret = null;
+        boolean first = true;
+
+        for (V partial : partials) {
+            ret = first ? partial : combineFunc.callback(ret, partial);
+            first = false;
+        }
+
+        return ret;
+    }
+
+    @Override
+    public boolean all(final Predicate<T> func) {
+        Preconditions.checkNotNull(func);
+
+        final AtomicBoolean failed = new AtomicBoolean();
+
+        runChunks(new ChunkFunc<T, Void>() {
+            @Override
+            public Void apply(List<T> chunk, int offset) {
+                for (T t : chunk) {
+                    if (failed.get())
+                        break;
+
+                    if (!func.callback(t)) {
+                        failed.set(true);
+                        break;
+                    }
+                }
+
+                return null;
+            }
+        }, false);
+
+        return !failed.get();
+    }
+
+    @Override
+    public boolean any(final Predicate<T> func) {
+        Preconditions.checkNotNull(func);
+
+        final AtomicBoolean found = new AtomicBoolean();
+
+        runChunks(new ChunkFunc<T, Void>() {
+            @Override
+            public Void apply(List<T> chunk, int offset) {
+                for (T t : chunk) {
+                    if (found.get())
+                        break;
+
+                    if (func.callback(t)) {
+                        found.set(true);
+                        break;
+                    }
+                }
+
+                return null;
+            }
+        }, false);
+
+        return found.get();
+    }
+
+    @Override
+    public T max() {
+        return max(runChunks(new ChunkFunc<T, T>() {
+            @Override
+            public T apply(List<T> chunk, int offset) {
+                return max(chunk);
+            }
+        }, true));
+    }
+
+    @Override
+    public <E extends Comparable<? super E>> E max(final Func<T, E> func) {
+        Preconditions.checkNotNull(func);
+
+        return max(runChunks(new ChunkFunc<T, E>() {
+            @Override
+            public E apply(List<T> chunk, int offset) {
+                return max(chunk, func);
+            }
+        }, true));
+    }
+
+    @Override
+    public T min() {
+        return min(runChunks(new ChunkFunc<T, T>() {
+            @Override
+            public T apply(List<T> chunk, int offset) {
+                return min(chunk);
+            }
+        }, true));
+    }
+
+    @Override
+    public <E extends Comparable<? super E>> E min(final Func<T, E> func) {
+        Preconditions.checkNotNull(func);
+
+        return min(runChunks(new ChunkFunc<T, E>() {
+            @Override
+            public E apply(List<T> chunk, int offset) {
+                return min(chunk, func);
+            }
+        }, true));
+    }
+
+    @Override
+    public <E extends Comparable<? super E>> ParallelEnumerable<E> select(final Func<T, E> func) {
+        Preconditions.checkNotNull(func);
+
+        return concat(runChunks(new ChunkFunc<T, List<E>>() {
+            @Override
+            public List<E> apply(List<T> chunk, int offset) {
+                ArrayList<E> ret = new ArrayList<E>(chunk.size());
+
+                for (T t : chunk) {
+                    ret.add(func.callback(t));
+                }
+
+                return ret;
+            }
+        }, ordered));
+    }
+
+    @Override
+    public <E extends Comparable<? super E>> ParallelEnumerable<E> selectBatched(final int batchSize, final Func<List<T>, List<E>> func) {
+        Preconditions.checkArgument(batchSize > 0, "A batch needs at least one element");
+        Preconditions.checkNotNull(func);
+
+        return concat(runChunks(new ChunkFunc<T, List<E>>() {
+            @Override
+            public List<E> apply(List<T> chunk, int offset) {
+                ArrayList<E> ret = new ArrayList<E>(chunk.size());
+
+                for (List<T> batch : Lists.partition(chunk, batchSize)) {
+                    ret.addAll(Batches.select(func, Collections.unmodifiableList(batch)));
+                }
+
+                return ret;
+            }
+        }, ordered, batchSize));
+    }
+
+    @Override
+    public <Result extends Comparable<? super Result>> ParallelEnumerable<Result> selectMany(final Func<T, Collection<Result>> resultFunc) {
+        Preconditions.checkNotNull(resultFunc);
+
+        return concat(runChunks(new ChunkFunc<T, List<Result>>() {
+            @Override
+            public List<Result> apply(List<T> chunk, int offset) {
+                ArrayList<Result> ret = new ArrayList<Result>();
+
+                for (T t : chunk) {
+                    Collection<Result> results = resultFunc.callback(t);
+
+                    if (results != null)
+                        ret.addAll(results);
+                }
+
+                return ret;
+            }
+        }, ordered));
+    }
+
+    @Override
+    public <Result extends Comparable<? super Result>> ParallelEnumerable<Result> selectMany(final Func2<T, Integer, Collection<Result>> resultFunc) {
+        Preconditions.checkNotNull(resultFunc);
+
+        return concat(runChunks(new ChunkFunc<T, List<Result>>() {
+            @Override
+            public List<Result> apply(List<T> chunk, int offset) {
+                ArrayList<Result> ret = new ArrayList<Result>();
+
+                int index = offset;
+                for (T t : chunk) {
+                    Collection<Result> results = resultFunc.callback(t, index++);
+
+                    if (results != null)
+                        ret.addAll(results);
+                }
+
+                return ret;
+            }
+        }, ordered));
+    }
+
+    @Override
+    public <TCollection, Result extends Comparable<? super Result>> ParallelEnumerable<Result> selectMany(final Func<T, Collection<TCollection>> collectionFunc,
+                                                                                                         final Func2<T, TCollection, Result> resultFunc) {
+        Preconditions.checkNotNull(collectionFunc);
+        Preconditions.checkNotNull(resultFunc);
+
+        return concat(runChunks(new ChunkFunc<T, List<Result>>() {
+            @Override
+            public List<Result> apply(List<T> chunk, int offset) {
+                ArrayList<Result> ret = new ArrayList<Result>();
+
+                for (T t : chunk) {
+                    for (TCollection tCollection : collectionFunc.callback(t)) {
+                        Result result = resultFunc.callback(t, tCollection);
+
+                        if (result != null)
+                            ret.add(result);
+                    }
+                }
+
+                return ret;
+            }
+        }, ordered));
+    }
+
+    @Override
+    public ParallelEnumerable<T> orderBy() {
+        return sort(Ordering.<T>natural());
+    }
+
+    @Override
+    public ParallelEnumerable<T> orderBy(Comparator<T> comparator) {
+        return sort(comparator != null ? comparator : Ordering.<T>natural());
+    }
+
+    @Override
+    public ParallelEnumerable<T> orderByDescending() {
+        return sort(Collections.reverseOrder(Ordering.<T>natural()));
+    }
+
+    @Override
+    public ParallelEnumerable<T> orderByDescending(Comparator<T> comparator) {
+        // Sorting by the reversed comparator keeps equal elements in their original order
+        return sort(Collections.reverseOrder(comparator != null ? comparator : Ordering.<T>natural()));
+    }
+
+    @Override
+    public ParallelEnumerable<T> where(Func<T, Boolean> func) {
+        return where(new FuncPredicate<T>(func));
+    }
+
+    @Override
+    public ParallelEnumerable<T> where(final Predicate<T> func) {
+        Preconditions.checkNotNull(func);
+
+        return concat(runChunks(new ChunkFunc<T, List<T>>() {
+            @Override
+            public List<T> apply(List<T> chunk, int offset) {
+                ArrayList<T> ret = new ArrayList<T>();
+
+                for (T t : chunk) {
+                    if (func.callback(t))
+                        ret.add(t);
+                }
+
+                return ret;
+            }
+        }, ordered));
+    }
+
+    @Override
+    public ParallelEnumerable<T> whereBatched(final int batchSize, final Func<List<T>, List<Boolean>> func) {
+        Preconditions.checkArgument(batchSize > 0, "A batch needs at least one element");
+        Preconditions.checkNotNull(func);
+
+        return concat(runChunks(new ChunkFunc<T, List<T>>() {
+            @Override
+            public List<T> apply(List<T> chunk, int offset) {
+                ArrayList<T> ret = new ArrayList<T>();
+
+                for (List<T> batch : Lists.partition(chunk, batchSize)) {
+                    Batches.where(func, Collections.unmodifiableList(batch), ret);
+                }
+
+                return ret;
+            }
+        }, ordered, batchSize));
+    }
+
+    /**
+     * Sorts a copy of the elements stably into a new parallel enumerable with the same settings as this one.
+     *
+     * @param comparator The comparator to sort with
+     * @return The new parallel enumerable
+     */
+    private ParallelEnumerable<T> sort(Comparator<? super T> comparator) {
+        List<T> ret = new ArrayList<T>(list);
+        ParallelSort.sort(ret, comparator, executor, PARALLELISM);
+
+        return new ParallelEnumerable<T>(ret, this, ordered);
+    }
+
+    /**
+     * Joins the results of each chunk into a new parallel enumerable with the same settings as this one.
+     *
+     * @param parts The results of each chunk
+     * @param <E>   The type of the object in the results
+     * @return The new parallel enumerable
+     */
+    private <E extends Comparable<? super E>> ParallelEnumerable<E> concat(List<List<E>> parts) {
+        int size = 0;
+        for (List<E> part : parts) {
+            size += part.size();
+        }
+
+        ArrayList<E> ret = new ArrayList<E>(size);
+        for (List<E> part : parts) {
+            ret.addAll(part);
+        }
+
+        return new ParallelEnumerable<E>(ret, this, ordered);
+    }
+
+    /**
+     * Splits the elements into chunks and runs the function over each of them using {@link Tasks#invokeAll}.
+     *
+     * @param func    The function to run over each chunk
+     * @param inOrder True if the results should be in chunk order, false if they should be in the order the chunks finished
+     * @param <R>     The type of the result of each chunk
+     * @return The results of every chunk
+     */
+    <R> List<R> runChunks(ChunkFunc<T, R> func, boolean inOrder) {
+        return runChunks(func, inOrder, 1);
+    }
+
+    /**
+     * Splits the elements into chunks whose sizes are a multiple of {@code unit} and runs the function over each of
+     * them using {@link Tasks#invokeAll}.
+     *
+     * @param func    The function to run over each chunk
+     * @param inOrder True if the results should be in chunk order, false if they should be in the order the chunks finished
+     * @param unit    The number every chunk size but the last is a multiple of
+     * @param <R>     The type of the result of each chunk
+     * @return The results of every chunk
+     */
+    <R> List<R> runChunks(final ChunkFunc<T, R> func, final boolean inOrder, int unit) {
+        int size = list.size();
+
+        if (size <= Math.max(MIN_CHUNK_SIZE, unit)) {
+            return Collections.singletonList(func.apply(list, 0));
+        }
+
+        int chunkSize = Math.max(MIN_CHUNK_SIZE, (size + PARALLELISM * 4 - 1) / (PARALLELISM * 4));
+        chunkSize = (chunkSize + unit - 1) / unit * unit;
+
+        final List<R> finished = Collections.synchronizedList(new ArrayList<R>());
+        List<Callable<R>> tasks = new ArrayList<Callable<R>>();
+
+        for (int start = 0; start < size; start += chunkSize) {
+            final List<T> chunk = list.subList(start, Math.min(size, start + chunkSize));
+            final int offset = start;
+
+            tasks.add(new Callable<R>() {
+                @Override
+                public R call() throws Exception {
+                    R result = func.apply(chunk, offset);
+
+                    if (!inOrder)
+                        finished.add(result);
+
+                    return result;
+                }
+            });
+        }
+
+        List<R> ret = Tasks.invokeAll(executor, tasks);
+
+        if (!inOrder) {
+            return new ArrayList<R>(finished);
+        }
+
+        return ret;
+    }
+
+    /**
+     * The work done on a single chunk
+     *
+     * @param <T> The type of the object in the chunk
+     * @param <R> The type of the result of the chunk
+     */
+    interface ChunkFunc<T, R> {
+        R apply(List<T> chunk, int offset);
+    }
+
+    private static class DefaultExecutorHolder {
+        static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(PARALLELISM, new ThreadFactory() {
+            private int count;
+
+            @Override
+            public synchronized Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "lava-parallel-" + count++);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+}
@@ -0,0 +1,15 @@
+package org.icechamps.lava.exception;
+
+/**
+ * Thrown when a file that an Enumerable reads its elements from can't be read, or doesn't hold whole records.
+ */
+public class FileSourceException extends RuntimeException {
+
+    public FileSourceException(String message) {
+        super(message);
+    }
+
+    public FileSourceException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
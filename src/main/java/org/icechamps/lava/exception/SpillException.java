@@ -0,0 +1,11 @@
+package org.icechamps.lava.exception;
+
+/**
+ * Thrown when an operator that spills to disk can't write or read back one of its temporary files.
+ */
+public class SpillException extends RuntimeException {
+
+    public SpillException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
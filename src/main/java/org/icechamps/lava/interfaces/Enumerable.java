@@ -2,8 +2,19 @@ package org.icechamps.lava.interfaces;
 
 import org.icechamps.lava.callback.Func;
 import org.icechamps.lava.callback.Func2;
+import org.icechamps.lava.callback.Predicate;
+import org.icechamps.lava.callback.ToDoubleFunc;
+import org.icechamps.lava.callback.ToIntFunc;
+import org.icechamps.lava.callback.ToLongFunc;
+import org.icechamps.lava.collection.DoubleEnumerable;
+import org.icechamps.lava.collection.IntEnumerable;
+import org.icechamps.lava.collection.LongEnumerable;
+import org.icechamps.lava.plan.Plan;
+import org.icechamps.lava.spill.Serializer;
+import org.icechamps.lava.spill.SpillConfig;
 
 import java.util.*;
+import java.util.concurrent.ExecutorService;
 
 /**
  * User: Robert.Diaz
@@ -30,6 +41,22 @@ public interface Enumerable<T> extends Iterable<T> {
      */
     public boolean all(Func<T, Boolean> func);
 
+    /**
+     * Iterates over the given collection and checks each element using the callback function.
+     *
+     * @param func The func function to use on the collection's elements
+     * @return Returns true if all of the elements return true for the func. Returns false if a single element doesn't match.
+     */
+    public boolean all(Predicate<T> func);
+
+    /**
+     * Runs any deferred operators once, throwing the results away, and describes the operators that produced this
+     * enumerable along with the rows, time and allocations each one actually took.
+     *
+     * @return The plan of this enumerable, with the actual numbers filled in
+     */
+    public Plan analyze();
+
     /**
      * Checks if there are any elements in the collection.
      *
@@ -37,6 +64,22 @@ public interface Enumerable<T> extends Iterable<T> {
      */
     public boolean any();
 
+    /**
+     * Checks if any element in the collection matches the callback function. Stops at the first match.
+     *
+     * @param func The func function to use on the collection's elements
+     * @return True if a single element returns true for the func, false if none do.
+     */
+    public boolean any(Func<T, Boolean> func);
+
+    /**
+     * Checks if any element in the collection matches the callback function. Stops at the first match.
+     *
+     * @param func The func function to use on the collection's elements
+     * @return True if a single element returns true for the func, false if none do.
+     */
+    public boolean any(Predicate<T> func);
+
     /**
      * Returns the number of elements in the collection
      *
@@ -82,6 +125,16 @@ public interface Enumerable<T> extends Iterable<T> {
      */
     public Enumerable<T> except(Collection<T> second);
 
+    /**
+     * Describes the operators that produced this enumerable as a tree, with an estimate of how many rows each one
+     * produces. Operators that have already run also show their actual rows, along with their time and allocations if
+     * they ran inside {@link org.icechamps.lava.Lava#profile}. Deferred operators are not run, so use
+     * {@link #analyze()} to see their actual numbers.
+     *
+     * @return The plan of this enumerable
+     */
+    public Plan explain();
+
     /**
      * Returns the first object in the collection.
      *
@@ -97,6 +150,14 @@ public interface Enumerable<T> extends Iterable<T> {
      */
     public T first(Func<T, Boolean> func);
 
+    /**
+     * Returns the first object in the collection that matches the callback function. Throws an exception if nothing is found.
+     *
+     * @param func The callback function to use
+     * @return The first match the callback function finds
+     */
+    public T first(Predicate<T> func);
+
     /**
      * Returns the first item in the collection, or null if there isn't one. Throws an exception if the collection is empty
      *
@@ -112,6 +173,14 @@ public interface Enumerable<T> extends Iterable<T> {
      */
     public T firstOrDefault(Func<T, Boolean> func);
 
+    /**
+     * Returns the first item in the collection using the callback function, or null if there isn't one.
+     *
+     * @param func The callback function to use
+     * @return The first item in the collection, or null.
+     */
+    public T firstOrDefault(Predicate<T> func);
+
     /**
      * Joins the two collections based on a common key and groups the results together for the result function.
      *
@@ -129,6 +198,24 @@ public interface Enumerable<T> extends Iterable<T> {
                                                                                                                                 Func<Inner, Key> innerKeyFunc,
                                                                                                                                 Func2<T, Collection<Inner>, Result> resultFunc);
 
+    /**
+     * Joins the two collections on a set of common keys using the supplied callback functions. The results come out in
+     * the order of this collection, and the matches of each element in the order of the inner collection.
+     *
+     * @param innerCollection The second collection to join on
+     * @param outerKeyFunc    The callback function used to generate a common key from this collection
+     * @param innerKeyFunc    The callback function used to generate a common key from the second collection
+     * @param resultFunc      The callback function used to generate a result object based on the outputs of the other callback functions
+     * @param <Inner>         The type of the object in the second collection
+     * @param <Key>           The type of the common key
+     * @param <Result>        The type of the result object
+     * @return An enumerable instance that contains the results of the join
+     */
+    public <Inner, Key extends Comparable<? super Key>, Result extends Comparable<? super Result>> Enumerable<Result> join(Collection<Inner> innerCollection,
+                                                                                                                           Func<T, Key> outerKeyFunc,
+                                                                                                                           Func<Inner, Key> innerKeyFunc,
+                                                                                                                           Func2<T, Inner, Result> resultFunc);
+
     /**
      * Creates an intersection between the two collections. The resulting Enumerable implementation will be of the same type as the first collection.
      *
@@ -154,6 +241,16 @@ public interface Enumerable<T> extends Iterable<T> {
      */
     public T last(Func<T, Boolean> func);
 
+    /**
+     * Obtains the last element in the collection that satisfies the given callback function
+     *
+     * @param func The callback function to use
+     * @return The last element in the list that satisfies the callback
+     * @throws java.util.NoSuchElementException
+     *          If no elements are found
+     */
+    public T last(Predicate<T> func);
+
     /**
      * Obtains the last element in the collection, or returns null.
      *
@@ -169,6 +266,29 @@ public interface Enumerable<T> extends Iterable<T> {
      */
     public T lastOrDefault(Func<T, Boolean> func);
 
+    /**
+     * Obtains the last element in the collection that satisfies the given callback function, or null
+     *
+     * @param func The callback function to use
+     * @return The last element to satisfy the callback function, or null
+     */
+    public T lastOrDefault(Predicate<T> func);
+
+    /**
+     * Returns a deferred view of this enumerable. Operators chained onto the view build up an iterator pipeline that is
+     * only run when the result is enumerated, so no intermediate collections are created along the way.
+     *
+     * @return A lazy Enumerable over the elements of this enumerable
+     */
+    public Enumerable<T> lazy();
+
+    /**
+     * Runs any deferred operators and copies the results into a new, eagerly evaluated Enumerable.
+     *
+     * @return A new Enumerable containing the current elements of this enumerable
+     */
+    public Enumerable<T> materialize();
+
     /**
      * Returns the largest value from the collection, using the default comparison method
      *
@@ -185,6 +305,14 @@ public interface Enumerable<T> extends Iterable<T> {
      */
     public <E extends Comparable<? super E>> E max(Func<T, E> func);
 
+    /**
+     * Caches the elements of this enumerable as they are first produced, so that enumerating it again replays them
+     * instead of re-running the chain. An enumerable that is already backed by a collection is returned as is.
+     *
+     * @return An Enumerable that only runs this one once
+     */
+    public Enumerable<T> memoize();
+
     /**
      * Returns the smallest value from the collection, using the default comparison method
      *
@@ -231,6 +359,50 @@ public interface Enumerable<T> extends Iterable<T> {
      */
     public Enumerable<T> orderByDescending(Comparator<T> comparator);
 
+    /**
+     * Orders the collection by the keys the callback function generates. Each key is computed once, and elements with
+     * equal keys keep their original order.
+     *
+     * @param keyFunc The callback function used to generate the keys
+     * @param <K>     The type of the key
+     * @return The ordered collection, which can be ordered further with thenBy
+     */
+    public <K extends Comparable<? super K>> OrderedEnumerable<T> orderBy(Func<T, K> keyFunc);
+
+    /**
+     * Orders the collection by the keys the callback function generates, in reverse. Each key is computed once, and
+     * elements with equal keys keep their original order.
+     *
+     * @param keyFunc The callback function used to generate the keys
+     * @param <K>     The type of the key
+     * @return The ordered collection, which can be ordered further with thenBy
+     */
+    public <K extends Comparable<? super K>> OrderedEnumerable<T> orderByDescending(Func<T, K> keyFunc);
+
+    /**
+     * Orders the collection using the given comparator without holding more than
+     * {@link SpillConfig#getMaxInMemory()} elements in memory. Sorted runs are written to temporary files and merged
+     * as the result is enumerated.
+     *
+     * @param comparator The comparator to use
+     * @param serializer The serializer used to write elements to disk
+     * @param config     The memory budget and temporary directory
+     * @return The sorted collection
+     */
+    public Enumerable<T> orderBy(Comparator<T> comparator, Serializer<T> serializer, SpillConfig config);
+
+    /**
+     * Orders the collection using the given comparator in reverse without holding more than
+     * {@link SpillConfig#getMaxInMemory()} elements in memory. Sorted runs are written to temporary files and merged
+     * as the result is enumerated.
+     *
+     * @param comparator The comparator to use
+     * @param serializer The serializer used to write elements to disk
+     * @param config     The memory budget and temporary directory
+     * @return The sorted collection
+     */
+    public Enumerable<T> orderByDescending(Comparator<T> comparator, Serializer<T> serializer, SpillConfig config);
+
     /**
      * Randomizes the collection
      *
@@ -263,6 +435,99 @@ public interface Enumerable<T> extends Iterable<T> {
      */
     public <E extends Comparable<? super E>> Enumerable<E> select(Func<T, E> func);
 
+    /**
+     * Transforms the contents using the callback function on a shared pool of threads for blocking work, with at most
+     * {@code maxConcurrency} callbacks running at once. This is meant for callbacks that spend their time waiting, such
+     * as looking something up on disk. The results keep the order of the source, and nothing is run until they are
+     * enumerated.
+     *
+     * @param func           The function that transforms the objects
+     * @param maxConcurrency The most callbacks to run at once
+     * @param <E>            The type of the transformed objects
+     * @return A lazy Enumerable over the transformed objects
+     */
+    public <E extends Comparable<? super E>> Enumerable<E> selectAsync(Func<T, E> func, int maxConcurrency);
+
+    /**
+     * Transforms the contents using the callback function on the given executor, with at most {@code maxConcurrency}
+     * callbacks running at once. Nothing is run until the results are enumerated.
+     *
+     * @param func           The function that transforms the objects
+     * @param maxConcurrency The most callbacks to run at once
+     * @param executor       The executor the callbacks are handed to
+     * @param ordered        True if the results should keep the order of the source, false to have them in the order
+     *                       they are done
+     * @param <E>            The type of the transformed objects
+     * @return A lazy Enumerable over the transformed objects
+     */
+    public <E extends Comparable<? super E>> Enumerable<E> selectAsync(Func<T, E> func, int maxConcurrency, ExecutorService executor, boolean ordered);
+
+    /**
+     * Transforms the contents by handing the callback function consecutive batches of elements rather than one element
+     * at a time. Every batch but the last has {@code batchSize} elements.
+     *
+     * @param batchSize The number of elements in each batch
+     * @param func      The function that transforms a batch, which has to return one result for each element in the
+     *                  same order
+     * @param <E>       The type of the transformed objects
+     * @return A collection of transformed objects, in the order of the source
+     */
+    public <E extends Comparable<? super E>> Enumerable<E> selectBatched(int batchSize, Func<List<T>, List<E>> func);
+
+    /**
+     * Projects each element to a primitive {@code double} using the callback function. The results are stored unboxed
+     * in a {@link DoubleEnumerable}.
+     *
+     * @param func The function that transforms the objects
+     * @return The projected values
+     */
+    public DoubleEnumerable selectDouble(Func<T, Double> func);
+
+    /**
+     * Projects each element to a primitive {@code double} using the callback function. The results are stored unboxed
+     * in a {@link DoubleEnumerable}.
+     *
+     * @param func The function that transforms the objects
+     * @return The projected values
+     */
+    public DoubleEnumerable selectDouble(ToDoubleFunc<T> func);
+
+    /**
+     * Projects each element to a primitive {@code int} using the callback function. The results are stored unboxed
+     * in a {@link IntEnumerable}.
+     *
+     * @param func The function that transforms the objects
+     * @return The projected values
+     */
+    public IntEnumerable selectInt(Func<T, Integer> func);
+
+    /**
+     * Projects each element to a primitive {@code int} using the callback function. The results are stored unboxed
+     * in a {@link IntEnumerable}.
+     *
+     * @param func The function that transforms the objects
+     * @return The projected values
+     */
+    public IntEnumerable selectInt(ToIntFunc<T> func);
+
+    /**
+     * Projects each element to a primitive {@code long} using the callback function. The results are stored unboxed
+     * in a {@link LongEnumerable}.
+     *
+     * @param func The function that transforms the objects
+     * @return The projected values
+     */
+    public LongEnumerable selectLong(Func<T, Long> func);
+
+    /**
+     * Projects each element to a primitive {@code long} using the callback function. The results are stored unboxed
+     * in a {@link LongEnumerable}.
+     *
+     * @param func The function that transforms the objects
+     * @return The projected values
+     */
+    public LongEnumerable selectLong(ToLongFunc<T> func);
+
     /**
      * Performs a one to many projection from the source object to a resulting collection
      *
@@ -314,6 +579,18 @@ public interface Enumerable<T> extends Iterable<T> {
      */
     public T single(Func<T, Boolean> func);
 
+    /**
+     * Searches for a single element that matches using the callback function. If there are multiple objects that match, an exception is thrown.
+     *
+     * @param func The function used to search the list
+     * @return The single element that matches using the callback function.
+     * @throws java.util.NoSuchElementException
+     *          If no element in the collection returns true for the func.
+     * @throws org.icechamps.lava.exception.MultipleElementsFoundException
+     *          If there are multiple elements that match the func.
+     */
+    public T single(Predicate<T> func);
+
     /**
      * Searches for a single element that matches using the callback function.
      * If there are multiple objects that match, an exception is thrown.
@@ -326,6 +603,18 @@ public interface Enumerable<T> extends Iterable<T> {
      */
     public T singleOrDefault(Func<T, Boolean> func);
 
+    /**
+     * Searches for a single element that matches using the callback function.
+     * If there are multiple objects that match, an exception is thrown.
+     * If there are no elements that match, null is returned.
+     *
+     * @param func The callback used to search the list
+     * @return The single element that matches using the callback function or null if none are found.
+     * @throws org.icechamps.lava.exception.MultipleElementsFoundException
+     *          If there are multiple elements that match the callback.
+     */
+    public T singleOrDefault(Predicate<T> func);
+
     /**
      * Skips {@code count} number of elements in the given collection, then returns the rest of the collection
      *
@@ -342,6 +631,14 @@ public interface Enumerable<T> extends Iterable<T> {
      */
     public Enumerable<T> skipWhile(Func<T, Boolean> func);
 
+    /**
+     * Skips elements in the collection as long as the callback function returns true
+     *
+     * @param func The callback function used to test each element
+     * @return A subset of the collection minus the elements the callback function filtered out
+     */
+    public Enumerable<T> skipWhile(Predicate<T> func);
+
     /**
      * Takes the first {@code count} elements from the collection and returns them in a new collection.
      *
@@ -359,6 +656,35 @@ public interface Enumerable<T> extends Iterable<T> {
      */
     public Enumerable<T> takeWhile(Func<T, Boolean> func);
 
+    /**
+     * Takes elements from the beginning of the collection, as long as the callback returns true, and puts them, in order, into a resulting collection.
+     *
+     * @param func The callback function to use to test the elements
+     * @return The resulting elements from the collection
+     */
+    public Enumerable<T> takeWhile(Predicate<T> func);
+
+    /**
+     * Returns the {@code k} smallest elements in order, using the default comparison method. This gives the same result
+     * as {@code orderBy().take(k)}, but only keeps {@code k} elements around instead of sorting everything.
+     * If there are fewer than {@code k} elements, all of them are returned.
+     *
+     * @param k The number of elements to return
+     * @return The first {@code k} elements in order
+     */
+    public Enumerable<T> topK(int k);
+
+    /**
+     * Returns the first {@code k} elements in the order the comparator puts them in. This gives the same result as
+     * {@code orderBy(comparator).take(k)}, but only keeps {@code k} elements around instead of sorting everything.
+     * If there are fewer than {@code k} elements, all of them are returned.
+     *
+     * @param k          The number of elements to return
+     * @param comparator The comparator to use
+     * @return The first {@code k} elements in order
+     */
+    public Enumerable<T> topK(int k, Comparator<T> comparator);
+
     /**
      * Creates a new {@link List} from the given collection
      *
@@ -381,6 +707,25 @@ public interface Enumerable<T> extends Iterable<T> {
      */
     public Enumerable<T> where(Func<T, Boolean> func);
 
+    /**
+     * Searches a collection using the given {@link Func callback} function.
+     *
+     * @param func The callback function to search with
+     * @return A subset of the collection where all of the objects return a match in the callback function.
+     */
+    public Enumerable<T> where(Predicate<T> func);
+
+    /**
+     * Searches the collection by handing the callback function consecutive batches of elements rather than one element
+     * at a time. Every batch but the last has {@code batchSize} elements.
+     *
+     * @param batchSize The number of elements in each batch
+     * @param func      The callback function, which has to return a flag for each element in the batch in the same
+     *                  order, true to keep the element
+     * @return The elements whose flag was true, in the order of the source
+     */
+    public Enumerable<T> whereBatched(int batchSize, Func<List<T>, List<Boolean>> func);
+
     /**
      * Creates an enumerable containing the union of the two collections
      *
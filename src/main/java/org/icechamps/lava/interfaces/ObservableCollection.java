@@ -0,0 +1,35 @@
+package org.icechamps.lava.interfaces;
+
+import org.icechamps.lava.callback.ChangeListener;
+
+import java.util.Collection;
+
+/**
+ * A collection that tells its listeners about each element that is added or removed, so results computed from it can
+ * be kept up to date one change at a time instead of being recomputed.
+ *
+ * @param <T> The type of the object in the collection
+ */
+public interface ObservableCollection<T> extends Collection<T> {
+    /**
+     * Starts telling the listener about changes. Changes made before this call are not replayed.
+     *
+     * @param listener The listener to add
+     */
+    public void addListener(ChangeListener<? super T> listener);
+
+    /**
+     * Stops telling the listener about changes
+     *
+     * @param listener The listener to remove
+     */
+    public void removeListener(ChangeListener<? super T> listener);
+
+    /**
+     * A number that goes up with every element that is added or removed, so two equal versions mean the collection
+     * hasn't changed in between
+     *
+     * @return The current version
+     */
+    public long getVersion();
+}
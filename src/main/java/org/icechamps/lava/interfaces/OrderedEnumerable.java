@@ -0,0 +1,29 @@
+package org.icechamps.lava.interfaces;
+
+import org.icechamps.lava.callback.Func;
+
+/**
+ * An Enumerable that has been ordered by a key, and can be ordered further by more keys.
+ *
+ * @param <T> The type of the object in the enumerable
+ */
+public interface OrderedEnumerable<T> extends Enumerable<T> {
+
+    /**
+     * Orders elements that have equal keys so far by another key, in ascending order. The key is computed once per element.
+     *
+     * @param keyFunc The callback function used to generate the key
+     * @param <K>     The type of the key
+     * @return The enumerable ordered by the existing keys and then by the new one
+     */
+    public <K extends Comparable<? super K>> OrderedEnumerable<T> thenBy(Func<T, K> keyFunc);
+
+    /**
+     * Orders elements that have equal keys so far by another key, in descending order. The key is computed once per element.
+     *
+     * @param keyFunc The callback function used to generate the key
+     * @param <K>     The type of the key
+     * @return The enumerable ordered by the existing keys and then by the new one
+     */
+    public <K extends Comparable<? super K>> OrderedEnumerable<T> thenByDescending(Func<T, K> keyFunc);
+}
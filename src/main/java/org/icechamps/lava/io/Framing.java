@@ -0,0 +1,77 @@
+package org.icechamps.lava.io;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Describes where one record ends and the next begins in a file: either every record is the same number of bytes, or
+ * each one is followed by a delimiter byte.
+ */
+public class Framing {
+    private final int length;
+    private final byte delimiter;
+
+    private Framing(int length, byte delimiter) {
+        this.length = length;
+        this.delimiter = delimiter;
+    }
+
+    /**
+     * Records that are all exactly the given number of bytes long
+     *
+     * @param length The length of each record in bytes
+     * @return The framing
+     */
+    public static Framing fixed(int length) {
+        Preconditions.checkArgument(length > 0);
+        return new Framing(length, (byte) 0);
+    }
+
+    /**
+     * Records that each end with the given byte. The delimiter is not part of the record, and the last record doesn't
+     * need one.
+     *
+     * @param delimiter The byte that ends each record
+     * @return The framing
+     */
+    public static Framing delimited(byte delimiter) {
+        return new Framing(0, delimiter);
+    }
+
+    /**
+     * Records that each end with a newline. A carriage return before the newline is dropped as well, so files with
+     * Windows line endings work too.
+     *
+     * @return The framing
+     */
+    public static Framing lines() {
+        return new Framing(-1, (byte) '\n');
+    }
+
+    /**
+     * @return True if every record is the same length
+     */
+    public boolean isFixed() {
+        return length > 0;
+    }
+
+    /**
+     * @return The length of each record, for fixed framing
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * @return The byte that ends each record, for delimited framing
+     */
+    public byte getDelimiter() {
+        return delimiter;
+    }
+
+    /**
+     * @return True if a carriage return right before the delimiter should be dropped
+     */
+    boolean stripsCarriageReturn() {
+        return length < 0;
+    }
+}
@@ -0,0 +1,170 @@
+package org.icechamps.lava.io;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.AbstractIterator;
+import org.icechamps.lava.collection.LazyEnumerable;
+import org.icechamps.lava.exception.FileSourceException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Iterator;
+
+/**
+ * <p>
+ * A lazy Enumerable that reads its elements from a file of records. The file is memory mapped a window at a time and
+ * each record is handed to the decoder as a view onto the mapping, so nothing is copied until the decoder asks for it
+ * and the operating system only pages in the parts of the file the chain actually reaches.
+ * </p>
+ * <p>
+ * Every enumeration reads the file again from the start. The file handle is only held open while a window is being
+ * mapped, so an enumeration that stops part way through doesn't leak it.
+ * </p>
+ *
+ * @param <T> The type of the decoded records
+ */
+public class MappedFileEnumerable<T extends Comparable<? super T>> extends LazyEnumerable<T> {
+    /**
+     * The default number of bytes mapped at once
+     */
+    public static final int DEFAULT_MAP_SIZE = 64 * 1024 * 1024;
+
+    private final File file;
+    private final Framing framing;
+    private final RecordDecoder<T> decoder;
+    private final int mapSize;
+
+    /**
+     * Creates an Enumerable over the records in the file
+     *
+     * @param file    The file to read
+     * @param framing How the records are separated
+     * @param decoder The decoder that turns each record into an object
+     */
+    public MappedFileEnumerable(File file, Framing framing, RecordDecoder<T> decoder) {
+        this(file, framing, decoder, DEFAULT_MAP_SIZE);
+    }
+
+    /**
+     * Creates an Enumerable over the records in the file
+     *
+     * @param file    The file to read
+     * @param framing How the records are separated
+     * @param decoder The decoder that turns each record into an object
+     * @param mapSize The number of bytes to map at once. Windows are made bigger when a single record doesn't fit.
+     */
+    public MappedFileEnumerable(File file, Framing framing, RecordDecoder<T> decoder, int mapSize) {
+        Preconditions.checkNotNull(file);
+        Preconditions.checkNotNull(framing);
+        Preconditions.checkNotNull(decoder);
+        Preconditions.checkArgument(mapSize > 0);
+
+        this.file = file;
+        this.framing = framing;
+        this.decoder = decoder;
+        this.mapSize = mapSize;
+    }
+
+    @Override
+    protected Iterator<T> open() {
+        return new RecordIterator();
+    }
+
+    /**
+     * Walks through the file record by record, moving the mapped window forward whenever the next record runs past
+     * the end of it.
+     */
+    class RecordIterator extends AbstractIterator<T> {
+        private final long fileLength = file.length();
+        private int windowSize = mapSize;
+        private long windowStart;
+        private MappedByteBuffer window;
+        private int position;
+
+        @Override
+        protected T computeNext() {
+            while (true) {
+                if (window == null || position == window.limit()) {
+                    if (windowStart + position >= fileLength)
+                        return endOfData();
+
+                    map(windowStart + position);
+                }
+
+                int limit = window.limit();
+                boolean last = windowStart + limit >= fileLength;
+                int end = findEnd(limit);
+                int next = end + (framing.isFixed() ? 0 : 1);
+
+                if (end < 0) {
+                    if (!last) {
+                        // A record that doesn't fit in a fresh window needs a bigger one
+                        if (position == 0)
+                            windowSize = (int) Math.min(Integer.MAX_VALUE, windowSize * 2L);
+
+                        map(windowStart + position);
+                        continue;
+                    }
+
+                    if (framing.isFixed())
+                        throw new FileSourceException(file + " ends with a partial record of " + (limit - position) + " bytes");
+
+                    // The last record doesn't need a delimiter
+                    end = limit;
+                    next = limit;
+                }
+
+                ByteBuffer record = window.duplicate();
+                record.limit(framing.stripsCarriageReturn() && end > position && window.get(end - 1) == '\r' ? end - 1 : end);
+                record.position(position);
+
+                position = next;
+                return decoder.decode(record.slice());
+            }
+        }
+
+        /**
+         * Finds where the record at the current position ends, not counting its delimiter.
+         *
+         * @return The index the record ends at, or -1 if it runs past the end of the window
+         */
+        private int findEnd(int limit) {
+            if (framing.isFixed()) {
+                int end = position + framing.getLength();
+                return end <= limit ? end : -1;
+            }
+
+            byte delimiter = framing.getDelimiter();
+
+            for (int i = position; i < limit; i++) {
+                if (window.get(i) == delimiter)
+                    return i;
+            }
+
+            return -1;
+        }
+
+        private void map(long offset) {
+            long size = Math.min(windowSize, fileLength - offset);
+
+            try {
+                RandomAccessFile raf = new RandomAccessFile(file, "r");
+
+                try {
+                    // The mapping stays valid after the channel is closed
+                    window = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, offset, size);
+                } finally {
+                    raf.close();
+                }
+            } catch (IOException e) {
+                throw new FileSourceException("Unable to map " + file, e);
+            }
+
+            windowStart = offset;
+            position = 0;
+        }
+    }
+}
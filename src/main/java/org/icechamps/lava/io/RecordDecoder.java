@@ -0,0 +1,20 @@
+package org.icechamps.lava.io;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Turns the bytes of a single record into an object.
+ *
+ * @param <T> The type of the decoded record
+ */
+public interface RecordDecoder<T> {
+
+    /**
+     * Decodes a record. The buffer is a read-only view straight onto the mapped file that covers exactly one record,
+     * without its delimiter, so nothing has been copied yet. It is only valid for the duration of the call.
+     *
+     * @param record The bytes of the record, from its position to its limit
+     * @return The decoded record
+     */
+    public T decode(ByteBuffer record);
+}
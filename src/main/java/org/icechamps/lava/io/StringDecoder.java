@@ -0,0 +1,35 @@
+package org.icechamps.lava.io;
+
+import com.google.common.base.Preconditions;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * Decodes each record as a string in the given character set.
+ */
+public class StringDecoder implements RecordDecoder<String> {
+    private final Charset charset;
+
+    /**
+     * Creates a decoder for UTF-8 text
+     */
+    public StringDecoder() {
+        this(Charset.forName("UTF-8"));
+    }
+
+    /**
+     * Creates a decoder for text in the given character set
+     *
+     * @param charset The character set of the file
+     */
+    public StringDecoder(Charset charset) {
+        Preconditions.checkNotNull(charset);
+        this.charset = charset;
+    }
+
+    @Override
+    public String decode(ByteBuffer record) {
+        return charset.decode(record).toString();
+    }
+}
@@ -0,0 +1,270 @@
+package org.icechamps.lava.join;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.AbstractIterator;
+import org.icechamps.lava.callback.Func;
+import org.icechamps.lava.callback.Func2;
+import org.icechamps.lava.collection.LazyEnumerable;
+import org.icechamps.lava.spill.HashPartitions;
+import org.icechamps.lava.spill.Serializer;
+import org.icechamps.lava.spill.SpillConfig;
+import org.icechamps.lava.spill.SpillFile;
+import org.icechamps.lava.util.Group;
+import org.icechamps.lava.util.Lookup;
+
+import java.io.Closeable;
+import java.util.*;
+
+/**
+ * <p>
+ * A hash join that keeps no more than {@link SpillConfig#getMaxInMemory()} inner elements in memory.
+ * </p>
+ * <p>
+ * The inner collection is the build side. If it fits in the budget the join runs in memory just like {@link HashJoin},
+ * and the outer collection is streamed past it without being copied. Otherwise both collections are split into matching partition
+ * files by the hash of their keys, as described in {@link HashPartitions}, and each pair of partitions is joined on
+ * its own. Outer partitions whose inner partition is empty are skipped without being read.
+ * </p>
+ * <p>
+ * Keys are matched with their equals and hashCode. Once the inputs have been partitioned, the results come out one
+ * partition at a time, and in the order of the outer collection within each partition.
+ * </p>
+ * <p>
+ * The iterator returned by {@link #join} implements {@link Closeable}. The partition files are deleted as each pair is
+ * joined, when reading fails, or when the iterator is closed, so a caller that stops early should close it.
+ * </p>
+ */
+public class GraceHashJoin {
+
+    private GraceHashJoin() {
+    }
+
+    /**
+     * Joins the two collections on a set of common keys using the supplied callback functions.
+     *
+     * @param outerCollection The first collection to join on
+     * @param innerCollection The second collection to join on
+     * @param outerKeyFunc    The callback function used to generate a common key from the first collection
+     * @param innerKeyFunc    The callback function used to generate a common key from the second collection
+     * @param resultFunc      The callback function used to generate a result object based on the outputs of the other callback functions
+     * @param outerSerializer The serializer used to write the first collection to disk
+     * @param innerSerializer The serializer used to write the second collection to disk
+     * @param config          The memory budget and temporary directory
+     * @param <Outer>         The type of the object in the first collection
+     * @param <Inner>         The type of the object in the second collection
+     * @param <Key>           The type of the common key
+     * @param <Result>        The type of the result object
+     * @return An iterator that produces the results of the join
+     */
+    public static <Outer, Inner, Key extends Comparable<? super Key>, Result> Iterator<Result> join(Iterable<Outer> outerCollection,
+                                                                                                     Iterable<Inner> innerCollection,
+                                                                                                     Func<Outer, Key> outerKeyFunc,
+                                                                                                     Func<Inner, Key> innerKeyFunc,
+                                                                                                     Func2<Outer, Inner, Result> resultFunc,
+                                                                                                     Serializer<Outer> outerSerializer,
+                                                                                                     Serializer<Inner> innerSerializer,
+                                                                                                     SpillConfig config) {
+        Preconditions.checkNotNull(outerCollection);
+        Preconditions.checkNotNull(innerCollection);
+        Preconditions.checkNotNull(outerKeyFunc);
+        Preconditions.checkNotNull(innerKeyFunc);
+        Preconditions.checkNotNull(resultFunc);
+        Preconditions.checkNotNull(outerSerializer);
+        Preconditions.checkNotNull(innerSerializer);
+        Preconditions.checkNotNull(config);
+
+        return new JoinIterator<Outer, Inner, Key, Result>(outerCollection, innerCollection, outerKeyFunc, innerKeyFunc, resultFunc, outerSerializer, innerSerializer, config);
+    }
+
+    /**
+     * Works through a stack of partition pairs. A pair whose inner side fits in the budget is joined in memory, and
+     * every other pair is replaced by its partitions, in order.
+     */
+    static class JoinIterator<Outer, Inner, Key extends Comparable<? super Key>, Result> extends AbstractIterator<Result> implements Closeable {
+        private final Iterable<Outer> outerCollection;
+        private final Iterable<Inner> innerCollection;
+        private final Func<Outer, Key> outerKeyFunc;
+        private final Func<Inner, Key> innerKeyFunc;
+        private final Func2<Outer, Inner, Result> resultFunc;
+        private final Serializer<Outer> outerSerializer;
+        private final Serializer<Inner> innerSerializer;
+        private final SpillConfig config;
+        private final Deque<Pair> pending = new ArrayDeque<Pair>();
+
+        private boolean started;
+        private Pair current;
+        private Lookup<Key, Inner> lookup;
+        private Outer outer;
+        private Iterator<Inner> matches;
+
+        JoinIterator(Iterable<Outer> outerCollection,
+                     Iterable<Inner> innerCollection,
+                     Func<Outer, Key> outerKeyFunc,
+                     Func<Inner, Key> innerKeyFunc,
+                     Func2<Outer, Inner, Result> resultFunc,
+                     Serializer<Outer> outerSerializer,
+                     Serializer<Inner> innerSerializer,
+                     SpillConfig config) {
+            this.outerCollection = outerCollection;
+            this.innerCollection = innerCollection;
+            this.outerKeyFunc = outerKeyFunc;
+            this.innerKeyFunc = innerKeyFunc;
+            this.resultFunc = resultFunc;
+            this.outerSerializer = outerSerializer;
+            this.innerSerializer = innerSerializer;
+            this.config = config;
+        }
+
+        @Override
+        protected Result computeNext() {
+            try {
+                return nextResult();
+            } catch (RuntimeException e) {
+                close();
+                throw e;
+            }
+        }
+
+        /**
+         * Deletes the files of the pair being joined and of every pair that hasn't been reached yet, and closes the
+         * inputs if they are still being read.
+         */
+        @Override
+        public void close() {
+            if (current != null) {
+                current.close();
+                current = null;
+                lookup = null;
+            }
+
+            while (!pending.isEmpty()) {
+                pending.pop().close();
+            }
+
+            matches = null;
+        }
+
+        private Result nextResult() {
+            if (!started) {
+                // Nothing is read until the first result is asked for
+                pending.push(new Pair(null, null, innerCollection.iterator(), null, 0));
+                started = true;
+            }
+
+            while (matches == null || !matches.hasNext()) {
+                if (current != null && current.outer().hasNext()) {
+                    outer = current.outer().next();
+                    Group<Key, Inner> group = lookup.getGroupForKey(outerKeyFunc.callback(outer), false);
+                    matches = group != null ? group.iterator() : null;
+                    continue;
+                }
+
+                if (current != null) {
+                    current.close();
+                    current = null;
+                    lookup = null;
+                }
+
+                if (pending.isEmpty())
+                    return endOfData();
+
+                current = pending.pop();
+                load();
+            }
+
+            return resultFunc.callback(outer, matches.next());
+        }
+
+        /**
+         * Either builds the lookup for the current pair or splits it into partitions that go back on the stack.
+         */
+        private void load() {
+            Pair pair = current;
+            List<Inner> buffer = HashPartitions.fill(pair.innerIterator, config.getMaxInMemory());
+
+            if (pair.innerIterator.hasNext() && pair.level < HashPartitions.MAX_LEVELS) {
+                List<SpillFile<Inner>> innerFiles = HashPartitions.scatter(buffer, pair.innerIterator, innerKeyFunc, pair.level, innerSerializer, config);
+                List<SpillFile<Outer>> outerFiles;
+
+                try {
+                    outerFiles = HashPartitions.scatter(Collections.<Outer>emptyList(), pair.outer(), outerKeyFunc, pair.level, outerSerializer, config);
+                } catch (RuntimeException e) {
+                    for (SpillFile<Inner> innerFile : innerFiles) {
+                        innerFile.delete();
+                    }
+
+                    throw e;
+                }
+
+                pair.close();
+                current = null;
+
+                // Pushed backwards so the partitions come off the stack in order
+                for (int i = HashPartitions.FAN_OUT - 1; i >= 0; i--) {
+                    SpillFile<Inner> innerFile = innerFiles.get(i);
+                    SpillFile<Outer> outerFile = outerFiles.get(i);
+
+                    if (innerFile.size() > 0 && outerFile.size() > 0) {
+                        pending.push(new Pair(outerFile.iterator(), outerFile, innerFile.iterator(), innerFile, pair.level + 1));
+                    } else {
+                        innerFile.delete();
+                        outerFile.delete();
+                    }
+                }
+
+                return;
+            }
+
+            while (pair.innerIterator.hasNext()) {
+                buffer.add(pair.innerIterator.next());
+            }
+
+            if (pair.innerFile != null)
+                pair.innerFile.delete();
+
+            lookup = Lookup.createForJoin(buffer, innerKeyFunc, null, buffer.size());
+        }
+
+        /**
+         * A pair of matching partitions. The top level pair reads the outer collection directly, and only starts doing
+         * so once the inner side has been dealt with.
+         */
+        class Pair {
+            private Iterator<Outer> outerIterator;
+            final SpillFile<Outer> outerFile;
+            final Iterator<Inner> innerIterator;
+            final SpillFile<Inner> innerFile;
+            final int level;
+
+            Pair(Iterator<Outer> outerIterator, SpillFile<Outer> outerFile, Iterator<Inner> innerIterator, SpillFile<Inner> innerFile, int level) {
+                this.outerIterator = outerIterator;
+                this.outerFile = outerFile;
+                this.innerIterator = innerIterator;
+                this.innerFile = innerFile;
+                this.level = level;
+            }
+
+            Iterator<Outer> outer() {
+                if (outerIterator == null)
+                    outerIterator = outerCollection.iterator();
+
+                return outerIterator;
+            }
+
+            /**
+             * Deletes the files of the pair, or closes the inputs if this is the top level pair.
+             */
+            void close() {
+                if (outerFile != null)
+                    outerFile.delete();
+                else if (outerIterator != null)
+                    LazyEnumerable.close(outerIterator);
+
+                if (innerFile != null)
+                    innerFile.delete();
+                else
+                    LazyEnumerable.close(innerIterator);
+            }
+        }
+    }
+}
@@ -0,0 +1,359 @@
+package org.icechamps.lava.join;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.AbstractIterator;
+import org.icechamps.lava.callback.Func;
+import org.icechamps.lava.callback.Func2;
+import org.icechamps.lava.collection.LazyEnumerable;
+import org.icechamps.lava.util.Group;
+import org.icechamps.lava.util.Lookup;
+
+import java.util.*;
+
+/**
+ * <p>
+ * The hash join engine behind join and groupJoin.
+ * </p>
+ * <p>
+ * The smaller of the two inputs is loaded into a {@link Lookup} (the build side) that is sized up front, and the larger
+ * input is streamed past it (the probe side). When the inner collection is the build side, results are produced one at
+ * a time as the outer collection is streamed. When the outer collection is smaller, its keys are indexed first and
+ * only the inner elements that match one of them are kept while the inner collection is streamed. When the sizes of the
+ * inputs can't be known without running a lazy chain, the inner collection is used as the build side.
+ * </p>
+ * <p>
+ * Either way, the results come out in the order of the outer collection, and the matches of each outer element in the
+ * order of the inner collection. groupJoin produces one result per outer element.
+ * </p>
+ */
+public class HashJoin {
+
+    private HashJoin() {
+    }
+
+    /**
+     * Joins the two collections on a set of common keys using the supplied callback functions.
+     *
+     * @param outerCollection The first collection to join on
+     * @param innerCollection The second collection to join on
+     * @param outerKeyFunc    The callback function used to generate a common key from the first collection
+     * @param innerKeyFunc    The callback function used to generate a common key from the second collection
+     * @param resultFunc      The callback function used to generate a result object based on the outputs of the other callback functions
+     * @param keyComparator   The comparator used to compare the keys (can be null)
+     * @param <Outer>         The type of the object in the first collection
+     * @param <Inner>         The type of the object in the second collection
+     * @param <Key>           The type of the common key
+     * @param <Result>        The type of the result object
+     * @return An iterator that produces the results of the join
+     */
+    public static <Outer, Inner, Key extends Comparable<? super Key>, Result> Iterator<Result> join(Collection<Outer> outerCollection,
+                                                                                                     Collection<Inner> innerCollection,
+                                                                                                     Func<Outer, Key> outerKeyFunc,
+                                                                                                     Func<Inner, Key> innerKeyFunc,
+                                                                                                     Func2<Outer, Inner, Result> resultFunc,
+                                                                                                     Comparator<Key> keyComparator) {
+        Preconditions.checkNotNull(outerCollection);
+        Preconditions.checkNotNull(innerCollection);
+        Preconditions.checkNotNull(outerKeyFunc);
+        Preconditions.checkNotNull(innerKeyFunc);
+        Preconditions.checkNotNull(resultFunc);
+
+        int outerSize = sizeOf(outerCollection);
+        int innerSize = sizeOf(innerCollection);
+
+        if (outerSize >= 0 && innerSize >= 0 && outerSize < innerSize)
+            return new BuildOuterIterator<Outer, Inner, Key, Result>(outerCollection, innerCollection, outerKeyFunc, innerKeyFunc, resultFunc, keyComparator, outerSize);
+
+        return new BuildInnerIterator<Outer, Inner, Key, Result>(outerCollection, innerCollection, outerKeyFunc, innerKeyFunc, resultFunc, keyComparator, Math.max(innerSize, 0));
+    }
+
+    /**
+     * Joins the two collections based on a common key and groups the results together for the result function.
+     * Outer elements without any matches are passed to the result function with an empty collection.
+     *
+     * @param outerCollection The first collection to join
+     * @param innerCollection The second collection to join
+     * @param outerKeyFunc    The callback function that generates keys for the first collection
+     * @param innerKeyFunc    The callback function that generates keys for the second collection
+     * @param resultFunc      The callback function that generates the resulting object after the joins
+     * @param keyComparator   The comparator used to compare the keys (can be null)
+     * @param <Outer>         The type in the first collection
+     * @param <Inner>         The type in the second collection
+     * @param <Key>           The type of the common key
+     * @param <Result>        The type of the resulting object
+     * @return An iterator that produces the results of the group join
+     */
+    public static <Outer, Inner, Key extends Comparable<? super Key>, Result> Iterator<Result> groupJoin(Collection<Outer> outerCollection,
+                                                                                                          Collection<Inner> innerCollection,
+                                                                                                          Func<Outer, Key> outerKeyFunc,
+                                                                                                          Func<Inner, Key> innerKeyFunc,
+                                                                                                          Func2<Outer, Collection<Inner>, Result> resultFunc,
+                                                                                                          Comparator<Key> keyComparator) {
+        Preconditions.checkNotNull(outerCollection);
+        Preconditions.checkNotNull(innerCollection);
+        Preconditions.checkNotNull(outerKeyFunc);
+        Preconditions.checkNotNull(innerKeyFunc);
+        Preconditions.checkNotNull(resultFunc);
+
+        int outerSize = sizeOf(outerCollection);
+        int innerSize = sizeOf(innerCollection);
+
+        if (outerSize >= 0 && innerSize >= 0 && outerSize < innerSize)
+            return new GroupJoinBuildOuterIterator<Outer, Inner, Key, Result>(outerCollection, innerCollection, outerKeyFunc, innerKeyFunc, resultFunc, keyComparator, outerSize);
+
+        return new GroupJoinBuildInnerIterator<Outer, Inner, Key, Result>(outerCollection, innerCollection, outerKeyFunc, innerKeyFunc, resultFunc, keyComparator, Math.max(innerSize, 0));
+    }
+
+    /**
+     * Returns the size of the collection, or -1 if asking for it would mean running a lazy chain.
+     *
+     * @param collection The collection to check
+     * @return The size of the collection or -1
+     */
+    static int sizeOf(Collection<?> collection) {
+        return LazyEnumerable.isDeferred(collection) ? -1 : collection.size();
+    }
+
+    /**
+     * Builds the lookup on the inner collection, then streams the outer collection past it.
+     */
+    static class BuildInnerIterator<Outer, Inner, Key extends Comparable<? super Key>, Result> extends AbstractIterator<Result> {
+        private final Collection<Outer> outerCollection;
+        private final Collection<Inner> innerCollection;
+        private final Func<Outer, Key> outerKeyFunc;
+        private final Func<Inner, Key> innerKeyFunc;
+        private final Func2<Outer, Inner, Result> resultFunc;
+        private final Comparator<Key> keyComparator;
+        private final int expectedKeys;
+
+        private Lookup<Key, Inner> lookup;
+        private Iterator<Outer> outerIterator;
+        private Outer outer;
+        private Iterator<Inner> matches;
+
+        BuildInnerIterator(Collection<Outer> outerCollection,
+                           Collection<Inner> innerCollection,
+                           Func<Outer, Key> outerKeyFunc,
+                           Func<Inner, Key> innerKeyFunc,
+                           Func2<Outer, Inner, Result> resultFunc,
+                           Comparator<Key> keyComparator,
+                           int expectedKeys) {
+            this.outerCollection = outerCollection;
+            this.innerCollection = innerCollection;
+            this.outerKeyFunc = outerKeyFunc;
+            this.innerKeyFunc = innerKeyFunc;
+            this.resultFunc = resultFunc;
+            this.keyComparator = keyComparator;
+            this.expectedKeys = expectedKeys;
+        }
+
+        @Override
+        protected Result computeNext() {
+            if (lookup == null) {
+                lookup = Lookup.createForJoin(innerCollection, innerKeyFunc, keyComparator, expectedKeys);
+                outerIterator = outerCollection.iterator();
+            }
+
+            while (matches == null || !matches.hasNext()) {
+                if (!outerIterator.hasNext())
+                    return endOfData();
+
+                outer = outerIterator.next();
+                Group<Key, Inner> group = lookup.getGroupForKey(outerKeyFunc.callback(outer), false);
+                matches = group != null ? group.iterator() : null;
+            }
+
+            return resultFunc.callback(outer, matches.next());
+        }
+    }
+
+    /**
+     * Indexes the keys of the outer collection and streams the inner collection into the groups of the outer elements it
+     * matches, then produces the results outer element by outer element.
+     */
+    static class BuildOuterIterator<Outer, Inner, Key extends Comparable<? super Key>, Result> extends AbstractIterator<Result> {
+        private final OuterIndex<Outer, Inner, Key> index;
+        private final Func2<Outer, Inner, Result> resultFunc;
+
+        private Outer outer;
+        private Iterator<Inner> matches;
+
+        BuildOuterIterator(Collection<Outer> outerCollection,
+                           Collection<Inner> innerCollection,
+                           Func<Outer, Key> outerKeyFunc,
+                           Func<Inner, Key> innerKeyFunc,
+                           Func2<Outer, Inner, Result> resultFunc,
+                           Comparator<Key> keyComparator,
+                           int expectedKeys) {
+            this.index = new OuterIndex<Outer, Inner, Key>(outerCollection, innerCollection, outerKeyFunc, innerKeyFunc, keyComparator, expectedKeys);
+            this.resultFunc = resultFunc;
+        }
+
+        @Override
+        protected Result computeNext() {
+            while (matches == null || !matches.hasNext()) {
+                if (!index.hasNext())
+                    return endOfData();
+
+                Group<Key, Inner> group = index.nextGroup();
+                outer = index.outer;
+                matches = group.iterator();
+            }
+
+            return resultFunc.callback(outer, matches.next());
+        }
+    }
+
+    /**
+     * Builds the lookup on the inner collection, then produces one result for each element of the outer collection.
+     */
+    static class GroupJoinBuildInnerIterator<Outer, Inner, Key extends Comparable<? super Key>, Result> extends AbstractIterator<Result> {
+        private final Collection<Outer> outerCollection;
+        private final Collection<Inner> innerCollection;
+        private final Func<Outer, Key> outerKeyFunc;
+        private final Func<Inner, Key> innerKeyFunc;
+        private final Func2<Outer, Collection<Inner>, Result> resultFunc;
+        private final Comparator<Key> keyComparator;
+        private final int expectedKeys;
+
+        private Lookup<Key, Inner> lookup;
+        private Iterator<Outer> outerIterator;
+
+        GroupJoinBuildInnerIterator(Collection<Outer> outerCollection,
+                                    Collection<Inner> innerCollection,
+                                    Func<Outer, Key> outerKeyFunc,
+                                    Func<Inner, Key> innerKeyFunc,
+                                    Func2<Outer, Collection<Inner>, Result> resultFunc,
+                                    Comparator<Key> keyComparator,
+                                    int expectedKeys) {
+            this.outerCollection = outerCollection;
+            this.innerCollection = innerCollection;
+            this.outerKeyFunc = outerKeyFunc;
+            this.innerKeyFunc = innerKeyFunc;
+            this.resultFunc = resultFunc;
+            this.keyComparator = keyComparator;
+            this.expectedKeys = expectedKeys;
+        }
+
+        @Override
+        protected Result computeNext() {
+            if (lookup == null) {
+                lookup = Lookup.createForJoin(innerCollection, innerKeyFunc, keyComparator, expectedKeys);
+                outerIterator = outerCollection.iterator();
+            }
+
+            if (!outerIterator.hasNext())
+                return endOfData();
+
+            Outer outer = outerIterator.next();
+            Group<Key, Inner> group = lookup.getGroupForKey(outerKeyFunc.callback(outer), false);
+            Collection<Inner> matches = group != null ? group.getValues() : Collections.<Inner>emptyList();
+
+            return resultFunc.callback(outer, matches);
+        }
+    }
+
+    /**
+     * Indexes the keys of the outer collection, streams the inner collection into the groups of the outer elements it
+     * matches, and then produces one result for each element of the outer collection.
+     */
+    static class GroupJoinBuildOuterIterator<Outer, Inner, Key extends Comparable<? super Key>, Result> extends AbstractIterator<Result> {
+        private final OuterIndex<Outer, Inner, Key> index;
+        private final Func2<Outer, Collection<Inner>, Result> resultFunc;
+
+        GroupJoinBuildOuterIterator(Collection<Outer> outerCollection,
+                                    Collection<Inner> innerCollection,
+                                    Func<Outer, Key> outerKeyFunc,
+                                    Func<Inner, Key> innerKeyFunc,
+                                    Func2<Outer, Collection<Inner>, Result> resultFunc,
+                                    Comparator<Key> keyComparator,
+                                    int expectedKeys) {
+            this.index = new OuterIndex<Outer, Inner, Key>(outerCollection, innerCollection, outerKeyFunc, innerKeyFunc, keyComparator, expectedKeys);
+            this.resultFunc = resultFunc;
+        }
+
+        @Override
+        protected Result computeNext() {
+            if (!index.hasNext())
+                return endOfData();
+
+            Group<Key, Inner> group = index.nextGroup();
+            return resultFunc.callback(index.outer, group.getValues());
+        }
+    }
+
+    /**
+     * The elements of the outer collection in order, each with the group of inner elements that share its key. Nothing
+     * is read until the first element is asked for, and inner elements that don't match any outer key are never held
+     * on to.
+     */
+    static class OuterIndex<Outer, Inner, Key extends Comparable<? super Key>> {
+        private final Collection<Outer> outerCollection;
+        private final Collection<Inner> innerCollection;
+        private final Func<Outer, Key> outerKeyFunc;
+        private final Func<Inner, Key> innerKeyFunc;
+        private final Comparator<Key> keyComparator;
+        private final int expectedKeys;
+
+        private ArrayList<Outer> outers;
+        private ArrayList<Group<Key, Inner>> outerGroups;
+        private int position;
+
+        /**
+         * The outer element of the group returned by the last call to {@link #nextGroup()}
+         */
+        Outer outer;
+
+        OuterIndex(Collection<Outer> outerCollection,
+                   Collection<Inner> innerCollection,
+                   Func<Outer, Key> outerKeyFunc,
+                   Func<Inner, Key> innerKeyFunc,
+                   Comparator<Key> keyComparator,
+                   int expectedKeys) {
+            this.outerCollection = outerCollection;
+            this.innerCollection = innerCollection;
+            this.outerKeyFunc = outerKeyFunc;
+            this.innerKeyFunc = innerKeyFunc;
+            this.keyComparator = keyComparator;
+            this.expectedKeys = expectedKeys;
+        }
+
+        boolean hasNext() {
+            if (outers == null)
+                build();
+
+            return position < outers.size();
+        }
+
+        Group<Key, Inner> nextGroup() {
+            Group<Key, Inner> group = outerGroups.get(position);
+            outer = outers.get(position);
+
+            // Let go of the outer element once it has been handed out
+            outers.set(position, null);
+            outerGroups.set(position, null);
+            position++;
+
+            return group;
+        }
+
+        private void build() {
+            Lookup<Key, Inner> lookup = Lookup.create(expectedKeys, keyComparator);
+
+            outers = new ArrayList<Outer>(expectedKeys);
+            outerGroups = new ArrayList<Group<Key, Inner>>(expectedKeys);
+
+            for (Outer outer : outerCollection) {
+                outers.add(outer);
+                outerGroups.add(lookup.getGroupForKey(outerKeyFunc.callback(outer), true));
+            }
+
+            for (Inner inner : innerCollection) {
+                Group<Key, Inner> group = lookup.getGroupForKey(innerKeyFunc.callback(inner), false);
+
+                if (group != null)
+                    group.add(inner);
+            }
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package org.icechamps.lava.join;
+
+import org.icechamps.lava.callback.Func;
+import org.icechamps.lava.collection.LazyEnumerable;
+
+import java.util.Collection;
+import java.util.Comparator;
+
+/**
+ * The algorithms a join can be run with.
+ */
+public enum JoinStrategy {
+    /**
+     * Lets the engine decide. Sort-merge is used when a key comparator is given and both inputs are already sorted by
+     * it, otherwise a hash join is used.
+     */
+    AUTO,
+
+    /**
+     * Builds a lookup on the smaller input and probes it with the larger one. See {@link HashJoin}.
+     */
+    HASH,
+
+    /**
+     * Walks both inputs in key order at the same time. Requires a key comparator. See {@link SortMergeJoin}.
+     */
+    SORT_MERGE;
+
+    /**
+     * Works out which concrete strategy to run. Only {@link #AUTO} needs to look at the inputs, and it only checks
+     * whether they are sorted when they can be scanned without running a lazy chain.
+     *
+     * @param outerCollection The first collection to join on
+     * @param innerCollection The second collection to join on
+     * @param outerKeyFunc    The callback function used to generate a common key from the first collection
+     * @param innerKeyFunc    The callback function used to generate a common key from the second collection
+     * @param keyComparator   The comparator used to compare the keys (can be null)
+     * @return Either {@link #HASH} or {@link #SORT_MERGE}
+     */
+    public <Outer, Inner, Key> JoinStrategy resolve(Collection<Outer> outerCollection,
+                                                    Collection<Inner> innerCollection,
+                                                    Func<Outer, Key> outerKeyFunc,
+                                                    Func<Inner, Key> innerKeyFunc,
+                                                    Comparator<Key> keyComparator) {
+        if (this != AUTO)
+            return this;
+
+        if (keyComparator == null || LazyEnumerable.isDeferred(outerCollection) || LazyEnumerable.isDeferred(innerCollection))
+            return HASH;
+
+        if (SortMergeJoin.isSorted(outerCollection, outerKeyFunc, keyComparator) && SortMergeJoin.isSorted(innerCollection, innerKeyFunc, keyComparator))
+            return SORT_MERGE;
+
+        return HASH;
+    }
+}
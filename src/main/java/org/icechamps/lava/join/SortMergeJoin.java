@@ -0,0 +1,246 @@
+package org.icechamps.lava.join;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.AbstractIterator;
+import org.icechamps.lava.callback.Func;
+import org.icechamps.lava.callback.Func2;
+
+import java.util.*;
+
+/**
+ * <p>
+ * The sort-merge join engine. Both inputs are walked in key order at the same time, so when they are already sorted
+ * by the key comparator the join runs in linear time and only holds on to the current run of inner elements that
+ * share a key. An input that isn't sorted is copied and sorted by its keys first.
+ * </p>
+ * <p>
+ * Results come out in key order. Elements with equal keys keep the order they had in their input.
+ * </p>
+ */
+public class SortMergeJoin {
+
+    private SortMergeJoin() {
+    }
+
+    /**
+     * Joins the two collections on a set of common keys using the supplied callback functions.
+     *
+     * @param outerCollection The first collection to join on
+     * @param innerCollection The second collection to join on
+     * @param outerKeyFunc    The callback function used to generate a common key from the first collection
+     * @param innerKeyFunc    The callback function used to generate a common key from the second collection
+     * @param resultFunc      The callback function used to generate a result object based on the outputs of the other callback functions
+     * @param keyComparator   The comparator used to order and compare the keys
+     * @param <Outer>         The type of the object in the first collection
+     * @param <Inner>         The type of the object in the second collection
+     * @param <Key>           The type of the common key
+     * @param <Result>        The type of the result object
+     * @return An iterator that produces the results of the join
+     */
+    public static <Outer, Inner, Key, Result> Iterator<Result> join(Collection<Outer> outerCollection,
+                                                                     Collection<Inner> innerCollection,
+                                                                     Func<Outer, Key> outerKeyFunc,
+                                                                     Func<Inner, Key> innerKeyFunc,
+                                                                     Func2<Outer, Inner, Result> resultFunc,
+                                                                     Comparator<Key> keyComparator) {
+        return join(outerCollection, innerCollection, outerKeyFunc, innerKeyFunc, resultFunc, keyComparator, false);
+    }
+
+    /**
+     * Joins the two collections on a set of common keys using the supplied callback functions.
+     *
+     * @param outerCollection The first collection to join on
+     * @param innerCollection The second collection to join on
+     * @param outerKeyFunc    The callback function used to generate a common key from the first collection
+     * @param innerKeyFunc    The callback function used to generate a common key from the second collection
+     * @param resultFunc      The callback function used to generate a result object based on the outputs of the other callback functions
+     * @param keyComparator   The comparator used to order and compare the keys
+     * @param sorted          True if both collections are already known to be sorted by the comparator, which skips checking them
+     * @param <Outer>         The type of the object in the first collection
+     * @param <Inner>         The type of the object in the second collection
+     * @param <Key>           The type of the common key
+     * @param <Result>        The type of the result object
+     * @return An iterator that produces the results of the join
+     */
+    public static <Outer, Inner, Key, Result> Iterator<Result> join(Collection<Outer> outerCollection,
+                                                                     Collection<Inner> innerCollection,
+                                                                     Func<Outer, Key> outerKeyFunc,
+                                                                     Func<Inner, Key> innerKeyFunc,
+                                                                     Func2<Outer, Inner, Result> resultFunc,
+                                                                     Comparator<Key> keyComparator,
+                                                                     boolean sorted) {
+        Preconditions.checkNotNull(outerCollection);
+        Preconditions.checkNotNull(innerCollection);
+        Preconditions.checkNotNull(outerKeyFunc);
+        Preconditions.checkNotNull(innerKeyFunc);
+        Preconditions.checkNotNull(resultFunc);
+        Preconditions.checkNotNull(keyComparator);
+
+        return new MergeIterator<Outer, Inner, Key, Result>(outerCollection, innerCollection, outerKeyFunc, innerKeyFunc, resultFunc, keyComparator, sorted);
+    }
+
+    /**
+     * Checks whether the keys of the collection are in ascending order according to the comparator. Stops at the first
+     * key that is out of order.
+     *
+     * @param collection The collection to check
+     * @param keyFunc    The callback function used to generate the keys
+     * @param comparator The comparator used to compare the keys
+     * @return True if the collection is sorted by its keys
+     */
+    public static <V, Key> boolean isSorted(Collection<V> collection, Func<V, Key> keyFunc, Comparator<Key> comparator) {
+        Key previous = null;
+        boolean first = true;
+
+        for (V v : collection) {
+            Key key = keyFunc.callback(v);
+
+            if (!first && comparator.compare(previous, key) > 0)
+                return false;
+
+            previous = key;
+            first = false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Walks a collection in key order, one element at a time.
+     *
+     * @param <V>   The type of the element
+     * @param <Key> The type of the key
+     */
+    static class Cursor<V, Key> {
+        private final Func<V, Key> keyFunc;
+        private Iterator<V> values;
+        private Iterator<Map.Entry<Key, V>> entries;
+
+        V value;
+        Key key;
+        boolean valid;
+
+        Cursor(Collection<V> collection, Func<V, Key> keyFunc, final Comparator<Key> comparator, boolean sorted) {
+            this.keyFunc = keyFunc;
+
+            if (sorted || isSorted(collection, keyFunc, comparator)) {
+                values = collection.iterator();
+                return;
+            }
+
+            // Compute every key once, then sort the key/element pairs by key. Collections.sort is stable.
+            List<Map.Entry<Key, V>> list = new ArrayList<Map.Entry<Key, V>>(collection.size());
+            for (V v : collection) {
+                list.add(new AbstractMap.SimpleImmutableEntry<Key, V>(keyFunc.callback(v), v));
+            }
+
+            Collections.sort(list, new Comparator<Map.Entry<Key, V>>() {
+                @Override
+                public int compare(Map.Entry<Key, V> o1, Map.Entry<Key, V> o2) {
+                    return comparator.compare(o1.getKey(), o2.getKey());
+                }
+            });
+
+            entries = list.iterator();
+        }
+
+        boolean advance() {
+            if (entries != null) {
+                valid = entries.hasNext();
+
+                if (valid) {
+                    Map.Entry<Key, V> entry = entries.next();
+                    value = entry.getValue();
+                    key = entry.getKey();
+                }
+            } else {
+                valid = values.hasNext();
+
+                if (valid) {
+                    value = values.next();
+                    key = keyFunc.callback(value);
+                }
+            }
+
+            if (!valid) {
+                value = null;
+                key = null;
+            }
+
+            return valid;
+        }
+    }
+
+    static class MergeIterator<Outer, Inner, Key, Result> extends AbstractIterator<Result> {
+        private final Collection<Outer> outerCollection;
+        private final Collection<Inner> innerCollection;
+        private final Func<Outer, Key> outerKeyFunc;
+        private final Func<Inner, Key> innerKeyFunc;
+        private final Func2<Outer, Inner, Result> resultFunc;
+        private final Comparator<Key> keyComparator;
+        private final boolean sorted;
+
+        private Cursor<Outer, Key> outer;
+        private Cursor<Inner, Key> inner;
+
+        // The run of inner elements that share the key of the current outer element
+        private final ArrayList<Inner> run = new ArrayList<Inner>();
+        private Key runKey;
+        private int runPosition;
+
+        MergeIterator(Collection<Outer> outerCollection,
+                      Collection<Inner> innerCollection,
+                      Func<Outer, Key> outerKeyFunc,
+                      Func<Inner, Key> innerKeyFunc,
+                      Func2<Outer, Inner, Result> resultFunc,
+                      Comparator<Key> keyComparator,
+                      boolean sorted) {
+            this.outerCollection = outerCollection;
+            this.innerCollection = innerCollection;
+            this.outerKeyFunc = outerKeyFunc;
+            this.innerKeyFunc = innerKeyFunc;
+            this.resultFunc = resultFunc;
+            this.keyComparator = keyComparator;
+            this.sorted = sorted;
+        }
+
+        @Override
+        protected Result computeNext() {
+            if (outer == null) {
+                outer = new Cursor<Outer, Key>(outerCollection, outerKeyFunc, keyComparator, sorted);
+                inner = new Cursor<Inner, Key>(innerCollection, innerKeyFunc, keyComparator, sorted);
+                inner.advance();
+                runPosition = 0;
+            } else if (runPosition < run.size()) {
+                return resultFunc.callback(outer.value, run.get(runPosition++));
+            }
+
+            while (outer.advance()) {
+                if (!run.isEmpty() && keyComparator.compare(outer.key, runKey) == 0) {
+                    runPosition = 1;
+                    return resultFunc.callback(outer.value, run.get(0));
+                }
+
+                run.clear();
+
+                while (inner.valid && keyComparator.compare(inner.key, outer.key) < 0) {
+                    inner.advance();
+                }
+
+                if (inner.valid && keyComparator.compare(inner.key, outer.key) == 0) {
+                    runKey = inner.key;
+
+                    while (inner.valid && keyComparator.compare(inner.key, runKey) == 0) {
+                        run.add(inner.value);
+                        inner.advance();
+                    }
+
+                    runPosition = 1;
+                    return resultFunc.callback(outer.value, run.get(0));
+                }
+            }
+
+            return endOfData();
+        }
+    }
+}
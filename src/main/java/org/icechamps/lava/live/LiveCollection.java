@@ -0,0 +1,309 @@
+package org.icechamps.lava.live;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.HashMultiset;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Multiset;
+import org.icechamps.lava.callback.ChangeListener;
+import org.icechamps.lava.callback.Func;
+import org.icechamps.lava.callback.Predicate;
+import org.icechamps.lava.callback.ToDoubleFunc;
+import org.icechamps.lava.callback.ToLongFunc;
+import org.icechamps.lava.interfaces.ObservableCollection;
+import org.icechamps.lava.util.ChangeListeners;
+import org.icechamps.lava.util.FuncPredicate;
+
+import java.util.AbstractCollection;
+import java.util.Iterator;
+
+/**
+ * <p>
+ * A read only query result that keeps itself up to date as the collection it was built from changes.
+ * </p>
+ * <p>
+ * The chain is built from an {@link ObservableCollection} with {@link #of(ObservableCollection)}. Each stage reads its
+ * input once when it is created, and from then on only looks at the elements that are added to or removed from it. A
+ * where or select stage handles each change in constant time, as do {@link LiveGroups} and the values returned by
+ * {@link #count()} and the sum methods. Since every stage is also observable, stages can be chained.
+ * </p>
+ * <p>
+ * A select callback is called again with each element that is removed to find the value to take out, so it has to
+ * return equal values for equal elements. The elements of a where or select stage are kept in no particular order.
+ * </p>
+ * <p>
+ * A stage stays registered with its input until {@link #close()} is called, so close the ones that are no longer
+ * needed. Like the collections they follow, live results are not thread safe.
+ * </p>
+ *
+ * @param <T> The type of the object in the result
+ */
+public abstract class LiveCollection<T> extends AbstractCollection<T> implements ObservableCollection<T> {
+    private final ChangeListeners<T> listeners = new ChangeListeners<T>();
+
+    /**
+     * Starts a live chain over the collection
+     *
+     * @param source The collection to follow
+     * @param <T>    The type of the object in the collection
+     * @return A live view of the collection that where, select, groupBy, count and sum can be chained onto
+     */
+    public static <T> LiveCollection<T> of(ObservableCollection<T> source) {
+        Preconditions.checkNotNull(source);
+        return new SourceCollection<T>(source);
+    }
+
+    @Override
+    public void addListener(ChangeListener<? super T> listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void removeListener(ChangeListener<? super T> listener) {
+        listeners.remove(listener);
+    }
+
+    @Override
+    public long getVersion() {
+        return listeners.getVersion();
+    }
+
+    /**
+     * Stops following the input. The result keeps the elements it had, and the stages chained onto it are not
+     * closed.
+     */
+    public abstract void close();
+
+    boolean hasListeners() {
+        return !listeners.isEmpty();
+    }
+
+    void fireAdded(T t) {
+        listeners.added(t);
+    }
+
+    void fireRemoved(T t) {
+        listeners.removed(t);
+    }
+
+    /**
+     * Keeps the elements that match the predicate
+     *
+     * @param func The predicate
+     * @return A live result with the matching elements
+     */
+    public LiveCollection<T> where(Predicate<T> func) {
+        Preconditions.checkNotNull(func);
+        return new WhereCollection<T>(this, func);
+    }
+
+    /**
+     * Keeps the elements that match the callback function
+     *
+     * @param func The callback function
+     * @return A live result with the matching elements
+     */
+    public LiveCollection<T> where(Func<T, Boolean> func) {
+        return where(new FuncPredicate<T>(func));
+    }
+
+    /**
+     * Projects each element with the callback function
+     *
+     * @param func The callback function, which has to return equal values for equal elements
+     * @param <E>  The type of the projected object
+     * @return A live result with the projected elements
+     */
+    public <E> LiveCollection<E> select(Func<T, E> func) {
+        Preconditions.checkNotNull(func);
+        return new SelectCollection<T, E>(this, func);
+    }
+
+    /**
+     * Groups the elements by the keys the key function generates
+     *
+     * @param keyFunc The function used to generate keys
+     * @param <K>     The type of the key
+     * @return Live groups of the elements
+     */
+    public <K> LiveGroups<K, T> groupBy(Func<T, K> keyFunc) {
+        Preconditions.checkNotNull(keyFunc);
+        return new LiveGroups<K, T>(this, keyFunc);
+    }
+
+    /**
+     * @return The live number of elements
+     */
+    public LiveLong<T> count() {
+        return new LiveLong<T>(this, new ToLongFunc<T>() {
+            @Override
+            public long callback(T t) {
+                return 1;
+            }
+        });
+    }
+
+    /**
+     * Adds up the values the callback function returns for the elements
+     *
+     * @param func The callback function
+     * @return The live sum
+     */
+    public LiveLong<T> sum(ToLongFunc<T> func) {
+        Preconditions.checkNotNull(func);
+        return new LiveLong<T>(this, func);
+    }
+
+    /**
+     * Adds up the values the callback function returns for the elements
+     *
+     * @param func The callback function
+     * @return The live sum
+     */
+    public LiveDouble<T> sum(ToDoubleFunc<T> func) {
+        Preconditions.checkNotNull(func);
+        return new LiveDouble<T>(this, func);
+    }
+
+    /**
+     * Runs the elements that are already in the input past the listener, and then registers it for the changes.
+     */
+    static <S> void follow(ObservableCollection<S> input, ChangeListener<S> listener) {
+        for (S s : input) {
+            listener.added(s);
+        }
+
+        input.addListener(listener);
+    }
+
+    /**
+     * The start of a live chain, which passes the changes to the source straight on.
+     */
+    static class SourceCollection<T> extends LiveCollection<T> implements ChangeListener<T> {
+        private final ObservableCollection<T> source;
+
+        SourceCollection(ObservableCollection<T> source) {
+            this.source = source;
+            source.addListener(this);
+        }
+
+        @Override
+        public Iterator<T> iterator() {
+            return Iterators.unmodifiableIterator(source.iterator());
+        }
+
+        @Override
+        public int size() {
+            return source.size();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return source.contains(o);
+        }
+
+        @Override
+        public void added(T t) {
+            fireAdded(t);
+        }
+
+        @Override
+        public void removed(T t) {
+            fireRemoved(t);
+        }
+
+        @Override
+        public void close() {
+            source.removeListener(this);
+        }
+    }
+
+    /**
+     * A result that keeps its elements in a multiset, so that adding, removing, counting and looking up elements all
+     * take constant time.
+     */
+    abstract static class MultisetCollection<T> extends LiveCollection<T> {
+        private final Multiset<T> elements = HashMultiset.create();
+
+        @Override
+        public Iterator<T> iterator() {
+            return Iterators.unmodifiableIterator(elements.iterator());
+        }
+
+        @Override
+        public int size() {
+            return elements.size();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return elements.contains(o);
+        }
+
+        void put(T t) {
+            elements.add(t);
+            fireAdded(t);
+        }
+
+        boolean take(T t) {
+            if (!elements.remove(t))
+                return false;
+
+            fireRemoved(t);
+            return true;
+        }
+    }
+
+    static class WhereCollection<T> extends MultisetCollection<T> implements ChangeListener<T> {
+        private final ObservableCollection<T> input;
+        private final Predicate<T> func;
+
+        WhereCollection(ObservableCollection<T> input, Predicate<T> func) {
+            this.input = input;
+            this.func = func;
+            follow(input, this);
+        }
+
+        @Override
+        public void added(T t) {
+            if (func.callback(t))
+                put(t);
+        }
+
+        @Override
+        public void removed(T t) {
+            // The element itself tells us whether it got through, so the predicate isn't called again
+            take(t);
+        }
+
+        @Override
+        public void close() {
+            input.removeListener(this);
+        }
+    }
+
+    static class SelectCollection<S, T> extends MultisetCollection<T> implements ChangeListener<S> {
+        private final ObservableCollection<S> input;
+        private final Func<S, T> func;
+
+        SelectCollection(ObservableCollection<S> input, Func<S, T> func) {
+            this.input = input;
+            this.func = func;
+            follow(input, this);
+        }
+
+        @Override
+        public void added(S s) {
+            put(func.callback(s));
+        }
+
+        @Override
+        public void removed(S s) {
+            take(func.callback(s));
+        }
+
+        @Override
+        public void close() {
+            input.removeListener(this);
+        }
+    }
+}
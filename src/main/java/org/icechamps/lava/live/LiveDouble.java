@@ -0,0 +1,77 @@
+package org.icechamps.lava.live;
+
+import org.icechamps.lava.callback.ChangeListener;
+import org.icechamps.lava.callback.ToDoubleFunc;
+import org.icechamps.lava.interfaces.ObservableCollection;
+
+/**
+ * <p>
+ * A running total over a live result. Each change adds or takes away the value of one element, so reading the total
+ * never goes through the elements.
+ * </p>
+ * <p>
+ * Taking a value away doesn't always undo adding it exactly, so after a long run of changes the total can drift from
+ * what adding up the current elements would give by a few units in the last place. Infinite and NaN values are
+ * counted rather than added, so once they are removed again the total goes back to a finite number.
+ * </p>
+ *
+ * @param <T> The type of the object being totalled
+ */
+public class LiveDouble<T> implements ChangeListener<T> {
+    private final ObservableCollection<T> input;
+    private final ToDoubleFunc<T> func;
+    private double value;
+    private int positiveInfinities;
+    private int negativeInfinities;
+    private int nans;
+
+    LiveDouble(ObservableCollection<T> input, ToDoubleFunc<T> func) {
+        this.input = input;
+        this.func = func;
+        LiveCollection.follow(input, this);
+    }
+
+    /**
+     * @return The current total
+     */
+    public double get() {
+        if (nans > 0 || (positiveInfinities > 0 && negativeInfinities > 0))
+            return Double.NaN;
+
+        if (positiveInfinities > 0)
+            return Double.POSITIVE_INFINITY;
+
+        if (negativeInfinities > 0)
+            return Double.NEGATIVE_INFINITY;
+
+        return value;
+    }
+
+    /**
+     * Stops following the input. The total keeps the value it had.
+     */
+    public void close() {
+        input.removeListener(this);
+    }
+
+    @Override
+    public void added(T t) {
+        add(func.callback(t), 1);
+    }
+
+    @Override
+    public void removed(T t) {
+        add(func.callback(t), -1);
+    }
+
+    private void add(double d, int sign) {
+        if (Double.isNaN(d))
+            nans += sign;
+        else if (d == Double.POSITIVE_INFINITY)
+            positiveInfinities += sign;
+        else if (d == Double.NEGATIVE_INFINITY)
+            negativeInfinities += sign;
+        else
+            value += sign * d;
+    }
+}
@@ -0,0 +1,144 @@
+package org.icechamps.lava.live;
+
+import org.icechamps.lava.callback.ChangeListener;
+import org.icechamps.lava.callback.Func;
+import org.icechamps.lava.interfaces.ObservableCollection;
+
+import java.util.*;
+
+/**
+ * <p>
+ * The elements of a live result grouped by key, kept up to date one change at a time. Each group is itself a
+ * {@link LiveCollection}, so a group can be counted or summed live on its own.
+ * </p>
+ * <p>
+ * A key is in {@link #keySet()} while its group has elements. Asking for the group of a key that has none returns an
+ * empty group without adding anything, and the group is only kept, and filled up as elements with that key turn up,
+ * once something is chained onto it. Empty groups that nothing is chained onto are dropped.
+ * </p>
+ *
+ * @param <K> The type of the key
+ * @param <T> The type of the object in the groups
+ */
+public class LiveGroups<K, T> implements ChangeListener<T> {
+    private final ObservableCollection<T> input;
+    private final Func<T, K> keyFunc;
+    private final Map<K, GroupCollection> groups = new HashMap<K, GroupCollection>();
+    private final Set<K> keys = new LinkedHashSet<K>();
+
+    LiveGroups(ObservableCollection<T> input, Func<T, K> keyFunc) {
+        this.input = input;
+        this.keyFunc = keyFunc;
+
+        LiveCollection.follow(input, this);
+    }
+
+    /**
+     * @return The keys that have at least one element, in the order they first turned up
+     */
+    public Set<K> keySet() {
+        return Collections.unmodifiableSet(keys);
+    }
+
+    /**
+     * @return The number of groups with at least one element
+     */
+    public int size() {
+        return keys.size();
+    }
+
+    /**
+     * Returns the live group for the key
+     *
+     * @param key The key
+     * @return The elements with the key
+     */
+    public LiveCollection<T> get(K key) {
+        GroupCollection group = groups.get(key);
+        return group != null ? group : new GroupCollection(key);
+    }
+
+    /**
+     * Stops following the input. The groups keep the elements they had.
+     */
+    public void close() {
+        input.removeListener(this);
+    }
+
+    @Override
+    public void added(T t) {
+        K key = keyFunc.callback(t);
+        GroupCollection group = groups.get(key);
+
+        if (group == null) {
+            group = new GroupCollection(key);
+            groups.put(key, group);
+        }
+
+        if (group.isEmpty())
+            keys.add(key);
+
+        group.put(t);
+    }
+
+    @Override
+    public void removed(T t) {
+        K key = keyFunc.callback(t);
+        GroupCollection group = groups.get(key);
+
+        if (group == null || !group.take(t))
+            return;
+
+        if (group.isEmpty()) {
+            keys.remove(key);
+
+            if (!group.hasListeners())
+                groups.remove(key);
+        }
+    }
+
+    /**
+     * A single group. It has no input of its own, since {@link LiveGroups} hands it its changes.
+     */
+    class GroupCollection extends LiveCollection.MultisetCollection<T> {
+        private final K key;
+        private boolean following;
+
+        GroupCollection(K key) {
+            this.key = key;
+        }
+
+        /**
+         * Keeps a group that was handed out for an absent key once something is chained onto it. If elements with the
+         * key have turned up in the meantime, it follows the group they went into instead.
+         */
+        @Override
+        public void addListener(ChangeListener<? super T> listener) {
+            // Registered first, so the listener hears about the elements of a group this one starts following
+            super.addListener(listener);
+
+            GroupCollection group = groups.get(key);
+
+            if (group == null) {
+                groups.put(key, this);
+            } else if (group != this && !following) {
+                following = true;
+                LiveCollection.follow(group, new ChangeListener<T>() {
+                    @Override
+                    public void added(T t) {
+                        put(t);
+                    }
+
+                    @Override
+                    public void removed(T t) {
+                        take(t);
+                    }
+                });
+            }
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package org.icechamps.lava.live;
+
+import org.icechamps.lava.callback.ChangeListener;
+import org.icechamps.lava.callback.ToLongFunc;
+import org.icechamps.lava.interfaces.ObservableCollection;
+
+/**
+ * A running total over a live result. Each change adds or takes away the value of one element, so reading the total
+ * never goes through the elements.
+ *
+ * @param <T> The type of the object being totalled
+ */
+public class LiveLong<T> implements ChangeListener<T> {
+    private final ObservableCollection<T> input;
+    private final ToLongFunc<T> func;
+    private long value;
+
+    LiveLong(ObservableCollection<T> input, ToLongFunc<T> func) {
+        this.input = input;
+        this.func = func;
+        LiveCollection.follow(input, this);
+    }
+
+    /**
+     * @return The current total
+     */
+    public long get() {
+        return value;
+    }
+
+    /**
+     * Stops following the input. The total keeps the value it had.
+     */
+    public void close() {
+        input.removeListener(this);
+    }
+
+    @Override
+    public void added(T t) {
+        value += func.callback(t);
+    }
+
+    @Override
+    public void removed(T t) {
+        value -= func.callback(t);
+    }
+}
@@ -0,0 +1,53 @@
+package org.icechamps.lava.plan;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Reads the number of bytes the current thread has allocated so far, on JVMs that keep track of it. The HotSpot
+ * extension that provides it is only touched after checking that it exists, so the library still loads on JVMs without
+ * it.
+ */
+public class Allocations {
+    private static final boolean SUPPORTED = checkSupported();
+
+    private Allocations() {
+    }
+
+    private static boolean checkSupported() {
+        try {
+            Class.forName("com.sun.management.ThreadMXBean");
+            return HotSpot.isSupported();
+        } catch (Throwable t) {
+            return false;
+        }
+    }
+
+    /**
+     * @return True if allocations can be measured on this JVM
+     */
+    public static boolean isSupported() {
+        return SUPPORTED;
+    }
+
+    /**
+     * @return The number of bytes the current thread has allocated since it started, or -1 if that isn't available
+     */
+    public static long currentThread() {
+        return SUPPORTED ? HotSpot.currentThread() : -1;
+    }
+
+    /**
+     * Kept in its own class so the extension is only loaded once it is known to be there
+     */
+    private static class HotSpot {
+        private static final com.sun.management.ThreadMXBean BEAN = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+        static boolean isSupported() {
+            return BEAN.isThreadAllocatedMemorySupported() && BEAN.isThreadAllocatedMemoryEnabled();
+        }
+
+        static long currentThread() {
+            return BEAN.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+    }
+}
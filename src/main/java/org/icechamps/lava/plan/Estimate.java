@@ -0,0 +1,115 @@
+package org.icechamps.lava.plan;
+
+/**
+ * The rules used to estimate how many rows an operator produces from the estimates of its inputs, before anything has
+ * run. The estimates are rough: a filter is assumed to keep half of its input, and a join to produce about as many rows
+ * as its larger input. An unknown estimate is -1, and an operator with an unknown input has an unknown estimate.
+ */
+public enum Estimate {
+    /**
+     * A source whose size is known up front. The argument is the size.
+     */
+    EXACT {
+        @Override
+        long rows(long[] inputs, long argument) {
+            return argument;
+        }
+    },
+
+    /**
+     * One row out for each row in, like select or orderBy
+     */
+    SAME {
+        @Override
+        long rows(long[] inputs, long argument) {
+            return inputs.length > 0 ? inputs[0] : -1;
+        }
+    },
+
+    /**
+     * Some of the rows of the first input, like where, distinct or except
+     */
+    FILTER {
+        @Override
+        long rows(long[] inputs, long argument) {
+            return inputs.length > 0 && inputs[0] >= 0 ? (inputs[0] + 1) / 2 : -1;
+        }
+    },
+
+    /**
+     * At most the argument's number of rows, like take or topK
+     */
+    LIMIT {
+        @Override
+        long rows(long[] inputs, long argument) {
+            return inputs.length > 0 && inputs[0] >= 0 ? Math.min(inputs[0], argument) : argument;
+        }
+    },
+
+    /**
+     * All but the argument's number of rows, like skip
+     */
+    SKIP {
+        @Override
+        long rows(long[] inputs, long argument) {
+            return inputs.length > 0 && inputs[0] >= 0 ? Math.max(0, inputs[0] - argument) : -1;
+        }
+    },
+
+    /**
+     * The rows of every input, like concat or union
+     */
+    SUM {
+        @Override
+        long rows(long[] inputs, long argument) {
+            long ret = 0;
+
+            for (long input : inputs) {
+                if (input < 0)
+                    return -1;
+
+                ret += input;
+            }
+
+            return ret;
+        }
+    },
+
+    /**
+     * About as many rows as the larger input, which is what a join on a key and a foreign key produces
+     */
+    JOIN {
+        @Override
+        long rows(long[] inputs, long argument) {
+            long ret = -1;
+
+            for (long input : inputs) {
+                if (input < 0)
+                    return -1;
+
+                ret = Math.max(ret, input);
+            }
+
+            return ret;
+        }
+    },
+
+    /**
+     * No useful guess, like selectMany or groupBy
+     */
+    UNKNOWN {
+        @Override
+        long rows(long[] inputs, long argument) {
+            return -1;
+        }
+    };
+
+    /**
+     * Estimates the number of rows an operator produces
+     *
+     * @param inputs   The estimated rows of each input
+     * @param argument The operator's own argument, like the count of a take
+     * @return The estimated number of rows, or -1 if it is unknown
+     */
+    abstract long rows(long[] inputs, long argument);
+}
@@ -0,0 +1,184 @@
+package org.icechamps.lava.plan;
+
+import com.google.common.base.Preconditions;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * <p>
+ * One operator in the tree that produced an enumerable, along with the operators that produced its inputs.
+ * </p>
+ * <p>
+ * Every node has an estimated row count, worked out from its inputs with an {@link Estimate} rule before anything runs.
+ * Nodes that have run also carry their actual row count, the time they took and the bytes they allocated. The time and
+ * bytes only cover the operator itself and not its inputs, and are -1 when they weren't measured.
+ * </p>
+ * <p>
+ * Plans don't hold on to any of the elements, so keeping one around doesn't keep the data alive.
+ * </p>
+ */
+public class Plan {
+    private final String operator;
+    private final List<Plan> inputs;
+    private final long estimatedRows;
+    private final long actualRows;
+    private final long nanos;
+    private final long bytes;
+
+    /**
+     * Creates a plan node for an operator
+     *
+     * @param operator   The name of the operator
+     * @param estimate   The rule used to estimate the rows
+     * @param argument   The operator's own argument for the estimate, like the count of a take
+     * @param inputs     The plans of the operator's inputs
+     * @param actualRows The number of rows the operator produced, or -1 if it hasn't run
+     * @param nanos      The time spent in the operator, or -1 if it wasn't measured
+     * @param bytes      The bytes allocated by the operator, or -1 if they weren't measured
+     */
+    public Plan(String operator, Estimate estimate, long argument, List<Plan> inputs, long actualRows, long nanos, long bytes) {
+        Preconditions.checkNotNull(operator);
+        Preconditions.checkNotNull(estimate);
+        Preconditions.checkNotNull(inputs);
+
+        long[] estimates = new long[inputs.size()];
+        for (int i = 0; i < estimates.length; i++) {
+            estimates[i] = inputs.get(i).getEstimatedRows();
+        }
+
+        this.operator = operator;
+        this.inputs = Collections.unmodifiableList(new ArrayList<Plan>(inputs));
+        this.estimatedRows = estimate.rows(estimates, argument);
+        this.actualRows = actualRows;
+        this.nanos = nanos;
+        this.bytes = bytes;
+    }
+
+    /**
+     * Creates a plan node for a source of elements that isn't produced by an operator, like a list
+     *
+     * @param name The name of the source
+     * @param rows The number of elements in the source, or -1 if it is unknown
+     * @return The plan for the source
+     */
+    public static Plan source(String name, long rows) {
+        return new Plan(name, Estimate.EXACT, rows, Collections.<Plan>emptyList(), rows, -1, -1);
+    }
+
+    /**
+     * Turns a class name into an operator name by dropping the Enumerable or Enumerator suffix, along with the number
+     * that tells overloads apart. Anonymous classes are named after the class they extend.
+     *
+     * @param type The class of the operator
+     * @return The name of the operator
+     */
+    public static String nameOf(Class<?> type) {
+        while (type.isAnonymousClass()) {
+            type = type.getSuperclass();
+        }
+
+        String name = type.getSimpleName();
+        int end = name.length();
+
+        while (end > 0 && Character.isDigit(name.charAt(end - 1))) {
+            end--;
+        }
+
+        name = name.substring(0, end);
+
+        for (String suffix : new String[]{"Enumerable", "Enumerator"}) {
+            if (name.endsWith(suffix) && name.length() > suffix.length())
+                return name.substring(0, name.length() - suffix.length());
+        }
+
+        return name;
+    }
+
+    /**
+     * @return The name of the operator
+     */
+    public String getOperator() {
+        return operator;
+    }
+
+    /**
+     * @return The plans of the operator's inputs
+     */
+    public List<Plan> getInputs() {
+        return inputs;
+    }
+
+    /**
+     * @return The number of rows the operator was expected to produce, or -1 if there was no way to tell
+     */
+    public long getEstimatedRows() {
+        return estimatedRows;
+    }
+
+    /**
+     * @return The number of rows the operator produced, or -1 if it hasn't run
+     */
+    public long getActualRows() {
+        return actualRows;
+    }
+
+    /**
+     * @return The time spent in the operator itself in nanoseconds, or -1 if it wasn't measured
+     */
+    public long getNanos() {
+        return nanos;
+    }
+
+    /**
+     * @return The bytes allocated by the operator itself, or -1 if they weren't measured
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * @return True if the operator has run and its actual numbers are filled in
+     */
+    public boolean hasRun() {
+        return actualRows >= 0;
+    }
+
+    /**
+     * Renders the tree with one operator per line and each input indented under the operator that reads it.
+     *
+     * @return The tree as text
+     */
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        append(builder, 0);
+        return builder.toString();
+    }
+
+    private void append(StringBuilder builder, int depth) {
+        for (int i = 0; i < depth; i++) {
+            builder.append("  ");
+        }
+
+        builder.append(operator).append(" (estimated=").append(estimatedRows >= 0 ? String.valueOf(estimatedRows) : "?");
+
+        if (actualRows >= 0)
+            builder.append(", actual=").append(actualRows);
+
+        if (nanos >= 0)
+            builder.append(", time=").append(String.format(Locale.ROOT, "%.3fms", nanos / 1e6));
+
+        if (bytes >= 0)
+            builder.append(", allocated=").append(bytes).append('B');
+
+        builder.append(')');
+
+        for (Plan input : inputs) {
+            builder.append('\n');
+            input.append(builder, depth + 1);
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package org.icechamps.lava.query;
+
+import com.google.common.base.Preconditions;
+import org.icechamps.lava.callback.Func;
+import org.icechamps.lava.callback.Predicate;
+import org.icechamps.lava.collection.LavaList;
+import org.icechamps.lava.interfaces.Enumerable;
+import org.icechamps.lava.util.AndPredicate;
+import org.icechamps.lava.util.ComposedFunction;
+import org.icechamps.lava.util.Group;
+import org.icechamps.lava.util.Lookup;
+
+import java.util.*;
+
+/**
+ * <p>
+ * A {@link Query} that has been checked and prepared once so it can be applied to many collections cheaply.
+ * </p>
+ * <p>
+ * Consecutive wheres and consecutive selects are merged when the query is compiled, and the steps between two groupBys
+ * run as a single loop over the elements. Applying the query only allocates what the result needs, plus the groups of
+ * a groupBy step and the list between a groupBy and the steps after it. Lists with random access are read by index, so
+ * not even an iterator is created for them.
+ * </p>
+ * <p>
+ * A compiled query holds no state between calls, so it can be applied from any number of threads at once as long as
+ * the callback functions can be.
+ * </p>
+ *
+ * @param <TIn>  The type of the object in the collections the query is applied to
+ * @param <TOut> The type of the object the query produces
+ */
+public class CompiledQuery<TIn, TOut extends Comparable<? super TOut>> {
+    /**
+     * Returned by an operation when the element has been filtered out
+     */
+    private static final Object SKIP = new Object();
+
+    private final Segment<?>[] segments;
+
+    /**
+     * Compiles the query
+     *
+     * @param query The query to compile
+     */
+    public CompiledQuery(Query<TIn, TOut> query) {
+        Preconditions.checkNotNull(query);
+
+        List<Segment<?>> ret = new ArrayList<Segment<?>>();
+        List<Operation> operations = new ArrayList<Operation>();
+        Query.Step pending = null;
+
+        for (Query.Step step : query.steps()) {
+            if (step.kind == Query.Step.GROUP_BY) {
+                addPending(operations, pending);
+                pending = null;
+
+                ret.add(segment(operations.toArray(new Operation[operations.size()]), step.func, step.valueFunc));
+                operations.clear();
+            } else if (pending != null && pending.kind == step.kind) {
+                pending = merge(pending, step);
+            } else {
+                addPending(operations, pending);
+                pending = step;
+            }
+        }
+
+        addPending(operations, pending);
+        ret.add(segment(operations.toArray(new Operation[operations.size()]), null, null));
+
+        segments = ret.toArray(new Segment<?>[ret.size()]);
+    }
+
+    /**
+     * Creates a segment. The key type of a groupBy is only known to the query's builder, so it is taken on trust here,
+     * the same way the callbacks of the other steps are.
+     */
+    @SuppressWarnings("unchecked")
+    private static <K extends Comparable<? super K>> Segment<K> segment(Operation[] operations, Object keyFunc, Object valueFunc) {
+        return new Segment<K>(operations, (Func<Object, K>) keyFunc, (Func<Object, Object>) valueFunc);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Query.Step merge(Query.Step first, Query.Step second) {
+        if (first.kind == Query.Step.WHERE)
+            return new Query.Step(Query.Step.WHERE, new AndPredicate<Object>((Predicate<Object>) first.func, (Predicate<Object>) second.func), null);
+
+        return new Query.Step(Query.Step.SELECT, new ComposedFunction<Object, Object, Object>((Func<Object, Object>) first.func, (Func<Object, Object>) second.func), null);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void addPending(List<Operation> operations, Query.Step step) {
+        if (step == null)
+            return;
+
+        if (step.kind == Query.Step.WHERE)
+            operations.add(new Where((Predicate<Object>) step.func));
+        else
+            operations.add(new Select((Func<Object, Object>) step.func));
+    }
+
+    /**
+     * Applies the query to the collection
+     *
+     * @param source The collection to apply the query to
+     * @return A new Enumerable containing the results
+     */
+    public Enumerable<TOut> apply(Collection<TIn> source) {
+        return applyTo(source, new LavaList<TOut>());
+    }
+
+    /**
+     * Applies the query to the collection and adds the results to the target, which lets callers reuse a collection
+     * between calls.
+     *
+     * @param source The collection to apply the query to
+     * @param target The collection the results are added to
+     * @param <C>    The type of the target collection
+     * @return The target collection
+     */
+    @SuppressWarnings("unchecked")
+    public <C extends Collection<? super TOut>> C applyTo(Collection<TIn> source, C target) {
+        Preconditions.checkNotNull(source);
+        Preconditions.checkNotNull(target);
+
+        Collection<?> input = source;
+        int last = segments.length - 1;
+
+        for (int i = 0; i < last; i++) {
+            input = segments[i].group(input);
+        }
+
+        segments[last].run(input, (Collection<Object>) target);
+        return target;
+    }
+
+    /**
+     * The steps between two groupBys, followed by the groupBy itself unless it is the last segment.
+     *
+     * @param <K> The type of the key of the groupBy
+     */
+    static class Segment<K extends Comparable<? super K>> {
+        private final Operation[] operations;
+        private final Func<Object, K> keyFunc;
+        private final Func<Object, Object> valueFunc;
+
+        Segment(Operation[] operations, Func<Object, K> keyFunc, Func<Object, Object> valueFunc) {
+            this.operations = operations;
+            this.keyFunc = keyFunc;
+            this.valueFunc = valueFunc;
+        }
+
+        List<Group<K, Object>> group(Collection<?> input) {
+            Lookup<K, Object> lookup = Lookup.create(0, null);
+
+            if (input instanceof List && input instanceof RandomAccess) {
+                List<?> list = (List<?>) input;
+
+                for (int i = 0, size = list.size(); i < size; i++) {
+                    Object value = transform(list.get(i));
+                    if (value != SKIP)
+                        lookup.getGroupForKey(keyFunc.callback(value), true).add(valueFunc.callback(value));
+                }
+            } else {
+                for (Object o : input) {
+                    Object value = transform(o);
+                    if (value != SKIP)
+                        lookup.getGroupForKey(keyFunc.callback(value), true).add(valueFunc.callback(value));
+                }
+            }
+
+            return lookup.getGroups();
+        }
+
+        void run(Collection<?> input, Collection<Object> output) {
+            if (input instanceof List && input instanceof RandomAccess) {
+                List<?> list = (List<?>) input;
+
+                for (int i = 0, size = list.size(); i < size; i++) {
+                    Object value = transform(list.get(i));
+                    if (value != SKIP)
+                        output.add(value);
+                }
+            } else {
+                for (Object o : input) {
+                    Object value = transform(o);
+                    if (value != SKIP)
+                        output.add(value);
+                }
+            }
+        }
+
+        private Object transform(Object value) {
+            for (Operation operation : operations) {
+                value = operation.apply(value);
+
+                if (value == SKIP)
+                    break;
+            }
+
+            return value;
+        }
+    }
+
+    /**
+     * A where or select step, which returns {@link #SKIP} for elements that are filtered out.
+     */
+    abstract static class Operation {
+        abstract Object apply(Object value);
+    }
+
+    static class Where extends Operation {
+        private final Predicate<Object> func;
+
+        Where(Predicate<Object> func) {
+            this.func = func;
+        }
+
+        @Override
+        Object apply(Object value) {
+            return func.callback(value) ? value : SKIP;
+        }
+    }
+
+    static class Select extends Operation {
+        private final Func<Object, Object> func;
+
+        Select(Func<Object, Object> func) {
+            this.func = func;
+        }
+
+        @Override
+        Object apply(Object value) {
+            return func.callback(value);
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package org.icechamps.lava.query;
+
+import com.google.common.base.Preconditions;
+import org.icechamps.lava.callback.Func;
+import org.icechamps.lava.callback.Predicate;
+import org.icechamps.lava.util.FuncPredicate;
+import org.icechamps.lava.util.Group;
+import org.icechamps.lava.util.IdentityFunction;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <p>
+ * A description of a where, select and groupBy pipeline that isn't tied to any particular collection. Build it once,
+ * starting from {@link #create()}, and hand it to {@link org.icechamps.lava.Lava#compile(Query)} to get a
+ * {@link CompiledQuery} that can be applied to as many collections as needed.
+ * </p>
+ * <p>
+ * Queries are immutable, so every step returns a new query and an unfinished query can be shared and extended in
+ * different directions.
+ * </p>
+ *
+ * @param <TIn> The type of the object in the collections the query is applied to
+ * @param <T>   The type of the object the query produces so far
+ */
+public class Query<TIn, T> {
+    private final Query<TIn, ?> previous;
+    private final Step step;
+
+    private Query(Query<TIn, ?> previous, Step step) {
+        this.previous = previous;
+        this.step = step;
+    }
+
+    /**
+     * Starts a new query that doesn't do anything yet
+     *
+     * @param <T> The type of the object in the collections the query is applied to
+     * @return The empty query
+     */
+    public static <T> Query<T, T> create() {
+        return new Query<T, T>(null, null);
+    }
+
+    /**
+     * Adds a step that only keeps the elements the callback function accepts
+     *
+     * @param func The callback function used to filter the elements
+     * @return The extended query
+     */
+    public Query<TIn, T> where(Func<T, Boolean> func) {
+        return where(new FuncPredicate<T>(func));
+    }
+
+    /**
+     * Adds a step that only keeps the elements the callback function accepts
+     *
+     * @param func The callback function used to filter the elements
+     * @return The extended query
+     */
+    public Query<TIn, T> where(Predicate<T> func) {
+        Preconditions.checkNotNull(func);
+        return new Query<TIn, T>(this, new Step(Step.WHERE, func, null));
+    }
+
+    /**
+     * Adds a step that transforms each element using the callback function
+     *
+     * @param func The callback function used to transform the elements
+     * @param <E>  The type of the transformed elements
+     * @return The extended query
+     */
+    public <E> Query<TIn, E> select(Func<T, E> func) {
+        Preconditions.checkNotNull(func);
+        return new Query<TIn, E>(this, new Step(Step.SELECT, func, null));
+    }
+
+    /**
+     * Adds a step that groups the elements by the keys the callback function generates. The groups come out in the
+     * order their keys are first seen.
+     *
+     * @param keyFunc The callback function used to generate the keys
+     * @param <K>     The type of the key
+     * @return The extended query
+     */
+    public <K extends Comparable<? super K>> Query<TIn, Group<K, T>> groupBy(Func<T, K> keyFunc) {
+        return groupBy(keyFunc, new IdentityFunction<T>());
+    }
+
+    /**
+     * Adds a step that groups the values the second callback function generates by the keys the first one generates.
+     * The groups come out in the order their keys are first seen.
+     *
+     * @param keyFunc   The callback function used to generate the keys
+     * @param valueFunc The callback function used to generate the values
+     * @param <K>       The type of the key
+     * @param <V>       The type of the value
+     * @return The extended query
+     */
+    public <K extends Comparable<? super K>, V> Query<TIn, Group<K, V>> groupBy(Func<T, K> keyFunc, Func<T, V> valueFunc) {
+        Preconditions.checkNotNull(keyFunc);
+        Preconditions.checkNotNull(valueFunc);
+        return new Query<TIn, Group<K, V>>(this, new Step(Step.GROUP_BY, keyFunc, valueFunc));
+    }
+
+    /**
+     * @return The steps of the query, in the order they run
+     */
+    List<Step> steps() {
+        List<Step> ret = new ArrayList<Step>();
+
+        for (Query<TIn, ?> query = this; query.step != null; query = query.previous) {
+            ret.add(query.step);
+        }
+
+        Collections.reverse(ret);
+        return ret;
+    }
+
+    /**
+     * One step of a query, with the callback functions it was given.
+     */
+    static class Step {
+        static final int WHERE = 0;
+        static final int SELECT = 1;
+        static final int GROUP_BY = 2;
+
+        final int kind;
+        final Object func;
+        final Object valueFunc;
+
+        Step(int kind, Object func, Object valueFunc) {
+            this.kind = kind;
+            this.func = func;
+            this.valueFunc = valueFunc;
+        }
+    }
+}
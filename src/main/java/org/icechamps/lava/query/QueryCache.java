@@ -0,0 +1,176 @@
+package org.icechamps.lava.query;
+
+import com.google.common.base.Preconditions;
+import org.icechamps.lava.collection.LazyEnumerable;
+import org.icechamps.lava.interfaces.Enumerable;
+import org.icechamps.lava.interfaces.ObservableCollection;
+
+import java.util.*;
+
+/**
+ * <p>
+ * A bounded cache of the results of {@link CompiledQuery compiled queries}, so that applying the same query to the same
+ * collection again doesn't run it again while the collection is unchanged.
+ * </p>
+ * <p>
+ * Entries are keyed by the identity of the query and of the collection, and once the cache is full the least recently
+ * used entry is dropped. An {@link ObservableCollection} counts as unchanged while its
+ * {@link ObservableCollection#getVersion() version} stays the same, which catches every element that is added, removed
+ * or replaced through it. Nothing is known about changes to any other collection, so its results are reused until
+ * {@link #invalidate(Collection)} is called for it. Neither check reads the collection, so a hit costs the same however
+ * big the collection is. Changes made to the elements themselves are never seen; call {@link #invalidate(Collection)}
+ * after those as well.
+ * </p>
+ * <p>
+ * The cache holds on to the collections and results of its entries until they are dropped. It can be shared between
+ * threads. Two threads that miss on the same entry at once both run the query.
+ * </p>
+ */
+public class QueryCache {
+    private final Map<Key, Result> entries;
+    private long hits;
+    private long misses;
+
+    /**
+     * Creates an empty cache
+     *
+     * @param maxEntries The most results to keep at once
+     */
+    public QueryCache(final int maxEntries) {
+        Preconditions.checkArgument(maxEntries > 0, "The cache needs room for at least one entry");
+
+        entries = new LinkedHashMap<Key, Result>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Result> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Applies the query to the collection, or returns the results from the last time if the collection hasn't changed
+     * since then. Only an {@link ObservableCollection} can be seen to change; the results for any other collection are
+     * kept until it is invalidated.
+     *
+     * @param query  The query to apply
+     * @param source The collection to apply the query to
+     * @param <TIn>  The type of the object in the collection
+     * @param <TOut> The type of the object the query produces
+     * @return A read only Enumerable over the results
+     */
+    @SuppressWarnings("unchecked")
+    public <TIn, TOut extends Comparable<? super TOut>> Enumerable<TOut> apply(CompiledQuery<TIn, TOut> query, Collection<TIn> source) {
+        Preconditions.checkNotNull(query);
+        Preconditions.checkNotNull(source);
+
+        Key key = new Key(query, source);
+        long version = versionOf(source);
+
+        synchronized (this) {
+            Result cached = entries.get(key);
+
+            if (cached != null && cached.version == version) {
+                hits++;
+                return LazyEnumerable.create((List<TOut>) cached.results);
+            }
+
+            misses++;
+        }
+
+        // The query runs outside the lock so one slow query doesn't hold up every other caller
+        List<TOut> results = Collections.unmodifiableList(query.applyTo(source, new ArrayList<TOut>()));
+
+        synchronized (this) {
+            entries.put(key, new Result(version, results));
+        }
+
+        return LazyEnumerable.create(results);
+    }
+
+    /**
+     * Drops every entry for the collection, whatever query it was for. Collections that aren't observable have to be
+     * invalidated after every change.
+     *
+     * @param source The collection that has changed
+     */
+    public synchronized void invalidate(Collection<?> source) {
+        Iterator<Key> iter = entries.keySet().iterator();
+
+        while (iter.hasNext()) {
+            if (iter.next().source == source)
+                iter.remove();
+        }
+    }
+
+    /**
+     * Drops every entry. The hit and miss counts are kept.
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * @return The number of entries in the cache
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return The number of times results were returned from the cache
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return The number of times the query had to be run
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    private static long versionOf(Collection<?> source) {
+        return source instanceof ObservableCollection ? ((ObservableCollection<?>) source).getVersion() : 0;
+    }
+
+    /**
+     * A query and collection pair, compared by identity.
+     */
+    static class Key {
+        final Object query;
+        final Object source;
+
+        Key(Object query, Object source) {
+            this.query = query;
+            this.source = source;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key))
+                return false;
+
+            Key other = (Key) o;
+            return query == other.query && source == other.source;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(query) + System.identityHashCode(source);
+        }
+    }
+
+    /**
+     * The results of a query, along with the version of the collection they were worked out from.
+     */
+    static class Result {
+        final long version;
+        final List<?> results;
+
+        Result(long version, List<?> results) {
+            this.version = version;
+            this.results = results;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package org.icechamps.lava.reactive;
+
+/**
+ * <p>
+ * A source of elements that are pushed to its subscribers, but never faster than they ask for them.
+ * </p>
+ * <p>
+ * This follows the Reactive Streams contract that {@code java.util.concurrent.Flow} is based on: the subscriber is
+ * handed a {@link Subscription} first, at most as many elements as it has requested are passed to
+ * {@link Subscriber#onNext}, the calls are never made concurrently, and the stream ends with either
+ * {@link Subscriber#onComplete()} or {@link Subscriber#onError(Throwable)}. Elements are never null.
+ * </p>
+ *
+ * @param <T> The type of the published elements
+ */
+public interface Publisher<T> {
+    /**
+     * Starts sending elements to the subscriber once it asks for them
+     *
+     * @param subscriber The subscriber
+     */
+    public void subscribe(Subscriber<? super T> subscriber);
+}
@@ -0,0 +1,611 @@
+package org.icechamps.lava.reactive;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.AbstractIterator;
+import org.icechamps.lava.callback.Func;
+import org.icechamps.lava.callback.Func2;
+import org.icechamps.lava.callback.Predicate;
+import org.icechamps.lava.util.FuncPredicate;
+
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>
+ * The push based counterpart of an Enumerable. Instead of pulling elements from a collection, the operators here are
+ * handed elements by a {@link Publisher} as they arrive, and pass their results on to their own subscribers.
+ * </p>
+ * <p>
+ * Backpressure runs the other way: every operator only asks its input for as many elements as its subscriber has asked
+ * it for, so a slow subscriber at the end of a chain holds back the source at the start of it instead of elements
+ * piling up in between. A where that drops an element asks for another one in its place. The groupBy and aggregate
+ * operators, which only have a result once their input is done, ask for everything as soon as their subscriber asks
+ * for anything, but only keep one aggregate per key.
+ * </p>
+ * <p>
+ * {@link #from(Iterable)} and {@link #from(Publisher)} start a chain, and {@link #toIterator(int)} turns one back into
+ * a blocking Iterator that only ever has a bounded number of elements waiting. A chain can be subscribed to any number
+ * of times, and each subscription runs it again.
+ * </p>
+ *
+ * @param <T> The type of the published elements
+ */
+public abstract class PushEnumerable<T> implements Publisher<T> {
+
+    /**
+     * Publishes the elements of the iterable, reading each one only once it has been asked for. Every subscriber gets
+     * its own iterator.
+     *
+     * @param source The elements to publish, none of which can be null
+     * @param <T>    The type of the elements
+     * @return A publisher of the elements
+     */
+    public static <T> PushEnumerable<T> from(final Iterable<T> source) {
+        Preconditions.checkNotNull(source);
+
+        return new PushEnumerable<T>() {
+            @Override
+            public void subscribe(Subscriber<? super T> subscriber) {
+                Preconditions.checkNotNull(subscriber);
+
+                IterableSubscription<T> subscription = new IterableSubscription<T>(source.iterator(), subscriber);
+                subscriber.onSubscribe(subscription);
+
+                // An empty source completes without waiting for a request
+                subscription.drain();
+            }
+        };
+    }
+
+    /**
+     * Wraps a publisher so the operators can be chained onto it
+     *
+     * @param publisher The publisher
+     * @param <T>       The type of the published elements
+     * @return The publisher, wrapped if need be
+     */
+    public static <T> PushEnumerable<T> from(final Publisher<T> publisher) {
+        Preconditions.checkNotNull(publisher);
+
+        if (publisher instanceof PushEnumerable)
+            return (PushEnumerable<T>) publisher;
+
+        return new PushEnumerable<T>() {
+            @Override
+            public void subscribe(Subscriber<? super T> subscriber) {
+                publisher.subscribe(subscriber);
+            }
+        };
+    }
+
+    /**
+     * Passes on the elements that match the predicate
+     *
+     * @param func The predicate
+     * @return A publisher of the matching elements
+     */
+    public PushEnumerable<T> where(final Predicate<T> func) {
+        Preconditions.checkNotNull(func);
+
+        return new Operator<T, T>(this) {
+            @Override
+            Subscriber<T> wrap(Subscriber<? super T> subscriber) {
+                return new Relay<T, T>(subscriber) {
+                    @Override
+                    void next(T t) {
+                        if (func.callback(t))
+                            downstream.onNext(t);
+                        else
+                            upstream.request(1);
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * Passes on the elements that match the callback function
+     *
+     * @param func The callback function
+     * @return A publisher of the matching elements
+     */
+    public PushEnumerable<T> where(Func<T, Boolean> func) {
+        return where(new FuncPredicate<T>(func));
+    }
+
+    /**
+     * Projects each element with the callback function
+     *
+     * @param func The callback function, which can't return null
+     * @param <E>  The type of the projected object
+     * @return A publisher of the projected elements
+     */
+    public <E> PushEnumerable<E> select(final Func<T, E> func) {
+        Preconditions.checkNotNull(func);
+
+        return new Operator<T, E>(this) {
+            @Override
+            Subscriber<T> wrap(Subscriber<? super E> subscriber) {
+                return new Relay<T, E>(subscriber) {
+                    @Override
+                    void next(T t) {
+                        downstream.onNext(Preconditions.checkNotNull(func.callback(t), "A publisher can't send null"));
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * Passes on the first elements and then cancels the input
+     *
+     * @param count The number of elements to pass on
+     * @return A publisher of the first elements
+     */
+    public PushEnumerable<T> take(final long count) {
+        Preconditions.checkArgument(count >= 0);
+
+        return new Operator<T, T>(this) {
+            @Override
+            Subscriber<T> wrap(Subscriber<? super T> subscriber) {
+                return new Relay<T, T>(subscriber) {
+                    private volatile long remaining = count;
+
+                    @Override
+                    public void request(long n) {
+                        // Nothing can be sent once the count is reached, and the input has been cancelled by then
+                        if (remaining > 0)
+                            super.request(n);
+                    }
+
+                    @Override
+                    void subscribed() {
+                        if (remaining == 0) {
+                            upstream.cancel();
+                            onComplete();
+                        }
+                    }
+
+                    @Override
+                    void next(T t) {
+                        downstream.onNext(t);
+
+                        if (--remaining == 0) {
+                            upstream.cancel();
+                            onComplete();
+                        }
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * Aggregates the elements, and publishes the result once the input completes. Just like
+     * {@link org.icechamps.lava.Lava#aggregate}, the callback function is given null along with the first element. Nothing
+     * is published if the result is null.
+     *
+     * @param func The callback function that folds an element into the aggregate
+     * @param <V>  The type of the aggregate
+     * @return A publisher of the single aggregate
+     */
+    public <V> PushEnumerable<V> aggregate(final Func2<T, V, V> func) {
+        Preconditions.checkNotNull(func);
+
+        return new Operator<T, V>(this) {
+            @Override
+            Subscriber<T> wrap(Subscriber<? super V> subscriber) {
+                return new Reducer<T, V>(subscriber) {
+                    private V value;
+
+                    @Override
+                    void next(T t) {
+                        value = func.callback(t, value);
+                    }
+
+                    @Override
+                    V result() {
+                        return value;
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * Groups the elements by key, aggregating each group as its elements arrive, and publishes the aggregates once the
+     * input completes. Only the aggregates are kept, not the elements.
+     *
+     * @param keyFunc The function used to generate keys
+     * @param func    The callback function that folds an element into the aggregate for its key
+     * @param <K>     The type of the key
+     * @param <V>     The type of the aggregate
+     * @return A publisher of a single map from each key to its aggregate, in the order the keys first showed up
+     */
+    public <K, V> PushEnumerable<Map<K, V>> groupBy(final Func<T, K> keyFunc, final Func2<T, V, V> func) {
+        Preconditions.checkNotNull(keyFunc);
+        Preconditions.checkNotNull(func);
+
+        return new Operator<T, Map<K, V>>(this) {
+            @Override
+            Subscriber<T> wrap(Subscriber<? super Map<K, V>> subscriber) {
+                return new Reducer<T, Map<K, V>>(subscriber) {
+                    private final Map<K, V> groups = new LinkedHashMap<K, V>();
+
+                    @Override
+                    void next(T t) {
+                        K key = keyFunc.callback(t);
+                        groups.put(key, func.callback(t, groups.get(key)));
+                    }
+
+                    @Override
+                    Map<K, V> result() {
+                        return groups;
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * Subscribes and hands the elements out through a blocking Iterator. At most {@code prefetch} elements are asked
+     * for ahead of the caller, and more are asked for in batches as it catches up, so a slow caller slows the publisher
+     * down instead of letting elements build up. A failure of the publisher is rethrown from the iterator.
+     *
+     * @param prefetch The most elements to have waiting
+     * @return An iterator over the published elements
+     */
+    public Iterator<T> toIterator(int prefetch) {
+        Preconditions.checkArgument(prefetch > 0);
+
+        BlockingIterator<T> ret = new BlockingIterator<T>(prefetch);
+        subscribe(ret);
+        return ret;
+    }
+
+    /**
+     * An operator that subscribes to its input on behalf of each of its own subscribers.
+     */
+    abstract static class Operator<S, T> extends PushEnumerable<T> {
+        private final Publisher<S> input;
+
+        Operator(Publisher<S> input) {
+            this.input = input;
+        }
+
+        @Override
+        public void subscribe(Subscriber<? super T> subscriber) {
+            Preconditions.checkNotNull(subscriber);
+            input.subscribe(wrap(subscriber));
+        }
+
+        abstract Subscriber<S> wrap(Subscriber<? super T> subscriber);
+    }
+
+    /**
+     * Sits between an input and a subscriber, passing requests up and results down. A callback that throws cancels the
+     * input and fails the subscriber.
+     */
+    abstract static class Relay<S, T> implements Subscriber<S>, Subscription {
+        final Subscriber<? super T> downstream;
+        Subscription upstream;
+        boolean done;
+
+        Relay(Subscriber<? super T> downstream) {
+            this.downstream = downstream;
+        }
+
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            upstream = subscription;
+            downstream.onSubscribe(this);
+            subscribed();
+        }
+
+        @Override
+        public void onNext(S s) {
+            if (done)
+                return;
+
+            try {
+                next(s);
+            } catch (RuntimeException e) {
+                upstream.cancel();
+                onError(e);
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            if (done)
+                return;
+
+            done = true;
+            downstream.onError(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            if (done)
+                return;
+
+            done = true;
+            downstream.onComplete();
+        }
+
+        @Override
+        public void request(long n) {
+            upstream.request(n);
+        }
+
+        @Override
+        public void cancel() {
+            upstream.cancel();
+        }
+
+        void subscribed() {
+        }
+
+        abstract void next(S s);
+    }
+
+    /**
+     * A relay that reads its whole input before it has anything to send, and then sends a single result. An input that
+     * completes before the subscriber has asked for anything, like an empty iterable, has its result held back until
+     * the first request.
+     */
+    abstract static class Reducer<S, T> extends Relay<S, T> {
+        private static final int REQUESTED = 1;
+        private static final int FINISHED = 2;
+
+        private final AtomicInteger state = new AtomicInteger();
+        private T result;
+
+        Reducer(Subscriber<? super T> downstream) {
+            super(downstream);
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                cancel();
+                onError(new IllegalArgumentException("The number of elements requested must be positive"));
+                return;
+            }
+
+            int previous = set(REQUESTED);
+
+            // The result is the only thing the subscriber can get, so one request is enough to read everything
+            if ((previous & REQUESTED) == 0) {
+                if ((previous & FINISHED) != 0)
+                    send();
+                else
+                    upstream.request(Long.MAX_VALUE);
+            }
+        }
+
+        @Override
+        public void onComplete() {
+            if (done)
+                return;
+
+            try {
+                result = result();
+            } catch (RuntimeException e) {
+                onError(e);
+                return;
+            }
+
+            if ((set(FINISHED) & REQUESTED) != 0)
+                send();
+        }
+
+        /**
+         * Sets a flag and returns the flags that were set before, so only one of request and onComplete sends the
+         * result.
+         */
+        private int set(int flag) {
+            int previous;
+            do {
+                previous = state.get();
+            } while (!state.compareAndSet(previous, previous | flag));
+
+            return previous;
+        }
+
+        private void send() {
+            if (done)
+                return;
+
+            if (result != null)
+                downstream.onNext(result);
+
+            super.onComplete();
+        }
+
+        abstract T result();
+    }
+
+    /**
+     * Sends the elements of an iterator as they are requested. Requests can come from any thread, and one that comes
+     * in while elements are being sent, from the subscriber's onNext say, is picked up by the loop that is already
+     * running rather than starting another one.
+     */
+    static class IterableSubscription<T> implements Subscription {
+        private final Iterator<T> iter;
+        private final Subscriber<? super T> subscriber;
+        private final AtomicLong requested = new AtomicLong();
+        private final AtomicInteger work = new AtomicInteger();
+        private volatile boolean cancelled;
+
+        IterableSubscription(Iterator<T> iter, Subscriber<? super T> subscriber) {
+            this.iter = iter;
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                cancel();
+                subscriber.onError(new IllegalArgumentException("The number of elements requested must be positive"));
+                return;
+            }
+
+            long current;
+            long next;
+            do {
+                current = requested.get();
+                next = current + n < 0 ? Long.MAX_VALUE : current + n;
+            } while (!requested.compareAndSet(current, next));
+
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+
+        void drain() {
+            if (work.getAndIncrement() != 0)
+                return;
+
+            int missed = 1;
+            do {
+                long wanted = requested.get();
+                long sent = 0;
+
+                try {
+                    while (sent != wanted && !cancelled && iter.hasNext()) {
+                        subscriber.onNext(Preconditions.checkNotNull(iter.next(), "A publisher can't send null"));
+                        sent++;
+                    }
+
+                    if (!cancelled && !iter.hasNext()) {
+                        cancelled = true;
+                        subscriber.onComplete();
+                    }
+                } catch (RuntimeException e) {
+                    if (!cancelled) {
+                        cancelled = true;
+                        subscriber.onError(e);
+                    }
+                }
+
+                if (sent != 0 && wanted != Long.MAX_VALUE)
+                    requested.addAndGet(-sent);
+
+                missed = work.addAndGet(-missed);
+            } while (missed != 0);
+        }
+    }
+
+    /**
+     * Buffers the elements in a queue with room for everything that has been requested, plus the end of the stream,
+     * so the publisher never has to wait for room. A publisher that sends more than was requested is cancelled, and
+     * the iterator fails once it gets to the element that didn't fit.
+     */
+    static class BlockingIterator<T> extends AbstractIterator<T> implements Subscriber<T> {
+        private static final Object COMPLETE = new Object();
+
+        private final int prefetch;
+        private final int batch;
+        private final BlockingQueue<Object> queue;
+        private volatile Subscription subscription;
+        private volatile boolean done;
+        private int consumed;
+
+        BlockingIterator(int prefetch) {
+            this.prefetch = prefetch;
+            this.batch = Math.max(1, prefetch / 2);
+            this.queue = new ArrayBlockingQueue<Object>(prefetch + 1);
+        }
+
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(prefetch);
+        }
+
+        @Override
+        public void onNext(T t) {
+            if (done)
+                return;
+
+            // Only the elements that have been taken are asked for again, so a full queue means the publisher ignored
+            // the requests. The last slot is kept for the end of the stream.
+            if (queue.size() >= prefetch) {
+                subscription.cancel();
+                onError(new IllegalStateException("The publisher sent more elements than were requested"));
+                return;
+            }
+
+            queue.offer(t);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            if (done)
+                return;
+
+            done = true;
+            queue.offer(new Failure(throwable));
+        }
+
+        @Override
+        public void onComplete() {
+            if (done)
+                return;
+
+            done = true;
+            queue.offer(COMPLETE);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        protected T computeNext() {
+            Object next;
+            try {
+                next = queue.take();
+            } catch (InterruptedException e) {
+                subscription.cancel();
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
+
+            if (next == COMPLETE)
+                return endOfData();
+
+            if (next instanceof Failure) {
+                Throwable cause = ((Failure) next).cause;
+
+                if (cause instanceof RuntimeException)
+                    throw (RuntimeException) cause;
+
+                if (cause instanceof Error)
+                    throw (Error) cause;
+
+                throw new RuntimeException(cause);
+            }
+
+            // Asking for a batch at a time keeps the number of requests down without letting the queue run dry
+            if (++consumed == batch) {
+                consumed = 0;
+                subscription.request(batch);
+            }
+
+            return (T) next;
+        }
+
+        static class Failure {
+            final Throwable cause;
+
+            Failure(Throwable cause) {
+                this.cause = cause;
+            }
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package org.icechamps.lava.reactive;
+
+/**
+ * Receives the elements of a {@link Publisher}. See the publisher for the order the methods are called in.
+ *
+ * @param <T> The type of the received elements
+ */
+public interface Subscriber<T> {
+    /**
+     * Called once, before anything else. Nothing is sent until the subscriber calls {@link Subscription#request(long)}.
+     *
+     * @param subscription The subscription used to ask for elements
+     */
+    public void onSubscribe(Subscription subscription);
+
+    /**
+     * Called with each element that was asked for
+     *
+     * @param t The element
+     */
+    public void onNext(T t);
+
+    /**
+     * Called when the publisher fails. Nothing else is called afterwards.
+     *
+     * @param throwable The failure
+     */
+    public void onError(Throwable throwable);
+
+    /**
+     * Called when there are no more elements. Nothing else is called afterwards.
+     */
+    public void onComplete();
+}
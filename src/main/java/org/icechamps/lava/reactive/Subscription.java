@@ -0,0 +1,19 @@
+package org.icechamps.lava.reactive;
+
+/**
+ * The link between a {@link Publisher} and one of its subscribers. Both methods can be called from any thread.
+ */
+public interface Subscription {
+    /**
+     * Asks for up to n more elements. Requests add up, and a request for {@link Long#MAX_VALUE} elements turns
+     * backpressure off.
+     *
+     * @param n The number of elements, which has to be positive
+     */
+    public void request(long n);
+
+    /**
+     * Asks the publisher to stop sending elements. A few that are already on their way may still arrive.
+     */
+    public void cancel();
+}
@@ -0,0 +1,309 @@
+package org.icechamps.lava.sort;
+
+import com.google.common.base.Preconditions;
+import org.icechamps.lava.spill.Serializer;
+import org.icechamps.lava.spill.SpillConfig;
+import org.icechamps.lava.spill.SpillFile;
+
+import java.io.Closeable;
+import java.util.*;
+
+/**
+ * <p>
+ * A stable sort for inputs that don't fit in memory. The source is read in runs of at most
+ * {@link SpillConfig#getMaxInMemory()} elements, each run is sorted and written to a temporary file, and the files are
+ * then merged lazily as the result is iterated, so only one element per run is held in memory at a time.
+ * </p>
+ * <p>
+ * If the whole source fits in a single run nothing is written to disk. The last run is never written either, since it
+ * is already in memory when the source runs out. No more than {@link #MAX_FAN_IN} runs are merged at once, so that the
+ * number of open files stays bounded. When there are more runs than that, consecutive groups of runs are merged into
+ * longer runs on disk first, as many times as it takes.
+ * </p>
+ * <p>
+ * The iterator returned by {@link #sort} implements {@link Closeable}. The temporary files are deleted as soon as the
+ * merge finishes or fails, or when the iterator is closed, so a caller that stops reading early should close it.
+ * </p>
+ */
+public class ExternalSort {
+    /**
+     * The most runs that are read from at the same time
+     */
+    public static final int MAX_FAN_IN = 64;
+
+    private ExternalSort() {
+    }
+
+    /**
+     * Sorts the source, spilling to disk whenever more than the memory budget has been read.
+     *
+     * @param source     The elements to sort
+     * @param comparator The comparator used to order the elements
+     * @param serializer The serializer used to write the runs to disk
+     * @param config     The memory budget and temporary directory
+     * @param <T>        The type of the elements
+     * @return An iterator over the sorted elements
+     */
+    public static <T> Iterator<T> sort(Iterable<T> source, Comparator<? super T> comparator, Serializer<T> serializer, SpillConfig config) {
+        Preconditions.checkNotNull(source);
+        Preconditions.checkNotNull(comparator);
+        Preconditions.checkNotNull(serializer);
+        Preconditions.checkNotNull(config);
+
+        int max = config.getMaxInMemory();
+        List<T> buffer = new ArrayList<T>();
+        List<SpillFile<T>> files = new ArrayList<SpillFile<T>>();
+
+        try {
+            for (T t : source) {
+                // Spilling only once the next element doesn't fit keeps a source of exactly max elements in memory
+                if (buffer.size() == max) {
+                    files.add(spill(buffer, comparator, serializer, config));
+                    buffer.clear();
+                }
+
+                buffer.add(t);
+            }
+        } catch (RuntimeException e) {
+            for (SpillFile<T> file : files) {
+                file.delete();
+            }
+
+            throw e;
+        }
+
+        Collections.sort(buffer, comparator);
+
+        if (files.isEmpty())
+            return buffer.iterator();
+
+        try {
+            // The in-memory run still has to join the last merge, so it takes one of the places
+            while (files.size() >= MAX_FAN_IN) {
+                files = mergePass(files, comparator, serializer, config);
+            }
+        } catch (RuntimeException e) {
+            for (SpillFile<T> file : files) {
+                file.delete();
+            }
+
+            throw e;
+        }
+
+        // The buffer holds the latest elements, so it has to be the last run for ties to stay in order
+        return merge(files, buffer.iterator(), comparator);
+    }
+
+    /**
+     * Merges each group of {@link #MAX_FAN_IN} consecutive runs into a single run, keeping the runs in order. The runs
+     * that were merged are deleted once they have been read.
+     */
+    private static <T> List<SpillFile<T>> mergePass(List<SpillFile<T>> files, Comparator<? super T> comparator, Serializer<T> serializer, SpillConfig config) {
+        List<SpillFile<T>> ret = new ArrayList<SpillFile<T>>();
+
+        try {
+            for (int start = 0; start < files.size(); start += MAX_FAN_IN) {
+                List<SpillFile<T>> group = files.subList(start, Math.min(start + MAX_FAN_IN, files.size()));
+
+                if (group.size() == 1) {
+                    ret.add(group.get(0));
+                    continue;
+                }
+
+                SpillFile<T> merged = new SpillFile<T>(serializer, config);
+                ret.add(merged);
+
+                for (Iterator<T> iter = merge(group, null, comparator); iter.hasNext(); ) {
+                    merged.write(iter.next());
+                }
+
+                merged.finish();
+            }
+        } catch (RuntimeException e) {
+            // The runs that haven't been merged yet are left to the caller
+            for (SpillFile<T> file : ret) {
+                if (!files.contains(file))
+                    file.delete();
+            }
+
+            throw e;
+        }
+
+        return ret;
+    }
+
+    private static <T> MergeIterator<T> merge(List<SpillFile<T>> files, Iterator<T> last, Comparator<? super T> comparator) {
+        List<SpillFile<T>> owned = new ArrayList<SpillFile<T>>(files);
+        List<Iterator<T>> runs = new ArrayList<Iterator<T>>(files.size() + 1);
+
+        try {
+            for (SpillFile<T> file : owned) {
+                runs.add(file.iterator());
+            }
+
+            if (last != null)
+                runs.add(last);
+
+            return new MergeIterator<T>(runs, owned, comparator);
+        } catch (RuntimeException e) {
+            for (SpillFile<T> file : owned) {
+                file.delete();
+            }
+
+            throw e;
+        }
+    }
+
+    private static <T> SpillFile<T> spill(List<T> buffer, Comparator<? super T> comparator, Serializer<T> serializer, SpillConfig config) {
+        Collections.sort(buffer, comparator);
+
+        SpillFile<T> file = new SpillFile<T>(serializer, config);
+        try {
+            for (T t : buffer) {
+                file.write(t);
+            }
+
+            file.finish();
+        } catch (RuntimeException e) {
+            file.delete();
+            throw e;
+        }
+
+        return file;
+    }
+
+    /**
+     * Merges sorted runs through a heap of run numbers, ordered by the head element of each run and then by run number
+     * so that equal elements come out in their original order. The files behind the runs are deleted once the last
+     * element has been read, when reading fails, or when the iterator is closed.
+     */
+    static class MergeIterator<T> implements Iterator<T>, Closeable {
+        private final List<Iterator<T>> runs;
+        private final List<SpillFile<T>> files;
+        private final Comparator<? super T> comparator;
+        private final Object[] heads;
+        private final int[] heap;
+        private int size;
+
+        MergeIterator(List<Iterator<T>> runs, List<SpillFile<T>> files, Comparator<? super T> comparator) {
+            this.runs = runs;
+            this.files = files;
+            this.comparator = comparator;
+
+            heads = new Object[runs.size()];
+            heap = new int[runs.size()];
+
+            for (int i = 0; i < runs.size(); i++) {
+                Iterator<T> run = runs.get(i);
+
+                if (run.hasNext()) {
+                    heads[i] = run.next();
+                    heap[size] = i;
+                    siftUp(size++);
+                }
+            }
+
+            if (size == 0)
+                close();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return size > 0;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T next() {
+            if (size == 0)
+                throw new NoSuchElementException();
+
+            int run = heap[0];
+            T ret = (T) heads[run];
+            Iterator<T> iter = runs.get(run);
+
+            try {
+                if (iter.hasNext()) {
+                    heads[run] = iter.next();
+                } else {
+                    heads[run] = null;
+                    heap[0] = heap[--size];
+                }
+
+                siftDown(0);
+            } catch (RuntimeException e) {
+                close();
+                throw e;
+            } finally {
+                if (size == 0)
+                    close();
+            }
+
+            return ret;
+        }
+
+        /**
+         * Stops the merge and deletes the files behind it. Nothing can be read afterwards.
+         */
+        @Override
+        public void close() {
+            size = 0;
+            Arrays.fill(heads, null);
+
+            for (SpillFile<T> file : files) {
+                file.delete();
+            }
+
+            files.clear();
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        @SuppressWarnings("unchecked")
+        private int compare(int a, int b) {
+            int cmp = comparator.compare((T) heads[a], (T) heads[b]);
+            return cmp != 0 ? cmp : a - b;
+        }
+
+        private void siftUp(int i) {
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+
+                if (compare(heap[parent], heap[i]) <= 0)
+                    break;
+
+                swap(i, parent);
+                i = parent;
+            }
+        }
+
+        private void siftDown(int i) {
+            while (true) {
+                int left = 2 * i + 1;
+                if (left >= size)
+                    break;
+
+                int smallest = left;
+                int right = left + 1;
+
+                if (right < size && compare(heap[right], heap[left]) < 0)
+                    smallest = right;
+
+                if (compare(heap[i], heap[smallest]) <= 0)
+                    break;
+
+                swap(i, smallest);
+                i = smallest;
+            }
+        }
+
+        private void swap(int a, int b) {
+            int run = heap[a];
+            heap[a] = heap[b];
+            heap[b] = run;
+        }
+    }
+}
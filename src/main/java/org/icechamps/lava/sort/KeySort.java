@@ -0,0 +1,131 @@
+package org.icechamps.lava.sort;
+
+import com.google.common.base.Preconditions;
+import org.icechamps.lava.callback.Func;
+
+import java.util.BitSet;
+import java.util.Comparator;
+
+/**
+ * <p>
+ * The sort engine behind key based ordering. Each element's key is computed once into an array that runs alongside the
+ * elements, and the two arrays are then sorted together with a stable merge sort, so the key function is called n times
+ * instead of once per comparison.
+ * </p>
+ * <p>
+ * Multi-level orderings are sorted one level at a time. The elements are kept in runs that are equal on every level
+ * so far, and a new level only has to sort inside each run.
+ * </p>
+ */
+public class KeySort {
+    /**
+     * Ranges this small are insertion sorted instead of being split further
+     */
+    private static final int INSERTION_SORT_THRESHOLD = 16;
+
+    private KeySort() {
+    }
+
+    /**
+     * Stably sorts every run of the array by the keys the key function produces. A run starts at each set bit of
+     * {@code runStarts} and ends where the next one starts.
+     *
+     * @param values     The elements, which are sorted in place
+     * @param runStarts  The index of the first element of each run
+     * @param keyFunc    The callback function used to generate the keys
+     * @param comparator The comparator used to order the keys
+     * @param <T>        The type of the elements
+     * @param <K>        The type of the keys
+     * @return The runs of the new ordering. Each old run is split wherever the new key changes.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T, K> BitSet sortRuns(Object[] values, BitSet runStarts, Func<T, K> keyFunc, Comparator<? super K> comparator) {
+        Preconditions.checkNotNull(values);
+        Preconditions.checkNotNull(runStarts);
+        Preconditions.checkNotNull(keyFunc);
+        Preconditions.checkNotNull(comparator);
+
+        int size = values.length;
+        Object[] keys = new Object[size];
+
+        for (int i = 0; i < size; i++) {
+            keys[i] = keyFunc.callback((T) values[i]);
+        }
+
+        Comparator<Object> keyComparator = (Comparator<Object>) comparator;
+        Object[] keyBuffer = null;
+        Object[] valueBuffer = null;
+        BitSet ret = (BitSet) runStarts.clone();
+
+        for (int start = runStarts.nextSetBit(0); start >= 0 && start < size; ) {
+            int end = runStarts.nextSetBit(start + 1);
+            if (end < 0 || end > size)
+                end = size;
+
+            if (end - start > INSERTION_SORT_THRESHOLD && keyBuffer == null) {
+                keyBuffer = new Object[size];
+                valueBuffer = new Object[size];
+            }
+
+            sort(keys, values, keyBuffer, valueBuffer, start, end, keyComparator);
+
+            for (int i = start + 1; i < end; i++) {
+                if (keyComparator.compare(keys[i - 1], keys[i]) != 0)
+                    ret.set(i);
+            }
+
+            start = end;
+        }
+
+        return ret;
+    }
+
+    /**
+     * Stable merge sort of {@code keys[from, to)}, moving {@code values} along with them.
+     */
+    private static void sort(Object[] keys, Object[] values, Object[] keyBuffer, Object[] valueBuffer, int from, int to, Comparator<Object> comparator) {
+        if (to - from <= INSERTION_SORT_THRESHOLD) {
+            for (int i = from + 1; i < to; i++) {
+                Object key = keys[i];
+                Object value = values[i];
+
+                int j = i - 1;
+                while (j >= from && comparator.compare(keys[j], key) > 0) {
+                    keys[j + 1] = keys[j];
+                    values[j + 1] = values[j];
+                    j--;
+                }
+
+                keys[j + 1] = key;
+                values[j + 1] = value;
+            }
+
+            return;
+        }
+
+        int middle = (from + to) >>> 1;
+        sort(keys, values, keyBuffer, valueBuffer, from, middle, comparator);
+        sort(keys, values, keyBuffer, valueBuffer, middle, to, comparator);
+
+        // Already in order, nothing to merge
+        if (comparator.compare(keys[middle - 1], keys[middle]) <= 0)
+            return;
+
+        System.arraycopy(keys, from, keyBuffer, from, to - from);
+        System.arraycopy(values, from, valueBuffer, from, to - from);
+
+        int left = from;
+        int right = middle;
+
+        for (int i = from; i < to; i++) {
+            // Taking from the left on ties is what keeps the sort stable
+            if (right >= to || (left < middle && comparator.compare(keyBuffer[left], keyBuffer[right]) <= 0)) {
+                keys[i] = keyBuffer[left];
+                values[i] = valueBuffer[left++];
+            } else {
+                keys[i] = keyBuffer[right];
+                values[i] = valueBuffer[right++];
+            }
+        }
+    }
+}
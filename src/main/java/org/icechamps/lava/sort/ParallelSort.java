@@ -0,0 +1,174 @@
+package org.icechamps.lava.sort;
+
+import com.google.common.base.Preconditions;
+import org.icechamps.lava.util.Tasks;
+
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+
+/**
+ * <p>
+ * A stable sort that splits large lists into contiguous chunks, sorts the chunks on several threads and then merges
+ * them back together in a single k-way merge.
+ * </p>
+ * <p>
+ * The result is identical to {@link Collections#sort}, including the order of elements that compare as equal: each
+ * chunk is sorted stably, and when the heads of two chunks are equal the merge takes from the earlier chunk first.
+ * Lists smaller than {@link #THRESHOLD} are simply sorted on the calling thread.
+ * </p>
+ */
+public class ParallelSort {
+    /**
+     * Lists with fewer elements than this are not worth splitting
+     */
+    public static final int THRESHOLD = 1 << 16;
+
+    private static final int MIN_CHUNK_SIZE = THRESHOLD / 2;
+
+    private ParallelSort() {
+    }
+
+    /**
+     * Sorts the list in place using the comparator.
+     *
+     * @param list        The list to sort
+     * @param comparator  The comparator used to order the elements
+     * @param executor    The executor the chunks are sorted on
+     * @param parallelism The largest number of chunks to split the list into
+     * @param <T>         The type of the elements
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> void sort(List<T> list, final Comparator<? super T> comparator, Executor executor, int parallelism) {
+        Preconditions.checkNotNull(list);
+        Preconditions.checkNotNull(comparator);
+        Preconditions.checkNotNull(executor);
+        Preconditions.checkArgument(parallelism > 0);
+
+        int size = list.size();
+        int chunks = Math.min(parallelism, size / MIN_CHUNK_SIZE);
+
+        if (size < THRESHOLD || chunks < 2) {
+            Collections.sort(list, comparator);
+            return;
+        }
+
+        final Object[] values = list.toArray();
+
+        final int[] starts = new int[chunks + 1];
+        for (int i = 0; i <= chunks; i++) {
+            starts[i] = (int) ((long) size * i / chunks);
+        }
+
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(chunks);
+        for (int i = 0; i < chunks; i++) {
+            final int from = starts[i];
+            final int to = starts[i + 1];
+
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    Arrays.sort(values, from, to, (Comparator<Object>) comparator);
+                    return null;
+                }
+            });
+        }
+
+        Tasks.invokeAll(executor, tasks);
+
+        ListIterator<T> iter = list.listIterator();
+        Merger merger = new Merger(values, starts, (Comparator<Object>) comparator);
+
+        while (iter.hasNext()) {
+            iter.next();
+            iter.set((T) merger.next());
+        }
+    }
+
+    /**
+     * Merges sorted chunks of an array. A heap of chunk numbers is ordered by the head element of each chunk, and then
+     * by chunk number so that equal elements come out in their original order.
+     */
+    static class Merger {
+        private final Object[] values;
+        private final Comparator<Object> comparator;
+        private final int[] positions;
+        private final int[] ends;
+        private final int[] heap;
+        private int size;
+
+        Merger(Object[] values, int[] starts, Comparator<Object> comparator) {
+            this.values = values;
+            this.comparator = comparator;
+
+            int chunks = starts.length - 1;
+            positions = new int[chunks];
+            ends = new int[chunks];
+            heap = new int[chunks];
+
+            for (int i = 0; i < chunks; i++) {
+                positions[i] = starts[i];
+                ends[i] = starts[i + 1];
+
+                if (positions[i] < ends[i]) {
+                    heap[size] = i;
+                    siftUp(size++);
+                }
+            }
+        }
+
+        Object next() {
+            int chunk = heap[0];
+            Object ret = values[positions[chunk]++];
+
+            if (positions[chunk] == ends[chunk])
+                heap[0] = heap[--size];
+
+            siftDown(0);
+            return ret;
+        }
+
+        private int compare(int a, int b) {
+            int cmp = comparator.compare(values[positions[a]], values[positions[b]]);
+            return cmp != 0 ? cmp : a - b;
+        }
+
+        private void siftUp(int i) {
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+
+                if (compare(heap[parent], heap[i]) <= 0)
+                    break;
+
+                swap(i, parent);
+                i = parent;
+            }
+        }
+
+        private void siftDown(int i) {
+            while (true) {
+                int left = 2 * i + 1;
+                if (left >= size)
+                    break;
+
+                int smallest = left;
+                int right = left + 1;
+
+                if (right < size && compare(heap[right], heap[left]) < 0)
+                    smallest = right;
+
+                if (compare(heap[i], heap[smallest]) <= 0)
+                    break;
+
+                swap(i, smallest);
+                i = smallest;
+            }
+        }
+
+        private void swap(int a, int b) {
+            int chunk = heap[a];
+            heap[a] = heap[b];
+            heap[b] = chunk;
+        }
+    }
+}
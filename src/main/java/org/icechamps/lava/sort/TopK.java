@@ -0,0 +1,169 @@
+package org.icechamps.lava.sort;
+
+import com.google.common.base.Preconditions;
+
+import java.util.*;
+
+/**
+ * <p>
+ * Picks the first {@code k} elements a sort would produce without sorting everything. The elements are streamed through
+ * a heap that never holds more than {@code k} of them, so it runs in O(n log k) time and O(k) memory.
+ * </p>
+ * <p>
+ * The results match sorting with {@link Collections#sort} and taking the first {@code k} elements exactly, including
+ * the order of elements that compare as equal.
+ * </p>
+ */
+public class TopK {
+
+    private TopK() {
+    }
+
+    /**
+     * Returns the first {@code k} elements of the source in the order the comparator puts them in.
+     *
+     * @param source     The elements to choose from
+     * @param k          The number of elements to return
+     * @param comparator The comparator used to order the elements
+     * @param <T>        The type of the elements
+     * @return Up to {@code k} elements, in order
+     */
+    public static <T> List<T> select(Iterable<T> source, int k, Comparator<? super T> comparator) {
+        Preconditions.checkNotNull(source);
+        Preconditions.checkNotNull(comparator);
+        Preconditions.checkArgument(k >= 0);
+
+        if (k == 0)
+            return new ArrayList<T>();
+
+        Heap<T> heap = new Heap<T>(k, comparator);
+
+        long index = 0;
+        for (T t : source) {
+            heap.offer(t, index++);
+        }
+
+        return heap.drain();
+    }
+
+    /**
+     * A bounded binary heap whose root is the worst element kept so far, so a new element only has to beat the root to
+     * get in.
+     */
+    static class Heap<T> {
+        private final Comparator<? super T> comparator;
+        private final int k;
+        private Object[] values;
+        private long[] indexes;
+        private int size;
+
+        Heap(int k, Comparator<? super T> comparator) {
+            this.comparator = comparator;
+            this.k = k;
+
+            // k can be far larger than the source, so the arrays grow up to it instead of starting there
+            int capacity = Math.min(k, 16);
+            values = new Object[capacity];
+            indexes = new long[capacity];
+        }
+
+        /**
+         * Compares two elements in output order. Ties are broken by source position, so the order is total.
+         */
+        @SuppressWarnings("unchecked")
+        int compare(Object a, long aIndex, Object b, long bIndex) {
+            int cmp = comparator.compare((T) a, (T) b);
+
+            if (cmp != 0)
+                return cmp;
+
+            return aIndex < bIndex ? -1 : (aIndex == bIndex ? 0 : 1);
+        }
+
+        void offer(T t, long index) {
+            if (size < k) {
+                if (size == values.length) {
+                    int capacity = (int) Math.min(k, size * 2L);
+                    values = Arrays.copyOf(values, capacity);
+                    indexes = Arrays.copyOf(indexes, capacity);
+                }
+
+                values[size] = t;
+                indexes[size] = index;
+                siftUp(size++);
+            } else if (compare(t, index, values[0], indexes[0]) < 0) {
+                values[0] = t;
+                indexes[0] = index;
+                siftDown(0);
+            }
+        }
+
+        /**
+         * Empties the heap into a list in output order.
+         */
+        @SuppressWarnings("unchecked")
+        List<T> drain() {
+            Object[] ret = new Object[size];
+
+            // Taking the worst element off the root each time fills the array from the back
+            for (int i = size - 1; i >= 0; i--) {
+                ret[i] = values[0];
+
+                size--;
+                values[0] = values[size];
+                indexes[0] = indexes[size];
+                values[size] = null;
+                siftDown(0);
+            }
+
+            List<T> list = new ArrayList<T>(ret.length);
+            for (Object value : ret) {
+                list.add((T) value);
+            }
+
+            return list;
+        }
+
+        private void siftUp(int i) {
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+
+                if (compare(values[i], indexes[i], values[parent], indexes[parent]) <= 0)
+                    break;
+
+                swap(i, parent);
+                i = parent;
+            }
+        }
+
+        private void siftDown(int i) {
+            while (true) {
+                int left = 2 * i + 1;
+                if (left >= size)
+                    break;
+
+                int largest = left;
+                int right = left + 1;
+
+                if (right < size && compare(values[right], indexes[right], values[left], indexes[left]) > 0)
+                    largest = right;
+
+                if (compare(values[largest], indexes[largest], values[i], indexes[i]) <= 0)
+                    break;
+
+                swap(i, largest);
+                i = largest;
+            }
+        }
+
+        private void swap(int a, int b) {
+            Object value = values[a];
+            values[a] = values[b];
+            values[b] = value;
+
+            long index = indexes[a];
+            indexes[a] = indexes[b];
+            indexes[b] = index;
+        }
+    }
+}
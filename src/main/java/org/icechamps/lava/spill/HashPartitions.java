@@ -0,0 +1,260 @@
+package org.icechamps.lava.spill;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.AbstractIterator;
+import org.icechamps.lava.callback.Func;
+import org.icechamps.lava.collection.LazyEnumerable;
+
+import java.io.Closeable;
+import java.util.*;
+
+/**
+ * <p>
+ * Grace hash partitioning for operators that need every element with the same key in memory at once, like groupBy and
+ * the build side of a join.
+ * </p>
+ * <p>
+ * Elements are read into memory until {@link SpillConfig#getMaxInMemory()} is reached. If the input runs out first,
+ * it is handled in memory as a single partition. Otherwise everything is scattered by the hash of its key into
+ * {@link #FAN_OUT} temporary files, so all elements with the same key end up in the same file, and each file is then
+ * handled the same way on its own. Every level of partitioning hashes with a different seed, so a file that is still
+ * too big gets split along different lines the next time around.
+ * </p>
+ * <p>
+ * After {@link #MAX_LEVELS} levels a partition is loaded whole even if it is over the budget. That only happens when a
+ * few keys have more elements between them than the budget allows, and splitting by key can't help with those.
+ * </p>
+ * <p>
+ * The iterator returned by {@link #partition} implements {@link Closeable}. The temporary files are deleted as they
+ * are used up, when reading fails, or when the iterator is closed, so a caller that stops early should close it.
+ * </p>
+ */
+public class HashPartitions {
+    /**
+     * The number of files an oversized input is split into
+     */
+    public static final int FAN_OUT = 16;
+
+    /**
+     * The number of times an input is split before the partitions are loaded regardless of their size
+     */
+    public static final int MAX_LEVELS = 4;
+
+    private HashPartitions() {
+    }
+
+    /**
+     * Splits the source into partitions that each hold every element for their keys. Only one partition is in memory
+     * at a time, and each one is read from disk as the iterator reaches it.
+     *
+     * @param source     The elements to partition
+     * @param keyFunc    The callback function used to generate the keys
+     * @param serializer The serializer used to write elements to disk
+     * @param config     The memory budget and temporary directory
+     * @param <T>        The type of the elements
+     * @param <K>        The type of the key
+     * @return An iterator over the non-empty partitions
+     */
+    public static <T, K> Iterator<List<T>> partition(Iterable<T> source, Func<T, K> keyFunc, Serializer<T> serializer, SpillConfig config) {
+        Preconditions.checkNotNull(source);
+        Preconditions.checkNotNull(keyFunc);
+        Preconditions.checkNotNull(serializer);
+        Preconditions.checkNotNull(config);
+
+        return new PartitionIterator<T, K>(source.iterator(), keyFunc, serializer, config);
+    }
+
+    /**
+     * Reads from the iterator until it runs out or the budget is reached.
+     *
+     * @param iter The iterator to read from
+     * @param max  The most elements to read
+     * @param <T>  The type of the elements
+     * @return The elements that were read
+     */
+    public static <T> List<T> fill(Iterator<T> iter, int max) {
+        List<T> buffer = new ArrayList<T>();
+
+        while (buffer.size() < max && iter.hasNext()) {
+            buffer.add(iter.next());
+        }
+
+        return buffer;
+    }
+
+    /**
+     * Writes the buffered elements and then the rest of the iterator into {@link #FAN_OUT} files by the hash of their
+     * keys. The order of the elements within each file follows their order in the input.
+     *
+     * @param buffer     The elements that were already read
+     * @param rest       The rest of the input
+     * @param keyFunc    The callback function used to generate the keys
+     * @param level      The level of partitioning, which picks the hash seed
+     * @param serializer The serializer used to write elements to disk
+     * @param config     The memory budget and temporary directory
+     * @param <T>        The type of the elements
+     * @param <K>        The type of the key
+     * @return The finished files, one per partition
+     */
+    public static <T, K> List<SpillFile<T>> scatter(List<T> buffer, Iterator<T> rest, Func<T, K> keyFunc, int level, Serializer<T> serializer, SpillConfig config) {
+        List<SpillFile<T>> files = new ArrayList<SpillFile<T>>(FAN_OUT);
+
+        try {
+            for (int i = 0; i < FAN_OUT; i++) {
+                files.add(new SpillFile<T>(serializer, config));
+            }
+
+            for (T t : buffer) {
+                files.get(partitionOf(keyFunc.callback(t), level)).write(t);
+            }
+
+            while (rest.hasNext()) {
+                T t = rest.next();
+                files.get(partitionOf(keyFunc.callback(t), level)).write(t);
+            }
+
+            for (SpillFile<T> file : files) {
+                file.finish();
+            }
+        } catch (RuntimeException e) {
+            for (SpillFile<T> file : files) {
+                file.delete();
+            }
+
+            throw e;
+        }
+
+        return files;
+    }
+
+    /**
+     * Picks the partition for a key. The hash is combined with a seed for the level and then run through the murmur3
+     * finalizer, which spreads every input bit over the whole result, so the keys that shared a partition at one level
+     * are split evenly again at the next.
+     *
+     * @param key   The key
+     * @param level The level of partitioning
+     * @return A partition number between 0 and {@link #FAN_OUT}
+     */
+    public static int partitionOf(Object key, int level) {
+        int h = (key == null ? 0 : key.hashCode()) ^ (level * 0x9e3779b9);
+
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+
+        return (h & Integer.MAX_VALUE) % FAN_OUT;
+    }
+
+    /**
+     * Works through a stack of inputs that still need to be partitioned. The top level input is the source itself, and
+     * every input that is too big is replaced by its partition files, in order.
+     */
+    static class PartitionIterator<T, K> extends AbstractIterator<List<T>> implements Closeable {
+        private final Func<T, K> keyFunc;
+        private final Serializer<T> serializer;
+        private final SpillConfig config;
+        private final Deque<Input<T>> pending = new ArrayDeque<Input<T>>();
+        private Input<T> current;
+
+        PartitionIterator(Iterator<T> source, Func<T, K> keyFunc, Serializer<T> serializer, SpillConfig config) {
+            this.keyFunc = keyFunc;
+            this.serializer = serializer;
+            this.config = config;
+
+            pending.push(new Input<T>(source, null, 0));
+        }
+
+        @Override
+        protected List<T> computeNext() {
+            try {
+                return nextPartition();
+            } catch (RuntimeException e) {
+                close();
+                throw e;
+            }
+        }
+
+        /**
+         * Deletes the files of the input being read and of every input that hasn't been read yet, and closes the
+         * source if it is still being read.
+         */
+        @Override
+        public void close() {
+            if (current != null) {
+                current.close();
+                current = null;
+            }
+
+            while (!pending.isEmpty()) {
+                pending.pop().close();
+            }
+        }
+
+        private List<T> nextPartition() {
+            while (!pending.isEmpty()) {
+                current = pending.pop();
+                List<T> buffer = fill(current.iterator, config.getMaxInMemory());
+
+                if (current.iterator.hasNext() && current.level < MAX_LEVELS) {
+                    List<SpillFile<T>> files = scatter(buffer, current.iterator, keyFunc, current.level, serializer, config);
+                    int level = current.level;
+
+                    current.close();
+                    current = null;
+
+                    // Pushed backwards so the partitions come off the stack in order
+                    for (int i = files.size() - 1; i >= 0; i--) {
+                        SpillFile<T> file = files.get(i);
+
+                        if (file.size() > 0)
+                            pending.push(new Input<T>(file.iterator(), file, level + 1));
+                        else
+                            file.delete();
+                    }
+
+                    continue;
+                }
+
+                while (current.iterator.hasNext()) {
+                    buffer.add(current.iterator.next());
+                }
+
+                current.close();
+                current = null;
+
+                if (!buffer.isEmpty())
+                    return buffer;
+            }
+
+            return endOfData();
+        }
+    }
+
+    /**
+     * An input waiting to be partitioned, along with the file it is read from, if any.
+     */
+    static class Input<T> {
+        final Iterator<T> iterator;
+        final SpillFile<T> file;
+        final int level;
+
+        Input(Iterator<T> iterator, SpillFile<T> file, int level) {
+            this.iterator = iterator;
+            this.file = file;
+            this.level = level;
+        }
+
+        /**
+         * Deletes the file the input is read from, or closes the source if this is the top level input.
+         */
+        void close() {
+            if (file != null)
+                file.delete();
+            else
+                LazyEnumerable.close(iterator);
+        }
+    }
+}
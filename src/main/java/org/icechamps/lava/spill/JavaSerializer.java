@@ -0,0 +1,39 @@
+package org.icechamps.lava.spill;
+
+import java.io.*;
+
+/**
+ * A {@link Serializer} that uses standard Java serialization. It works with anything {@link Serializable}, but writing
+ * a Serializer for the element type by hand is usually a lot faster and produces much smaller files.
+ *
+ * @param <T> The type of the element
+ */
+public class JavaSerializer<T extends Serializable> implements Serializer<T> {
+
+    @Override
+    public void write(T value, DataOutput out) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream objects = new ObjectOutputStream(bytes);
+        objects.writeObject(value);
+        objects.close();
+
+        out.writeInt(bytes.size());
+        out.write(bytes.toByteArray());
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T read(DataInput in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+
+        ObjectInputStream objects = new ObjectInputStream(new ByteArrayInputStream(bytes));
+        try {
+            return (T) objects.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IOException(e);
+        } finally {
+            objects.close();
+        }
+    }
+}
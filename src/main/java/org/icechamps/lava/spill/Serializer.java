@@ -0,0 +1,32 @@
+package org.icechamps.lava.spill;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Writes elements to and reads them back from the temporary files that operators spill to when they run out of their
+ * memory budget.
+ *
+ * @param <T> The type of the element
+ */
+public interface Serializer<T> {
+
+    /**
+     * Writes a single element
+     *
+     * @param value The element to write
+     * @param out   The output to write it to
+     * @throws IOException If the element can't be written
+     */
+    public void write(T value, DataOutput out) throws IOException;
+
+    /**
+     * Reads back a single element that was written by {@link #write}
+     *
+     * @param in The input to read it from
+     * @return The element
+     * @throws IOException If the element can't be read
+     */
+    public T read(DataInput in) throws IOException;
+}
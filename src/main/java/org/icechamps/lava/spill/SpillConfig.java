@@ -0,0 +1,46 @@
+package org.icechamps.lava.spill;
+
+import com.google.common.base.Preconditions;
+
+import java.io.File;
+
+/**
+ * Settings for operators that spill to disk.
+ * <p/>
+ * The memory budget is given as a number of elements, since the size of an object can't be measured reliably from
+ * inside the JVM. Pick it from the heap you can spare divided by the rough size of one element.
+ */
+public class SpillConfig {
+    private final int maxInMemory;
+    private final File directory;
+
+    /**
+     * Creates settings that spill to the default temporary directory
+     *
+     * @param maxInMemory The largest number of elements an operator keeps in memory before it spills
+     */
+    public SpillConfig(int maxInMemory) {
+        this(maxInMemory, null);
+    }
+
+    /**
+     * Creates settings that spill to the given directory
+     *
+     * @param maxInMemory The largest number of elements an operator keeps in memory before it spills
+     * @param directory   The directory the temporary files are created in, or null for the default temporary directory
+     */
+    public SpillConfig(int maxInMemory, File directory) {
+        Preconditions.checkArgument(maxInMemory > 0);
+
+        this.maxInMemory = maxInMemory;
+        this.directory = directory;
+    }
+
+    public int getMaxInMemory() {
+        return maxInMemory;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+}
@@ -0,0 +1,169 @@
+package org.icechamps.lava.spill;
+
+import com.google.common.base.Preconditions;
+import org.icechamps.lava.exception.SpillException;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * <p>
+ * A temporary file that elements are appended to and later read back from in the same order.
+ * </p>
+ * <p>
+ * The file is created as soon as this object is, and is deleted by {@link #delete()}, which also closes any reader that
+ * is still open on it. The owner has to call it once it is done with the file, including when it stops reading part
+ * way through.
+ * </p>
+ *
+ * @param <T> The type of the elements
+ */
+public class SpillFile<T> {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final File file;
+    private final Serializer<T> serializer;
+    private final List<Closeable> readers = new ArrayList<Closeable>();
+    private DataOutputStream out;
+    private int size;
+
+    /**
+     * Creates a new, empty temporary file
+     *
+     * @param serializer The serializer used to write and read the elements
+     * @param config     The settings that say where the file goes
+     */
+    public SpillFile(Serializer<T> serializer, SpillConfig config) {
+        Preconditions.checkNotNull(serializer);
+        Preconditions.checkNotNull(config);
+
+        this.serializer = serializer;
+
+        try {
+            file = File.createTempFile("lava-spill", ".tmp", config.getDirectory());
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE));
+        } catch (IOException e) {
+            throw new SpillException("Unable to create a spill file", e);
+        }
+    }
+
+    /**
+     * Appends an element to the file
+     *
+     * @param value The element to append
+     */
+    public void write(T value) {
+        Preconditions.checkState(out != null, "The spill file has already been finished");
+
+        try {
+            serializer.write(value, out);
+            size++;
+        } catch (IOException e) {
+            throw new SpillException("Unable to write to " + file, e);
+        }
+    }
+
+    /**
+     * Flushes and closes the file for writing. Nothing else can be written to it afterwards.
+     */
+    public void finish() {
+        if (out == null)
+            return;
+
+        try {
+            out.close();
+            out = null;
+        } catch (IOException e) {
+            throw new SpillException("Unable to write to " + file, e);
+        }
+    }
+
+    /**
+     * @return The number of elements written to the file
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Reads the elements back in the order they were written. The file is finished first if it hasn't been already.
+     * The underlying stream is closed once the last element has been read, when reading fails, or when the file is
+     * deleted.
+     *
+     * @return An iterator over the elements in the file
+     */
+    public Iterator<T> iterator() {
+        finish();
+
+        final DataInputStream in;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE));
+        } catch (IOException e) {
+            throw new SpillException("Unable to read " + file, e);
+        }
+
+        readers.add(in);
+
+        return new Iterator<T>() {
+            private int remaining = size;
+
+            @Override
+            public boolean hasNext() {
+                return remaining > 0;
+            }
+
+            @Override
+            public T next() {
+                if (remaining <= 0)
+                    throw new NoSuchElementException();
+
+                try {
+                    T ret = serializer.read(in);
+
+                    if (--remaining == 0)
+                        close(in);
+
+                    return ret;
+                } catch (IOException e) {
+                    remaining = 0;
+                    close(in);
+                    throw new SpillException("Unable to read " + file, e);
+                }
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * Closes the file if it is still open for writing, closes any readers that haven't reached the end and deletes it.
+     */
+    public void delete() {
+        if (out != null) {
+            close(out);
+            out = null;
+        }
+
+        for (Closeable reader : new ArrayList<Closeable>(readers)) {
+            close(reader);
+        }
+
+        file.delete();
+    }
+
+    private void close(Closeable stream) {
+        readers.remove(stream);
+
+        try {
+            stream.close();
+        } catch (IOException ignored) {
+            // Nothing more can be read from it either way
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package org.icechamps.lava.util;
+
+import com.google.common.base.Preconditions;
+import org.icechamps.lava.callback.Predicate;
+
+/**
+ * Combines two predicates into one that only passes when both do. The second predicate isn't called for anything the
+ * first one rejects, which is exactly how two chained where calls behave.
+ *
+ * @param <T> The type of the object being tested
+ */
+public class AndPredicate<T> implements Predicate<T> {
+    private final Predicate<T> first;
+    private final Predicate<T> second;
+
+    public AndPredicate(Predicate<T> first, Predicate<T> second) {
+        this.first = Preconditions.checkNotNull(first);
+        this.second = Preconditions.checkNotNull(second);
+    }
+
+    @Override
+    public boolean callback(T t) {
+        return first.callback(t) && second.callback(t);
+    }
+}
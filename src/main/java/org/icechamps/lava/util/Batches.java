@@ -0,0 +1,59 @@
+package org.icechamps.lava.util;
+
+import org.icechamps.lava.callback.Func;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Runs the callbacks of the batched operators over a single batch, so that the sequential, lazy and parallel versions
+ * all check the results the same way.
+ */
+public class Batches {
+
+    private Batches() {
+    }
+
+    /**
+     * Projects a batch using the callback function
+     *
+     * @param func  The callback function, which has to return one result for each element, in the same order
+     * @param batch The elements to project
+     * @param <T>   The type of the original objects
+     * @param <E>   The type of the transformed objects
+     * @return The projected elements
+     * @throws IllegalStateException If the callback returned a different number of results than it was given elements
+     */
+    public static <T, E> List<E> select(Func<List<T>, List<E>> func, List<T> batch) {
+        List<E> results = func.callback(batch);
+        check(batch, results);
+        return results;
+    }
+
+    /**
+     * Filters a batch using the callback function
+     *
+     * @param func  The callback function, which has to return one flag for each element, in the same order
+     * @param batch The elements to filter
+     * @param out   The collection the elements whose flag is true are added to
+     * @param <T>   The type of the object in the batch
+     * @throws IllegalStateException If the callback returned a different number of flags than it was given elements
+     */
+    public static <T> void where(Func<List<T>, List<Boolean>> func, List<T> batch, Collection<? super T> out) {
+        List<Boolean> keep = func.callback(batch);
+        check(batch, keep);
+
+        Iterator<Boolean> flags = keep.iterator();
+        for (T t : batch) {
+            if (flags.next())
+                out.add(t);
+        }
+    }
+
+    private static void check(List<?> batch, List<?> results) {
+        if (results == null || results.size() != batch.size())
+            throw new IllegalStateException(String.format("The callback returned %d results for a batch of %d elements",
+                    results == null ? 0 : results.size(), batch.size()));
+    }
+}
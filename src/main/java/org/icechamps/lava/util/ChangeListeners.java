@@ -0,0 +1,54 @@
+package org.icechamps.lava.util;
+
+import com.google.common.base.Preconditions;
+import org.icechamps.lava.callback.ChangeListener;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * The listeners of an {@link org.icechamps.lava.interfaces.ObservableCollection}. Listeners can add or remove
+ * listeners while they are being called, and the change only takes effect from the next element on. It also counts the
+ * changes, whether or not anyone is listening, which gives the collection its version.
+ *
+ * @param <T> The type of the object in the collection
+ */
+public class ChangeListeners<T> {
+    private final List<ChangeListener<? super T>> listeners = new CopyOnWriteArrayList<ChangeListener<? super T>>();
+    private volatile long version;
+
+    public void add(ChangeListener<? super T> listener) {
+        listeners.add(Preconditions.checkNotNull(listener));
+    }
+
+    public void remove(ChangeListener<? super T> listener) {
+        listeners.remove(listener);
+    }
+
+    public boolean isEmpty() {
+        return listeners.isEmpty();
+    }
+
+    /**
+     * @return The number of elements that have been added and removed so far
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public void added(T t) {
+        version++;
+
+        for (ChangeListener<? super T> listener : listeners) {
+            listener.added(t);
+        }
+    }
+
+    public void removed(T t) {
+        version++;
+
+        for (ChangeListener<? super T> listener : listeners) {
+            listener.removed(t);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package org.icechamps.lava.util;
+
+import com.google.common.base.Preconditions;
+import org.icechamps.lava.callback.Func;
+
+/**
+ * Runs one function on the result of another, so two chained select calls can be done in a single pass.
+ *
+ * @param <A> The type of the input
+ * @param <B> The type the first function produces
+ * @param <C> The type of the result
+ */
+public class ComposedFunction<A, B, C> implements Func<A, C> {
+    private final Func<A, B> first;
+    private final Func<B, C> second;
+
+    public ComposedFunction(Func<A, B> first, Func<B, C> second) {
+        this.first = Preconditions.checkNotNull(first);
+        this.second = Preconditions.checkNotNull(second);
+    }
+
+    @Override
+    public C callback(A a) {
+        return second.callback(first.callback(a));
+    }
+}
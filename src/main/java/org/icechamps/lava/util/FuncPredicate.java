@@ -0,0 +1,23 @@
+package org.icechamps.lava.util;
+
+import com.google.common.base.Preconditions;
+import org.icechamps.lava.callback.Func;
+import org.icechamps.lava.callback.Predicate;
+
+/**
+ * Adapts a {@link Func} that returns a Boolean to a {@link Predicate}, so operators only need to be written once.
+ *
+ * @param <T> The type of the object being tested
+ */
+public class FuncPredicate<T> implements Predicate<T> {
+    private final Func<T, Boolean> func;
+
+    public FuncPredicate(Func<T, Boolean> func) {
+        this.func = Preconditions.checkNotNull(func);
+    }
+
+    @Override
+    public boolean callback(T t) {
+        return func.callback(t);
+    }
+}
@@ -4,18 +4,20 @@ import com.google.common.base.Preconditions;
 import org.icechamps.lava.callback.Func;
 import org.icechamps.lava.callback.Func2;
 
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Comparator;
+import java.util.*;
 
 /**
  * A helper class for the join operation. This provides a way to lookup groups of results based on a common key
+ * <p/>
+ * Groups are indexed by key, using the key's equals/hashCode or, when one is supplied, the key comparator. The groups
+ * themselves are kept in the order their keys were first seen.
  *
  * @param <K> The type of the key
  * @param <V> The type of the value
  */
 public class Lookup<K extends Comparable<? super K>, V> {
     private ArrayList<Group<K, V>> groups;
+    private Map<K, Group<K, V>> index;
     private Comparator<K> comparator;
 
     public static <T, K extends Comparable<? super K>, V> Lookup<K, V> create(Collection<T> source, Func<T, K> keyFunc, Func<T, V> valueFunc, Comparator<K> keyComparator) {
@@ -24,7 +26,7 @@ public class Lookup<K extends Comparable<? super K>, V> {
         Preconditions.checkNotNull(valueFunc);
         Preconditions.checkArgument(!source.isEmpty());
 
-        Lookup<K, V> lookup = new Lookup<K, V>(keyComparator);
+        Lookup<K, V> lookup = new Lookup<K, V>(keyComparator, 0);
 
         for (T t : source) {
             lookup.getGroupForKey(keyFunc.callback(t), true).add(valueFunc.callback(t));
@@ -38,13 +40,25 @@ public class Lookup<K extends Comparable<? super K>, V> {
      *
      * @param collection    The source collection
      * @param func          The callback function used to generate the keys
-     * @param keyComparator A comparator that is used to compare the keys. If it is null, a default "==" is used
+     * @param keyComparator A comparator that is used to compare the keys. If it is null, the keys' equals and hashCode are used
      */
     public static <K extends Comparable<? super K>, V> Lookup<K, V> createForJoin(Collection<V> collection, Func<V, K> func, Comparator<K> keyComparator) {
+        return createForJoin(collection, func, keyComparator, 0);
+    }
+
+    /**
+     * Constructor method that takes in a collection and a callback function. It then populates the internal group structure with the results of the callback
+     *
+     * @param collection    The source collection
+     * @param func          The callback function used to generate the keys
+     * @param keyComparator A comparator that is used to compare the keys. If it is null, the keys' equals and hashCode are used
+     * @param expectedKeys  The number of distinct keys the lookup should be sized for, or 0 if it isn't known
+     */
+    public static <K extends Comparable<? super K>, V> Lookup<K, V> createForJoin(Collection<V> collection, Func<V, K> func, Comparator<K> keyComparator, int expectedKeys) {
         Preconditions.checkNotNull(collection);
         Preconditions.checkNotNull(func);
 
-        Lookup<K, V> lookup = new Lookup<K, V>(keyComparator);
+        Lookup<K, V> lookup = new Lookup<K, V>(keyComparator, expectedKeys);
 
         for (V v : collection) {
             K key = func.callback(v);
@@ -56,9 +70,31 @@ public class Lookup<K extends Comparable<? super K>, V> {
         return lookup;
     }
 
-    private Lookup(Comparator<K> comparator) {
+    /**
+     * Creates an empty lookup. Groups are added to it through {@link #getGroupForKey(Comparable, boolean)}.
+     *
+     * @param expectedKeys  The number of distinct keys the lookup should be sized for, or 0 if it isn't known
+     * @param keyComparator A comparator that is used to compare the keys. If it is null, the keys' equals and hashCode are used
+     */
+    public static <K extends Comparable<? super K>, V> Lookup<K, V> create(int expectedKeys, Comparator<K> keyComparator) {
+        Preconditions.checkArgument(expectedKeys >= 0);
+        return new Lookup<K, V>(keyComparator, expectedKeys);
+    }
+
+    private Lookup(Comparator<K> comparator, int expectedKeys) {
         this.comparator = comparator;
-        groups = new ArrayList<Group<K, V>>();
+
+        if (comparator != null) {
+            groups = new ArrayList<Group<K, V>>();
+            index = new TreeMap<K, Group<K, V>>(comparator);
+        } else if (expectedKeys > 0) {
+            // Size the table so that it never has to rehash while it is being filled
+            groups = new ArrayList<Group<K, V>>(expectedKeys);
+            index = new HashMap<K, Group<K, V>>((int) Math.min(expectedKeys / 0.75 + 1, Integer.MAX_VALUE));
+        } else {
+            groups = new ArrayList<Group<K, V>>();
+            index = new HashMap<K, Group<K, V>>();
+        }
     }
 
     /**
@@ -69,22 +105,15 @@ public class Lookup<K extends Comparable<? super K>, V> {
      * @return Either the existing Group, a new Group, or null.
      */
     public Group<K, V> getGroupForKey(K key, boolean createNew) {
-        for (Group<K, V> g : groups) {
-            if (comparator != null && comparator.compare(g.getKey(), key) == 0)
-                return g;
-
-            if (g.getKey() == key) {
-                return g;
-            }
-        }
+        Group<K, V> group = index.get(key);
 
-        if (createNew) {
-            Group<K, V> group = new Group<K, V>(key);
+        if (group == null && createNew) {
+            group = new Group<K, V>(key);
+            index.put(key, group);
             groups.add(group);
-            return group;
         }
 
-        return null;
+        return group;
     }
 
     /**
@@ -0,0 +1,103 @@
+package org.icechamps.lava.util;
+
+import com.google.common.base.Preconditions;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Runs a batch of tasks on an executor and waits for all of them, and holds the shared pool for tasks that block.
+ */
+public class Tasks {
+
+    private Tasks() {
+    }
+
+    /**
+     * Runs every task and returns their results in the same order as the tasks. The calling thread runs the first task
+     * itself and then takes on any task the executor hasn't started yet, so this never waits on a task that nobody is
+     * working on. That also makes it safe to call from inside a task that is running on the same executor.
+     *
+     * @param executor The executor the tasks are handed to
+     * @param tasks    The tasks to run
+     * @param <R>      The type of the result of each task
+     * @return The result of each task
+     * @throws RuntimeException If a task throws. Unchecked exceptions and errors are rethrown as they are.
+     */
+    public static <R> List<R> invokeAll(Executor executor, List<? extends Callable<R>> tasks) {
+        Preconditions.checkNotNull(executor);
+        Preconditions.checkNotNull(tasks);
+
+        List<FutureTask<R>> futures = new ArrayList<FutureTask<R>>(tasks.size());
+        for (Callable<R> task : tasks) {
+            futures.add(new FutureTask<R>(task));
+        }
+
+        // The first task is always run here, so only the others are handed out
+        for (int i = 1; i < futures.size(); i++) {
+            executor.execute(futures.get(i));
+        }
+
+        List<R> ret = new ArrayList<R>(futures.size());
+
+        for (FutureTask<R> future : futures) {
+            // Does nothing if the executor has already started the task
+            future.run();
+            ret.add(getResult(future));
+        }
+
+        return ret;
+    }
+
+    /**
+     * Returns the shared executor for tasks that spend most of their time waiting, such as reading from disk or the
+     * network. It starts a new daemon thread whenever every thread it has is busy, and lets a thread go once it has
+     * been idle for a minute, so how many tasks run at once is up to the caller.
+     *
+     * @return The shared executor for blocking tasks
+     */
+    public static ExecutorService getBlockingExecutor() {
+        return BlockingExecutorHolder.EXECUTOR;
+    }
+
+    /**
+     * Waits for the task and returns its result
+     *
+     * @param future The task to wait for
+     * @param <R>    The type of the result of the task
+     * @return The result of the task
+     * @throws RuntimeException If the task threw. Unchecked exceptions and errors are rethrown as they are.
+     */
+    public static <R> R getResult(Future<R> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+
+            if (cause instanceof Error)
+                throw (Error) cause;
+
+            throw new RuntimeException(cause);
+        }
+    }
+
+    private static class BlockingExecutorHolder {
+        static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(new ThreadFactory() {
+            private int count;
+
+            @Override
+            public synchronized Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "lava-blocking-" + count++);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+}
@@ -0,0 +1,53 @@
+package org.icechamps.lava.window;
+
+/**
+ * The result of aggregating the elements of one window.
+ *
+ * @param <V> The type of the aggregated value
+ */
+public class Window<V> {
+    private final long start;
+    private final long end;
+    private final long count;
+    private final V value;
+
+    public Window(long start, long end, long count, V value) {
+        this.start = start;
+        this.end = end;
+        this.count = count;
+        this.value = value;
+    }
+
+    /**
+     * @return The first timestamp in the window
+     */
+    public long getStart() {
+        return start;
+    }
+
+    /**
+     * @return The first timestamp after the window
+     */
+    public long getEnd() {
+        return end;
+    }
+
+    /**
+     * @return The number of elements in the window
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return The aggregated value
+     */
+    public V getValue() {
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return "Window{start=" + start + ", end=" + end + ", count=" + count + ", value=" + value + '}';
+    }
+}
@@ -0,0 +1,189 @@
+package org.icechamps.lava.window;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.AbstractIterator;
+import org.icechamps.lava.callback.Func;
+import org.icechamps.lava.callback.Func2;
+
+import java.util.*;
+
+/**
+ * <p>
+ * A stream of elements cut into {@link Windows windows}, which can be aggregated one window at a time without the
+ * stream ever having to end.
+ * </p>
+ * <p>
+ * Each window keeps a running aggregate rather than its elements, so an element is folded into every window it falls
+ * into as soon as it is read and then let go. Only the windows that are still open are held in memory, which is one for
+ * tumbling windows and size / slide for sliding ones. A window is handed out as soon as an element past its end shows
+ * up, and the windows that are still open when the stream runs out are handed out at the end. Windows that no element
+ * falls into are skipped.
+ * </p>
+ * <p>
+ * The results are plain Iterables rather than Enumerables, because most of the Enumerable operators would never return
+ * on an endless stream. Each iteration reads the source again, so a stream over an Iterator can only be read once.
+ * </p>
+ *
+ * @param <T> The type of the object in the stream
+ */
+public class Windowed<T> {
+    private final Iterable<T> source;
+    private final Windows<T> windows;
+
+    public Windowed(Iterable<T> source, Windows<T> windows) {
+        this.source = Preconditions.checkNotNull(source);
+        this.windows = Preconditions.checkNotNull(windows);
+    }
+
+    /**
+     * Aggregates the elements of each window. Just like {@link org.icechamps.lava.Lava#aggregate}, the callback function
+     * is given null along with the first element of a window.
+     *
+     * @param func The callback function that folds an element into the aggregate
+     * @param <V>  The type of the aggregate
+     * @return The windows, each with the aggregate of its elements
+     */
+    public <V> Iterable<Window<V>> aggregate(final Func2<T, V, V> func) {
+        Preconditions.checkNotNull(func);
+
+        return new WindowIterable<V>(new Accumulator<T, V>() {
+            @Override
+            public V create() {
+                return null;
+            }
+
+            @Override
+            public V add(V v, T t) {
+                return func.callback(t, v);
+            }
+        });
+    }
+
+    /**
+     * Groups the elements of each window by key and aggregates each group on its own
+     *
+     * @param keyFunc The function used to generate keys
+     * @param func    The callback function that folds an element into the aggregate for its key
+     * @param <K>     The type of the key
+     * @param <V>     The type of the aggregate
+     * @return The windows, each with the aggregates of its keys in the order the keys first showed up
+     */
+    public <K, V> Iterable<Window<Map<K, V>>> groupBy(final Func<T, K> keyFunc, final Func2<T, V, V> func) {
+        Preconditions.checkNotNull(keyFunc);
+        Preconditions.checkNotNull(func);
+
+        return new WindowIterable<Map<K, V>>(new Accumulator<T, Map<K, V>>() {
+            @Override
+            public Map<K, V> create() {
+                return new LinkedHashMap<K, V>();
+            }
+
+            @Override
+            public Map<K, V> add(Map<K, V> map, T t) {
+                K key = keyFunc.callback(t);
+                map.put(key, func.callback(t, map.get(key)));
+                return map;
+            }
+        });
+    }
+
+    /**
+     * Builds the aggregate of a single window.
+     *
+     * @param <T> The type of the object in the stream
+     * @param <V> The type of the aggregate
+     */
+    interface Accumulator<T, V> {
+        V create();
+
+        V add(V v, T t);
+    }
+
+    class WindowIterable<V> implements Iterable<Window<V>> {
+        private final Accumulator<T, V> accumulator;
+
+        WindowIterable(Accumulator<T, V> accumulator) {
+            this.accumulator = accumulator;
+        }
+
+        @Override
+        public Iterator<Window<V>> iterator() {
+            return new WindowIterator<V>(source.iterator(), accumulator);
+        }
+    }
+
+    /**
+     * Keeps the open windows in a queue ordered by start. Since every window has the same length, they also end in
+     * that order, so the windows to hand out are always at the front.
+     */
+    class WindowIterator<V> extends AbstractIterator<Window<V>> {
+        private final Iterator<T> iter;
+        private final Accumulator<T, V> accumulator;
+        private final Deque<OpenWindow<V>> open = new ArrayDeque<OpenWindow<V>>();
+        private final Deque<Window<V>> ready = new ArrayDeque<Window<V>>();
+        private long position;
+        private long latest = Long.MIN_VALUE;
+
+        WindowIterator(Iterator<T> iter, Accumulator<T, V> accumulator) {
+            this.iter = iter;
+            this.accumulator = accumulator;
+        }
+
+        @Override
+        protected Window<V> computeNext() {
+            while (ready.isEmpty()) {
+                if (!iter.hasNext()) {
+                    if (open.isEmpty())
+                        return endOfData();
+
+                    while (!open.isEmpty()) {
+                        ready.add(open.pollFirst().finish());
+                    }
+
+                    break;
+                }
+
+                T t = iter.next();
+                long time = Math.max(windows.timeOf(t, position++), latest);
+                latest = time;
+
+                while (!open.isEmpty() && open.peekFirst().end <= time) {
+                    ready.add(open.pollFirst().finish());
+                }
+
+                long start = windows.firstStart(time);
+                if (!open.isEmpty())
+                    start = Math.max(start, open.peekLast().start + windows.getSlide());
+
+                for (; start <= time; start += windows.getSlide()) {
+                    open.addLast(new OpenWindow<V>(start, start + windows.getSize(), accumulator.create()));
+                }
+
+                // Every window that is still open reaches the element, since none of them ended before it
+                for (OpenWindow<V> window : open) {
+                    window.value = accumulator.add(window.value, t);
+                    window.count++;
+                }
+            }
+
+            return ready.pollFirst();
+        }
+    }
+
+    static class OpenWindow<V> {
+        final long start;
+        final long end;
+        long count;
+        V value;
+
+        OpenWindow(long start, long end, V value) {
+            this.start = start;
+            this.end = end;
+            this.value = value;
+        }
+
+        Window<V> finish() {
+            return new Window<V>(start, end, count, value);
+        }
+    }
+}
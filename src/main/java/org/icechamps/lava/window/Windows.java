@@ -0,0 +1,131 @@
+package org.icechamps.lava.window;
+
+import com.google.common.base.Preconditions;
+import org.icechamps.lava.callback.ToLongFunc;
+
+/**
+ * <p>
+ * Says which windows each element of a stream falls into.
+ * </p>
+ * <p>
+ * Time based windows read a timestamp from each element. The window starts are multiples of the slide, and every window
+ * covers {@code size} units from its start, so an element is in every window whose start is at most its timestamp and
+ * whose end is after it. A tumbling window is a sliding window whose slide is its size, so each element is in exactly
+ * one. Count based windows work the same way, but use the position of the element in the stream as its timestamp.
+ * </p>
+ * <p>
+ * Timestamps are expected to go up as the stream goes on. An element whose timestamp is earlier than one already seen
+ * is counted as if it had arrived at the latest timestamp instead, since the windows it belongs in may have been
+ * handed out already.
+ * </p>
+ *
+ * @param <T> The type of the object in the stream
+ */
+public class Windows<T> {
+    private final long size;
+    private final long slide;
+    private final ToLongFunc<T> timeFunc;
+
+    private Windows(long size, long slide, ToLongFunc<T> timeFunc) {
+        Preconditions.checkArgument(size > 0, "The window size must be positive");
+        Preconditions.checkArgument(slide > 0 && slide <= size, "The slide must be positive and no bigger than the window");
+
+        this.size = size;
+        this.slide = slide;
+        this.timeFunc = timeFunc;
+    }
+
+    /**
+     * Windows of a fixed length that follow on from each other without overlapping
+     *
+     * @param size     The length of each window, in the units of the timestamps
+     * @param timeFunc The callback function that reads the timestamp of an element
+     * @param <T>      The type of the object in the stream
+     * @return The windows
+     */
+    public static <T> Windows<T> tumbling(long size, ToLongFunc<T> timeFunc) {
+        return sliding(size, size, timeFunc);
+    }
+
+    /**
+     * Windows of a fixed length that start every {@code slide} units, so that they overlap when the slide is shorter
+     * than the window
+     *
+     * @param size     The length of each window, in the units of the timestamps
+     * @param slide    The distance between the starts of two windows
+     * @param timeFunc The callback function that reads the timestamp of an element
+     * @param <T>      The type of the object in the stream
+     * @return The windows
+     */
+    public static <T> Windows<T> sliding(long size, long slide, ToLongFunc<T> timeFunc) {
+        Preconditions.checkNotNull(timeFunc);
+        return new Windows<T>(size, slide, timeFunc);
+    }
+
+    /**
+     * Windows of a fixed number of elements that follow on from each other without overlapping
+     *
+     * @param size The number of elements in each window
+     * @param <T>  The type of the object in the stream
+     * @return The windows
+     */
+    public static <T> Windows<T> count(long size) {
+        return count(size, size);
+    }
+
+    /**
+     * Windows of a fixed number of elements that start every {@code slide} elements
+     *
+     * @param size  The number of elements in each window
+     * @param slide The number of elements between the starts of two windows
+     * @param <T>   The type of the object in the stream
+     * @return The windows
+     */
+    public static <T> Windows<T> count(long size, long slide) {
+        return new Windows<T>(size, slide, null);
+    }
+
+    /**
+     * @return The length of each window
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * @return The distance between the starts of two windows
+     */
+    public long getSlide() {
+        return slide;
+    }
+
+    /**
+     * Works out the timestamp of an element
+     *
+     * @param t        The element
+     * @param position The position of the element in the stream
+     * @return The timestamp
+     */
+    long timeOf(T t, long position) {
+        return timeFunc != null ? timeFunc.callback(t) : position;
+    }
+
+    /**
+     * Finds the start of the earliest window a timestamp falls into
+     *
+     * @param time The timestamp
+     * @return The start of the window
+     */
+    long firstStart(long time) {
+        // The first multiple of the slide after time - size, which is the earliest start whose window reaches time
+        return -floor(size - 1 - time, slide);
+    }
+
+    /**
+     * Rounds towards negative infinity, unlike integer division, so negative timestamps land in the right window
+     */
+    private static long floor(long value, long unit) {
+        long ret = value - value % unit;
+        return value % unit < 0 ? ret - unit : ret;
+    }
+}
@@ -1,13 +1,49 @@
 package org.icechamps.lava;
 
+import com.google.common.collect.HashMultiset;
 import org.icechamps.lava.callback.Func;
 import org.icechamps.lava.callback.Func2;
+import org.icechamps.lava.callback.Predicate;
+import org.icechamps.lava.callback.ToLongFunc;
+import org.icechamps.lava.collection.ObservableList;
 import org.icechamps.lava.exception.MultipleElementsFoundException;
 import org.icechamps.lava.interfaces.Enumerable;
+import org.icechamps.lava.io.Framing;
+import org.icechamps.lava.io.MappedFileEnumerable;
+import org.icechamps.lava.io.RecordDecoder;
+import org.icechamps.lava.live.LiveCollection;
+import org.icechamps.lava.live.LiveGroups;
+import org.icechamps.lava.live.LiveLong;
+import org.icechamps.lava.plan.Plan;
+import org.icechamps.lava.query.CompiledQuery;
+import org.icechamps.lava.query.Query;
+import org.icechamps.lava.query.QueryCache;
+import org.icechamps.lava.reactive.Publisher;
+import org.icechamps.lava.reactive.PushEnumerable;
+import org.icechamps.lava.reactive.Subscriber;
+import org.icechamps.lava.reactive.Subscription;
+import org.icechamps.lava.sort.ParallelSort;
+import org.icechamps.lava.spill.SpillConfig;
+import org.icechamps.lava.util.Group;
+import org.icechamps.lava.window.Window;
+import org.icechamps.lava.window.Windowed;
+import org.icechamps.lava.window.Windows;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.junit.Assert.*;
 import static org.junit.Assert.assertNotNull;
@@ -109,6 +145,58 @@ public class LavaStressTest {
         assertTrue(list.count() == unTyped.size());
     }
 
+    @Test
+    public void testCompile() throws Exception {
+        final CompiledQuery<Person, Group<Integer, String>> petsByAge = Lava.compile(Query.<Person>create().where(new Predicate<Person>() {
+            @Override
+            public boolean callback(Person person) {
+                return person.age > 1;
+            }
+        }).groupBy(new Func<Person, Integer>() {
+            @Override
+            public Integer callback(Person person) {
+                return person.age;
+            }
+        }, new Func<Person, String>() {
+            @Override
+            public String callback(Person person) {
+                return person.name;
+            }
+        }));
+
+        // Every tenant gets its own slice of the people, and all of them share the one compiled query
+        List<Callable<Integer>> tenants = new ArrayList<Callable<Integer>>();
+        for (int i = 0; i < 100; i++) {
+            final List<Person> slice = people.subList(i * 1000, (i + 1) * 1000);
+
+            tenants.add(new Callable<Integer>() {
+                @Override
+                public Integer call() throws Exception {
+                    int ret = 0;
+                    for (Group<Integer, String> group : petsByAge.apply(slice)) {
+                        ret += group.getValues().size();
+                    }
+
+                    return ret;
+                }
+            });
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            int total = 0;
+            for (Future<Integer> future : executor.invokeAll(tenants)) {
+                total += future.get();
+            }
+
+            assertEquals(100000, total);
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(2, petsByAge.apply(people).count());
+    }
+
     @Test
     public void testConcat() throws Exception {
         Enumerable<Person> list = Lava.concat(people, people);
@@ -153,6 +241,58 @@ public class LavaStressTest {
         assertNull(person);
     }
 
+    @Test
+    public void testExcept() throws Exception {
+        Enumerable<Person> list = Lava.except(people, people.subList(0, 50000));
+
+        assertEquals(peopleCount - 50000, list.count());
+        assertEquals(people.get(50000), list.first());
+    }
+
+    @Test
+    public void testExceptMillionIds() throws Exception {
+        ArrayList<Integer> first = new ArrayList<Integer>();
+        ArrayList<Integer> second = new ArrayList<Integer>();
+
+        for (int i = 0; i < 1000000; i++) {
+            first.add(i);
+            second.add(i + 500000);
+        }
+
+        assertEquals(500000, Lava.except(first, second).count());
+        assertEquals(500000, Lava.intersect(first, second).count());
+    }
+
+    @Test
+    public void testExplain() throws Exception {
+        Enumerable<Integer> ages = Lava.lazy(people).where(new Predicate<Person>() {
+            @Override
+            public boolean callback(Person person) {
+                return person.age == 2;
+            }
+        }).select(new Func<Person, Integer>() {
+            @Override
+            public Integer callback(Person person) {
+                return person.pets.size();
+            }
+        });
+
+        Plan plan = ages.analyze();
+        assertEquals("Select", plan.getOperator());
+        assertEquals(peopleCount - 2, plan.getActualRows());
+        assertEquals(peopleCount, plan.getInputs().get(0).getInputs().get(0).getActualRows());
+
+        for (Plan stage = plan; !stage.getInputs().isEmpty(); stage = stage.getInputs().get(0)) {
+            assertTrue(stage.getNanos() >= 0);
+            assertTrue(stage.getBytes() >= -1);
+        }
+
+        plan = ages.reverse().explain();
+        assertEquals("Reverse", plan.getOperator());
+        assertEquals(peopleCount - 2, plan.getActualRows());
+        assertFalse(plan.getInputs().get(0).hasRun());
+    }
+
     @Test
     public void testFirst() throws Exception {
         Person person = Lava.first(people);
@@ -324,6 +464,80 @@ public class LavaStressTest {
         assertNull(person);
     }
 
+    @Test
+    public void testLazyRewrites() throws Exception {
+        Predicate<Person> twoPets = new Predicate<Person>() {
+            @Override
+            public boolean callback(Person person) {
+                return person.pets.size() == 2;
+            }
+        };
+
+        Enumerable<Person> sorted = Lava.lazy(people).orderByDescending().where(twoPets);
+        assertEquals(Lava.orderByDescending(people).where(twoPets).toList(), sorted.toList());
+        assertEquals(peopleCount - 2, sorted.count());
+
+        assertSame(Lava.min(people), Lava.lazy(people).orderBy().first());
+        assertSame(Lava.max(people), Lava.lazy(people).orderByDescending().first());
+    }
+
+    @Test
+    public void testLive() throws Exception {
+        ObservableList<Person> list = new ObservableList<Person>(people);
+        LiveCollection<Person> adults = Lava.live(list).where(new Predicate<Person>() {
+            @Override
+            public boolean callback(Person person) {
+                return person.age > 1;
+            }
+        });
+        LiveGroups<Integer, Person> byAge = adults.groupBy(new Func<Person, Integer>() {
+            @Override
+            public Integer callback(Person person) {
+                return person.age;
+            }
+        });
+        LiveLong<Person> ages = adults.sum(new ToLongFunc<Person>() {
+            @Override
+            public long callback(Person person) {
+                return person.age;
+            }
+        });
+
+        // A handful of changes at a time, the way a dashboard sees them
+        Random random = new Random(42);
+        for (int i = 0; i < 10000; i++) {
+            int index = random.nextInt(list.size());
+
+            switch (random.nextInt(3)) {
+                case 0:
+                    list.add(createPerson("Live-" + i, random.nextInt(4)));
+                    break;
+                case 1:
+                    list.remove(list.size() - 1);
+                    break;
+                default:
+                    list.set(index, createPerson("Live-" + i, random.nextInt(4)));
+                    break;
+            }
+        }
+
+        long expectedAges = 0;
+        int expectedCount = 0;
+        Set<Integer> expectedKeys = new HashSet<Integer>();
+        for (Person person : list) {
+            if (person.age > 1) {
+                expectedAges += person.age;
+                expectedCount++;
+                expectedKeys.add(person.age);
+            }
+        }
+
+        assertEquals(expectedCount, adults.size());
+        assertEquals(expectedAges, ages.get());
+        assertEquals(expectedKeys, byAge.keySet());
+        assertEquals(expectedCount, byAge.get(2).size() + byAge.get(3).size());
+    }
+
     @Test
     public void testMax() throws Exception {
         Person person = Lava.max(people);
@@ -342,6 +556,43 @@ public class LavaStressTest {
         assertTrue(age == 3);
     }
 
+    @Test
+    public void testMemoize() throws Exception {
+        final AtomicInteger calls = new AtomicInteger();
+        final Enumerable<String> names = Lava.lazy(people).select(new Func<Person, String>() {
+            @Override
+            public String callback(Person person) {
+                calls.incrementAndGet();
+                return person.name;
+            }
+        }).memoize();
+
+        // Several threads read the chain at once, and between them it only runs once
+        List<Callable<List<String>>> readers = new ArrayList<Callable<List<String>>>();
+        for (int i = 0; i < 8; i++) {
+            readers.add(new Callable<List<String>>() {
+                @Override
+                public List<String> call() throws Exception {
+                    return names.toList();
+                }
+            });
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            for (Future<List<String>> future : executor.invokeAll(readers)) {
+                List<String> result = future.get();
+
+                assertEquals(people.size(), result.size());
+                assertEquals("Person-5001", result.get(result.size() - 1));
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(people.size(), calls.get());
+    }
+
     @Test
     public void testMin() throws Exception {
         Person person = Lava.min(people);
@@ -396,6 +647,404 @@ public class LavaStressTest {
         });
     }
 
+    @Test
+    public void testOrderByParallelIsStable() throws Exception {
+        Comparator<Person> byPets = new Comparator<Person>() {
+            @Override
+            public int compare(Person o1, Person o2) {
+                return o1.pets.size() - o2.pets.size();
+            }
+        };
+
+        List<Person> expected = new ArrayList<Person>(people);
+        Collections.sort(expected, byPets);
+        assertSameOrder(expected, Lava.orderBy(people, byPets).toList());
+
+        expected = new ArrayList<Person>(people);
+        Collections.sort(expected, Collections.reverseOrder(byPets));
+        assertSameOrder(expected, Lava.orderByDescending(people, byPets).toList());
+        assertSameOrder(expected, Lava.parallel(people).orderByDescending(byPets).toList());
+
+        expected = new ArrayList<Person>(people);
+        Collections.sort(expected);
+        assertSameOrder(expected, Lava.parallel(people).orderBy().toList());
+
+        // Force several chunks no matter how many processors there are
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            List<Person> shuffled = new ArrayList<Person>(people);
+            Collections.shuffle(shuffled, new Random(42));
+
+            expected = new ArrayList<Person>(shuffled);
+            Collections.sort(expected, byPets);
+
+            ParallelSort.sort(shuffled, byPets, executor, 5);
+            assertSameOrder(expected, shuffled);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testOrderBySpill() throws Exception {
+        Comparator<Person> byPets = new Comparator<Person>() {
+            @Override
+            public int compare(Person o1, Person o2) {
+                return o1.pets.size() - o2.pets.size();
+            }
+        };
+
+        List<Person> expected = Lava.orderByDescending(people, byPets).toList();
+        Iterator<Person> actual = Lava.orderByDescending(people, byPets, new PersonSerializer(), new SpillConfig(10000)).iterator();
+
+        for (Person person : expected) {
+            Person next = actual.next();
+
+            assertEquals(person, next);
+            assertEquals(person.pets.size(), next.pets.size());
+        }
+
+        assertFalse(actual.hasNext());
+    }
+
+    @Test
+    public void testGroupBySpill() throws Exception {
+        Func<Person, String> bucket = new Func<Person, String>() {
+            @Override
+            public String callback(Person person) {
+                return person.name.substring(0, Math.min(person.name.length(), 10));
+            }
+        };
+
+        Func<Person, Integer> pets = new Func<Person, Integer>() {
+            @Override
+            public Integer callback(Person person) {
+                return person.pets.size();
+            }
+        };
+
+        // Many small groups, and then a few huge ones that can't be split by key
+        assertSameGroups(Lava.groupBy(people, bucket), Lava.groupBy(people, bucket, new PersonSerializer(), new SpillConfig(5000)));
+        assertSameGroups(Lava.groupBy(people, pets), Lava.groupBy(people, pets, new PersonSerializer(), new SpillConfig(1000)));
+    }
+
+    private <K extends Comparable<? super K>> void assertSameGroups(Enumerable<Group<K, Person>> expected, Enumerable<Group<K, Person>> actual) {
+        Map<K, List<Person>> groups = new HashMap<K, List<Person>>();
+        for (Group<K, Person> group : expected)
+            groups.put(group.getKey(), group.getValues());
+
+        int count = 0;
+        for (Group<K, Person> group : actual) {
+            assertEquals(groups.get(group.getKey()), group.getValues());
+            count++;
+        }
+
+        assertEquals(groups.size(), count);
+    }
+
+    @Test
+    public void testJoinSpill() throws Exception {
+        Func<Person, String> name = new Func<Person, String>() {
+            @Override
+            public String callback(Person person) {
+                return person.name;
+            }
+        };
+
+        Func2<Person, Person, Integer> pets = new Func2<Person, Person, Integer>() {
+            @Override
+            public Integer callback(Person outer, Person inner) {
+                return outer.pets.size() * 10 + inner.pets.size();
+            }
+        };
+
+        Enumerable<Integer> expected = Lava.join(people, people, name, name, pets);
+        Enumerable<Integer> actual = Lava.join(people, people, name, name, pets, new PersonSerializer(), new PersonSerializer(), new SpillConfig(10000));
+
+        assertEquals(expected.orderBy().toList(), actual.orderBy().toList());
+    }
+
+    @Test
+    public void testFromFile() throws Exception {
+        File file = File.createTempFile("lava-test", ".csv");
+
+        try {
+            Writer out = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+            for (Person person : people) {
+                out.write(person.name + "," + person.age + "\n");
+            }
+            out.close();
+
+            RecordDecoder<Integer> age = new RecordDecoder<Integer>() {
+                @Override
+                public Integer decode(ByteBuffer record) {
+                    int ret = 0;
+
+                    // Skip to the comma and parse the digits after it without building a string
+                    while (record.get() != ',') {
+                    }
+
+                    while (record.hasRemaining()) {
+                        ret = ret * 10 + record.get() - '0';
+                    }
+
+                    return ret;
+                }
+            };
+
+            assertEquals(peopleCount, Lava.fromFile(file, age).count());
+            assertEquals(peopleCount * 2, Lava.sum(new MappedFileEnumerable<Integer>(file, Framing.lines(), age, 4096).toList()).intValue());
+        } finally {
+            file.delete();
+        }
+    }
+
+    private void assertSameOrder(List<Person> expected, List<Person> actual) {
+        assertEquals(expected.size(), actual.size());
+
+        for (int i = 0; i < expected.size(); i++) {
+            assertSame(expected.get(i), actual.get(i));
+        }
+    }
+
+    @Test
+    public void testThenBy() throws Exception {
+        List<Person> expected = Lava.orderBy(people, new Comparator<Person>() {
+            @Override
+            public int compare(Person o1, Person o2) {
+                if (o1.pets.size() != o2.pets.size())
+                    return o2.pets.size() - o1.pets.size();
+
+                return o1.name.compareTo(o2.name);
+            }
+        }).toList();
+
+        List<Person> actual = Lava.orderByDescending(people, new Func<Person, Integer>() {
+            @Override
+            public Integer callback(Person person) {
+                return person.pets.size();
+            }
+        }).thenBy(new Func<Person, String>() {
+            @Override
+            public String callback(Person person) {
+                return person.name;
+            }
+        }).toList();
+
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void testTopK() throws Exception {
+        Comparator<Person> byPets = new Comparator<Person>() {
+            @Override
+            public int compare(Person o1, Person o2) {
+                return o2.pets.size() - o1.pets.size();
+            }
+        };
+
+        List<Person> top = Lava.topK(people, 100, byPets).toList();
+
+        assertEquals(Lava.orderBy(people, byPets).take(100).toList(), top);
+        assertEquals(3, top.get(0).pets.size());
+        assertEquals(Lava.orderByDescending(people).take(10).toList(), Lava.lazy(people).orderByDescending().take(10).toList());
+    }
+
+    @Test
+    public void testParallel() throws Exception {
+        Func<Person, Boolean> evenPets = new Func<Person, Boolean>() {
+            @Override
+            public Boolean callback(Person person) {
+                return person.pets.size() % 2 == 0;
+            }
+        };
+
+        Func<Person, String> name = new Func<Person, String>() {
+            @Override
+            public String callback(Person person) {
+                return person.name;
+            }
+        };
+
+        List<String> expected = Lava.where(people, evenPets).select(name).toList();
+
+        assertEquals(expected, Lava.parallel(people).where(evenPets).select(name).toList());
+
+        List<String> unordered = Lava.parallel(people).unordered().where(evenPets).select(name).toList();
+        assertEquals(expected.size(), unordered.size());
+        assertEquals(new HashSet<String>(expected), new HashSet<String>(unordered));
+
+        Func<Person, Collection<Pet>> pets = new Func<Person, Collection<Pet>>() {
+            @Override
+            public Collection<Pet> callback(Person person) {
+                return person.pets;
+            }
+        };
+
+        assertEquals(Lava.selectMany(people, pets).toList(), Lava.parallel(people).selectMany(pets).toList());
+    }
+
+    @Test
+    public void testParallelAggregates() throws Exception {
+        Enumerable<Person> persons = Lava.parallel(people);
+
+        assertEquals(Lava.max(people), persons.max());
+        assertEquals(Lava.min(people), persons.min());
+
+        assertFalse(persons.all(new Func<Person, Boolean>() {
+            @Override
+            public Boolean callback(Person person) {
+                return person.age == 2;
+            }
+        }));
+
+        assertTrue(persons.any(new Func<Person, Boolean>() {
+            @Override
+            public Boolean callback(Person person) {
+                return person.age == 3;
+            }
+        }));
+
+        int totalAge = Lava.parallel(people).aggregate(new Func2<Person, Integer, Integer>() {
+            @Override
+            public Integer callback(Person person, Integer sum) {
+                return sum == null ? person.age : sum + person.age;
+            }
+        }, new Func2<Integer, Integer, Integer>() {
+            @Override
+            public Integer callback(Integer left, Integer right) {
+                return left + right;
+            }
+        });
+
+        assertEquals(200004, totalAge);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testParallelException() throws Exception {
+        Lava.parallel(people).select(new Func<Person, String>() {
+            @Override
+            public String callback(Person person) {
+                if (person.age == 3)
+                    throw new IllegalStateException();
+
+                return person.name;
+            }
+        });
+    }
+
+    @Test
+    public void testPublish() throws Exception {
+        final int events = 200000;
+        final AtomicLong produced = new AtomicLong();
+        final AtomicLong consumed = new AtomicLong();
+        final AtomicLong mostAhead = new AtomicLong();
+
+        // A publisher on its own thread, like a message consumer, that only sends what has been asked for
+        Publisher<Integer> consumer = new Publisher<Integer>() {
+            @Override
+            public void subscribe(final Subscriber<? super Integer> subscriber) {
+                final Semaphore demand = new Semaphore(0);
+
+                subscriber.onSubscribe(new Subscription() {
+                    @Override
+                    public void request(long n) {
+                        demand.release((int) Math.min(n, Integer.MAX_VALUE / 2));
+                    }
+
+                    @Override
+                    public void cancel() {
+                    }
+                });
+
+                Thread thread = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            for (int i = 0; i < events; i++) {
+                                demand.acquire();
+                                long ahead = produced.incrementAndGet() - consumed.get();
+
+                                if (ahead > mostAhead.get())
+                                    mostAhead.set(ahead);
+
+                                subscriber.onNext(i);
+                            }
+
+                            subscriber.onComplete();
+                        } catch (InterruptedException e) {
+                            subscriber.onError(e);
+                        }
+                    }
+                });
+                thread.setDaemon(true);
+                thread.start();
+            }
+        };
+
+        Enumerable<Integer> evens = Lava.fromPublisher(PushEnumerable.from(consumer).where(new Predicate<Integer>() {
+            @Override
+            public boolean callback(Integer integer) {
+                return integer % 2 == 0;
+            }
+        }), 64);
+
+        long sum = 0;
+        int count = 0;
+        for (Integer even : evens) {
+            sum += even;
+            count++;
+            consumed.set(even + 1);
+        }
+
+        assertEquals(events / 2, count);
+        assertEquals((long) (events - 2) * (events / 2) / 2, sum);
+
+        // Half the numbers are dropped and replaced by the where, so twice the prefetch is the most that can be in flight
+        assertTrue(mostAhead.get() <= 2 * 64 + 2);
+    }
+
+    @Test
+    public void testQueryCache() throws Exception {
+        final CompiledQuery<Person, String> names = Lava.compile(Query.<Person>create().select(new Func<Person, String>() {
+            @Override
+            public String callback(Person person) {
+                return person.name;
+            }
+        }));
+
+        final List<List<Person>> slices = new ArrayList<List<Person>>();
+        for (int i = 0; i < 10; i++) {
+            slices.add(people.subList(i * 1000, (i + 1) * 1000));
+        }
+
+        final QueryCache cache = new QueryCache(slices.size());
+        List<Callable<Integer>> callers = new ArrayList<Callable<Integer>>();
+        for (int i = 0; i < 200; i++) {
+            final List<Person> slice = slices.get(i % slices.size());
+
+            callers.add(new Callable<Integer>() {
+                @Override
+                public Integer call() throws Exception {
+                    return cache.apply(names, slice).count();
+                }
+            });
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            for (Future<Integer> future : executor.invokeAll(callers)) {
+                assertEquals(1000, (int) future.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(200, cache.getHits() + cache.getMisses());
+        assertTrue(cache.getHits() >= 200 - 4 * slices.size());
+        assertEquals(slices.size(), cache.size());
+    }
+
     @Test
     public void testSelect() throws Exception {
         Enumerable<String> names = Lava.select(people, new Func<Person, String>() {
@@ -411,6 +1060,109 @@ public class LavaStressTest {
         }
     }
 
+    @Test
+    public void testSelectAsync() throws Exception {
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger mostRunning = new AtomicInteger();
+
+        Func<Person, String> lookup = new Func<Person, String>() {
+            @Override
+            public String callback(Person person) {
+                int now = running.incrementAndGet();
+
+                synchronized (mostRunning) {
+                    mostRunning.set(Math.max(mostRunning.get(), now));
+                }
+
+                running.decrementAndGet();
+                return person.name;
+            }
+        };
+
+        Iterator<Person> expected = people.iterator();
+        int count = 0;
+
+        for (String name : Lava.selectAsync(people, lookup, 64)) {
+            assertEquals(expected.next().name, name);
+            count++;
+        }
+
+        assertEquals(peopleCount, count);
+        assertTrue(mostRunning.get() <= 64);
+
+        // Every name comes up twice, so a lost or repeated result changes the counts
+        List<Person> twice = new ArrayList<Person>(people);
+        twice.addAll(people);
+        mostRunning.set(0);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<String> names = Lava.selectAsync(twice, lookup, 16, executor, false).toList();
+            assertEquals(peopleCount * 2, names.size());
+            assertEquals(HashMultiset.create(Lava.select(twice, lookup)), HashMultiset.create(names));
+            assertTrue(mostRunning.get() <= 16);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testSelectBatched() throws Exception {
+        final List<Integer> sizes = Collections.synchronizedList(new ArrayList<Integer>());
+
+        Func<List<Person>, List<Integer>> ages = new Func<List<Person>, List<Integer>>() {
+            @Override
+            public List<Integer> callback(List<Person> batch) {
+                sizes.add(batch.size());
+
+                List<Integer> ret = new ArrayList<Integer>(batch.size());
+                for (Person person : batch) {
+                    ret.add(person.age);
+                }
+
+                return ret;
+            }
+        };
+
+        Func<List<Person>, List<Boolean>> young = new Func<List<Person>, List<Boolean>>() {
+            @Override
+            public List<Boolean> callback(List<Person> batch) {
+                sizes.add(batch.size());
+
+                List<Boolean> ret = new ArrayList<Boolean>(batch.size());
+                for (Person person : batch) {
+                    ret.add(person.age < 2);
+                }
+
+                return ret;
+            }
+        };
+
+        List<Integer> expected = Lava.select(people, new Func<Person, Integer>() {
+            @Override
+            public Integer callback(Person person) {
+                return person.age;
+            }
+        }).toList();
+
+        assertEquals(expected, Lava.selectBatched(people, 1000, ages).toList());
+        assertEquals(expected, Lava.lazy(people).selectBatched(1000, ages).toList());
+        assertEquals(expected, Lava.parallel(people).selectBatched(1000, ages).toList());
+
+        // Every batch is full but the last one of each pass
+        int partial = 0;
+        for (int size : sizes) {
+            if (size != 1000)
+                partial++;
+        }
+        assertEquals(3, partial);
+
+        assertEquals(1, Lava.whereBatched(people, 1000, young).count());
+        assertEquals("Person-5000", Lava.whereBatched(people, 1000, young).first().name);
+        assertEquals("Person-5000", Lava.lazy(people).whereBatched(1000, young).first().name);
+        assertEquals("Person-5000", Lava.parallel(people).unordered().whereBatched(777, young).first().name);
+    }
+
     @Test
     public void testSelectMany1() throws Exception {
         Enumerable<Pet> pets = Lava.selectMany(people, new Func<Person, Collection<Pet>>() {
@@ -514,6 +1266,14 @@ public class LavaStressTest {
         assertNull(person);
     }
 
+    @Test
+    public void testIntersect() throws Exception {
+        Enumerable<Person> list = Lava.intersect(people, people.subList(50000, peopleCount));
+
+        assertEquals(peopleCount - 50000, list.count());
+        assertEquals(people.get(50000), list.first());
+    }
+
     @Test
     public void testSkip() throws Exception {
         Enumerable<Person> persons = Lava.skip(people, 3);
@@ -539,4 +1299,58 @@ public class LavaStressTest {
         Set<Person> persons = Lava.toSet(people);
         assertNotNull(persons);
     }
+
+    @Test
+    public void testWindow() throws Exception {
+        final int events = 1000000;
+        Iterator<Long> source = new Iterator<Long>() {
+            private long next;
+
+            @Override
+            public boolean hasNext() {
+                return next < events;
+            }
+
+            @Override
+            public Long next() {
+                return next++;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+
+        Windowed<Long> windowed = Lava.windowIterator(source, Windows.sliding(1000, 100, new ToLongFunc<Long>() {
+            @Override
+            public long callback(Long value) {
+                return value;
+            }
+        }));
+
+        int windows = 0;
+        for (Window<Map<Long, Long>> window : windowed.groupBy(new Func<Long, Long>() {
+            @Override
+            public Long callback(Long value) {
+                return value % 10;
+            }
+        }, new Func2<Long, Long, Long>() {
+            @Override
+            public Long callback(Long value, Long count) {
+                return count == null ? 1 : count + 1;
+            }
+        })) {
+            windows++;
+
+            // Every window that lies wholly inside the stream has 1000 elements spread evenly over 10 keys
+            if (window.getStart() >= 0 && window.getEnd() <= events) {
+                assertEquals(1000, window.getCount());
+                assertEquals(10, window.getValue().size());
+                assertEquals(100, (long) window.getValue().get(7L));
+            }
+        }
+
+        assertEquals(events / 100 + 9, windows);
+    }
 }
@@ -1,14 +1,65 @@
 package org.icechamps.lava;
 
+import com.google.common.collect.Lists;
+import com.google.common.collect.Ordering;
+import org.icechamps.lava.callback.ChangeListener;
 import org.icechamps.lava.callback.Func;
 import org.icechamps.lava.callback.Func2;
+import org.icechamps.lava.callback.IntPredicate;
+import org.icechamps.lava.callback.LongPredicate;
+import org.icechamps.lava.callback.Predicate;
+import org.icechamps.lava.callback.ToDoubleFunc;
+import org.icechamps.lava.callback.ToIntFunc;
+import org.icechamps.lava.callback.ToLongFunc;
+import org.icechamps.lava.collection.DoubleEnumerable;
+import org.icechamps.lava.collection.IntEnumerable;
+import org.icechamps.lava.collection.LavaList;
+import org.icechamps.lava.collection.LazyEnumerable;
+import org.icechamps.lava.collection.LongEnumerable;
+import org.icechamps.lava.collection.ObservableList;
+import org.icechamps.lava.collection.ObservableSet;
+import org.icechamps.lava.exception.FileSourceException;
 import org.icechamps.lava.exception.MultipleElementsFoundException;
 import org.icechamps.lava.interfaces.Enumerable;
+import org.icechamps.lava.io.Framing;
+import org.icechamps.lava.io.MappedFileEnumerable;
+import org.icechamps.lava.io.RecordDecoder;
+import org.icechamps.lava.io.StringDecoder;
+import org.icechamps.lava.join.JoinStrategy;
+import org.icechamps.lava.live.LiveCollection;
+import org.icechamps.lava.live.LiveDouble;
+import org.icechamps.lava.live.LiveGroups;
+import org.icechamps.lava.live.LiveLong;
+import org.icechamps.lava.plan.Plan;
+import org.icechamps.lava.query.CompiledQuery;
+import org.icechamps.lava.query.Query;
+import org.icechamps.lava.query.QueryCache;
+import org.icechamps.lava.reactive.Publisher;
+import org.icechamps.lava.reactive.PushEnumerable;
+import org.icechamps.lava.reactive.Subscriber;
+import org.icechamps.lava.reactive.Subscription;
+import org.icechamps.lava.sort.ExternalSort;
+import org.icechamps.lava.spill.HashPartitions;
+import org.icechamps.lava.spill.JavaSerializer;
+import org.icechamps.lava.spill.Serializer;
+import org.icechamps.lava.spill.SpillConfig;
 import org.icechamps.lava.util.Group;
+import org.icechamps.lava.util.IdentityFunction;
+import org.icechamps.lava.window.Window;
+import org.icechamps.lava.window.Windowed;
+import org.icechamps.lava.window.Windows;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.*;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.*;
 
@@ -109,6 +160,23 @@ public class LavaTest {
         assertFalse(Lava.any(new ArrayList<Comparable>()));
     }
 
+    @Test
+    public void testAnyWithFunc() throws Exception {
+        assertTrue(Lava.any(people, new Func<Person, Boolean>() {
+            @Override
+            public Boolean callback(Person person) {
+                return person.name.equals("Todd");
+            }
+        }));
+
+        assertFalse(Lava.lazy(people).any(new Func<Person, Boolean>() {
+            @Override
+            public Boolean callback(Person person) {
+                return person.age > 100;
+            }
+        }));
+    }
+
     @Test
     public void testAverageByte() throws Exception {
         ArrayList<Byte> list = new ArrayList<Byte>();
@@ -205,6 +273,53 @@ public class LavaTest {
         assertTrue(list.count() == unTyped.size());
     }
 
+    @Test
+    public void testCompile() throws Exception {
+        Func<Person, String> name = new Func<Person, String>() {
+            @Override
+            public String callback(Person person) {
+                return person.name;
+            }
+        };
+
+        CompiledQuery<Person, String> twenties = Lava.compile(Query.<Person>create().where(new Func<Person, Boolean>() {
+            @Override
+            public Boolean callback(Person person) {
+                return person.age >= 20;
+            }
+        }).where(new Func<Person, Boolean>() {
+            @Override
+            public Boolean callback(Person person) {
+                return person.age < 30;
+            }
+        }).select(name));
+
+        assertEquals(Arrays.asList("Robbie", "Robbie", "Stephanie", "Mark", "Dan"), twenties.apply(people).toList());
+        assertEquals(5, twenties.apply(new LinkedList<Person>(people)).count());
+        assertTrue(twenties.apply(new ArrayList<Person>()).empty());
+
+        // The same compiled query keeps adding to a collection the caller hands it
+        List<String> target = new ArrayList<String>();
+        twenties.applyTo(people, target);
+        twenties.applyTo(people.subList(0, 3), target);
+        assertEquals(8, target.size());
+
+        CompiledQuery<Person, String> counts = Lava.compile(Query.<Person>create().groupBy(new Func<Person, Integer>() {
+            @Override
+            public Integer callback(Person person) {
+                return person.age % 10;
+            }
+        }, name).select(new Func<Group<Integer, String>, String>() {
+            @Override
+            public String callback(Group<Integer, String> group) {
+                return group.getKey() + "=" + group.getValues().size();
+            }
+        }));
+
+        assertEquals(Arrays.asList("3=2", "4=3", "1=2", "8=1", "2=1"), counts.apply(people).toList());
+        assertEquals(Arrays.asList("3=1", "4=1"), counts.apply(people.subList(1, 3)).toList());
+    }
+
     @Test
     public void testConcat() throws Exception {
         Enumerable<Person> list = Lava.concat(people, people);
@@ -271,6 +386,118 @@ public class LavaTest {
         assertTrue(list.count() == numbers1.size() - 1);
     }
 
+    @Test
+    public void testExplain() throws Exception {
+        final Predicate<Integer> even = new Predicate<Integer>() {
+            @Override
+            public boolean callback(Integer i) {
+                return i % 2 == 0;
+            }
+        };
+
+        final LavaList<Integer> numbers = new LavaList<Integer>(Arrays.asList(1, 2, 3, 4, 5, 6, 7, 8, 9, 10));
+
+        Plan plan = numbers.where(even).orderByDescending().explain();
+        assertEquals("OrderByDescending", plan.getOperator());
+        assertEquals(5, plan.getEstimatedRows());
+        assertEquals(5, plan.getActualRows());
+        assertEquals(-1, plan.getNanos());
+        assertEquals(-1, plan.getBytes());
+
+        // Eager operators are only timed inside a profiled query
+        plan = Lava.profile(new Callable<Enumerable<Integer>>() {
+            @Override
+            public Enumerable<Integer> call() throws Exception {
+                return numbers.where(even).orderByDescending();
+            }
+        }).explain();
+        assertEquals("OrderByDescending", plan.getOperator());
+        assertEquals(5, plan.getActualRows());
+        assertTrue(plan.getNanos() >= 0);
+        assertTrue(plan.getInputs().get(0).getNanos() >= 0);
+
+        Plan where = plan.getInputs().get(0);
+        assertEquals("Where", where.getOperator());
+        assertEquals(5, where.getActualRows());
+
+        Plan source = where.getInputs().get(0);
+        assertEquals("LavaList", source.getOperator());
+        assertEquals(10, source.getActualRows());
+        assertTrue(source.getInputs().isEmpty());
+
+        // Nothing in a lazy chain has run until it is analyzed
+        Enumerable<Integer> lazy = numbers.lazy().where(even).take(2);
+        plan = lazy.explain();
+        assertEquals("Take", plan.getOperator());
+        assertEquals(2, plan.getEstimatedRows());
+        assertFalse(plan.hasRun());
+
+        plan = lazy.analyze();
+        assertEquals(2, plan.getActualRows());
+        assertTrue(plan.toString().startsWith("Take (estimated=2, actual=2"));
+
+        where = plan.getInputs().get(0);
+        assertEquals("Where", where.getOperator());
+        assertEquals(5, where.getEstimatedRows());
+        assertEquals(2, where.getActualRows());
+
+        // The take stops the where after the fourth element
+        assertEquals("Source", where.getInputs().get(0).getOperator());
+        assertEquals(4, where.getInputs().get(0).getActualRows());
+
+        // An eager operator on top of a lazy chain runs it, and shows it as its input
+        plan = lazy.reverse().explain();
+        assertEquals("Reverse", plan.getOperator());
+        assertEquals(2, plan.getActualRows());
+        assertEquals("Take", plan.getInputs().get(0).getOperator());
+
+        plan = Lava.join(numbers, Arrays.asList(2, 4, 6, 8, 10), new IdentityFunction<Integer>(), new IdentityFunction<Integer>(), new Func2<Integer, Integer, Integer>() {
+            @Override
+            public Integer callback(Integer outer, Integer inner) {
+                return outer;
+            }
+        }).analyze();
+        assertEquals("Join", plan.getOperator());
+        assertEquals(10, plan.getEstimatedRows());
+        assertEquals(5, plan.getActualRows());
+        assertEquals("LavaList", plan.getInputs().get(0).getOperator());
+        assertEquals(5, plan.getInputs().get(1).getEstimatedRows());
+    }
+
+    @Test
+    public void testExplainDoesNotKeepSource() throws Exception {
+        List<Integer> numbers = new ArrayList<Integer>();
+        for (int i = 0; i < 100000; i++) {
+            numbers.add(i);
+        }
+
+        Func<Integer, Boolean> small = new Func<Integer, Boolean>() {
+            @Override
+            public Boolean callback(Integer i) {
+                return i < 3;
+            }
+        };
+
+        WeakReference<List<Integer>> source = new WeakReference<List<Integer>>(numbers);
+        WeakReference<Enumerable<Integer>> chain = new WeakReference<Enumerable<Integer>>(Lava.lazy(numbers).where(small));
+
+        Enumerable<Integer> eager = Lava.where(numbers, small);
+        Enumerable<Integer> onLazy = chain.get().reverse();
+        numbers = null;
+
+        for (int i = 0; i < 50 && (source.get() != null || chain.get() != null); i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+
+        // The results only keep a plan of their inputs
+        assertNull(source.get());
+        assertNull(chain.get());
+        assertEquals(100000, eager.explain().getInputs().get(0).getActualRows());
+        assertEquals("Where", onLazy.explain().getInputs().get(0).getOperator());
+        assertEquals(3, onLazy.count());
+    }
+
     @Test
     public void testFirst() throws Exception {
         Person person = Lava.first(people);
@@ -319,6 +546,150 @@ public class LavaTest {
         assertNull(person);
     }
 
+    @Test
+    public void testFromFile() throws Exception {
+        File file = File.createTempFile("lava-test", ".txt");
+
+        try {
+            FileOutputStream out = new FileOutputStream(file);
+            out.write("Robbie\nStephanie\r\n\nAlex\nSomeone with a long name\nTodd".getBytes("UTF-8"));
+            out.close();
+
+            List<String> lines = Arrays.asList("Robbie", "Stephanie", "", "Alex", "Someone with a long name", "Todd");
+            assertEquals(lines, Lava.fromFile(file, new StringDecoder()).toList());
+
+            // A tiny window has to be moved along, and grown to fit the long record
+            assertEquals(lines, new MappedFileEnumerable<String>(file, Framing.lines(), new StringDecoder(), 4).toList());
+
+            assertEquals(Arrays.asList("Alex", "Todd"), Lava.fromFile(file, new StringDecoder()).where(new Predicate<String>() {
+                @Override
+                public boolean callback(String s) {
+                    return s.length() == 4;
+                }
+            }).toList());
+
+            // Only the newline is a delimiter here, so the carriage return stays
+            assertEquals("Stephanie\r", Lava.fromFile(file, Framing.delimited((byte) '\n'), new StringDecoder()).skip(1).first());
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testFromFileFixed() throws Exception {
+        File file = File.createTempFile("lava-test", ".bin");
+
+        try {
+            DataOutputStream out = new DataOutputStream(new FileOutputStream(file));
+            for (int i = 0; i < 100; i++) {
+                out.writeInt(i);
+                out.writeLong(i * 1000L);
+            }
+            out.close();
+
+            RecordDecoder<Long> decoder = new RecordDecoder<Long>() {
+                @Override
+                public Long decode(ByteBuffer record) {
+                    assertEquals(12, record.remaining());
+                    return record.getInt() + record.getLong();
+                }
+            };
+
+            assertEquals(Long.valueOf(99099), Lava.fromFile(file, Framing.fixed(12), decoder).last());
+            assertEquals(Lava.fromFile(file, Framing.fixed(12), decoder).toList(),
+                    new MappedFileEnumerable<Long>(file, Framing.fixed(12), decoder, 100).toList());
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test(expected = FileSourceException.class)
+    public void testFromFilePartialRecord() throws Exception {
+        File file = File.createTempFile("lava-test", ".bin");
+
+        try {
+            FileOutputStream out = new FileOutputStream(file);
+            out.write(new byte[30]);
+            out.close();
+
+            Lava.fromFile(file, Framing.fixed(12), new StringDecoder()).toList();
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testFromPublisher() throws Exception {
+        PushEnumerable<Person> adults = Lava.publish(people).where(new Func<Person, Boolean>() {
+            @Override
+            public Boolean callback(Person person) {
+                return person.age > 21;
+            }
+        });
+
+        Enumerable<Person> pulled = Lava.fromPublisher(adults, 2);
+        assertEquals(Lava.where(people, new Func<Person, Boolean>() {
+            @Override
+            public Boolean callback(Person person) {
+                return person.age > 21;
+            }
+        }).toList(), pulled.toList());
+
+        // Every enumeration subscribes again
+        assertEquals(7, pulled.count());
+        assertEquals("Brian", Lava.fromPublisher(adults, 1).orderByDescending().first().name);
+
+        Enumerable<Integer> failing = Lava.fromPublisher(Lava.publish(Arrays.asList(1, 2, 3)).select(new Func<Integer, Integer>() {
+            @Override
+            public Integer callback(Integer integer) {
+                return 6 / (integer - 3);
+            }
+        }), 8);
+
+        try {
+            failing.toList();
+            fail();
+        } catch (ArithmeticException e) {
+            // The publisher's failure comes out of the iterator
+        }
+
+        final AtomicBoolean cancelled = new AtomicBoolean();
+        Publisher<Integer> flooding = new Publisher<Integer>() {
+            @Override
+            public void subscribe(Subscriber<? super Integer> subscriber) {
+                subscriber.onSubscribe(new Subscription() {
+                    @Override
+                    public void request(long n) {
+                    }
+
+                    @Override
+                    public void cancel() {
+                        cancelled.set(true);
+                    }
+                });
+
+                // Sends more than the two elements that were asked for
+                for (int i = 0; i < 5; i++) {
+                    subscriber.onNext(i);
+                }
+
+                subscriber.onComplete();
+            }
+        };
+
+        Iterator<Integer> flooded = Lava.fromPublisher(flooding, 2).iterator();
+        assertTrue(cancelled.get());
+        assertEquals(Integer.valueOf(0), flooded.next());
+        assertEquals(Integer.valueOf(1), flooded.next());
+
+        try {
+            flooded.next();
+            fail();
+        } catch (IllegalStateException e) {
+            // The elements that fit are handed out before the failure
+        }
+    }
+
     @Test
     public void testGroupBy1() throws Exception {
         Enumerable<Group<Integer, Person>> list = Lava.groupBy(people, new Func<Person, Integer>() {
@@ -418,6 +789,72 @@ public class LavaTest {
         }
     }
 
+    @Test
+    public void testGroupByEqualKeys() throws Exception {
+        // Boxed values this large are not cached, so every key is a different instance
+        Enumerable<Group<Integer, Person>> list = Lava.groupBy(people, new Func<Person, Integer>() {
+            @Override
+            public Integer callback(Person person) {
+                return new Integer(person.age * 1000);
+            }
+        });
+
+        assertEquals(8, list.count());
+        assertEquals(Integer.valueOf(23000), list.first().getKey());
+        assertEquals(2, list.first().getValues().size());
+
+        Enumerable<Group<String, Person>> names = Lava.groupBy(people, new Func<Person, String>() {
+            @Override
+            public String callback(Person person) {
+                return new String(person.name.substring(0, 1));
+            }
+        });
+
+        assertEquals(8, names.count());
+    }
+
+    @Test
+    public void testGroupBySpill() throws Exception {
+        Func<Person, Integer> nameLength = new Func<Person, Integer>() {
+            @Override
+            public Integer callback(Person person) {
+                return person.name.length();
+            }
+        };
+
+        File directory = createTempDirectory();
+
+        try {
+            Map<Integer, List<Person>> expected = new HashMap<Integer, List<Person>>();
+            for (Group<Integer, Person> group : Lava.groupBy(people, nameLength))
+                expected.put(group.getKey(), group.getValues());
+
+            Map<Integer, List<Person>> actual = new HashMap<Integer, List<Person>>();
+            for (Group<Integer, Person> group : Lava.groupBy(people, nameLength, new PersonSerializer(), new SpillConfig(2, directory)))
+                assertNull(actual.put(group.getKey(), group.getValues()));
+
+            // The people come back from disk, but each group still keeps them in their original order
+            assertEquals(expected, actual);
+            assertEquals(0, directory.list().length);
+
+            List<String> counts = Lava.groupBy(people, nameLength, new IdentityFunction<Person>(), new Func2<Integer, Collection<Person>, String>() {
+                @Override
+                public String callback(Integer length, Collection<Person> persons) {
+                    return length + "=" + persons.size();
+                }
+            }, new PersonSerializer(), new SpillConfig(2, directory)).orderBy().toList();
+
+            assertEquals(Arrays.asList("3=1", "4=3", "5=1", "6=3", "9=1"), counts);
+            assertEquals(0, directory.list().length);
+
+            // Stopping after the first group deletes the partitions that weren't read
+            assertNotNull(Lava.groupBy(people, nameLength, new PersonSerializer(), new SpillConfig(2, directory)).first());
+            assertEquals(0, directory.list().length);
+        } finally {
+            deleteTempDirectory(directory);
+        }
+    }
+
     @Test
     public void testGroupJoin() throws Exception {
         // Grab all the pets from all the people
@@ -476,6 +913,34 @@ public class LavaTest {
         assertTrue(strings.count() == 3);
     }
 
+    @Test
+    public void testIntersectOrder() throws Exception {
+        List<Integer> first = Arrays.asList(5, 3, 9, 7, 5, 9, 3, 7);
+        List<Integer> second = Arrays.asList(8, 9, 6, 7, 4, 9);
+
+        assertEquals(Arrays.asList(9, 7), Lava.intersect(first, second).toList());
+    }
+
+    @Test
+    public void testExceptOrder() throws Exception {
+        List<Integer> first = Arrays.asList(5, 3, 9, 7, 5, 9, 3, 7, 1);
+        List<Integer> second = Arrays.asList(9, 4);
+
+        assertEquals(Arrays.asList(5, 3, 7, 1), Lava.except(first, second).toList());
+    }
+
+    @Test
+    public void testIteratorMethods() throws Exception {
+        LavaList<Integer> list = new LavaList<Integer>(Arrays.asList(1, 2, 3));
+        List<Integer> seen = new ArrayList<Integer>();
+
+        while (list.hasNext()) {
+            seen.add(list.next());
+        }
+
+        assertEquals(Arrays.asList(1, 2, 3), seen);
+    }
+
     @Test
     public void testJoin() throws Exception {
         // Grab all the pets from all the people
@@ -511,6 +976,234 @@ public class LavaTest {
         assertTrue(petOwners.any());
     }
 
+    @Test
+    public void testJoinSpill() throws Exception {
+        List<String> names = Arrays.asList("Robbie", "Todd", "Nobody", "Robbie", "Alex", "Todd", "Brian");
+
+        Func<Person, String> personName = new Func<Person, String>() {
+            @Override
+            public String callback(Person person) {
+                return person.name;
+            }
+        };
+
+        Func<String, String> identity = new IdentityFunction<String>();
+
+        Func2<Person, String, String> result = new Func2<Person, String, String>() {
+            @Override
+            public String callback(Person person, String name) {
+                return name + "-" + person.age;
+            }
+        };
+
+        Serializer<String> strings = new Serializer<String>() {
+            @Override
+            public void write(String value, DataOutput out) throws IOException {
+                out.writeUTF(value);
+            }
+
+            @Override
+            public String read(DataInput in) throws IOException {
+                return in.readUTF();
+            }
+        };
+
+        File directory = createTempDirectory();
+
+        try {
+            List<String> expected = Lava.join(people, names, personName, identity, result).orderBy().toList();
+            assertEquals(Arrays.asList("Alex-1", "Brian-44", "Robbie-23", "Robbie-23", "Robbie-23", "Robbie-23", "Todd-34", "Todd-34"), expected);
+
+            // Everything fits, so the join runs in memory
+            assertEquals(expected, Lava.join(people, names, personName, identity, result, new PersonSerializer(), strings, new SpillConfig(10, directory)).orderBy().toList());
+
+            // The inner collection doesn't fit, so both sides are partitioned
+            assertEquals(expected, Lava.join(people, names, personName, identity, result, new PersonSerializer(), strings, new SpillConfig(2, directory)).orderBy().toList());
+            assertEquals(0, directory.list().length);
+
+            // Stopping after the first result deletes the pairs that weren't joined
+            assertNotNull(Lava.join(people, names, personName, identity, result, new PersonSerializer(), strings, new SpillConfig(2, directory)).first());
+            assertEquals(0, directory.list().length);
+        } finally {
+            deleteTempDirectory(directory);
+        }
+    }
+
+    @Test
+    public void testHashPartitionsSpreadEachLevel() throws Exception {
+        // Keys that land in the same partition at the first two levels still spread over every partition at the next
+        Set<Integer> partitions = new HashSet<Integer>();
+
+        for (int i = 0; i < 1000000; i++) {
+            if (HashPartitions.partitionOf(i, 0) == HashPartitions.partitionOf(0, 0) && HashPartitions.partitionOf(i, 1) == HashPartitions.partitionOf(0, 1))
+                partitions.add(HashPartitions.partitionOf(i, 2));
+        }
+
+        assertEquals(HashPartitions.FAN_OUT, partitions.size());
+    }
+
+    @Test
+    public void testJoinBuildSides() throws Exception {
+        ArrayList<Integer> small = new ArrayList<Integer>();
+        small.add(3);
+        small.add(1);
+
+        ArrayList<Integer> large = new ArrayList<Integer>();
+        for (int i = 0; i < 10; i++) {
+            large.add(i % 5);
+        }
+
+        Func<Integer, Integer> identity = new Func<Integer, Integer>() {
+            @Override
+            public Integer callback(Integer integer) {
+                return integer;
+            }
+        };
+
+        Func2<Integer, Integer, String> pair = new Func2<Integer, Integer, String>() {
+            @Override
+            public String callback(Integer outer, Integer inner) {
+                return outer + ":" + inner;
+            }
+        };
+
+        // Small outer, so the engine builds on the outer collection, and still keeps the outer order
+        List<String> smallOuter = Lava.join(small, large, identity, identity, pair).toList();
+        assertEquals(Arrays.asList("3:3", "3:3", "1:1", "1:1"), smallOuter);
+
+        // Large outer, so the engine builds on the inner collection
+        List<String> largeOuter = Lava.join(large, small, identity, identity, pair).toList();
+        assertEquals(Arrays.asList("1:1", "3:3", "1:1", "3:3"), largeOuter);
+
+        List<Integer> outer = Arrays.asList(3, 1, 2);
+        List<Integer> inner = Arrays.asList(1, 2, 3, 4, 5, 6, 7);
+        Func2<Integer, Integer, Integer> first = new Func2<Integer, Integer, Integer>() {
+            @Override
+            public Integer callback(Integer outer, Integer inner) {
+                return outer;
+            }
+        };
+
+        assertTrue(Lava.join(outer, inner, identity, identity, first).equals(outer));
+        assertEquals(outer, Lava.lazy(outer).join(inner, identity, identity, first).toList());
+    }
+
+    @Test
+    public void testJoinLazy() throws Exception {
+        ArrayList<Integer> outer = new ArrayList<Integer>(Arrays.asList(1, 2, 3));
+        ArrayList<Integer> inner = new ArrayList<Integer>(Arrays.asList(2, 3, 3));
+
+        Func<Integer, Integer> identity = new Func<Integer, Integer>() {
+            @Override
+            public Integer callback(Integer integer) {
+                return integer;
+            }
+        };
+
+        Func2<Integer, Integer, Integer> sum = new Func2<Integer, Integer, Integer>() {
+            @Override
+            public Integer callback(Integer outer, Integer inner) {
+                return outer + inner;
+            }
+        };
+
+        Func2<Integer, Collection<Integer>, Integer> counter = new Func2<Integer, Collection<Integer>, Integer>() {
+            @Override
+            public Integer callback(Integer integer, Collection<Integer> integers) {
+                return integers.size();
+            }
+        };
+
+        // The eager join keeps what it found when it was called
+        Enumerable<Integer> eager = Lava.join(outer, inner, identity, identity, sum);
+        Enumerable<Integer> lazy = Lava.lazy(outer).join(inner, identity, identity, sum);
+        Enumerable<Integer> grouped = Lava.lazy(outer).groupJoin(inner, identity, identity, counter);
+
+        assertEquals(Arrays.asList(4, 6, 6), eager.toList());
+        assertEquals(Arrays.asList(4, 6, 6), lazy.toList());
+        assertEquals(Arrays.asList(0, 1, 2), grouped.toList());
+
+        // The lazy ones run again against the current contents
+        inner.add(1);
+        assertEquals(3, eager.count());
+        assertEquals(Arrays.asList(2, 4, 6, 6), lazy.toList());
+        assertEquals(Arrays.asList(1, 1, 2), grouped.toList());
+        assertEquals("Join", lazy.explain().getOperator());
+    }
+
+    @Test
+    public void testGroupJoinWithoutMatches() throws Exception {
+        ArrayList<Integer> outer = new ArrayList<Integer>();
+        outer.add(1);
+        outer.add(7);
+
+        ArrayList<Integer> inner = new ArrayList<Integer>();
+        inner.add(1);
+        inner.add(1);
+        inner.add(2);
+
+        Func<Integer, Integer> identity = new Func<Integer, Integer>() {
+            @Override
+            public Integer callback(Integer integer) {
+                return integer;
+            }
+        };
+
+        Func2<Integer, Collection<Integer>, Integer> counter = new Func2<Integer, Collection<Integer>, Integer>() {
+            @Override
+            public Integer callback(Integer integer, Collection<Integer> integers) {
+                return integers.size();
+            }
+        };
+
+        assertEquals(Arrays.asList(2, 0), Lava.groupJoin(outer, inner, identity, identity, counter).toList());
+
+        inner.remove(2);
+        assertEquals(Arrays.asList(2, 0), Lava.groupJoin(outer, inner, identity, identity, counter).toList());
+    }
+
+    @Test
+    public void testJoinSortMerge() throws Exception {
+        List<Integer> outer = Arrays.asList(1, 2, 2, 4, 5, 7);
+        List<Integer> inner = Arrays.asList(2, 2, 3, 5, 7, 7, 9);
+
+        Func<Integer, Integer> identity = new Func<Integer, Integer>() {
+            @Override
+            public Integer callback(Integer integer) {
+                return integer;
+            }
+        };
+
+        Func2<Integer, Integer, String> pair = new Func2<Integer, Integer, String>() {
+            @Override
+            public String callback(Integer o, Integer i) {
+                return o + ":" + i;
+            }
+        };
+
+        Comparator<Integer> comparator = new Comparator<Integer>() {
+            @Override
+            public int compare(Integer o1, Integer o2) {
+                return o1.compareTo(o2);
+            }
+        };
+
+        List<String> expected = Arrays.asList("2:2", "2:2", "2:2", "2:2", "5:5", "7:7", "7:7");
+
+        assertEquals(expected, Lava.join(outer, inner, identity, identity, pair, comparator, JoinStrategy.SORT_MERGE).toList());
+        assertEquals(expected, Lava.join(outer, inner, identity, identity, pair, comparator, JoinStrategy.AUTO).toList());
+        assertEquals(expected, Lava.join(outer, inner, identity, identity, pair, comparator, JoinStrategy.HASH).toList());
+
+        // Unsorted inputs are sorted by key before they are merged
+        List<Integer> shuffledOuter = Arrays.asList(7, 2, 5, 1, 2, 4);
+        List<Integer> shuffledInner = Arrays.asList(9, 7, 2, 5, 3, 7, 2);
+        assertEquals(expected, Lava.join(shuffledOuter, shuffledInner, identity, identity, pair, comparator, JoinStrategy.SORT_MERGE).toList());
+
+        assertEquals(JoinStrategy.SORT_MERGE, JoinStrategy.AUTO.resolve(outer, inner, identity, identity, comparator));
+        assertEquals(JoinStrategy.HASH, JoinStrategy.AUTO.resolve(shuffledOuter, inner, identity, identity, comparator));
+        assertEquals(JoinStrategy.HASH, JoinStrategy.AUTO.resolve(outer, inner, identity, identity, null));
+    }
+
     @Test
     public void testJoinWithComparator() throws Exception {
         // Grab all the pets from all the people
@@ -602,23 +1295,331 @@ public class LavaTest {
     }
 
     @Test
-    public void testMax() throws Exception {
-        Person person = Lava.max(people);
-        assertTrue(person.age == 44);
-    }
+    public void testLazy() throws Exception {
+        final int[] calls = new int[1];
 
-    @Test
-    public void testMaxWithFunc() throws Exception {
-        int age = Lava.max(people, new Func<Person, Integer>() {
+        Enumerable<String> names = Lava.lazy(people).where(new Func<Person, Boolean>() {
             @Override
-            public Integer callback(Person person) {
-                return person.age;
+            public Boolean callback(Person person) {
+                calls[0]++;
+                return person.age > 20;
+            }
+        }).select(new Func<Person, String>() {
+            @Override
+            public String callback(Person person) {
+                return person.name;
+            }
+        }).take(3);
+
+        // Nothing should run until the chain is enumerated
+        assertEquals(0, calls[0]);
+
+        List<String> list = names.toList();
+        assertEquals(3, list.size());
+        assertEquals("Robbie", list.get(0));
+        assertEquals("Stephanie", list.get(2));
+
+        // Only the elements needed to produce three results were pulled through the where
+        assertEquals(3, calls[0]);
+    }
+
+    @Test
+    public void testLazyMatchesEager() throws Exception {
+        Func<Person, Boolean> func = new Func<Person, Boolean>() {
+            @Override
+            public Boolean callback(Person person) {
+                return person.age > 20;
+            }
+        };
+
+        assertEquals(Lava.where(people, func).toList(), Lava.lazy(people).where(func).toList());
+        assertEquals(Lava.skipWhile(people, func).toList(), Lava.lazy(people).skipWhile(func).toList());
+        assertEquals(Lava.takeWhile(people, func).toList(), Lava.lazy(people).takeWhile(func).toList());
+        assertEquals(Lava.skip(people, 2).toList(), Lava.lazy(people).skip(2).toList());
+        assertEquals(Lava.lazy(people).where(func).count(), Lava.where(people, func).count());
+
+        Enumerable<Pet> pets = Lava.lazy(people).selectMany(new Func<Person, Collection<Pet>>() {
+            @Override
+            public Collection<Pet> callback(Person person) {
+                return person.pets;
+            }
+        });
+
+        assertEquals(240, pets.count());
+        assertEquals("Robbie-0", pets.first().name);
+    }
+
+    @Test
+    public void testLazyRewrites() throws Exception {
+        final int[] calls = new int[1];
+
+        Func<Person, Integer> age = new Func<Person, Integer>() {
+            @Override
+            public Integer callback(Person person) {
+                calls[0]++;
+                return person.age;
+            }
+        };
+
+        Predicate<Person> adult = new Predicate<Person>() {
+            @Override
+            public boolean callback(Person person) {
+                return person.age > 20;
+            }
+        };
+
+        Predicate<Person> young = new Predicate<Person>() {
+            @Override
+            public boolean callback(Person person) {
+                return person.age < 30;
+            }
+        };
+
+        // Consecutive wheres are checked in a single stage
+        Enumerable<Person> both = Lava.lazy(people).where(adult).where(young);
+        assertEquals("Where", both.explain().getOperator());
+        assertEquals("Source", both.explain().getInputs().get(0).getOperator());
+        assertEquals(Lava.where(people, adult).where(young).toList(), both.toList());
+
+        // A where after an orderBy filters before sorting
+        Enumerable<Person> sorted = Lava.lazy(people).orderBy().where(adult);
+        assertEquals("OrderBy", sorted.explain().getOperator());
+        assertEquals("Where", sorted.explain().getInputs().get(0).getOperator());
+        assertEquals(Lava.orderBy(people).where(adult).toList(), sorted.toList());
+
+        // Consecutive selects run in a single stage
+        Enumerable<Integer> doubled = Lava.lazy(people).select(age).select(new Func<Integer, Integer>() {
+            @Override
+            public Integer callback(Integer i) {
+                return i * 2;
+            }
+        });
+        assertEquals("Source", doubled.explain().getInputs().get(0).getOperator());
+        assertEquals(Integer.valueOf(46), doubled.first());
+
+        // Counting a select doesn't call the callback
+        calls[0] = 0;
+        assertEquals(people.size(), Lava.lazy(people).select(age).count());
+        assertEquals(0, calls[0]);
+
+        // The first element of a sort is the smallest one, and the first of several equal ones
+        Comparator<Person> byAgeLastDigit = new Comparator<Person>() {
+            @Override
+            public int compare(Person o1, Person o2) {
+                return (o1.age % 10) - (o2.age % 10);
+            }
+        };
+        assertSame(Lava.orderBy(people, byAgeLastDigit).first(), Lava.lazy(people).orderBy(byAgeLastDigit).first());
+        assertSame(Lava.orderByDescending(people, byAgeLastDigit).first(), Lava.lazy(people).orderByDescending(byAgeLastDigit).first());
+        assertSame(Lava.min(people), Lava.lazy(people).orderBy().first());
+        assertSame(Lava.min(people), Lava.lazy(people).orderBy().firstOrDefault());
+
+        // A union is already distinct
+        Enumerable<Person> union = Lava.union(people, people);
+        assertSame(union, union.distinct());
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void testLazyOrderByFirstOrDefaultEmpty() throws Exception {
+        // Same as firstOrDefault on the sorted list
+        Lava.lazy(new ArrayList<Person>()).orderBy().firstOrDefault();
+    }
+
+    @Test
+    public void testLive() throws Exception {
+        ObservableList<Person> list = new ObservableList<Person>(people);
+        LiveCollection<Person> adults = Lava.live(list).where(new Func<Person, Boolean>() {
+            @Override
+            public Boolean callback(Person person) {
+                return person.age >= 21;
+            }
+        });
+        LiveCollection<String> names = adults.select(new Func<Person, String>() {
+            @Override
+            public String callback(Person person) {
+                return person.name;
+            }
+        });
+        LiveGroups<Integer, Person> decades = adults.groupBy(new Func<Person, Integer>() {
+            @Override
+            public Integer callback(Person person) {
+                return person.age / 10;
+            }
+        });
+        LiveLong<Person> count = adults.count();
+        LiveLong<Person> ages = adults.sum(new ToLongFunc<Person>() {
+            @Override
+            public long callback(Person person) {
+                return person.age;
+            }
+        });
+        LiveCollection<Person> forties = decades.get(4);
+        LiveLong<Person> fortiesCount = forties.count();
+
+        assertEquals(8, adults.size());
+        assertEquals(8, count.get());
+        assertEquals(23 + 23 + 24 + 34 + 21 + 28 + 42 + 44, ages.get());
+        assertEquals(8, names.size());
+        assertEquals(new HashSet<Integer>(Arrays.asList(2, 3, 4)), decades.keySet());
+        assertEquals(2, fortiesCount.get());
+
+        list.add(createPerson("Kim", 47));
+        list.add(createPerson("Sam", 5));
+        assertEquals(9, count.get());
+        assertEquals(3, fortiesCount.get());
+        assertTrue(names.contains("Kim"));
+        assertFalse(names.contains("Sam"));
+
+        // Replacing and removing elements takes the old ones back out of every result
+        list.set(list.indexOf(createPerson("Todd", 34)), createPerson("Todd", 35));
+        list.remove(createPerson("Justin", 42));
+        list.remove(createPerson("Brian", 44));
+        list.remove(createPerson("Kim", 47));
+        assertEquals(6, count.get());
+        assertEquals(23 + 23 + 24 + 35 + 21 + 28, ages.get());
+        assertEquals(0, fortiesCount.get());
+        assertEquals(new HashSet<Integer>(Arrays.asList(2, 3)), decades.keySet());
+        assertFalse(names.contains("Justin"));
+
+        // The results match a query run from scratch over the list as it is now
+        List<Person> expected = Lava.where(list, new Func<Person, Boolean>() {
+            @Override
+            public Boolean callback(Person person) {
+                return person.age >= 21;
+            }
+        }).toList();
+        assertEquals(new HashSet<Person>(expected), new HashSet<Person>(adults));
+
+        // Looking up a key that has no elements doesn't add a group, but one that is chained onto fills up
+        LiveCollection<Person> nineties = decades.get(9);
+        assertTrue(nineties.isEmpty());
+        assertEquals(2, decades.size());
+        LiveLong<Person> ninetiesCount = nineties.count();
+        list.add(createPerson("Olive", 93));
+        assertEquals(1, ninetiesCount.get());
+        assertSame(nineties, decades.get(9));
+
+        // Even if the key turns up before anything is chained onto it
+        LiveCollection<Person> eighties = decades.get(8);
+        list.add(createPerson("Edna", 84));
+        LiveLong<Person> eightiesCount = eighties.count();
+        assertEquals(1, eightiesCount.get());
+        list.remove(createPerson("Edna", 84));
+        list.remove(createPerson("Olive", 93));
+        assertEquals(0, eightiesCount.get());
+        assertEquals(0, ninetiesCount.get());
+        assertEquals(new HashSet<Integer>(Arrays.asList(2, 3)), decades.keySet());
+
+        // A closed result stops changing
+        count.close();
+        list.clear();
+        assertEquals(6, count.get());
+        assertEquals(0, ages.get());
+        assertTrue(adults.isEmpty());
+        assertTrue(names.isEmpty());
+        assertEquals(0, decades.size());
+    }
+
+    @Test
+    public void testLiveSumOfInfinities() throws Exception {
+        ObservableList<Double> list = new ObservableList<Double>(Arrays.asList(1.0, 2.0));
+        LiveDouble<Double> sum = Lava.live(list).sum(new ToDoubleFunc<Double>() {
+            @Override
+            public double callback(Double d) {
+                return d;
+            }
+        });
+
+        list.add(Double.POSITIVE_INFINITY);
+        assertEquals(Double.POSITIVE_INFINITY, sum.get(), 0.0);
+        list.add(Double.NEGATIVE_INFINITY);
+        assertTrue(Double.isNaN(sum.get()));
+        list.add(Double.NaN);
+        assertTrue(Double.isNaN(sum.get()));
+
+        // Taking them back out leaves the total of the finite values
+        list.remove(Double.POSITIVE_INFINITY);
+        list.remove(Double.NEGATIVE_INFINITY);
+        list.remove(Double.NaN);
+        assertEquals(3.0, sum.get(), 0.0);
+    }
+
+    @Test
+    public void testMaterialize() throws Exception {
+        List<Person> source = new ArrayList<Person>(people);
+
+        Enumerable<Person> lazy = Lava.lazy(source).where(new Func<Person, Boolean>() {
+            @Override
+            public Boolean callback(Person person) {
+                return person.age > 40;
+            }
+        });
+
+        Enumerable<Person> materialized = lazy.materialize();
+        assertEquals(2, materialized.count());
+
+        // The lazy chain sees changes to the source, the materialized copy does not
+        source.add(createPerson("Walter", 60));
+        assertEquals(3, lazy.count());
+        assertEquals(2, materialized.count());
+    }
+
+    @Test
+    public void testMax() throws Exception {
+        Person person = Lava.max(people);
+        assertTrue(person.age == 44);
+    }
+
+    @Test
+    public void testMaxWithFunc() throws Exception {
+        int age = Lava.max(people, new Func<Person, Integer>() {
+            @Override
+            public Integer callback(Person person) {
+                return person.age;
             }
         });
 
         assertTrue(age == 44);
     }
 
+    @Test
+    public void testMemoize() throws Exception {
+        final int[] calls = new int[1];
+        Enumerable<String> names = Lava.lazy(people).select(new Func<Person, String>() {
+            @Override
+            public String callback(Person person) {
+                calls[0]++;
+                return person.name;
+            }
+        }).memoize();
+
+        assertEquals(0, calls[0]);
+
+        // Stopping early only runs the chain as far as it has been read
+        Iterator<String> iter = names.iterator();
+        assertEquals("Robbie", iter.next());
+        assertEquals(1, calls[0]);
+
+        assertEquals(people.size(), names.toList().size());
+        assertEquals(people.size(), names.toList().size());
+        assertEquals(people.size(), calls[0]);
+
+        // The first iterator carries on from where it was, reading what the others have already produced
+        assertEquals("Robbie", iter.next());
+        assertEquals(people.size(), calls[0]);
+
+        assertSame(names, names.memoize());
+        assertEquals("Memoized", names.explain().getOperator());
+
+        Enumerable<Person> eager = Lava.where(people, new Func<Person, Boolean>() {
+            @Override
+            public Boolean callback(Person person) {
+                return true;
+            }
+        });
+        assertSame(eager, eager.memoize());
+    }
+
     @Test
     public void testMin() throws Exception {
         Person person = Lava.min(people);
@@ -638,6 +1639,47 @@ public class LavaTest {
     }
 
     @SuppressWarnings("unchecked")
+    @Test
+    public void testObservable() throws Exception {
+        final List<String> changes = new ArrayList<String>();
+        ChangeListener<Integer> listener = new ChangeListener<Integer>() {
+            @Override
+            public void added(Integer integer) {
+                changes.add("+" + integer);
+            }
+
+            @Override
+            public void removed(Integer integer) {
+                changes.add("-" + integer);
+            }
+        };
+
+        ObservableList<Integer> list = new ObservableList<Integer>(Arrays.asList(1, 2, 3));
+        list.addListener(listener);
+        list.add(4);
+        list.set(0, 5);
+        list.removeAll(Arrays.asList(2, 9));
+
+        Iterator<Integer> iter = list.iterator();
+        iter.next();
+        iter.remove();
+
+        list.removeListener(listener);
+        list.add(6);
+        assertEquals(Arrays.asList("+4", "-1", "+5", "-2", "-5"), changes);
+        assertEquals(Arrays.asList(3, 4, 6), list);
+
+        changes.clear();
+        ObservableSet<Integer> set = new ObservableSet<Integer>();
+        set.addListener(listener);
+        set.add(1);
+        set.add(1);
+        set.remove(2);
+        set.addAll(Arrays.asList(1, 2));
+        set.clear();
+        assertEquals(Arrays.asList("+1", "+2", "-1", "-2"), changes);
+    }
+
     @Test
     public void testOfType() throws Exception {
         ArrayList arrayList = new ArrayList();
@@ -701,6 +1743,435 @@ public class LavaTest {
         printList(list);
     }
 
+    @Test
+    public void testTopK() throws Exception {
+        assertEquals(Lava.orderBy(people).take(3).toList(), Lava.topK(people, 3).toList());
+        assertEquals(Lava.orderBy(people).toList(), Lava.topK(people, 100).toList());
+        assertTrue(Lava.topK(people, 0).toList().isEmpty());
+
+        // Only the last digit of the age is compared, so there are plenty of ties
+        Comparator<Person> lastDigit = new Comparator<Person>() {
+            @Override
+            public int compare(Person o1, Person o2) {
+                return (o1.age % 10) - (o2.age % 10);
+            }
+        };
+
+        for (int k = 1; k <= peopleCount; k++) {
+            assertSameElements(Lava.orderBy(people, lastDigit).take(k).toList(), Lava.topK(people, k, lastDigit).toList());
+            assertSameElements(Lava.orderBy(people, lastDigit).take(k).toList(), Lava.lazy(people).orderBy(lastDigit).take(k).toList());
+            assertSameElements(Lava.orderByDescending(people, lastDigit).take(k).toList(), Lava.lazy(people).orderByDescending(lastDigit).take(k).toList());
+        }
+
+        assertEquals(Lava.orderByDescending(people).toList(), Lava.lazy(people).orderByDescending().toList());
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testTopKLazyTakeTooMany() throws Exception {
+        Lava.lazy(people).orderBy().take(peopleCount + 1).toList();
+    }
+
+    private <T> void assertSameElements(List<T> expected, List<T> actual) {
+        assertEquals(expected.size(), actual.size());
+
+        for (int i = 0; i < expected.size(); i++) {
+            assertSame(expected.get(i), actual.get(i));
+        }
+    }
+
+    @Test
+    public void testOrderByDescendingIsStable() throws Exception {
+        List<Person> list = Lava.orderByDescending(people, new Comparator<Person>() {
+            @Override
+            public int compare(Person o1, Person o2) {
+                return o1.age / 10 - o2.age / 10;
+            }
+        }).toList();
+
+        // Within each decade the people keep the order they were added in
+        assertEquals(Arrays.asList("Justin", "Brian", "Todd", "Robbie", "Robbie", "Stephanie", "Mark", "Dan", "Alex"),
+                Lava.select(list, new Func<Person, String>() {
+                    @Override
+                    public String callback(Person person) {
+                        return person.name;
+                    }
+                }).toList());
+        assertSame(people.get(0), list.get(3));
+        assertSame(people.get(1), list.get(4));
+    }
+
+    @Test
+    public void testOrderBySpill() throws Exception {
+        Comparator<Person> byDecade = new Comparator<Person>() {
+            @Override
+            public int compare(Person o1, Person o2) {
+                return o1.age / 10 - o2.age / 10;
+            }
+        };
+
+        File directory = createTempDirectory();
+
+        try {
+            SpillConfig config = new SpillConfig(2, directory);
+
+            assertEquals(Lava.orderBy(people, byDecade).toList(),
+                    Lava.orderBy(people, byDecade, new PersonSerializer(), config).toList());
+            assertEquals(Lava.orderByDescending(people, byDecade).toList(),
+                    Lava.lazy(people).orderByDescending(byDecade, new PersonSerializer(), config).toList());
+
+            // Every run file is deleted once the merge has finished
+            assertEquals(0, directory.list().length);
+
+            // Everything fits in memory, so the original objects come back
+            List<Person> list = Lava.orderBy(people, byDecade, new PersonSerializer(), new SpillConfig(peopleCount, directory)).toList();
+            assertSame(people.get(3), list.get(0));
+            assertEquals(0, directory.list().length);
+
+            // Stopping early still deletes the runs
+            Enumerable<Person> sorted = Lava.orderBy(people, byDecade, new PersonSerializer(), config);
+            assertEquals("Alex", sorted.first().name);
+            assertEquals(0, directory.list().length);
+            assertEquals(2, sorted.where(new Predicate<Person>() {
+                @Override
+                public boolean callback(Person person) {
+                    return person.age > 20;
+                }
+            }).take(2).toList().size());
+            assertEquals(0, directory.list().length);
+
+            Iterator<Person> iterator = sorted.iterator();
+            iterator.next();
+            assertTrue(directory.list().length > 0);
+            LazyEnumerable.close(iterator);
+            assertEquals(0, directory.list().length);
+
+            // Counting doesn't sort
+            assertEquals(peopleCount, sorted.count());
+            assertEquals(0, directory.list().length);
+        } finally {
+            deleteTempDirectory(directory);
+        }
+    }
+
+    @Test
+    public void testOrderBySpillMergePasses() throws Exception {
+        List<Integer> numbers = new ArrayList<Integer>();
+        Random random = new Random(7);
+
+        for (int i = 0; i < ExternalSort.MAX_FAN_IN * 20; i++) {
+            numbers.add(random.nextInt(1000));
+        }
+
+        File directory = createTempDirectory();
+
+        try {
+            // Each run has ten elements, so there are too many runs to merge at once
+            Iterator<Integer> iterator = ExternalSort.sort(numbers, Ordering.<Integer>natural(), new JavaSerializer<Integer>(), new SpillConfig(10, directory));
+            assertTrue(directory.list().length <= ExternalSort.MAX_FAN_IN);
+
+            List<Integer> expected = new ArrayList<Integer>(numbers);
+            Collections.sort(expected);
+
+            assertEquals(expected, Lists.newArrayList(iterator));
+            assertEquals(0, directory.list().length);
+        } finally {
+            deleteTempDirectory(directory);
+        }
+    }
+
+    private File createTempDirectory() throws IOException {
+        File directory = File.createTempFile("lava-test", "");
+        assertTrue(directory.delete());
+        assertTrue(directory.mkdir());
+
+        return directory;
+    }
+
+    private void deleteTempDirectory(File directory) {
+        for (File file : directory.listFiles()) {
+            file.delete();
+        }
+
+        directory.delete();
+    }
+
+    @Test
+    public void testOrderByKey() throws Exception {
+        final int[] calls = new int[1];
+
+        List<Person> list = Lava.orderBy(people, new Func<Person, Integer>() {
+            @Override
+            public Integer callback(Person person) {
+                calls[0]++;
+                return person.age;
+            }
+        }).toList();
+
+        assertEquals(peopleCount, calls[0]);
+        assertEquals(Lava.orderBy(people).toList(), list);
+
+        List<Person> descending = Lava.orderByDescending(people, new Func<Person, String>() {
+            @Override
+            public String callback(Person person) {
+                return person.name;
+            }
+        }).toList();
+
+        assertEquals("Todd", descending.get(0).name);
+        assertSame(people.get(0), descending.get(2));
+        assertSame(people.get(1), descending.get(3));
+        assertEquals("Alex", descending.get(peopleCount - 1).name);
+    }
+
+    @Test
+    public void testThenBy() throws Exception {
+        Func<Person, Integer> decade = new Func<Person, Integer>() {
+            @Override
+            public Integer callback(Person person) {
+                return person.age / 10;
+            }
+        };
+
+        Func<Person, String> name = new Func<Person, String>() {
+            @Override
+            public String callback(Person person) {
+                return person.name;
+            }
+        };
+
+        assertEquals(Arrays.asList("Alex", "Dan", "Mark", "Robbie", "Robbie", "Stephanie", "Todd", "Brian", "Justin"),
+                Lava.orderBy(people, decade).thenBy(name).select(name).toList());
+
+        assertEquals(Arrays.asList("Alex", "Stephanie", "Robbie", "Robbie", "Mark", "Dan", "Todd", "Justin", "Brian"),
+                Lava.orderBy(people, decade).thenByDescending(name).select(name).toList());
+
+        assertEquals(Arrays.asList("Brian", "Justin", "Todd", "Dan", "Mark", "Robbie", "Robbie", "Stephanie", "Alex"),
+                Lava.lazy(people).orderByDescending(decade).thenBy(name).select(name).toList());
+
+        // A later thenBy only reorders elements that are equal on every earlier key
+        Enumerable<Person> byDecade = Lava.orderBy(people, decade);
+        Enumerable<Person> byAge = Lava.orderBy(people, decade).thenByDescending(name).thenBy(new Func<Person, Integer>() {
+            @Override
+            public Integer callback(Person person) {
+                return person.age;
+            }
+        });
+
+        assertEquals(byDecade.select(decade).toList(), byAge.select(decade).toList());
+    }
+
+    @Test
+    public void testParallel() throws Exception {
+        List<String> names = Lava.parallel(people).where(new Func<Person, Boolean>() {
+            @Override
+            public Boolean callback(Person person) {
+                return person.age > 23;
+            }
+        }).select(new Func<Person, String>() {
+            @Override
+            public String callback(Person person) {
+                return person.name;
+            }
+        }).toList();
+
+        assertEquals(Arrays.asList("Stephanie", "Todd", "Dan", "Justin", "Brian"), names);
+
+        assertEquals(44, (int) Lava.parallel(people).max(new Func<Person, Integer>() {
+            @Override
+            public Integer callback(Person person) {
+                return person.age;
+            }
+        }));
+
+        assertEquals("Alex", Lava.parallel(people).min().name);
+        assertFalse(Lava.parallel(people).unordered().isOrdered());
+        assertFalse(Lava.parallel(new ArrayList<Person>()).any(new Func<Person, Boolean>() {
+            @Override
+            public Boolean callback(Person person) {
+                return true;
+            }
+        }));
+    }
+
+    @Test
+    public void testPublish() throws Exception {
+        final List<Integer> read = new ArrayList<Integer>();
+        Iterable<Integer> source = new Iterable<Integer>() {
+            @Override
+            public Iterator<Integer> iterator() {
+                return new Iterator<Integer>() {
+                    private int next = 1;
+
+                    @Override
+                    public boolean hasNext() {
+                        return next <= 10;
+                    }
+
+                    @Override
+                    public Integer next() {
+                        read.add(next);
+                        return next++;
+                    }
+
+                    @Override
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+        };
+
+        RecordingSubscriber<String> subscriber = new RecordingSubscriber<String>();
+        Lava.publish(source).where(new Predicate<Integer>() {
+            @Override
+            public boolean callback(Integer integer) {
+                return integer % 2 == 0;
+            }
+        }).select(new Func<Integer, String>() {
+            @Override
+            public String callback(Integer integer) {
+                return "#" + integer;
+            }
+        }).take(4).subscribe(subscriber);
+
+        // Nothing is read until it is asked for, and then only as far as needed
+        assertTrue(read.isEmpty());
+        subscriber.request(2);
+        assertEquals(Arrays.asList("#2", "#4"), subscriber.values);
+        assertEquals(Arrays.asList(1, 2, 3, 4), read);
+        assertFalse(subscriber.complete);
+
+        subscriber.request(5);
+        assertEquals(Arrays.asList("#2", "#4", "#6", "#8"), subscriber.values);
+        assertEquals(8, read.size());
+        assertTrue(subscriber.complete);
+
+        RecordingSubscriber<Map<Boolean, Integer>> groups = new RecordingSubscriber<Map<Boolean, Integer>>();
+        Lava.publish(source).groupBy(new Func<Integer, Boolean>() {
+            @Override
+            public Boolean callback(Integer integer) {
+                return integer % 2 == 0;
+            }
+        }, new Func2<Integer, Integer, Integer>() {
+            @Override
+            public Integer callback(Integer integer, Integer total) {
+                return total == null ? integer : total + integer;
+            }
+        }).subscribe(groups);
+        groups.request(1);
+        assertEquals(25, (int) groups.values.get(0).get(false));
+        assertEquals(30, (int) groups.values.get(0).get(true));
+        assertTrue(groups.complete);
+
+        // An empty source completes straight away, but the result waits for a request
+        RecordingSubscriber<Integer> empty = new RecordingSubscriber<Integer>();
+        Lava.publish(new ArrayList<Integer>()).aggregate(new Func2<Integer, Integer, Integer>() {
+            @Override
+            public Integer callback(Integer integer, Integer total) {
+                return total;
+            }
+        }).subscribe(empty);
+        assertFalse(empty.complete);
+        empty.request(1);
+        assertTrue(empty.complete);
+
+        RecordingSubscriber<Map<Boolean, Integer>> emptyGroups = new RecordingSubscriber<Map<Boolean, Integer>>();
+        Lava.publish(new ArrayList<Integer>()).groupBy(new Func<Integer, Boolean>() {
+            @Override
+            public Boolean callback(Integer integer) {
+                return integer % 2 == 0;
+            }
+        }, new Func2<Integer, Integer, Integer>() {
+            @Override
+            public Integer callback(Integer integer, Integer total) {
+                return integer;
+            }
+        }).subscribe(emptyGroups);
+        assertTrue(emptyGroups.values.isEmpty());
+        emptyGroups.request(1);
+        assertEquals(Collections.<Map<Boolean, Integer>>singletonList(new HashMap<Boolean, Integer>()), emptyGroups.values);
+        assertTrue(emptyGroups.complete);
+
+        // A callback that throws cancels the source and fails the subscriber
+        RecordingSubscriber<Integer> failing = new RecordingSubscriber<Integer>();
+        read.clear();
+        Lava.publish(source).select(new Func<Integer, Integer>() {
+            @Override
+            public Integer callback(Integer integer) {
+                if (integer == 3)
+                    throw new IllegalStateException("three");
+
+                return integer;
+            }
+        }).subscribe(failing);
+        failing.request(Long.MAX_VALUE);
+        assertEquals(Arrays.asList(1, 2), failing.values);
+        assertEquals("three", failing.error.getMessage());
+        assertEquals(3, read.size());
+        assertFalse(failing.complete);
+    }
+
+    @Test
+    public void testQueryCache() throws Exception {
+        final int[] calls = new int[1];
+        CompiledQuery<Person, String> names = Lava.compile(Query.<Person>create().select(new Func<Person, String>() {
+            @Override
+            public String callback(Person person) {
+                calls[0]++;
+                return person.name;
+            }
+        }));
+
+        // Without a cache the query runs every time
+        assertNull(Lava.getQueryCache());
+        Lava.apply(names, people);
+        assertEquals(people.size(), calls[0]);
+
+        QueryCache cache = new QueryCache(2);
+        Lava.setQueryCache(cache);
+
+        try {
+            calls[0] = 0;
+            assertEquals(people.size(), Lava.apply(names, people).count());
+            assertEquals(Lava.apply(names, people).toList(), names.apply(people).toList());
+            assertEquals(people.size() * 2, calls[0]);
+            assertEquals(1, cache.getHits());
+            assertEquals(1, cache.getMisses());
+
+            // A plain list isn't looked at again until it is invalidated
+            people.remove(people.size() - 1);
+            assertEquals(people.size() + 1, Lava.apply(names, people).count());
+            cache.invalidate(people);
+            assertEquals(people.size(), Lava.apply(names, people).count());
+            assertEquals(2, cache.getMisses());
+
+            // An observable list is run again as soon as it changes
+            ObservableList<Person> observed = new ObservableList<Person>(people);
+            assertEquals(people.size(), Lava.apply(names, observed).count());
+            assertEquals(people.size(), Lava.apply(names, observed).count());
+            observed.set(0, people.get(2));
+            assertEquals("Stephanie", Lava.apply(names, observed).first());
+            assertEquals(4, cache.getMisses());
+            cache.clear();
+
+            // The least recently used entry makes room for new ones
+            List<Person> first = people.subList(0, 2);
+            List<Person> second = people.subList(2, 4);
+            Lava.apply(names, first);
+            Lava.apply(names, second);
+            assertEquals(2, cache.size());
+            Lava.apply(names, people);
+            assertEquals(7, cache.getMisses());
+
+            cache.invalidate(second);
+            assertEquals(1, cache.size());
+            cache.clear();
+            assertEquals(0, cache.size());
+        } finally {
+            Lava.setQueryCache(null);
+        }
+    }
+
     @Test
     public void testRandom() throws Exception {
         Enumerable<Integer> range = Lava.range(0, 10);
@@ -758,6 +2229,199 @@ public class LavaTest {
         }
     }
 
+    @Test
+    public void testSelectAsync() throws Exception {
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger mostRunning = new AtomicInteger();
+        final AtomicInteger calls = new AtomicInteger();
+
+        Func<Person, String> lookup = new Func<Person, String>() {
+            @Override
+            public String callback(Person person) {
+                calls.incrementAndGet();
+                int now = running.incrementAndGet();
+
+                synchronized (mostRunning) {
+                    mostRunning.set(Math.max(mostRunning.get(), now));
+                }
+
+                try {
+                    Thread.sleep(10);
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+
+                running.decrementAndGet();
+                return person.name;
+            }
+        };
+
+        Enumerable<String> names = Lava.selectAsync(people, lookup, 3);
+        assertEquals(0, calls.get());
+
+        List<String> expected = Lava.select(people, new Func<Person, String>() {
+            @Override
+            public String callback(Person person) {
+                return person.name;
+            }
+        }).toList();
+
+        assertEquals(expected, names.toList());
+        assertEquals(peopleCount, calls.get());
+        assertTrue(mostRunning.get() <= 3);
+        assertTrue(mostRunning.get() > 1);
+
+        // Enumerating again runs the callbacks again
+        assertEquals(peopleCount, names.count());
+        assertEquals(peopleCount * 2, calls.get());
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            List<String> unordered = Lava.selectAsync(people, lookup, 4, executor, false).toList();
+            Collections.sort(unordered);
+            Collections.sort(expected);
+            assertEquals(expected, unordered);
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(3, Lava.lazy(people).selectAsync(lookup, 2).take(3).count());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testSelectAsyncException() throws Exception {
+        Lava.selectAsync(people, new Func<Person, String>() {
+            @Override
+            public String callback(Person person) {
+                if (person.age == 34)
+                    throw new IllegalStateException();
+
+                return person.name;
+            }
+        }, 2).toList();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSelectAsyncNoConcurrency() throws Exception {
+        Lava.selectAsync(people, new IdentityFunction<Person>(), 0);
+    }
+
+    @Test
+    public void testSelectBatched() throws Exception {
+        final List<Integer> sizes = new ArrayList<Integer>();
+
+        Func<List<Person>, List<String>> names = new Func<List<Person>, List<String>>() {
+            @Override
+            public List<String> callback(List<Person> batch) {
+                sizes.add(batch.size());
+
+                List<String> ret = new ArrayList<String>(batch.size());
+                for (Person person : batch) {
+                    ret.add(person.name);
+                }
+
+                return ret;
+            }
+        };
+
+        List<String> expected = Lava.select(people, new Func<Person, String>() {
+            @Override
+            public String callback(Person person) {
+                return person.name;
+            }
+        }).toList();
+
+        assertEquals(expected, Lava.selectBatched(people, 4, names).toList());
+        assertEquals(Arrays.asList(4, 4, 1), sizes);
+
+        sizes.clear();
+        Enumerable<String> lazy = Lava.lazy(people).selectBatched(2, names);
+        assertTrue(sizes.isEmpty());
+        assertEquals(expected, lazy.toList());
+        assertEquals(Arrays.asList(2, 2, 2, 2, 1), sizes);
+
+        assertEquals(expected, Lava.parallel(people).selectBatched(4, names).toList());
+        assertEquals(expected, Lava.selectBatched(people, 100, names).toList());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testSelectBatchedWrongSize() throws Exception {
+        Lava.selectBatched(people, 4, new Func<List<Person>, List<String>>() {
+            @Override
+            public List<String> callback(List<Person> batch) {
+                return Collections.singletonList(batch.get(0).name);
+            }
+        });
+    }
+
+    @Test
+    public void testSelectInt() throws Exception {
+        IntEnumerable ages = Lava.selectInt(people, new Func<Person, Integer>() {
+            @Override
+            public Integer callback(Person person) {
+                return person.age;
+            }
+        });
+
+        assertEquals(peopleCount, ages.count());
+        assertEquals(240, ages.sum());
+        assertEquals(240.0 / peopleCount, ages.average(), 0.0001);
+        assertEquals(1, ages.min());
+        assertEquals(44, ages.max());
+
+        IntEnumerable adults = ages.where(new IntPredicate() {
+            @Override
+            public boolean callback(int value) {
+                return value >= 30;
+            }
+        });
+
+        assertArrayEquals(new int[]{34, 42, 44}, adults.toArray());
+        assertEquals(Arrays.asList(34, 42, 44), adults.boxed().toList());
+
+        assertEquals(0, IntEnumerable.of().sum());
+        assertEquals((long) Integer.MAX_VALUE * 2, IntEnumerable.of(Integer.MAX_VALUE, Integer.MAX_VALUE).sum());
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void testSelectIntEmptyMax() throws Exception {
+        IntEnumerable.of().max();
+    }
+
+    @Test
+    public void testSelectLong() throws Exception {
+        LongEnumerable pets = Lava.lazy(people).selectLong(new Func<Person, Long>() {
+            @Override
+            public Long callback(Person person) {
+                return (long) person.pets.size();
+            }
+        });
+
+        assertEquals(peopleCount, pets.count());
+        assertEquals(240L, pets.sum());
+        assertEquals(1L, pets.where(new LongPredicate() {
+            @Override
+            public boolean callback(long value) {
+                return value < 10;
+            }
+        }).count());
+    }
+
+    @Test
+    public void testSelectDouble() throws Exception {
+        DoubleEnumerable halves = Lava.selectDouble(people, new Func<Person, Double>() {
+            @Override
+            public Double callback(Person person) {
+                return person.age / 2.0;
+            }
+        });
+
+        assertEquals(120.0, halves.sum(), 0.0001);
+        assertEquals(0.5, halves.min(), 0.0001);
+        assertEquals(22.0, halves.max(), 0.0001);
+        assertEquals(120.0 / peopleCount, halves.average(), 0.0001);
+    }
+
     @Test
     public void testSelectMany1() throws Exception {
         Enumerable<Pet> pets = Lava.selectMany(people, new Func<Person, Collection<Pet>>() {
@@ -1007,6 +2671,103 @@ public class LavaTest {
         printList(ret);
     }
 
+    @Test
+    public void testWherePredicate() throws Exception {
+        Predicate<Person> adult = new Predicate<Person>() {
+            @Override
+            public boolean callback(Person person) {
+                return person.age > 10;
+            }
+        };
+
+        assertEquals(8, Lava.where(people, adult).count());
+        assertEquals(8, Lava.lazy(people).where(adult).count());
+        assertEquals(8, Lava.parallel(people).where(adult).count());
+        assertFalse(Lava.all(people, adult));
+        assertTrue(Lava.any(people, adult));
+        assertEquals("Robbie", Lava.first(people, adult).name);
+        assertEquals("Brian", Lava.last(people, adult).name);
+        assertEquals("Alex", Lava.single(people, new Predicate<Person>() {
+            @Override
+            public boolean callback(Person person) {
+                return person.age < 10;
+            }
+        }).name);
+        assertEquals(6, Lava.skipWhile(people, new Predicate<Person>() {
+            @Override
+            public boolean callback(Person person) {
+                return person.name.equals("Robbie");
+            }
+        }).count());
+        assertEquals(4, Lava.lazy(people).takeWhile(new Predicate<Person>() {
+            @Override
+            public boolean callback(Person person) {
+                return person.age < 30;
+            }
+        }).count());
+    }
+
+    @Test
+    public void testWhereBatched() throws Exception {
+        final List<Integer> sizes = new ArrayList<Integer>();
+
+        Func<List<Person>, List<Boolean>> adults = new Func<List<Person>, List<Boolean>>() {
+            @Override
+            public List<Boolean> callback(List<Person> batch) {
+                sizes.add(batch.size());
+
+                List<Boolean> ret = new ArrayList<Boolean>(batch.size());
+                for (Person person : batch) {
+                    ret.add(person.age > 10);
+                }
+
+                return ret;
+            }
+        };
+
+        Enumerable<Person> ret = Lava.whereBatched(people, 3, adults);
+        assertEquals(8, ret.count());
+        assertEquals(Arrays.asList(3, 3, 3), sizes);
+        assertEquals("Robbie", ret.first().name);
+        assertEquals("Brian", ret.last().name);
+
+        assertEquals(8, Lava.lazy(people).whereBatched(2, adults).count());
+        assertEquals(Lava.where(people, new Predicate<Person>() {
+            @Override
+            public boolean callback(Person person) {
+                return person.age > 10;
+            }
+        }).toList(), Lava.parallel(people).whereBatched(4, adults).toList());
+        assertEquals("Mark", Lava.lazy(people).whereBatched(5, adults).skip(4).first().name);
+    }
+
+    @Test
+    public void testSelectToIntFunc() throws Exception {
+        ToIntFunc<Person> age = new ToIntFunc<Person>() {
+            @Override
+            public int callback(Person person) {
+                return person.age;
+            }
+        };
+
+        assertEquals(240, Lava.selectInt(people, age).sum());
+        assertEquals(44, Lava.lazy(people).selectInt(age).max());
+
+        assertEquals(240L, Lava.selectLong(people, new ToLongFunc<Person>() {
+            @Override
+            public long callback(Person person) {
+                return person.pets.size();
+            }
+        }).sum());
+
+        assertEquals(120.0, Lava.selectDouble(people, new ToDoubleFunc<Person>() {
+            @Override
+            public double callback(Person person) {
+                return person.age / 2.0;
+            }
+        }).sum(), 0.0001);
+    }
+
     @Test
     public void testUnion() throws Exception {
         ArrayList<Integer> ints1 = new ArrayList<Integer>();
@@ -1038,6 +2799,85 @@ public class LavaTest {
         assertTrue(ints.count() == 9);
     }
 
+    @Test
+    public void testWindow() throws Exception {
+        ToLongFunc<Integer> time = new ToLongFunc<Integer>() {
+            @Override
+            public long callback(Integer integer) {
+                return integer;
+            }
+        };
+        Func2<Integer, Integer, Integer> sum = new Func2<Integer, Integer, Integer>() {
+            @Override
+            public Integer callback(Integer integer, Integer total) {
+                return total == null ? integer : total + integer;
+            }
+        };
+
+        List<Integer> values = Arrays.asList(0, 1, 2, 3, 4, 5, 6, 7, 8, 9);
+        List<Integer> sums = new ArrayList<Integer>();
+        for (Window<Integer> window : Lava.window(values, Windows.tumbling(5, time)).aggregate(sum)) {
+            sums.add(window.getValue());
+        }
+        assertEquals(Arrays.asList(10, 35), sums);
+
+        // Sliding windows overlap, and the first one starts before the first element
+        List<String> slides = new ArrayList<String>();
+        for (Window<Integer> window : Lava.window(values.subList(0, 6), Windows.sliding(4, 2, time)).aggregate(sum)) {
+            slides.add(window.getStart() + ":" + window.getCount());
+        }
+        assertEquals(Arrays.asList("-2:2", "0:4", "2:4", "4:2"), slides);
+
+        // Empty windows are skipped, and a late element counts as arriving with the latest timestamp
+        List<String> gaps = new ArrayList<String>();
+        for (Window<Integer> window : Lava.window(Arrays.asList(0, 1, 20, 3), Windows.tumbling(5, time)).aggregate(sum)) {
+            gaps.add(window.getStart() + ":" + window.getCount());
+        }
+        assertEquals(Arrays.asList("0:2", "20:2"), gaps);
+
+        List<Map<String, Integer>> groups = new ArrayList<Map<String, Integer>>();
+        Windowed<Person> windowed = Lava.window(people, Windows.<Person>count(4));
+        for (Window<Map<String, Integer>> window : windowed.groupBy(new Func<Person, String>() {
+            @Override
+            public String callback(Person person) {
+                return person.name;
+            }
+        }, new Func2<Person, Integer, Integer>() {
+            @Override
+            public Integer callback(Person person, Integer count) {
+                return count == null ? 1 : count + 1;
+            }
+        })) {
+            groups.add(window.getValue());
+        }
+        assertEquals(3, groups.size());
+        assertEquals(2, (int) groups.get(0).get("Robbie"));
+        assertEquals(Collections.singletonMap("Brian", 1), groups.get(2));
+
+        // The source never ends, and each window comes out as soon as the next one starts
+        Iterator<Integer> endless = new Iterator<Integer>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return true;
+            }
+
+            @Override
+            public Integer next() {
+                return next++;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+        Iterator<Window<Integer>> windows = Lava.windowIterator(endless, Windows.<Integer>count(100)).aggregate(sum).iterator();
+        assertEquals(4950, (int) windows.next().getValue());
+        assertEquals(14950, (int) windows.next().getValue());
+    }
+
     @Test
     public void testZip() throws Exception {
         ArrayList<String> strings = new ArrayList<String>();
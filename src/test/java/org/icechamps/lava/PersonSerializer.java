@@ -0,0 +1,44 @@
+package org.icechamps.lava;
+
+import org.icechamps.lava.spill.Serializer;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+
+/**
+ * Writes a person and the names of their pets for the tests that spill to disk.
+ */
+public class PersonSerializer implements Serializer<Person> {
+
+    @Override
+    public void write(Person person, DataOutput out) throws IOException {
+        out.writeUTF(person.name);
+        out.writeInt(person.age);
+        out.writeInt(person.pets.size());
+
+        for (Pet pet : person.pets) {
+            out.writeUTF(pet.name);
+        }
+    }
+
+    @Override
+    public Person read(DataInput in) throws IOException {
+        Person person = new Person();
+        person.name = in.readUTF();
+        person.age = in.readInt();
+
+        int pets = in.readInt();
+        person.pets = new ArrayList<Pet>(pets);
+
+        for (int i = 0; i < pets; i++) {
+            Pet pet = new Pet();
+            pet.name = in.readUTF();
+            pet.owner = person;
+            person.pets.add(pet);
+        }
+
+        return person;
+    }
+}
@@ -0,0 +1,41 @@
+package org.icechamps.lava;
+
+import org.icechamps.lava.reactive.Subscriber;
+import org.icechamps.lava.reactive.Subscription;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A subscriber that keeps everything it is sent and only asks for elements when a test tells it to.
+ */
+public class RecordingSubscriber<T> implements Subscriber<T> {
+    public final List<T> values = new ArrayList<T>();
+    public Subscription subscription;
+    public Throwable error;
+    public boolean complete;
+
+    @Override
+    public void onSubscribe(Subscription subscription) {
+        this.subscription = subscription;
+    }
+
+    @Override
+    public void onNext(T t) {
+        values.add(t);
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        error = throwable;
+    }
+
+    @Override
+    public void onComplete() {
+        complete = true;
+    }
+
+    public void request(long n) {
+        subscription.request(n);
+    }
+}